@@ -0,0 +1,61 @@
+package PathX.bench;
+
+import java.util.concurrent.locks.ReentrantLock;
+import PathX.PathX_Level;
+import PathX.data.PathXDataModel;
+import PathX.ui.PathXMiniGame;
+import static PathX.PathXConstants.*;
+
+/**
+ * The game as the benchmarks use it, which is never started, so it has no
+ * window and no timer. It locks its data with a lock of its own, since
+ * the framework's is only set up when the game starts, and its clock only
+ * moves when the benchmark moves it.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_BenchGame extends PathXMiniGame
+{
+    // GUARDS THE DATA, JUST LIKE THE FRAMEWORK'S LOCK
+    private ReentrantLock dataLock;
+
+    // THE MODEL AND ITS CLOCK
+    private PathXDataModel model;
+    private long now;
+
+    /**
+     * Constructs a game playing the level argument.
+     */
+    public PathX_BenchGame(PathX_Level level)
+    {
+        dataLock = new ReentrantLock();
+        model = new PathXDataModel(this);
+        model.setCurrentLevel(level);
+        now = SIM_STEP_NANOS;
+    }
+
+    // ACCESSOR METHODS
+    public PathXDataModel getModel()    {   return model;   }
+
+    @Override
+    public void beginUsingData()
+    {
+        dataLock.lock();
+    }
+
+    @Override
+    public void endUsingData()
+    {
+        dataLock.unlock();
+    }
+
+    /**
+     * Updates the model just like the game's timer does, taking exactly
+     * one simulation step.
+     */
+    public void step()
+    {
+        model.update(this, now);
+        now += SIM_STEP_NANOS;
+    }
+}
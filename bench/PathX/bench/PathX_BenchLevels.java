@@ -0,0 +1,108 @@
+package PathX.bench;
+
+import java.io.IOException;
+import java.util.Random;
+import PathX.PathX_Intersection;
+import PathX.PathX_Level;
+import PathX.PathX_Road;
+import PathX.file.PathX_BinLevelIO;
+
+/**
+ * The levels the benchmarks run on. A level name is either one the game
+ * ships with, like "3", or a synthetic level named "grid" followed by its
+ * width, like "grid300", which is a square grid of that many
+ * intersections on a side, so 90,000 of them. Synthetic levels are made
+ * the same way every time, so results from different runs compare.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_BenchLevels
+{
+    // THE START OF EVERY SYNTHETIC LEVEL'S NAME
+    public static final String GRID_PREFIX = "grid";
+
+    // HOW FAR APART THE INTERSECTIONS OF A GRID ARE, IN PIXELS
+    public static final int GRID_SPACING = 100;
+
+    // WHAT EVERY SYNTHETIC LEVEL IS MADE WITH
+    private static final long SEED = 1;
+
+    /**
+     * Returns true if levelName is a synthetic level rather than one the
+     * game ships with.
+     */
+    public static boolean isSynthetic(String levelName)
+    {
+        return levelName.startsWith(GRID_PREFIX);
+    }
+
+    /**
+     * Returns the level named levelName, read just like the game reads it
+     * if it's one the game ships with.
+     *
+     * @throws IOException If it's a shipped level that can't be read.
+     */
+    public static PathX_Level getLevel(String levelName) throws IOException
+    {
+        if (isSynthetic(levelName))
+            return makeGrid(Integer.parseInt(levelName.substring(GRID_PREFIX.length())));
+        return new PathX_BinLevelIO().readLevel(levelName);
+    }
+
+    /**
+     * Makes a square grid of intersections width on a side, each joined to
+     * its neighbors by two way roads, with a one way road across about a
+     * quarter of the squares. Main roads every tenth row and column are
+     * faster than the rest. The start is in one corner and the destination
+     * in the other.
+     */
+    public static PathX_Level makeGrid(int width)
+    {
+        Random random = new Random(SEED);
+        PathX_Level level = new PathX_Level();
+        level.setLevelName(GRID_PREFIX + width);
+        PathX_Intersection[] intersections = new PathX_Intersection[width * width];
+        for (int row = 0; row < width; row++)
+        {
+            for (int col = 0; col < width; col++)
+            {
+                // JIGGLE THEM A LITTLE SO THE ROADS AREN'T ALL THE SAME LENGTH
+                int x = (col * GRID_SPACING) + random.nextInt(GRID_SPACING / 2);
+                int y = (row * GRID_SPACING) + random.nextInt(GRID_SPACING / 2);
+                PathX_Intersection intersection = new PathX_Intersection(x, y);
+                intersection.setOpen(true);
+                intersections[(row * width) + col] = intersection;
+                level.addIntersection(intersection);
+            }
+        }
+        for (int row = 0; row < width; row++)
+        {
+            for (int col = 0; col < width; col++)
+            {
+                PathX_Intersection intersection = intersections[(row * width) + col];
+                int speedLimit = ((row % 10) == 0) || ((col % 10) == 0) ? 100 : 20 + (10 * random.nextInt(4));
+                if (col + 1 < width)
+                    addRoad(level, intersection, intersections[(row * width) + col + 1], false, speedLimit);
+                if (row + 1 < width)
+                    addRoad(level, intersection, intersections[((row + 1) * width) + col], false, speedLimit);
+                if ((col + 1 < width) && (row + 1 < width) && (random.nextInt(4) == 0))
+                    addRoad(level, intersection, intersections[((row + 1) * width) + col + 1], true, speedLimit);
+            }
+        }
+        level.setStartingLocation(intersections[0]);
+        level.setDestination(intersections[intersections.length - 1]);
+        return level;
+    }
+
+    // PRIVATE HELPER METHOD FOR ADDING A ROAD TO A SYNTHETIC LEVEL
+    private static void addRoad(PathX_Level level, PathX_Intersection node1, PathX_Intersection node2,
+                                boolean oneWay, int speedLimit)
+    {
+        PathX_Road road = new PathX_Road();
+        road.setNode1(node1);
+        road.setNode2(node2);
+        road.setOneWay(oneWay);
+        road.setSpeedLimit(speedLimit);
+        level.addRoad(road);
+    }
+}
@@ -0,0 +1,89 @@
+package PathX.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import PathX.PathX_Level;
+import PathX.file.PathX_BinLevelIO;
+
+/**
+ * Benchmarks loading and saving every level the game ships with, plus
+ * two big synthetic ones. Shipped levels are loaded through loadLevel
+ * exactly as the game loads them, and synthetic levels are saved to a
+ * temporary file first and then read back from it.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PathX_LevelIOBenchmark
+{
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7", "8", "9",
+            "10", "11", "12", "13", "14", "15", "16", "17", "18", "19",
+            "Cali", "Death Valley", "grid100", "grid300"})
+    public String levelName;
+
+    // WHAT WE LOAD WITH AND SAVE
+    private PathX_BinLevelIO levelIO;
+    private PathX_Level level;
+
+    // WHERE A SYNTHETIC LEVEL IS LOADED FROM, AND WHERE EVERY LEVEL IS
+    // SAVED TO
+    private File levelFile;
+    private File saveFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        levelIO = new PathX_BinLevelIO();
+        level = PathX_BenchLevels.getLevel(levelName);
+        saveFile = File.createTempFile("PathX_bench_save", ".bin");
+        if (PathX_BenchLevels.isSynthetic(levelName))
+        {
+            levelFile = File.createTempFile("PathX_bench_" + levelName, ".bin");
+            if (!levelIO.saveLevel(levelFile, level))
+                throw new IOException("Could not save " + levelName + " to " + levelFile);
+        }
+        if (loadLevel() == null)
+            throw new IOException("Could not load " + levelName);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        saveFile.delete();
+        if (levelFile != null)
+            levelFile.delete();
+    }
+
+    @Benchmark
+    public PathX_Level loadLevel() throws IOException
+    {
+        if (levelFile != null)
+            return levelIO.readLevelFile(levelFile);
+        return levelIO.loadLevel(levelName, null);
+    }
+
+    @Benchmark
+    public boolean saveLevel()
+    {
+        return levelIO.saveLevel(saveFile, level);
+    }
+}
@@ -0,0 +1,91 @@
+package PathX.bench;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import PathX.PathX_Intersection;
+import PathX.PathX_Level;
+import PathX.data.PathX_RenderSnapshot;
+import PathX.ui.PathXPanel;
+import static PathX.PathXConstants.*;
+
+/**
+ * Benchmarks drawing a level's roads and intersections into an offscreen
+ * BufferedImage the size of the level view, which is what the panel does
+ * whenever its level layer has to be redrawn. Synthetic levels are drawn
+ * around their middle, and shipped ones from their top left corner,
+ * which is where the game starts them.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PathX_RenderBenchmark
+{
+    @Param({"3", "19", "Death Valley", "grid100", "grid300"})
+    public String levelName;
+
+    // WHAT WE DRAW, WHAT DRAWS IT, AND WHERE IT'S DRAWN
+    private PathX_RenderSnapshot snapshot;
+    private PathXPanel panel;
+    private BufferedImage image;
+    private Graphics2D g2;
+    private int viewX;
+    private int viewY;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        PathX_Level level = PathX_BenchLevels.getLevel(levelName);
+        PathX_BenchGame game = new PathX_BenchGame(level);
+        game.step();
+        snapshot = game.getModel().getRenderSnapshot();
+        panel = new PathXPanel(game, game.getModel());
+        image = new BufferedImage(LEVEL_VIEW_WIDTH, LEVEL_VIEW_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        g2 = image.createGraphics();
+
+        if (PathX_BenchLevels.isSynthetic(levelName))
+        {
+            int levelWidth = 0;
+            int levelHeight = 0;
+            for (PathX_Intersection intersection : level.getIntersections())
+            {
+                levelWidth = Math.max(levelWidth, intersection.x);
+                levelHeight = Math.max(levelHeight, intersection.y);
+            }
+            viewX = Math.max(0, (levelWidth - LEVEL_VIEW_WIDTH) / 2);
+            viewY = Math.max(0, (levelHeight - LEVEL_VIEW_HEIGHT) / 2);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        g2.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage renderRoadsAndIntersections()
+    {
+        panel.renderLevelLayer(g2, snapshot, viewX, viewY, LEVEL_VIEW_WIDTH, LEVEL_VIEW_HEIGHT);
+        return image;
+    }
+}
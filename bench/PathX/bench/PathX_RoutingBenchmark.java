@@ -0,0 +1,89 @@
+package PathX.bench;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import PathX.PathX_Level;
+import PathX.route.PathX_HierarchyRouter;
+import PathX.route.PathX_Router;
+
+/**
+ * Benchmarks finding routes between random intersections, with A* and
+ * with a contraction hierarchy built ahead of time. Every invocation is
+ * one search, going through the same random pairs of intersections in
+ * the same order on every run.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PathX_RoutingBenchmark
+{
+    // HOW MANY DIFFERENT SEARCHES WE CYCLE THROUGH
+    private static final int NUM_QUERIES = 1024;
+
+    // NO BIGGER SYNTHETIC LEVEL, SINCE BUILDING THE HIERARCHY FOR grid300
+    // ALONE TAKES THE BETTER PART OF A MINUTE
+    @Param({"19", "grid100"})
+    public String levelName;
+
+    // THE ROUTERS BEING MEASURED
+    private PathX_Router router;
+    private PathX_HierarchyRouter hierarchyRouter;
+
+    // THE SEARCHES, AND WHICH ONE IS NEXT
+    private int[] sources;
+    private int[] targets;
+    private int nextQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        PathX_Level level = PathX_BenchLevels.getLevel(levelName);
+        router = new PathX_Router(level);
+        hierarchyRouter = new PathX_HierarchyRouter(router);
+        hierarchyRouter.rebuild();
+
+        Random random = new Random(1);
+        int numIntersections = level.getIntersections().size();
+        sources = new int[NUM_QUERIES];
+        targets = new int[NUM_QUERIES];
+        for (int i = 0; i < NUM_QUERIES; i++)
+        {
+            sources[i] = random.nextInt(numIntersections);
+            targets[i] = random.nextInt(numIntersections);
+        }
+    }
+
+    @Benchmark
+    public boolean searchAStar()
+    {
+        int query = nextQuery;
+        nextQuery = (nextQuery + 1) % NUM_QUERIES;
+        return router.search(sources[query], targets[query]);
+    }
+
+    @Benchmark
+    public boolean searchHierarchy()
+    {
+        int query = nextQuery;
+        nextQuery = (nextQuery + 1) % NUM_QUERIES;
+        return hierarchyRouter.search(sources[query], targets[query]);
+    }
+}
@@ -0,0 +1,54 @@
+package PathX.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks one update of the game with lots of cars driving around a
+ * synthetic level, which is one simulation step plus copying out the
+ * render snapshot, all with the data locked, just like the game's timer
+ * does each frame.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PathX_UpdateBenchmark
+{
+    @Param({"1000", "10000", "100000"})
+    public int numCars;
+
+    // THE GAME BEING UPDATED
+    private PathX_BenchGame game;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        game = new PathX_BenchGame(PathX_BenchLevels.makeGrid(100));
+
+        // TWO FIFTHS POLICE, TWO FIFTHS BANDITS, AND THE REST ZOMBIES
+        int numPolice = (numCars * 2) / 5;
+        game.getModel().getFleet().spawn(numPolice, numPolice, numCars - (2 * numPolice));
+    }
+
+    @Benchmark
+    public void updateAll()
+    {
+        game.step();
+    }
+}
@@ -20,6 +20,11 @@ public class PathXConstants
     public static String PROPERTIES_SCHEMA_FILE_NAME = "properties_schema.xsd";    
     public static String PATH_DATA = "./data/";
     public static String  LEVELS_PATH = PATH_DATA + "sorting_hat/";
+    public static String  LEVELS_PACK = PATH_DATA + "sorting_hat.pack";
+    public static String  LEVELS_MANIFEST = LEVELS_PATH + "levels.manifest";
+    public static String  RECORD_JOURNAL = PATH_DATA + "PlayerRecord.journal";
+    public static String  TILE_CACHE_PATH = PATH_DATA + "tile_cache/";
+    public static String  LEVEL_SCHEMA_FILE_NAME = "PathXLevelSchema.xsd";
     
     // THESE ARE THE TYPES OF CONTROLS, WE USE THESE CONSTANTS BECAUSE WE'LL
     // STORE THEM BY TYPE, SO THESE WILL PROVIDE A MEANS OF IDENTIFYING THEM
@@ -60,23 +65,62 @@ public class PathXConstants
     public static final String GAME_SCREEN_STATE = "GAME_SCREEN_STATE";    
     public static final String LEVEL_PLAY_SCREEN_STATE = "LEVEL_PLAY_SCREEN_STATE";
 
-    // ANIMATION SPEED
+    // HOW OFTEN THE GAME IS UPDATED AND DRAWN, WHICH DOESN'T CHANGE HOW
+    // FAST IT PLAYS
     public static final int FPS = 30;
 
+    // THE GAME IS SIMULATED IN STEPS OF A FIXED LENGTH, HOWEVER OFTEN IT'S
+    // DRAWN, SO IT PLAYS THE SAME AT ANY FRAME RATE. TILE VELOCITIES ARE
+    // IN PIXELS PER STEP
+    public static final int SIM_STEPS_PER_SECOND = 30;
+    public static final long SIM_STEP_NANOS = 1000000000L / SIM_STEPS_PER_SECOND;
+
+    // AT MOST THIS MANY STEPS ARE TAKEN TO CATCH UP IN ONE UPDATE. A
+    // MACHINE TOO SLOW TO KEEP UP JUST SEES THE GAME SLOW DOWN, RATHER
+    // THAN FALLING FURTHER BEHIND WITH EVERY UPDATE
+    public static final int MAX_SIM_STEPS_PER_UPDATE = 5;
+
+    // HOW FAST EACH KIND OF CAR DRIVES, IN PIXELS PER SECOND FOR
+    // EVERY UNIT OF THE ROAD'S SPEED LIMIT
+    public static final double POLICE_SPEED_FACTOR = 1.0;
+    public static final double BANDIT_SPEED_FACTOR = 1.2;
+    public static final double ZOMBIE_SPEED_FACTOR = 0.4;
+
     // TOTAL NUMBER OF LEVELS
     public static final int TOTAL_LEVEL = 20;
+
+    // HOW MANY LEVELS NEAREST THE CURSOR ON THE MAP WE PRELOAD, ON TOP OF
+    // THE NEXT ONE IN SEQUENCE, AND HOW MUCH MEMORY THEY MAY TAKE
+    public static final int NUM_LEVELS_TO_PRELOAD = 2;
+    public static final long LEVEL_PRELOAD_BUDGET = 64L * 1024 * 1024;
+
+    // HOW MUCH MEMORY DECODED LEVEL IMAGES MAY TAKE
+    public static final long IMAGE_CACHE_BUDGET = 96L * 1024 * 1024;
+
+    // HOW MUCH MEMORY THE TILES OF BACKGROUNDS CUT INTO PYRAMIDS MAY TAKE
+    public static final long TILE_CACHE_BUDGET = 64L * 1024 * 1024;
     
     // RENDERING SETTINGS
     public static final int INTERSECTION_RADIUS = 20;
     public static final int INT_STROKE = 3;
     public static final int ONE_WAY_TRIANGLE_HEIGHT = 40;
     public static final int ONE_WAY_TRIANGLE_WIDTH = 60;
+    public static final int CAR_RADIUS = 8;
+
+    // WHERE ON SCREEN THE LEVEL BEING PLAYED IS DRAWN
+    public static final int LEVEL_VIEW_X = 500;
+    public static final int LEVEL_VIEW_Y = 58;
+    public static final int LEVEL_VIEW_WIDTH = 760;
+    public static final int LEVEL_VIEW_HEIGHT = 642;
     
     // DEFAULT COLORS
     public static final Color   INT_OUTLINE_COLOR   = Color.BLACK;
     public static final Color   HIGHLIGHTED_COLOR = Color.YELLOW;
     public static final Color   OPEN_INT_COLOR      = Color.GREEN;
     public static final Color   CLOSED_INT_COLOR    = Color.RED;
+    public static final Color   POLICE_COLOR        = Color.BLUE;
+    public static final Color   BANDIT_COLOR        = Color.ORANGE;
+    public static final Color   ZOMBIE_COLOR        = new Color(90, 150, 60);
     
     // UI CONTROL SIZE AND POSITION SETTINGS
     public static final int WINDOW_WIDTH = 1280;
@@ -160,4 +204,4 @@ public class PathXConstants
     public static final Font FONT_TEXT_DISPLAY = new Font(Font.SANS_SERIF, Font.BOLD, 48);
     public static final Font FONT_DEBUG_TEXT = new Font(Font.MONOSPACED, Font.BOLD, 14);
     public static final Font FONT_STATS = new Font(Font.MONOSPACED, Font.BOLD, 20);
-}
\ No newline at end of file
+}
\ No newline at end of file
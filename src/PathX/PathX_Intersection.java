@@ -15,6 +15,10 @@ public class PathX_Intersection
     // IS IT OPEN OR NOT
     public boolean open;
 
+    // THE LEVEL THIS INTERSECTION HAS BEEN ADDED TO, IF ANY, WHICH
+    // WE'LL TELL WHEN THE INTERSECTION IS MOVED, OPENED, OR CLOSED
+    PathX_Level level;
+
     /**
      * Constructor allows for a custom location, note that all
      * intersections start as open.
@@ -33,20 +37,33 @@ public class PathX_Intersection
     
     // MUTATOR METHODS
     public void setX(int x)
-    {   this.x = x;         }
+    {   this.x = x;         notifyMoved();  }
     public void setY(int y)
-    {   this.y = y;         }
+    {   this.y = y;         notifyMoved();  }
     public void setOpen(boolean open)
-    {   this.open = open;   }
+    {
+        if (this.open != open)
+            toggleOpen();
+    }
     
     /**
-     * This toggles the intersection open/closed.
+     * This toggles the intersection open/closed, letting the level
+     * it belongs to know about it.
      */
     public void toggleOpen()
     {
         open = !open;
+        if (level != null)
+            level.intersectionToggled(this);
     }
     
+    // LETS THE LEVEL KNOW TO MOVE US IN ITS SPATIAL INDEX
+    private void notifyMoved()
+    {
+        if (level != null)
+            level.intersectionMoved(this);
+    }
+
     /**
      * Returns a textual representation of this intersection.
      */
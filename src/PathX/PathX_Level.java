@@ -39,6 +39,28 @@ public class PathX_Level
     int numBandits;
     int numZombies;
 
+    // ADJACENCY INDEX OVER THE ROADS, BUILT ON DEMAND AND THROWN
+    // AWAY WHENEVER THE GRAPH CHANGES
+    PathX_RoadGraph roadGraph;
+
+    // SPATIAL INDEX OVER THE INTERSECTION LOCATIONS, WITH EACH ONE'S
+    // POSITION IN THE intersections LIST AS ITS ID
+    PathX_SpatialGrid intersectionGrid;
+
+    // SPATIAL INDEX OVER THE ROAD BOUNDING BOXES, WITH EACH ONE'S
+    // POSITION IN THE roads LIST AS ITS ID
+    PathX_SpatialGrid roadGrid;
+
+    // INCREMENTED EVERY TIME AN INTERSECTION OR ROAD IS ADDED,
+    // REMOVED, OR CHANGED, SO OTHERS MAY KNOW THEIR CACHES ARE STALE
+    int geometryVersion;
+
+    // INCREMENTED EVERY TIME AN INTERSECTION IS OPENED OR CLOSED
+    int openStateVersion;
+
+    // THESE GET TOLD WHEN INTERSECTIONS ARE OPENED OR CLOSED
+    ArrayList<PathX_LevelListener> listeners;
+
     /**
      * Default constructor, it just constructs the graph data structures
      * but does not fill in any data.
@@ -48,6 +70,7 @@ public class PathX_Level
         // INIT THE GRAPH DATA STRUCTURES
         intersections = new ArrayList();
         roads = new ArrayList();         
+        listeners = new ArrayList();
     }
 
     /**
@@ -70,9 +93,9 @@ public class PathX_Level
         
         // AND THE STARTING LOCATION AND DESTINATION
         startingLocation = new PathX_Intersection(startingLocationX, startingLocationY);
-        intersections.add(startingLocation);
+        addIntersection(startingLocation);
         destination = new PathX_Intersection(destinationX, destinationY);
-        intersections.add(destination);
+        addIntersection(destination);
         
         // THESE THINGS WILL BE PROVIDED DURING LEVEL EDITING
         money = 0;
@@ -94,6 +117,8 @@ public class PathX_Level
     public int                      getNumPolice()                      {   return numPolice;                       }
     public int                      getNumBandits()                     {   return numBandits;                      }
     public int                      getNumZombies()                     {   return numZombies;                      }
+    public int                      getGeometryVersion()                {   return geometryVersion;                 }
+    public int                      getOpenStateVersion()               {   return openStateVersion;                }
     
     // MUTATOR METHODS
     public void setLevelName(String levelName)    
@@ -116,6 +141,253 @@ public class PathX_Level
     {   this.startingLocation = startingLocation;                               }
     public void setDestination(PathX_Intersection destination)
     {   this.destination = destination;                                         }
+
+    // GRAPH EDITING METHODS
+    // - addIntersection
+    // - removeIntersection
+    // - addRoad
+    // - removeRoad
+    // - roadChanged
+    // - intersectionToggled
+    // - intersectionMoved
+    // - addLevelListener
+    // - removeLevelListener
+    // - invalidateRoadGraph
+    // - getRoadGraph
+    // - getIntersectionGrid
+    // - getRoadGrid
+
+    /**
+     * Adds the intersection to the level graph.
+     */
+    public void addIntersection(PathX_Intersection intersection)
+    {
+        intersection.level = this;
+        intersections.add(intersection);
+        if (intersectionGrid != null)
+        {
+            intersectionGrid.insert(intersections.size() - 1,
+                    intersection.x, intersection.y, intersection.x, intersection.y);
+        }
+        invalidateRoadGraph();
+    }
+
+    /**
+     * Removes the intersection from the level graph, along with all
+     * the roads that use it.
+     */
+    public void removeIntersection(PathX_Intersection intersection)
+    {
+        for (int i = roads.size() - 1; i >= 0; i--)
+        {
+            PathX_Road road = roads.get(i);
+            if ((road.node1 == intersection) || (road.node2 == intersection))
+            {
+                roads.remove(i).level = null;
+                roadGrid = null;
+            }
+        }
+        renumberRoads(0);
+        if (intersections.remove(intersection))
+            intersection.level = null;
+
+        // THE INTERSECTIONS AFTER IT HAVE ALL MOVED UP, SO THEIR
+        // IDS IN THE GRID ARE WRONG NOW
+        intersectionGrid = null;
+        invalidateRoadGraph();
+    }
+
+    /**
+     * Adds the road to the level graph. From now on any changes made to
+     * the road will be reflected in this level's road graph.
+     */
+    public void addRoad(PathX_Road road)
+    {
+        road.level = this;
+        road.id = roads.size();
+        roads.add(road);
+        if (roadGrid != null)
+        {
+            roadGrid.updateRoad(roads.size() - 1, road);
+        }
+        invalidateRoadGraph();
+    }
+
+    /**
+     * Removes the road from the level graph.
+     */
+    public void removeRoad(PathX_Road road)
+    {
+        int id = indexOfRoad(road);
+        if (id >= 0)
+        {
+            roads.remove(id);
+            renumberRoads(id);
+            road.level = null;
+            roadGrid = null;
+            invalidateRoadGraph();
+        }
+    }
+
+    /**
+     * Called by roads in this level when their endpoints, direction,
+     * or speed limit change.
+     */
+    void roadChanged(PathX_Road road)
+    {
+        if (roadGrid != null)
+        {
+            roadGrid.updateRoad(indexOfRoad(road), road);
+        }
+        invalidateRoadGraph();
+    }
+
+    // PRIVATE HELPER METHOD THAT RETURNS WHERE THE ROAD ARGUMENT IS IN
+    // THE roads LIST, OR -1 IF IT'S NOT THERE. THIS IS JUST A LOOKUP
+    // UNLESS THE LIST WAS EDITED WITHOUT GOING THROUGH THIS CLASS
+    private int indexOfRoad(PathX_Road road)
+    {
+        if ((road.id >= roads.size()) || (roads.get(road.id) != road))
+        {
+            renumberRoads(0);
+            if ((road.id >= roads.size()) || (roads.get(road.id) != road))
+                return -1;
+        }
+        return road.id;
+    }
+
+    // PRIVATE HELPER METHOD FOR TELLING THE ROADS FROM first ON WHERE
+    // THEY ARE IN THE roads LIST, SINCE THEY MOVE UP WHEN ONE IS REMOVED
+    private void renumberRoads(int first)
+    {
+        for (int i = first; i < roads.size(); i++)
+        {
+            roads.get(i).id = i;
+        }
+    }
+
+    /**
+     * Called by intersections in this level when they are opened or
+     * closed, it lets all the level listeners know.
+     */
+    void intersectionToggled(PathX_Intersection intersection)
+    {
+        openStateVersion++;
+        for (int i = 0; i < listeners.size(); i++)
+        {
+            listeners.get(i).intersectionToggled(this, intersection);
+        }
+    }
+
+    /**
+     * Called by intersections in this level when they are moved, it
+     * moves them and their roads in the spatial grids too. Note the road
+     * graph is still good since no roads have changed, but their lengths
+     * have.
+     */
+    void intersectionMoved(PathX_Intersection intersection)
+    {
+        geometryVersion++;
+        if ((intersectionGrid == null) && (roadGrid == null))
+            return;
+
+        PathX_RoadGraph graph = getRoadGraph();
+        int id = graph.indexOf(intersection);
+        if (intersectionGrid != null)
+        {
+            intersectionGrid.update(id, intersection.x, intersection.y, intersection.x, intersection.y);
+        }
+        if (roadGrid != null)
+        {
+            for (int e = graph.getOutStart(id); e < graph.getOutEnd(id); e++)
+            {
+                int roadId = graph.getOutRoad(e);
+                roadGrid.updateRoad(roadId, roads.get(roadId));
+            }
+            for (int e = graph.getInStart(id); e < graph.getInEnd(id); e++)
+            {
+                int roadId = graph.getInRoad(e);
+                roadGrid.updateRoad(roadId, roads.get(roadId));
+            }
+        }
+    }
+
+    /**
+     * Registers the listener argument to be told about changes to
+     * this level.
+     */
+    public void addLevelListener(PathX_LevelListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stops telling the listener argument about changes to this level.
+     */
+    public void removeLevelListener(PathX_LevelListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Throws away the current road graph so that it will be rebuilt the
+     * next time it is needed. Note that this only needs to be called
+     * directly by code that edits the intersections or roads lists
+     * without going through this class.
+     */
+    public void invalidateRoadGraph()
+    {
+        roadGraph = null;
+        geometryVersion++;
+    }
+
+    /**
+     * Accessor method for getting the adjacency index for this level's
+     * roads, which will be built now if the graph has changed since it
+     * was last requested.
+     *
+     * @return The up to date road graph for this level.
+     */
+    public PathX_RoadGraph getRoadGraph()
+    {
+        if (roadGraph == null)
+        {
+            roadGraph = new PathX_RoadGraph(intersections, roads);
+        }
+        return roadGraph;
+    }
+
+    /**
+     * Accessor method for getting the spatial index over this level's
+     * intersections, where each one's id is its position in the
+     * intersections list. It is built now if it hasn't been yet.
+     *
+     * @return The up to date intersection grid for this level.
+     */
+    public PathX_SpatialGrid getIntersectionGrid()
+    {
+        if (intersectionGrid == null)
+        {
+            intersectionGrid = PathX_SpatialGrid.buildForIntersections(intersections);
+        }
+        return intersectionGrid;
+    }
+
+    /**
+     * Accessor method for getting the spatial index over this level's
+     * road bounding boxes, where each road's id is its position in the
+     * roads list. It is built now if it hasn't been yet.
+     *
+     * @return The up to date road grid for this level.
+     */
+    public PathX_SpatialGrid getRoadGrid()
+    {
+        if (roadGrid == null)
+        {
+            roadGrid = PathX_SpatialGrid.buildForRoads(roads);
+        }
+        return roadGrid;
+    }
     
     /**
      * Clears the level graph and resets all level data.
@@ -124,8 +396,19 @@ public class PathX_Level
     {
         levelName = "";
         startingLocationImageFileName = "";
+        for (PathX_Intersection intersection : intersections)
+        {
+            intersection.level = null;
+        }
+        for (PathX_Road road : roads)
+        {
+            road.level = null;
+        }
         intersections.clear();
         roads.clear();
+        intersectionGrid = null;
+        roadGrid = null;
+        invalidateRoadGraph();
         startingLocation = null;
         backgroundImageFileName = "";
         destination = null;
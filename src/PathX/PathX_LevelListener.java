@@ -0,0 +1,21 @@
+package PathX;
+
+/**
+ * This interface is for objects that need to know when a level changes
+ * during play, like routes that must be repaired when the player opens
+ * or closes an intersection.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public interface PathX_LevelListener
+{
+    /**
+     * Called right after intersection has been opened or closed.
+     *
+     * @param level The level the intersection belongs to.
+     *
+     * @param intersection The intersection that was toggled, whose
+     * isOpen method now returns its new state.
+     */
+    public void intersectionToggled(PathX_Level level, PathX_Intersection intersection);
+}
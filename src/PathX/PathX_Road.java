@@ -18,6 +18,14 @@ public class PathX_Road
     // ROAD SPEED LIMIT
     int speedLimit;
 
+    // THE LEVEL THIS ROAD HAS BEEN ADDED TO, IF ANY, WHICH WE'LL
+    // TELL ABOUT CHANGES SO IT CAN KEEP ITS ROAD GRAPH UP TO DATE
+    PathX_Level level;
+
+    // WHERE THIS ROAD IS IN ITS LEVEL'S roads LIST, WHICH THE LEVEL
+    // KEEPS UP TO DATE SO IT NEVER HAS TO SEARCH FOR IT
+    int id;
+
     // ACCESSOR METHODS
     public PathX_Intersection getNode1()  {   return node1;       }
     public PathX_Intersection getNode2()  {   return node2;       }
@@ -25,10 +33,17 @@ public class PathX_Road
     public int getSpeedLimit()      {   return speedLimit;  }
     
     // MUTATOR METHODS
-    public void setNode1(PathX_Intersection node1)    {   this.node1 = node1;             }
-    public void setNode2(PathX_Intersection node2)    {   this.node2 = node2;             }
-    public void setOneWay(boolean oneWay)       {   this.oneWay = oneWay;           }
-    public void setSpeedLimit(int speedLimit)   {   this.speedLimit = speedLimit;   }
+    public void setNode1(PathX_Intersection node1)    {   this.node1 = node1;             notifyLevel();  }
+    public void setNode2(PathX_Intersection node2)    {   this.node2 = node2;             notifyLevel();  }
+    public void setOneWay(boolean oneWay)       {   this.oneWay = oneWay;           notifyLevel();  }
+    public void setSpeedLimit(int speedLimit)   {   this.speedLimit = speedLimit;   notifyLevel();  }
+
+    // LETS THE LEVEL KNOW ITS ROAD GRAPH IS NOW OUT OF DATE
+    private void notifyLevel()
+    {
+        if (level != null)
+            level.roadChanged(this);
+    }
 
     /**
      * Builds and returns a textual representation of this road.
@@ -0,0 +1,186 @@
+package PathX;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * This class is a compact, read-only adjacency index over a level's road
+ * graph. Intersections are numbered by their position in the level's
+ * intersections list and each road is turned into one directed edge, or
+ * two if it is not one way. Edges are stored CSR style, meaning all the
+ * edges leaving intersection i are found at positions outOffsets[i] up to
+ * outOffsets[i+1] of the edge arrays, so finding the roads leaving an
+ * intersection never requires a scan of all the roads.
+ *
+ * Note that this index is rebuilt by PathX_Level whenever the graph
+ * changes, so it should never be kept around across level edits.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_RoadGraph
+{
+    // THE NODES AND EDGES THIS INDEX WAS BUILT FROM
+    private PathX_Intersection[] intersections;
+    private PathX_Road[] roads;
+
+    // LETS US GO FROM AN INTERSECTION BACK TO ITS INDEX
+    private IdentityHashMap<PathX_Intersection, Integer> intersectionIds;
+
+    // OUTGOING EDGES, GROUPED BY SOURCE INTERSECTION
+    private int[] outOffsets;
+    private int[] outTargets;
+    private int[] outRoads;
+
+    // INCOMING EDGES, GROUPED BY TARGET INTERSECTION
+    private int[] inOffsets;
+    private int[] inSources;
+    private int[] inRoads;
+
+    // FOR EACH ROAD, THE INDICES OF ITS TWO INTERSECTIONS
+    private int[] roadNode1;
+    private int[] roadNode2;
+
+    /**
+     * Builds the index for the intersections and roads provided. Roads
+     * whose intersections are not in the intersections list are ignored.
+     *
+     * @param initIntersections The nodes of the graph, in level order.
+     *
+     * @param initRoads The edges of the graph, in level order.
+     */
+    public PathX_RoadGraph( ArrayList<PathX_Intersection> initIntersections,
+                            ArrayList<PathX_Road> initRoads)
+    {
+        int numIntersections = initIntersections.size();
+        int numRoads = initRoads.size();
+        intersections = initIntersections.toArray(new PathX_Intersection[numIntersections]);
+        roads = initRoads.toArray(new PathX_Road[numRoads]);
+
+        // FIRST NUMBER ALL THE INTERSECTIONS
+        intersectionIds = new IdentityHashMap(numIntersections * 2);
+        for (int i = 0; i < numIntersections; i++)
+        {
+            intersectionIds.put(intersections[i], i);
+        }
+
+        // THEN FIND THE ENDPOINTS OF EVERY ROAD AND COUNT THE
+        // NUMBER OF EDGES GOING INTO AND OUT OF EACH INTERSECTION
+        roadNode1 = new int[numRoads];
+        roadNode2 = new int[numRoads];
+        outOffsets = new int[numIntersections + 1];
+        inOffsets = new int[numIntersections + 1];
+        int numEdges = 0;
+        for (int i = 0; i < numRoads; i++)
+        {
+            PathX_Road road = roads[i];
+            roadNode1[i] = indexOf(road.getNode1());
+            roadNode2[i] = indexOf(road.getNode2());
+            if ((roadNode1[i] < 0) || (roadNode2[i] < 0))
+                continue;
+
+            outOffsets[roadNode1[i] + 1]++;
+            inOffsets[roadNode2[i] + 1]++;
+            numEdges++;
+            if (!road.isOneWay())
+            {
+                outOffsets[roadNode2[i] + 1]++;
+                inOffsets[roadNode1[i] + 1]++;
+                numEdges++;
+            }
+        }
+
+        // TURN THE COUNTS INTO OFFSETS
+        for (int i = 0; i < numIntersections; i++)
+        {
+            outOffsets[i + 1] += outOffsets[i];
+            inOffsets[i + 1] += inOffsets[i];
+        }
+
+        // AND NOW FILL IN THE EDGES, KEEPING THEM IN ROAD ORDER
+        outTargets = new int[numEdges];
+        outRoads = new int[numEdges];
+        inSources = new int[numEdges];
+        inRoads = new int[numEdges];
+        int[] outFill = new int[numIntersections];
+        int[] inFill = new int[numIntersections];
+        System.arraycopy(outOffsets, 0, outFill, 0, numIntersections);
+        System.arraycopy(inOffsets, 0, inFill, 0, numIntersections);
+        for (int i = 0; i < numRoads; i++)
+        {
+            int node1 = roadNode1[i];
+            int node2 = roadNode2[i];
+            if ((node1 < 0) || (node2 < 0))
+                continue;
+
+            addEdge(node1, node2, i, outFill, inFill);
+            if (!roads[i].isOneWay())
+            {
+                addEdge(node2, node1, i, outFill, inFill);
+            }
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR PLACING A SINGLE DIRECTED EDGE
+    private void addEdge(int from, int to, int roadId, int[] outFill, int[] inFill)
+    {
+        int outSlot = outFill[from]++;
+        outTargets[outSlot] = to;
+        outRoads[outSlot] = roadId;
+        int inSlot = inFill[to]++;
+        inSources[inSlot] = from;
+        inRoads[inSlot] = roadId;
+    }
+
+    // ACCESSOR METHODS
+    public int                  getNumIntersections()       {   return intersections.length;    }
+    public int                  getNumRoads()               {   return roads.length;            }
+    public int                  getNumEdges()               {   return outTargets.length;       }
+    public PathX_Intersection   getIntersection(int id)     {   return intersections[id];       }
+    public PathX_Road           getRoad(int id)             {   return roads[id];               }
+    public int                  getRoadNode1(int roadId)    {   return roadNode1[roadId];       }
+    public int                  getRoadNode2(int roadId)    {   return roadNode2[roadId];       }
+
+    /**
+     * Returns the index of the intersection argument in this graph, or
+     * -1 if it is not part of it.
+     */
+    public int indexOf(PathX_Intersection intersection)
+    {
+        Integer id = intersectionIds.get(intersection);
+        if (id == null)
+            return -1;
+        return id;
+    }
+
+    // OUTGOING EDGE METHODS. EDGES LEAVING INTERSECTION i ARE NUMBERED
+    // getOutStart(i) UP TO BUT NOT INCLUDING getOutEnd(i)
+    public int getOutStart(int intersectionId)  {   return outOffsets[intersectionId];      }
+    public int getOutEnd(int intersectionId)    {   return outOffsets[intersectionId + 1];  }
+    public int getOutTarget(int edge)           {   return outTargets[edge];                }
+    public int getOutRoad(int edge)             {   return outRoads[edge];                  }
+    public int getOutDegree(int intersectionId)
+    {   return outOffsets[intersectionId + 1] - outOffsets[intersectionId];                 }
+
+    // INCOMING EDGE METHODS. EDGES ENTERING INTERSECTION i ARE NUMBERED
+    // getInStart(i) UP TO BUT NOT INCLUDING getInEnd(i)
+    public int getInStart(int intersectionId)   {   return inOffsets[intersectionId];       }
+    public int getInEnd(int intersectionId)     {   return inOffsets[intersectionId + 1];   }
+    public int getInSource(int edge)            {   return inSources[edge];                 }
+    public int getInRoad(int edge)              {   return inRoads[edge];                   }
+    public int getInDegree(int intersectionId)
+    {   return inOffsets[intersectionId + 1] - inOffsets[intersectionId];                   }
+
+    /**
+     * Returns the road that leads directly from the intersection with
+     * index from to the one with index to, or null if there is none.
+     */
+    public PathX_Road getRoadBetween(int from, int to)
+    {
+        for (int e = outOffsets[from]; e < outOffsets[from + 1]; e++)
+        {
+            if (outTargets[e] == to)
+                return roads[outRoads[e]];
+        }
+        return null;
+    }
+}
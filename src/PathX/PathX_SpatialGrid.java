@@ -0,0 +1,427 @@
+package PathX;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class is a uniform grid spatial index over items with bounding
+ * boxes, like intersections (whose boxes are just points) and roads,
+ * whose boxes are the rectangles their two intersections span.
+ * Every item is listed in each grid cell its box overlaps, so finding the
+ * items in a rectangle only looks at the cells the rectangle covers
+ * rather than at every item in the level.
+ *
+ * Items are identified by int ids, which the owner of the grid is free
+ * to choose, like an intersection's position in its level's list. Items
+ * outside the grid's bounds are kept in its edge cells, so the grid is
+ * always right, just slower for items far outside.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_SpatialGrid
+{
+    // WHERE THE GRID STARTS AND HOW BIG ITS CELLS ARE
+    private int originX;
+    private int originY;
+    private int cellSize;
+    private int numColumns;
+    private int numRows;
+
+    // THE IDS OF THE ITEMS IN EACH CELL, ROW BY ROW
+    private int[][] cellItems;
+    private int[] cellCounts;
+
+    // THE BOUNDING BOX OF EACH ITEM, INDEXED BY ID
+    private int[] minXs;
+    private int[] minYs;
+    private int[] maxXs;
+    private int[] maxYs;
+    private boolean[] present;
+    private int numItems;
+
+    // USED TO REPORT EACH ITEM ONCE EVEN IF IT'S IN MANY CELLS
+    private int[] queryStamps;
+    private int queryId;
+
+    /**
+     * Constructs an empty grid covering the rectangle from (minX, minY)
+     * to (maxX, maxY) with square cells cellSize pixels wide.
+     */
+    public PathX_SpatialGrid(int minX, int minY, int maxX, int maxY, int initCellSize)
+    {
+        cellSize = Math.max(initCellSize, 1);
+        originX = minX;
+        originY = minY;
+        numColumns = Math.max(((maxX - minX) / cellSize) + 1, 1);
+        numRows = Math.max(((maxY - minY) / cellSize) + 1, 1);
+        cellItems = new int[numColumns * numRows][];
+        cellCounts = new int[numColumns * numRows];
+        minXs = new int[16];
+        minYs = new int[16];
+        maxXs = new int[16];
+        maxYs = new int[16];
+        present = new boolean[16];
+        queryStamps = new int[16];
+    }
+
+    /**
+     * Constructs a grid sized for the intersections of a level, with
+     * cells big enough to hold a few intersections each, and adds them
+     * all using their positions in the list as their ids.
+     */
+    public static PathX_SpatialGrid buildForIntersections(List<PathX_Intersection> intersections)
+    {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (PathX_Intersection intersection : intersections)
+        {
+            minX = Math.min(minX, intersection.x);
+            minY = Math.min(minY, intersection.y);
+            maxX = Math.max(maxX, intersection.x);
+            maxY = Math.max(maxY, intersection.y);
+        }
+        if (intersections.isEmpty())
+        {
+            minX = minY = 0;
+            maxX = maxY = 0;
+        }
+
+        PathX_SpatialGrid grid = new PathX_SpatialGrid(minX, minY, maxX, maxY,
+                chooseCellSize(minX, minY, maxX, maxY, intersections.size()));
+        for (int i = 0; i < intersections.size(); i++)
+        {
+            PathX_Intersection intersection = intersections.get(i);
+            grid.insert(i, intersection.x, intersection.y, intersection.x, intersection.y);
+        }
+        return grid;
+    }
+
+    /**
+     * Constructs a grid sized for the roads of a level and adds them all
+     * with their bounding boxes, using their positions in the list as
+     * their ids. Roads whose intersections aren't set are left out.
+     */
+    public static PathX_SpatialGrid buildForRoads(List<PathX_Road> roads)
+    {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        int totalLength = 0;
+        int numRoads = 0;
+        for (PathX_Road road : roads)
+        {
+            PathX_Intersection node1 = road.getNode1();
+            PathX_Intersection node2 = road.getNode2();
+            if ((node1 == null) || (node2 == null))
+                continue;
+            minX = Math.min(minX, Math.min(node1.x, node2.x));
+            minY = Math.min(minY, Math.min(node1.y, node2.y));
+            maxX = Math.max(maxX, Math.max(node1.x, node2.x));
+            maxY = Math.max(maxY, Math.max(node1.y, node2.y));
+            totalLength += Math.abs(node1.x - node2.x) + Math.abs(node1.y - node2.y);
+            numRoads++;
+        }
+        if (numRoads == 0)
+        {
+            minX = minY = 0;
+            maxX = maxY = 0;
+        }
+
+        // ROADS SPAN MANY CELLS IF THE CELLS ARE MUCH SHORTER THAN THEY
+        // ARE, SO DON'T GO BELOW HALF THE AVERAGE ROAD LENGTH
+        int cellSize = chooseCellSize(minX, minY, maxX, maxY, numRoads);
+        if (numRoads > 0)
+            cellSize = Math.max(cellSize, totalLength / (numRoads * 2));
+        PathX_SpatialGrid grid = new PathX_SpatialGrid(minX, minY, maxX, maxY, cellSize);
+        for (int i = 0; i < roads.size(); i++)
+        {
+            grid.updateRoad(i, roads.get(i));
+        }
+        return grid;
+    }
+
+    /**
+     * Puts the road argument in the grid as item id with its current
+     * bounding box, or takes it out if its intersections aren't set.
+     */
+    public void updateRoad(int id, PathX_Road road)
+    {
+        PathX_Intersection node1 = road.getNode1();
+        PathX_Intersection node2 = road.getNode2();
+        if ((node1 == null) || (node2 == null))
+            remove(id);
+        else
+            update(id, node1.x, node1.y, node2.x, node2.y);
+    }
+
+    /**
+     * Picks a cell size for numItems items spread over the rectangle
+     * provided so that each cell holds about 4 of them, but never so
+     * small that an intersection spans many cells.
+     */
+    public static int chooseCellSize(int minX, int minY, int maxX, int maxY, int numItems)
+    {
+        double area = (double)Math.max(maxX - minX, 1) * Math.max(maxY - minY, 1);
+        int size = (int)Math.sqrt((area * 4.0) / Math.max(numItems, 1));
+        return Math.max(size, PathXConstants.INTERSECTION_RADIUS * 2);
+    }
+
+    // ACCESSOR METHODS
+    public int      getNumItems()           {   return numItems;                                    }
+    public int      getCellSize()           {   return cellSize;                                    }
+    public boolean  contains(int id)        {   return (id < present.length) && present[id];        }
+
+    /**
+     * Adds the item id with the bounding box provided. If the item is
+     * already in the grid it is moved instead.
+     */
+    public void insert(int id, int minX, int minY, int maxX, int maxY)
+    {
+        if (contains(id))
+            remove(id);
+        ensureItemCapacity(id + 1);
+        minXs[id] = Math.min(minX, maxX);
+        minYs[id] = Math.min(minY, maxY);
+        maxXs[id] = Math.max(minX, maxX);
+        maxYs[id] = Math.max(minY, maxY);
+        present[id] = true;
+        numItems++;
+
+        int firstColumn = columnOf(minXs[id]);
+        int lastColumn = columnOf(maxXs[id]);
+        int firstRow = rowOf(minYs[id]);
+        int lastRow = rowOf(maxYs[id]);
+        for (int row = firstRow; row <= lastRow; row++)
+        {
+            for (int column = firstColumn; column <= lastColumn; column++)
+            {
+                addToCell((row * numColumns) + column, id);
+            }
+        }
+    }
+
+    /**
+     * Moves the item id to the bounding box provided, which only touches
+     * the grid cells if it has moved into different ones.
+     */
+    public void update(int id, int minX, int minY, int maxX, int maxY)
+    {
+        int newMinX = Math.min(minX, maxX);
+        int newMinY = Math.min(minY, maxY);
+        int newMaxX = Math.max(minX, maxX);
+        int newMaxY = Math.max(minY, maxY);
+        if (contains(id)
+                && (columnOf(newMinX) == columnOf(minXs[id])) && (columnOf(newMaxX) == columnOf(maxXs[id]))
+                && (rowOf(newMinY) == rowOf(minYs[id])) && (rowOf(newMaxY) == rowOf(maxYs[id])))
+        {
+            minXs[id] = newMinX;
+            minYs[id] = newMinY;
+            maxXs[id] = newMaxX;
+            maxYs[id] = newMaxY;
+            return;
+        }
+        insert(id, minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Removes the item id from the grid if it is in it.
+     */
+    public void remove(int id)
+    {
+        if (!contains(id))
+            return;
+        int firstColumn = columnOf(minXs[id]);
+        int lastColumn = columnOf(maxXs[id]);
+        int firstRow = rowOf(minYs[id]);
+        int lastRow = rowOf(maxYs[id]);
+        for (int row = firstRow; row <= lastRow; row++)
+        {
+            for (int column = firstColumn; column <= lastColumn; column++)
+            {
+                removeFromCell((row * numColumns) + column, id);
+            }
+        }
+        present[id] = false;
+        numItems--;
+    }
+
+    /**
+     * Finds all the items whose bounding boxes overlap the rectangle from
+     * (minX, minY) to (maxX, maxY), putting their ids in results. Note
+     * that if results is too small only the first results.length are
+     * stored, so callers should grow it and ask again when that happens.
+     *
+     * @return The number of items found, which may be more than fit.
+     */
+    public int queryRange(int minX, int minY, int maxX, int maxY, int[] results)
+    {
+        nextQuery();
+        int found = 0;
+        int firstColumn = columnOf(minX);
+        int lastColumn = columnOf(maxX);
+        int firstRow = rowOf(minY);
+        int lastRow = rowOf(maxY);
+        for (int row = firstRow; row <= lastRow; row++)
+        {
+            for (int column = firstColumn; column <= lastColumn; column++)
+            {
+                int cell = (row * numColumns) + column;
+                int[] items = cellItems[cell];
+                for (int i = 0; i < cellCounts[cell]; i++)
+                {
+                    int id = items[i];
+                    if ((queryStamps[id] == queryId)
+                            || (maxXs[id] < minX) || (minXs[id] > maxX)
+                            || (maxYs[id] < minY) || (minYs[id] > maxY))
+                        continue;
+                    queryStamps[id] = queryId;
+                    if (found < results.length)
+                        results[found] = id;
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the item whose bounding box is closest to (x, y), looking no
+     * further than maxDistance away.
+     *
+     * @return The id of the closest item, or -1 if there is none in range.
+     */
+    public int nearest(int x, int y, int maxDistance)
+    {
+        nextQuery();
+        int best = -1;
+        long bestDistSq = (long)maxDistance * maxDistance;
+        int centerColumn = columnOf(x);
+        int centerRow = rowOf(y);
+        int maxRing = Math.max(numColumns, numRows);
+
+        // LOOK AT RINGS OF CELLS FURTHER AND FURTHER OUT, STOPPING ONCE
+        // A RING IS FURTHER AWAY THAN THE BEST ITEM SO FAR
+        for (int ring = 0; ring <= maxRing; ring++)
+        {
+            long ringDist = (long)Math.max(ring - 1, 0) * cellSize;
+            if ((ring > 0) && (ringDist * ringDist > bestDistSq))
+                break;
+            for (int row = centerRow - ring; row <= centerRow + ring; row++)
+            {
+                if ((row < 0) || (row >= numRows))
+                    continue;
+                boolean edgeRow = (row == centerRow - ring) || (row == centerRow + ring);
+                int step = edgeRow ? 1 : Math.max(ring * 2, 1);
+                for (int column = centerColumn - ring; column <= centerColumn + ring; column += step)
+                {
+                    if ((column < 0) || (column >= numColumns))
+                        continue;
+                    int cell = (row * numColumns) + column;
+                    int[] items = cellItems[cell];
+                    for (int i = 0; i < cellCounts[cell]; i++)
+                    {
+                        int id = items[i];
+                        if (queryStamps[id] == queryId)
+                            continue;
+                        queryStamps[id] = queryId;
+                        long distSq = distanceSquared(id, x, y);
+                        if ((distSq < bestDistSq) || ((distSq == bestDistSq) && (best < 0)))
+                        {
+                            best = id;
+                            bestDistSq = distSq;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    // PRIVATE HELPER METHOD FOR THE SQUARED DISTANCE FROM (x, y)
+    // TO THE CLOSEST POINT OF ITEM id'S BOUNDING BOX
+    private long distanceSquared(int id, int x, int y)
+    {
+        long dx = 0;
+        long dy = 0;
+        if (x < minXs[id])          dx = minXs[id] - x;
+        else if (x > maxXs[id])     dx = x - maxXs[id];
+        if (y < minYs[id])          dy = minYs[id] - y;
+        else if (y > maxYs[id])     dy = y - maxYs[id];
+        return (dx * dx) + (dy * dy);
+    }
+
+    // PRIVATE HELPER METHODS FOR FINDING THE CELL COLUMN AND ROW OF A
+    // COORDINATE, CLAMPED SO THINGS OUTSIDE THE GRID GO IN EDGE CELLS
+    private int columnOf(int x)
+    {
+        long column = ((long)x - originX) / cellSize;
+        if (x < originX)    return 0;
+        return (int)Math.min(column, numColumns - 1);
+    }
+    private int rowOf(int y)
+    {
+        long row = ((long)y - originY) / cellSize;
+        if (y < originY)    return 0;
+        return (int)Math.min(row, numRows - 1);
+    }
+
+    // PRIVATE HELPER METHOD FOR STARTING A NEW QUERY
+    private void nextQuery()
+    {
+        queryId++;
+        if (queryId == Integer.MAX_VALUE)
+        {
+            Arrays.fill(queryStamps, 0);
+            queryId = 1;
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR ADDING AN ID TO A CELL
+    private void addToCell(int cell, int id)
+    {
+        int[] items = cellItems[cell];
+        if (items == null)
+        {
+            items = new int[4];
+            cellItems[cell] = items;
+        }
+        else if (cellCounts[cell] == items.length)
+        {
+            items = Arrays.copyOf(items, items.length * 2);
+            cellItems[cell] = items;
+        }
+        items[cellCounts[cell]++] = id;
+    }
+
+    // PRIVATE HELPER METHOD FOR REMOVING AN ID FROM A CELL, WHICH
+    // MOVES THE CELL'S LAST ID INTO ITS PLACE
+    private void removeFromCell(int cell, int id)
+    {
+        int[] items = cellItems[cell];
+        for (int i = 0; i < cellCounts[cell]; i++)
+        {
+            if (items[i] == id)
+            {
+                items[i] = items[--cellCounts[cell]];
+                return;
+            }
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR MAKING ROOM FOR IDS UP TO capacity - 1
+    private void ensureItemCapacity(int capacity)
+    {
+        if (present.length >= capacity)
+            return;
+        int newSize = Math.max(capacity, present.length * 2);
+        minXs = Arrays.copyOf(minXs, newSize);
+        minYs = Arrays.copyOf(minYs, newSize);
+        maxXs = Arrays.copyOf(maxXs, newSize);
+        maxYs = Arrays.copyOf(maxYs, newSize);
+        present = Arrays.copyOf(present, newSize);
+        queryStamps = Arrays.copyOf(queryStamps, newSize);
+    }
+}
@@ -17,10 +17,12 @@ import static PathX.PathXConstants.*;
 import PathX.PathX_Road;
 import PathX.PathX_Level;
 import PathX.PathX_Intersection;
+import PathX.sim.PathX_Fleet;
 import PathX.ui.PathXMiniGame;
 import PathX.ui.PathXPanel;
 import PathX.ui.PathXButtonState;
 import java.awt.Image;
+import java.io.IOException;
 
 /**
  * This class manages the game data for The Sorting Hat.
@@ -43,6 +45,9 @@ public class PathXDataModel extends MiniGameDataModel
     
     // A REFERENCE TO THE CURRENT LEVEL
     public PathX_Level currentLevel;
+
+    // ALL THE POLICE, BANDITS, AND ZOMBIES DRIVING AROUND THE LEVEL
+    PathX_Fleet fleet;
     
     // THIS CLASS HAS A REFERERENCE TO THE MINI GAME SO THAT IT
     // CAN NOTIFY IT TO UPDATE THE DISPLAY WHEN THE DATA MODEL CHANGES
@@ -52,7 +57,7 @@ public class PathXDataModel extends MiniGameDataModel
     private ArrayList<PathXTile> tilesToSort;
     
     public void setlevel(PathX_Level lev){
-        level = lev;
+        setCurrentLevel(lev);
     }
     // THE LEGAL TILES IN ORDER FROM LOW SORT INDEX TO HIGH
    // private ArrayList<SnakeCell> snake;
@@ -73,6 +78,21 @@ public class PathXDataModel extends MiniGameDataModel
 
     // THESE ARE THE TILES THAT ARE MOVING AROUND, AND SO WE HAVE TO UPDATE
     private ArrayList<PathXTile> movingTiles;    
+
+    // WHAT THE PANEL DRAWS, COPIED OUT AT THE END OF EVERY UPDATE SO IT
+    // CAN DRAW WITHOUT LOCKING THE DATA
+    private PathX_RenderBuffer renderBuffer;
+    private long tick;
+
+    // HOW FAR THE SIMULATION IS BEHIND THE CLOCK, IN NANOSECONDS, AND
+    // WHEN IT WAS LAST CAUGHT UP, BY System.nanoTime
+    private long simLagNanos;
+    private long lastUpdateNanos;
+    private long numDroppedSimSteps;
+
+    // HOW LONG UPDATES HAVE WAITED FOR THE DATA LOCK, IN NANOSECONDS
+    private volatile long lockWaitNanos;
+    private volatile long numLockWaits;
     
     
     //ACCESSOR METHOD
@@ -81,6 +101,7 @@ public class PathXDataModel extends MiniGameDataModel
     public PathX_Intersection          getStartRoadIntersection()          {   return startRoadIntersection;   }
     public boolean                     isSelectedRoad(PathX_Road testRoad) {   return testRoad == selectedRoad; }
     public PathX_Road                  getSelectedRoad()                   {   return selectedRoad;            }
+    public PathX_Intersection          getSelectedIntersection()           {   return selectedIntersection;    }
 
     /**
      *
@@ -107,6 +128,23 @@ public class PathXDataModel extends MiniGameDataModel
     }
 
 
+    /**
+     * Finds the intersection drawn at the level location (x, y), using
+     * the level's intersection grid so only nearby ones are checked.
+     *
+     * @return The closest intersection within INTERSECTION_RADIUS of the
+     * location, or null if there is none.
+     */
+    public PathX_Intersection findIntersectionAt(int x, int y)
+    {
+        if (level == null)
+            return null;
+        int id = level.getIntersectionGrid().nearest(x, y, INTERSECTION_RADIUS);
+        if (id < 0)
+            return null;
+        return level.getIntersections().get(id);
+    }
+
     // ITERATOR METHODS FOR GOING THROUGH THE GRAPH
     public Iterator intersectionsIterator()
     {
@@ -160,6 +198,7 @@ public class PathXDataModel extends MiniGameDataModel
         stackTiles = new ArrayList();
         movingTiles = new ArrayList();
         tilesToSort = new ArrayList();
+        renderBuffer = new PathX_RenderBuffer();
         viewport.setGameWorldSize(1606,1033);
         viewport.setNorthPanelHeight(89);
         viewport.setScreenSize(WINDOW_WIDTH,WINDOW_HEIGHT);
@@ -212,6 +251,11 @@ public class PathXDataModel extends MiniGameDataModel
         return currentLevel;
     }
 
+    public PathX_Fleet getFleet()
+    {
+        return fleet;
+    }
+
     public ArrayList<PathXTile> getTilesToSort()
     {
         return tilesToSort;
@@ -227,21 +271,79 @@ public class PathXDataModel extends MiniGameDataModel
         return movingTiles.iterator();
     }
 
+    /**
+     * Returns the newest snapshot of the game to draw, which only the
+     * thread drawing the game may call. It needs no lock, and the
+     * snapshot stays the same until this is called again.
+     */
+    public PathX_RenderSnapshot getRenderSnapshot()
+    {
+        return renderBuffer.getFront();
+    }
+
+    /**
+     * Returns how many nanoseconds updates have spent waiting for the data
+     * lock in all, which along with getNumLockWaits shows how much other
+     * threads are holding up the game.
+     */
+    public long getLockWaitNanos()
+    {
+        return lockWaitNanos;
+    }
+
+    public long getNumLockWaits()
+    {
+        return numLockWaits;
+    }
+
+    /**
+     * Returns how many simulation steps were skipped because updates
+     * couldn't keep up, which is how much the game has slowed down.
+     */
+    public long getNumDroppedSimSteps()
+    {
+        return numDroppedSimSteps;
+    }
+
     // MUTATOR METHODS
     public void setCurrentLevel(PathX_Level initCurrentLevel)
     {
+        // BOTH LEVEL REFERENCES ALWAYS MEAN THE SAME LEVEL
         currentLevel = initCurrentLevel;
-    
-}
+        level = initCurrentLevel;
+
+        // AND PUT ITS CARS ON THE ROAD
+        fleet = null;
+        if (initCurrentLevel != null)
+        {
+            fleet = new PathX_Fleet(initCurrentLevel, System.nanoTime());
+            fleet.spawn();
+        }
+    }
  //   public boolean isAddingRoadEnd()        { return editMode == PXLE_EditMode.ADDING_ROAD_END; }
+    /**
+     * Uses the already decoded images provided for the current level,
+     * like when it was preloaded, rather than loading them again. Any of
+     * them may be null.
+     */
+    public void setLevelImages(Image initBackgroundImage, Image initStartingLocationImage, Image initDestinationImage)
+    {
+        backgroundImage = initBackgroundImage;
+        startingLocationImage = initStartingLocationImage;
+        destinationImage = initDestinationImage;
+    }
+
     /**
      * Updates the background image.
      */
     public void updateBackgroundImage(String newBgImage)
     {
         // UPDATE THE LEVEL TO FIT THE BACKGROUDN IMAGE SIZE
-        level.backgroundImageFileName = newBgImage;
-       // backgroundImage = view.loadImage(LEVELS_PATH + level.backgroundImageFileName);
+        if (level != null)
+            level.backgroundImageFileName = newBgImage;
+        backgroundImage = loadLevelImage(newBgImage);
+        if (backgroundImage == null)
+            return;
         int levelWidth = backgroundImage.getWidth(null);
         int levelHeight = backgroundImage.getHeight(null);
       //  viewport.setLevelDimensions(levelWidth, levelHeight);
@@ -252,8 +354,9 @@ public class PathXDataModel extends MiniGameDataModel
      */
     public void updateStartingLocationImage(String newStartImage)
     {
-       // level.startingLocationImageFileName = newStartImage;
-      //  startingLocationImage = view.loadImage(LEVELS_PATH + level.startingLocationImageFileName);
+        if (level != null)
+            level.setStartingLocationImageFileName(newStartImage);
+        startingLocationImage = loadLevelImage(newStartImage);
        // view.getCanvas().repaint();
     }
     /**
@@ -261,10 +364,26 @@ public class PathXDataModel extends MiniGameDataModel
      */
     public void updateDestinationImage(String newDestImage)
     {
-        level.destinationImageFileName = newDestImage;
-//        destinationImage = view.loadImage(LEVELS_PATH + level.destinationImageFileName);
+        if (level != null)
+            level.destinationImageFileName = newDestImage;
+        destinationImage = loadLevelImage(newDestImage);
        // view.getCanvas().repaint();
     }
+
+    // HELPER METHOD FOR GETTING A LEVEL IMAGE FROM THE GAME'S IMAGE CACHE,
+    // SO IT'S ONLY DECODED THE FIRST TIME IT'S USED. A MISSING IMAGE JUST
+    // ISN'T DRAWN
+    private Image loadLevelImage(String imageFileName)
+    {
+        try
+        {
+            return ((PathXMiniGame)miniGame).getImageCache().getImage(imageFileName);
+        }
+        catch(IOException ioe)
+        {
+            return null;
+        }
+    }
     
     
     // INIT METHODS - AFTER CONSTRUCTION, THESE METHODS SETUP A GAME FOR USE
@@ -728,6 +847,19 @@ public class PathXDataModel extends MiniGameDataModel
             return;
         }
 
+        // SELECT THE INTERSECTION THAT WAS CLICKED ON, IF ANY, WHICH IS
+        // DRAWN IN THE LEVEL VIEW RELATIVE TO THE VIEWPORT
+        if (((PathXMiniGame)game).isCurrentScreenState(LEVEL_PLAY_SCREEN_STATE))
+        {
+            PathX_Intersection clickedIntersection
+                    = findIntersectionAt(x - LEVEL_VIEW_X + viewport.x, y - LEVEL_VIEW_Y + viewport.y);
+            if (clickedIntersection != null)
+            {
+                selectedIntersection = clickedIntersection;
+                return;
+            }
+        }
+
         // CHECK THE CELL AT col, row
         int index = getSnakeIndex(col, row);
         
@@ -777,16 +909,21 @@ public class PathXDataModel extends MiniGameDataModel
         long gameTime = endTime.getTimeInMillis() - startTime.getTimeInMillis();
 
         // RECORD IT AS A WIN
-        if (this.badSpellsCounter > 0)
-        {
-            //((PathXMiniGame) miniGame).getPlayerRecord().addWin(currentLevel);
-        } else
+        if (currentLevel != null)
         {
-            //((PathXMiniGame) miniGame).getPlayerRecord().addPerfectWin(currentLevel, gameTime);
-        }
+            String levelName = currentLevel.getLevelName();
+            PathX_LevelRecord levelRecord = ((PathXMiniGame) miniGame).getLevelRecord(levelName);
+            if (this.badSpellsCounter > 0)
+            {
+                levelRecord.addWin();
+            } else
+            {
+                levelRecord.addPerfectWin(gameTime);
+            }
 
-        // SAVE PLAYER DATA
-        ((PathXMiniGame) miniGame).savePlayerRecord();
+            // SAVE PLAYER DATA
+            ((PathXMiniGame) miniGame).savePlayerRecord(levelName, levelRecord);
+        }
 
         // DISPLAY THE WIN DIALOG
         miniGame.getGUIDialogs().get(WIN_DIALOG_TYPE).setState(PathXButtonState.VISIBLE_STATE.toString());
@@ -806,10 +943,15 @@ public class PathXDataModel extends MiniGameDataModel
     public void endGameAsLoss()
     {
         // ADD A LOSS
-        //((PathXMiniGame) miniGame).getPlayerRecord().addLoss(currentLevel);
+        if (currentLevel != null)
+        {
+            String levelName = currentLevel.getLevelName();
+            PathX_LevelRecord levelRecord = ((PathXMiniGame) miniGame).getLevelRecord(levelName);
+            levelRecord.addLoss();
  
-        // SAVE PLAYER DATA
-        ((PathXMiniGame) miniGame).savePlayerRecord();        
+            // SAVE PLAYER DATA
+            ((PathXMiniGame) miniGame).savePlayerRecord(levelName, levelRecord);
+        }
     }
 
     /**
@@ -867,33 +1009,51 @@ public class PathXDataModel extends MiniGameDataModel
     }
 
     /**
-     * Called each frame, this method updates all the game objects.
+     * Called each frame, this method updates all the game objects. They're
+     * simulated in steps of SIM_STEP_NANOS, as many as it takes to catch
+     * up with the clock, so the game plays the same however often this
+     * is called.
      *
      * @param game The Sorting Hat game to be updated.
      */
     @Override
     public void updateAll(MiniGame game)
+    {
+        update(game, System.nanoTime());
+    }
+
+    /**
+     * Updates all the game objects just like updateAll, but as though it
+     * were now nanos by System.nanoTime. This lets the game be driven by
+     * a clock of its own, like when benchmarking, where moving now along
+     * by SIM_STEP_NANOS each time takes exactly one step.
+     */
+    public void update(MiniGame game, long now)
     {
         try
         {
-            // MAKE SURE THIS THREAD HAS EXCLUSIVE ACCESS TO THE DATA
+            // MAKE SURE THIS THREAD HAS EXCLUSIVE ACCESS TO THE DATA,
+            // KEEPING TRACK OF HOW LONG WE WAIT FOR IT
+            long waitStart = System.nanoTime();
             game.beginUsingData();
+            lockWaitNanos += System.nanoTime() - waitStart;
+            numLockWaits++;
 
-            // WE ONLY NEED TO UPDATE AND MOVE THE MOVING TILES
-            for (int i = 0; i < movingTiles.size(); i++)
+            // CATCH THE SIMULATION UP WITH THE CLOCK, BUT ONLY SO FAR
+            simLagNanos += (lastUpdateNanos == 0) ? SIM_STEP_NANOS : (now - lastUpdateNanos);
+            lastUpdateNanos = now;
+            for (int steps = 0; (steps < MAX_SIM_STEPS_PER_UPDATE) && (simLagNanos >= SIM_STEP_NANOS); steps++)
             {
-                // GET THE NEXT TILE
-                PathXTile tile = movingTiles.get(i);
-
-                // THIS WILL UPDATE IT'S POSITION USING ITS VELOCITY
-                tile.update(game);
+                stepSimulation(game);
+                simLagNanos -= SIM_STEP_NANOS;
+            }
 
-                // IF IT'S REACHED ITS DESTINATION, REMOVE IT
-                // FROM THE LIST OF MOVING TILES
-                if (!tile.isMovingToTarget())
-                {
-                    movingTiles.remove(tile);
-                }
+            // IF WE'RE STILL BEHIND WE CAN'T KEEP UP, SO LET THE GAME SLOW
+            // DOWN RATHER THAN TRY EVEN MORE STEPS NEXT TIME
+            if (simLagNanos >= SIM_STEP_NANOS)
+            {
+                numDroppedSimSteps += simLagNanos / SIM_STEP_NANOS;
+                simLagNanos %= SIM_STEP_NANOS;
             }
 
             // IF THE GAME IS STILL ON, THE TIMER SHOULD CONTINUE
@@ -927,6 +1087,9 @@ public class PathXDataModel extends MiniGameDataModel
                     }
                 }
             }
+
+            // AND LET THE PANEL DRAW IT, AS OF WHEN IT WAS SIMULATED TO
+            publishRenderSnapshot(now - simLagNanos);
         } finally
         {
             // MAKE SURE WE RELEASE THE LOCK WHETHER THERE IS
@@ -935,6 +1098,72 @@ public class PathXDataModel extends MiniGameDataModel
         }
     }
 
+    // HELPER METHOD THAT MOVES EVERYTHING ALONG BY ONE SIMULATION STEP
+    private void stepSimulation(MiniGame game)
+    {
+        // WE ONLY NEED TO UPDATE AND MOVE THE MOVING TILES
+        for (int i = 0; i < movingTiles.size(); i++)
+        {
+            // GET THE NEXT TILE
+            PathXTile tile = movingTiles.get(i);
+
+            // THIS WILL UPDATE IT'S POSITION USING ITS VELOCITY
+            tile.update(game);
+
+            // IF IT'S REACHED ITS DESTINATION, REMOVE IT
+            // FROM THE LIST OF MOVING TILES
+            if (!tile.isMovingToTarget())
+            {
+                movingTiles.remove(tile);
+            }
+        }
+
+        // DRIVE ALL THE CARS ALONG BY ONE STEP
+        if (fleet != null)
+        {
+            fleet.update(1.0 / SIM_STEPS_PER_SECOND);
+        }
+    }
+
+    // HELPER METHOD FOR COPYING EVERYTHING THE PANEL DRAWS INTO THE BACK
+    // SNAPSHOT AND PUBLISHING IT, WHICH MUST BE DONE WITH THE DATA LOCKED
+    private void publishRenderSnapshot(long stateNanos)
+    {
+        PathX_RenderSnapshot snapshot = renderBuffer.getBack();
+        snapshot.tick = ++tick;
+        snapshot.stateNanos = stateNanos;
+        snapshot.notStarted = notStarted();
+        snapshot.won = won();
+        snapshot.inProgress = inProgress();
+        snapshot.paused = isPaused();
+        snapshot.badSpellsCounter = badSpellsCounter;
+        snapshot.viewportX = viewport.x;
+        snapshot.viewportY = viewport.y;
+        snapshot.level = level;
+        snapshot.backgroundImage = backgroundImage;
+        snapshot.startingLocationImage = startingLocationImage;
+        snapshot.destinationImage = destinationImage;
+        snapshot.selectedRoad = selectedRoad;
+        snapshot.selectedIntersection = selectedIntersection;
+        snapshot.copyCars(fleet);
+        snapshot.copyDebugText(isDebugTextRenderingActive(), getDebugText(), getDebugTextX(), getDebugTextY());
+
+        // THE TILES GO IN THE ORDER THEY'RE DRAWN
+        snapshot.clearTiles();
+        for (int i = 0; i < tilesToSort.size(); i++)
+        {
+            if (tilesToSort.get(i) != null)
+                snapshot.addTile(tilesToSort.get(i));
+        }
+        for (int i = 0; i < movingTiles.size(); i++)
+        {
+            snapshot.addTile(movingTiles.get(i));
+        }
+        if (selectedTile != null)
+            snapshot.addTile(selectedTile);
+        renderBuffer.publish();
+    }
+
     /**
      * This method is for updating any debug text to present to the screen. In a
      * graphical application like this it's sometimes useful to display data in
@@ -0,0 +1,60 @@
+package PathX.data;
+
+/**
+ * The player's record on one level, which is kept from one session to
+ * the next by PathX_RecordJournal.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_LevelRecord
+{
+    // WHAT A FASTEST TIME IS BEFORE THERE IS ONE
+    public static final long NO_TIME = Long.MAX_VALUE;
+
+    // HOW THE PLAYER HAS DONE
+    public int gamesPlayed;
+    public int wins;
+    public int perfectWins;
+    public long fastestPerfectWinTime = NO_TIME;
+
+    /**
+     * Returns a new record with the same numbers as this one.
+     */
+    public PathX_LevelRecord copy()
+    {
+        PathX_LevelRecord copy = new PathX_LevelRecord();
+        copy.gamesPlayed = gamesPlayed;
+        copy.wins = wins;
+        copy.perfectWins = perfectWins;
+        copy.fastestPerfectWinTime = fastestPerfectWinTime;
+        return copy;
+    }
+
+    /**
+     * Counts a game that was won, but not perfectly.
+     */
+    public void addWin()
+    {
+        gamesPlayed++;
+        wins++;
+    }
+
+    /**
+     * Counts a game that was won perfectly, in gameTime milliseconds.
+     */
+    public void addPerfectWin(long gameTime)
+    {
+        addWin();
+        perfectWins++;
+        if (gameTime < fastestPerfectWinTime)
+            fastestPerfectWinTime = gameTime;
+    }
+
+    /**
+     * Counts a game that was lost.
+     */
+    public void addLoss()
+    {
+        gamesPlayed++;
+    }
+}
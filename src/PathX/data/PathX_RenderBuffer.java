@@ -0,0 +1,70 @@
+package PathX.data;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Three render snapshots passed between the thread updating the game and
+ * the one drawing it, so neither ever waits on the other. The updating
+ * thread fills the back one and then publishes it, swapping it for the
+ * middle one, and the drawing thread swaps the middle one for its front
+ * one whenever there's a newer one there. The one thread that updates
+ * may use getBack and publish, and the one that draws may use getFront.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_RenderBuffer
+{
+    // ONLY THE UPDATING THREAD TOUCHES THIS ONE
+    private PathX_RenderSnapshot back;
+
+    // THE LAST ONE PUBLISHED, OR THE ONE LAST DRAWN IF IT'S ALREADY
+    // BEEN TAKEN
+    private AtomicReference<PathX_RenderSnapshot> middle;
+
+    // AND ONLY THE DRAWING THREAD TOUCHES THIS ONE
+    private PathX_RenderSnapshot front;
+
+    /**
+     * Constructs the buffer with snapshots of a game that hasn't started.
+     */
+    public PathX_RenderBuffer()
+    {
+        back = new PathX_RenderSnapshot();
+        middle = new AtomicReference(new PathX_RenderSnapshot());
+        front = new PathX_RenderSnapshot();
+        back.notStarted = true;
+        middle.get().notStarted = true;
+        front.notStarted = true;
+    }
+
+    /**
+     * Returns the snapshot to fill with the next update, which is only for
+     * the updating thread.
+     */
+    public PathX_RenderSnapshot getBack()
+    {
+        return back;
+    }
+
+    /**
+     * Makes the back snapshot, which must have a higher tick than any
+     * published before it, the one the drawing thread gets next.
+     */
+    public void publish()
+    {
+        back = middle.getAndSet(back);
+    }
+
+    /**
+     * Returns the newest snapshot published, which stays the drawing
+     * thread's until it calls this again.
+     */
+    public PathX_RenderSnapshot getFront()
+    {
+        if (middle.get().tick > front.tick)
+        {
+            front = middle.getAndSet(front);
+        }
+        return front;
+    }
+}
@@ -0,0 +1,186 @@
+package PathX.data;
+
+import java.awt.Image;
+import java.util.ArrayList;
+import java.util.Collection;
+import static PathX.PathXConstants.*;
+import PathX.PathX_Intersection;
+import PathX.PathX_Level;
+import PathX.PathX_Road;
+import PathX.sim.PathX_AgentType;
+import PathX.sim.PathX_Fleet;
+import PathX.ui.PathXTile;
+
+/**
+ * Everything the panel needs to draw one frame of the game, copied out of
+ * the data model at the end of an update. The update thread fills one of
+ * these while the panel draws from another, so drawing never has to lock
+ * the data, and the arrays are kept from one update to the next so that
+ * filling one doesn't make any garbage.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_RenderSnapshot
+{
+    // WHICH UPDATE THIS IS FROM, COUNTING FROM 1, SO THE PANEL CAN TELL
+    // A NEWER SNAPSHOT FROM AN OLDER ONE
+    public long tick;
+
+    // WHEN, BY System.nanoTime, THE GAME WAS SIMULATED UP TO. SINCE IT'S
+    // SIMULATED IN FIXED STEPS THIS IS USUALLY A LITTLE BEFORE THE
+    // SNAPSHOT WAS TAKEN
+    public long stateNanos;
+
+    // THE STATE OF THE GAME
+    public boolean notStarted;
+    public boolean won;
+    public boolean inProgress;
+    public boolean paused;
+    public int badSpellsCounter;
+
+    // WHERE THE LEVEL VIEW IS SCROLLED TO
+    public int viewportX;
+    public int viewportY;
+
+    // THE LEVEL BEING PLAYED AND WHAT'S SELECTED IN IT. THE LEVEL ITSELF
+    // ISN'T COPIED, SINCE IT ONLY CHANGES WHEN THE PLAYER CHANGES IT
+    public PathX_Level level;
+    public Image backgroundImage;
+    public Image startingLocationImage;
+    public Image destinationImage;
+    public PathX_Road selectedRoad;
+    public PathX_Intersection selectedIntersection;
+
+    // WHERE EVERY CAR IS, AND WHERE IT WAS ONE STEP BEFORE
+    public int numCars;
+    public float[] carXs = new float[0];
+    public float[] carYs = new float[0];
+    public float[] carPreviousXs = new float[0];
+    public float[] carPreviousYs = new float[0];
+    public PathX_AgentType[] carTypes = new PathX_AgentType[0];
+
+    // AND EVERY TILE, IN THE ORDER THEY'RE DRAWN
+    public int numTiles;
+    public PathXTile[] tiles = new PathXTile[0];
+    public float[] tileXs = new float[0];
+    public float[] tileYs = new float[0];
+    public float[] tilePreviousXs = new float[0];
+    public float[] tilePreviousYs = new float[0];
+    public String[] tileStates = new String[0];
+
+    // THE DEBUGGING TEXT, IF IT'S SHOWN, AND WHERE IT'S DRAWN
+    public boolean debugTextActive;
+    public ArrayList<String> debugText = new ArrayList();
+    public int debugTextX;
+    public int debugTextY;
+
+    /**
+     * Returns how far things should be drawn from where they were one
+     * step before this snapshot toward where they are in it, for drawing
+     * at time nanos by System.nanoTime. Drawing things part way like this
+     * keeps them moving smoothly whether frames are drawn more or less
+     * often than the game is simulated.
+     *
+     * @return A fraction from 0 to 1.
+     */
+    public float getInterpolation(long nanos)
+    {
+        float interpolation = (float)(nanos - stateNanos) / SIM_STEP_NANOS;
+        return Math.max(0.0f, Math.min(1.0f, interpolation));
+    }
+
+    /**
+     * Copies where every car in the fleet argument is, which may be null
+     * if there's no level.
+     */
+    public void copyCars(PathX_Fleet fleet)
+    {
+        numCars = (fleet == null) ? 0 : fleet.getNumAgents();
+        if (carXs.length < numCars)
+        {
+            carXs = new float[numCars];
+            carYs = new float[numCars];
+            carPreviousXs = new float[numCars];
+            carPreviousYs = new float[numCars];
+            carTypes = new PathX_AgentType[numCars];
+        }
+        for (int i = 0; i < numCars; i++)
+        {
+            carXs[i] = (float)fleet.getX(i);
+            carYs[i] = (float)fleet.getY(i);
+            carPreviousXs[i] = (float)fleet.getPreviousX(i);
+            carPreviousYs[i] = (float)fleet.getPreviousY(i);
+            carTypes[i] = fleet.getType(i);
+        }
+    }
+
+    /**
+     * Copies the lines of debugging text in lines, which may be null, and
+     * whether and where they're shown.
+     */
+    public void copyDebugText(boolean active, Collection<String> lines, int x, int y)
+    {
+        debugTextActive = active;
+        debugTextX = x;
+        debugTextY = y;
+        debugText.clear();
+        if (lines != null)
+        {
+            for (String line : lines)
+            {
+                debugText.add(line);
+            }
+        }
+    }
+
+    /**
+     * Empties the tiles, so they can be added again.
+     */
+    public void clearTiles()
+    {
+        for (int i = 0; i < numTiles; i++)
+        {
+            tiles[i] = null;
+        }
+        numTiles = 0;
+    }
+
+    /**
+     * Adds the tile argument where it is now, to be drawn after the
+     * others already added. Only a tile moving to a target is drawn
+     * between where it was and where it is, since one that has stopped
+     * may have been put where it is.
+     */
+    public void addTile(PathXTile tile)
+    {
+        if (numTiles == tiles.length)
+        {
+            int capacity = Math.max(16, numTiles * 2);
+            PathXTile[] newTiles = new PathXTile[capacity];
+            float[] newTileXs = new float[capacity];
+            float[] newTileYs = new float[capacity];
+            float[] newTilePreviousXs = new float[capacity];
+            float[] newTilePreviousYs = new float[capacity];
+            String[] newTileStates = new String[capacity];
+            System.arraycopy(tiles, 0, newTiles, 0, numTiles);
+            System.arraycopy(tileXs, 0, newTileXs, 0, numTiles);
+            System.arraycopy(tileYs, 0, newTileYs, 0, numTiles);
+            System.arraycopy(tilePreviousXs, 0, newTilePreviousXs, 0, numTiles);
+            System.arraycopy(tilePreviousYs, 0, newTilePreviousYs, 0, numTiles);
+            System.arraycopy(tileStates, 0, newTileStates, 0, numTiles);
+            tiles = newTiles;
+            tileXs = newTileXs;
+            tileYs = newTileYs;
+            tilePreviousXs = newTilePreviousXs;
+            tilePreviousYs = newTilePreviousYs;
+            tileStates = newTileStates;
+        }
+        tiles[numTiles] = tile;
+        tileXs[numTiles] = tile.getX();
+        tileYs[numTiles] = tile.getY();
+        tilePreviousXs[numTiles] = tile.isMovingToTarget() ? tile.getPreviousX() : tile.getX();
+        tilePreviousYs[numTiles] = tile.isMovingToTarget() ? tile.getPreviousY() : tile.getY();
+        tileStates[numTiles] = tile.getState();
+        numTiles++;
+    }
+}
@@ -10,6 +10,7 @@ import java.io.FileOutputStream;
 import java.util.ArrayList;
 import mini_game.Viewport;
 import PathX.PathX.SortingHatPropertyType;
+import PathX.data.PathX_LevelRecord;
 import PathX.data.PathXDataModel;
 import PathX.ui.PathXMiniGame;
 import properties_manager.PropertiesManager;
@@ -63,8 +64,9 @@ public class PathXFileManager
             FileInputStream fis = new FileInputStream(fileToOpen);
             BufferedInputStream bis = new BufferedInputStream(fis);
             
-            // HERE IT IS, THE ONLY READY REQUEST WE NEED
-            bis.read(bytes);
+            // HERE IT IS, THE ONLY READY REQUEST WE NEED, WHICH MUST
+            // KEEP READING SINCE ONE read MAY NOT GET EVERYTHING
+            new DataInputStream(bis).readFully(bytes);
             bis.close();
             
             // NOW WE NEED TO LOAD THE DATA FROM THE BYTE ARRAY
@@ -128,94 +130,45 @@ public class PathXFileManager
     }    
     
     /**
-     * This method saves the record argument to the player records file.
+     * This method saves the levelRecord argument as the player's record on
+     * the level named levelName, appending it to the player record journal.
      * 
      * @param record The complete player record, which has the records
      * on all levels.
      */
-//    public void saveRecord(SortingHatRecord record)
-//    {
-//        // LOAD THE RAW DATA SO WE CAN USE IT
-//        // OUR LEVEL FILES WILL HAVE THE DIMENSIONS FIRST,
-//        // FOLLOWED BY THE GRID VALUES
-//        try
-//        {
-//            PropertiesManager props = PropertiesManager.getPropertiesManager();
-//            String recordPath = PATH_DATA + props.getProperty(SortingHatPropertyType.FILE_PLAYER_RECORD);
-//            File fileToSave = new File(recordPath);
-//
-//            // LET'S USE A FAST LOADING TECHNIQUE. WE'LL LOAD ALL OF THE
-//            // BYTES AT ONCE INTO A BYTE ARRAY, AND THEN PICK THAT APART.
-//            // THIS IS FAST BECAUSE IT ONLY HAS TO DO FILE READING ONCE
-//            byte[] bytes = record.toByteArray();
-//            
-//            // HERE IT IS, THE ONLY READY REQUEST WE NEED
-//            FileOutputStream fos = new FileOutputStream(fileToSave);
-//            DataOutputStream dos = new DataOutputStream(fos);
-//            dos.write(bytes);            
-//        }
-//        catch(Exception e)
-//        {
-//            miniGame.getErrorHandler().processError(SortingHatPropertyType.TEXT_ERROR_SAVING_RECORD);
-//        }              
-//    }
+    public void saveRecord(PathX_RecordJournal record, String levelName, PathX_LevelRecord levelRecord)
+    {
+        try
+        {
+            // ONE SMALL APPEND, NOT THE WHOLE FILE
+            record.putLevelRecord(levelName, levelRecord);
+        }
+        catch(Exception e)
+        {
+            miniGame.getErrorHandler().processError(SortingHatPropertyType.TEXT_ERROR_SAVING_RECORD);
+        }              
+    }
 
     /**
-     * This method loads the player record from the records file
-     * so that the user may view stats.
+     * This method opens the player record journal so that the user may
+     * view stats. The first time the game runs with a journal, the records
+     * in the old player record file are moved into it.
      * 
-     * @return The fully loaded record from the player record file.
+     * @return The player's records on all levels, or null if they can't
+     * be read, in which case the player has been told.
      */
-//    public SortingHatRecord loadRecord()
-//    {
-//        SortingHatRecord recordToLoad = new SortingHatRecord();
-//        
-//        // LOAD THE RAW DATA SO WE CAN USE IT
-//        // OUR LEVEL FILES WILL HAVE THE DIMENSIONS FIRST,
-//        // FOLLOWED BY THE GRID VALUES
-//        try
-//        {
-//            PropertiesManager props = PropertiesManager.getPropertiesManager();
-//            String recordPath = PATH_DATA + props.getProperty(SortingHatPropertyType.FILE_PLAYER_RECORD);
-//            File fileToOpen = new File(recordPath);
-//
-//            // LET'S USE A FAST LOADING TECHNIQUE. WE'LL LOAD ALL OF THE
-//            // BYTES AT ONCE INTO A BYTE ARRAY, AND THEN PICK THAT APART.
-//            // THIS IS FAST BECAUSE IT ONLY HAS TO DO FILE READING ONCE
-//            byte[] bytes = new byte[Long.valueOf(fileToOpen.length()).intValue()];
-//            ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-//            FileInputStream fis = new FileInputStream(fileToOpen);
-//            BufferedInputStream bis = new BufferedInputStream(fis);
-//            
-//            // HERE IT IS, THE ONLY READY REQUEST WE NEED
-//            bis.read(bytes);
-//            bis.close();
-//            
-//            // NOW WE NEED TO LOAD THE DATA FROM THE BYTE ARRAY
-//            DataInputStream dis = new DataInputStream(bais);
-//            
-//            // NOTE THAT WE NEED TO LOAD THE DATA IN THE SAME
-//            // ORDER AND FORMAT AS WE SAVED IT
-//            // FIRST READ THE NUMBER OF LEVELS
-//            int numLevels = dis.readInt();
-//
-//            for (int i = 0; i < numLevels; i++)
-//            {
-//                String levelName = dis.readUTF();
-//                SortingHatLevelRecord rec = new SortingHatLevelRecord();
-//                rec.algorithm = dis.readUTF();
-//                rec.gamesPlayed = dis.readInt();
-//                rec.wins = dis.readInt();
-//                rec.perfectWins = dis.readInt();
-//                rec.fastestPerfectWinTime = dis.readLong();
-//                recordToLoad.addSortingHatLevelRecord(levelName, rec);
-//            }
-//        }
-//        catch(Exception e)
-//        {
-//            // THERE WAS NO RECORD TO LOAD, SO WE'LL JUST RETURN AN
-//            // EMPTY ONE AND SQUELCH THIS EXCEPTION
-//        }        
-//        return recordToLoad;
-//    }
+    public PathX_RecordJournal loadRecord()
+    {
+        try
+        {
+            PropertiesManager props = PropertiesManager.getPropertiesManager();
+            String recordPath = PATH_DATA + props.getProperty(SortingHatPropertyType.FILE_PLAYER_RECORD);
+            return PathX_RecordJournal.open(new File(RECORD_JOURNAL), new File(recordPath));
+        }
+        catch(Exception e)
+        {
+            miniGame.getErrorHandler().processError(SortingHatPropertyType.TEXT_ERROR_LOADING_RECORD);
+            return null;
+        }        
+    }
 }
\ No newline at end of file
@@ -1,19 +1,13 @@
 package PathX.file;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import java.awt.image.BufferedImage;
+import javax.imageio.ImageIO;
 import PathX.PathX_Level;
-import PathX.PathX_Intersection;
-import PathX.PathX_Road;
 import PathX.data.PathXDataModel;
 import PathX.PathXConstants;
 
@@ -21,235 +15,221 @@ import PathX.PathXConstants;
 
 
 /**
- * This class serves as a does the reading and writing of levels
- * to and from XML files.
+ * This class does the reading and writing of levels to and from their
+ * binary files, along with reading their images. Levels in XML are
+ * handled by PathX_XmlLevelConverter.
  * 
  * @author  Richard McKenna
  */
 public class PathX_BinLevelIO 
 {
+    // THE PACK HOLDING ALL THE LEVELS AND THEIR IMAGES, IF THE GAME WAS
+    // DEPLOYED WITH ONE, WHICH IS OPENED THE FIRST TIME IT'S NEEDED
+    private PathX_Pack pack;
+    private boolean packOpened;
+
     /**
-     * Constructor for making our importer/exporter. Note that it
-     * initializes the XML utility for processing XML files and it
-     * sets up the schema for use.
+     * Constructor for making our importer/exporter. Note that the level
+     * pack isn't opened until it's first needed.
      */
     public PathX_BinLevelIO()
     {
     }
     
     /**
-     * Reads the level data found in levelFile into levelToLoad.
+     * Returns the file the level named levelName is stored in.
+     */
+    public static File getLevelFile(String levelName)
+    {
+        return new File(PathXConstants.LEVELS_PATH + levelName + ".bin");
+    }
+
+    /**
+     * Returns the pack found at LEVELS_PACK, opening it the first time
+     * this is called, or null if there is no pack, in which case levels
+     * are loaded from their own files.
+     */
+    public synchronized PathX_Pack getPack()
+    {
+        if (!packOpened)
+        {
+            packOpened = true;
+            File packFile = new File(PathXConstants.LEVELS_PACK);
+            if (packFile.exists())
+            {
+                try
+                {
+                    pack = new PathX_Pack(packFile);
+                }
+                catch(IOException ioe)
+                {
+                    // A BROKEN PACK IS AS GOOD AS NO PACK
+                    pack = null;
+                }
+            }
+        }
+        return pack;
+    }
+
+    /**
+     * Returns the file the precomputed contraction hierarchy for the
+     * level named levelName is stored in, right next to the level.
+     */
+    public static File getHierarchyFile(String levelName)
+    {
+        return new File(PathXConstants.LEVELS_PATH + levelName + ".ch");
+    }
+
+    /**
+     * Reads the level named currentLevel and, if model isn't null, makes
+     * it the model's current level and has it load the level's images.
+     * Note that model may be null when loading levels outside of the
+     * game, like when preprocessing them.
+     *
+     * @return The level, or null if it's missing, damaged, or can't be
+     * played, so that a broken level is never half loaded.
      */
     
     public PathX_Level loadLevel(String currentLevel, PathXDataModel model)
     {
-        PathX_Level levelToLoad = new PathX_Level();
+        PathX_Level levelToLoad;
         try
         {
-            // WE'LL FILL IN SOME OF THE LEVEL OURSELVES
-            
-            
-            File levelFile= new File(PathXConstants.PATH_DATA+PathXConstants.LEVELS_PATH+ currentLevel + ".bin");
-            levelToLoad= new PathX_Level();
-
-            // LET'S USE A FAST LOADING TECHNIQUE. WE'LL LOAD ALL OF THE
-            // BYTES AT ONCE INTO A BYTE ARRAY, AND THEN PICK THAT APART.
-            // THIS IS FAST BECAUSE IT ONLY HAS TO DO FILE READING ONCE
-            byte[] bytes = new byte[Long.valueOf(levelFile.length()).intValue()];
-            ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-            FileInputStream fis = new FileInputStream(levelFile);
-            BufferedInputStream bis = new BufferedInputStream(fis);
-            
-            // HERE IT IS, THE ONLY READY REQUEST WE NEED
-            bis.read(bytes);
-            bis.close();
-            
-            // NOW WE NEED TO LOAD THE DATA FROM THE BYTE ARRAY
-            DataInputStream dis = new DataInputStream(bais);
-            
-            // NOTE THAT WE NEED TO LOAD THE DATA IN THE SAME
-            // ORDER AND FORMAT AS WE SAVED IT
-            
-            // FIRST READ THE ALGORITHM NAME TO USE FOR THE LEVEL
-            String levelName = dis.readUTF();
-            levelToLoad.setLevelName(levelName);
-            
-            // THEN GET THE BACKGROUND IMAGE NAME
-            String bgImageName = dis.readUTF();
-            model.updateBackgroundImage(bgImageName);
-            
-            // THEN LET'S LOAD THE LIST OF ALL THE INTERSECTIONS
-            loadIntersectionsList(dis, levelToLoad);
-            ArrayList<PathX_Intersection> intersections = levelToLoad.getIntersections();
-            
-            // AND NOW CONNECT ALL THE REGIONS TO EACH OTHER
-            loadRoadsList(dis, levelToLoad);
-            
-            // LOAD THE START INTERSECTION
-            int startId = dis.readInt();
-            String startImageName = dis.readUTF();
-            PathX_Intersection startingIntersection = intersections.get(startId);
-            levelToLoad.setStartingLocation(startingIntersection);
-            model.updateStartingLocationImage(startImageName);
-            
-            // LOAD THE DESTINATION
-            int destId = dis.readInt();
-            String destImageName = dis.readUTF();
-            levelToLoad.setDestination(intersections.get(destId));
-            model.updateDestinationImage(destImageName);
-            
-            // LOAD THE MONEY
-            int money = dis.readInt();
-            levelToLoad.setMoney(money);
-            
-            // LOAD THE NUMBER OF POLICE
-            int numPolice = dis.readInt();
-            levelToLoad.setNumPolice(numPolice);
-            
-            // LOAD THE NUMBER OF BANDITS
-            int numBandits = dis.readInt();
-            levelToLoad.setNumBandits(numBandits);
-            
-            // LOAD THE NUMBER OF ZOMBIES
-            int numZombies = dis.readInt();
-            levelToLoad.setNumZombies(numZombies);            
+            levelToLoad = readLevel(currentLevel);
+            if (model != null)
+            {
+                // THE IMAGE FILE NAMES GO IN THE MODEL'S LEVEL, SO IT HAS
+                // TO BE THE NEW ONE FIRST
+                model.setCurrentLevel(levelToLoad);
+                model.updateBackgroundImage(levelToLoad.getBackgroundImageFileName());
+                model.updateStartingLocationImage(levelToLoad.getStartingLocationImageFileName());
+                model.updateDestinationImage(levelToLoad.getDestinationImageFileName());
+            }
         }
         catch(IOException e)
         {
             // LEVEL DIDN'T LOAD PROPERLY
-            return levelToLoad;
+            return null;
 //              miniGame.getErrorHandler().processError(PathXPropertyType.TEXT_ERROR_LOADING_LEVEL);
             
         }
         // LEVEL LOADED PROPERLY
             return levelToLoad;
     }
-    
-    // PRIVATE HELPER METHOD FOR LOADING INTERSECTIONS INTO OUR LEVEL
-    private void loadIntersectionsList( DataInputStream dis, PathX_Level levelToLoad)
-            throws IOException
+
+    /**
+     * Reads the level named levelName and indexes it so it's ready to be
+     * played. This touches nothing but the new level, so it may be called
+     * from any thread, which is how levels are preloaded.
+     *
+     * @throws IOException If the level is missing, damaged, or fails
+     * any of PathX_LevelChecker's checks.
+     */
+    public PathX_Level readLevel(String levelName) throws IOException
     {
-        // GET THE NUMBER OF INTERSECTIONS
-        int numIntersections = dis.readInt();
-        
-        // FIRST GET THE INTERSECTIONS LIST
-        ArrayList<PathX_Intersection> intersections = levelToLoad.getIntersections();
-        
-        // AND THEN GO THROUGH AND ADD ALL THE LISTED REGIONS
-        for (int i = 0; i < numIntersections; i++)
-        {
-            // GET THEIR DATA FROM THE DOC
-            int x = dis.readInt();
-            int y = dis.readInt();
-            boolean isOpen = dis.readBoolean();
-            
-            // NOW MAKE AND ADD THE INTERSECTION
-            PathX_Intersection newIntersection = new PathX_Intersection(x, y);
-            newIntersection.open = isOpen;
-            intersections.add(newIntersection);
-        }
+        return readLevel("Level " + levelName, mapLevel(levelName));
+    }
+
+    /**
+     * Reads the level in levelFile, which may be anywhere, and indexes it
+     * just like readLevel does for a level the game ships with. This is
+     * for levels made by tools, like benchmarks.
+     *
+     * @throws IOException If the level is missing, damaged, or fails
+     * any of PathX_LevelChecker's checks.
+     */
+    public PathX_Level readLevelFile(File levelFile) throws IOException
+    {
+        return readLevel(levelFile.getPath(), PathX_MappedLevelReader.map(levelFile));
     }
 
-    // PRIVATE HELPER METHOD FOR LOADING ROADS INTO OUR LEVEL
-    private void loadRoadsList( DataInputStream dis, PathX_Level levelToLoad)
-            throws IOException
+    // PRIVATE HELPER METHOD THAT DOES THE READING FOR BOTH OF THE ABOVE,
+    // WITH description SAYING WHICH LEVEL IT IS IN ERROR MESSAGES
+    private PathX_Level readLevel(String description, ByteBuffer contents) throws IOException
     {
-        // FIRST GET THE ROADS AND INTERSECTIONS LISTS
-        ArrayList<PathX_Road> roads = levelToLoad.getRoads();
-        ArrayList<PathX_Intersection> intersections = levelToLoad.getIntersections();
+        PathX_Level levelToLoad = new PathX_Level();
 
-        // THEN GET THE NUMBER OF ROADS
-        int numRoads = dis.readInt();
+        // PARSE THE FILE STRAIGHT INTO ARRAYS, WHICH WORKS FOR LEVELS
+        // IN EITHER THE ORIGINAL OR COMPACT FORMAT, AND THEN MAKE THE
+        // LEVEL'S INTERSECTIONS AND ROADS FROM THEM, BUT ONLY IF IT'S A
+        // LEVEL THE GAME CAN ACTUALLY PLAY
+        PathX_LevelData levelData = PathX_MappedLevelReader.read(contents);
+        ArrayList<String> problems = PathX_LevelChecker.check(levelData);
+        if (!problems.isEmpty())
+            throw new IOException(description + " can't be played: " + problems.get(0));
+        levelData.fillLevel(levelToLoad);
 
-        // AND THEN GO THROUGH AND ADD ALL THE LISTED ROADS
-        for (int i = 0; i < numRoads; i++)
-        {
-            // GET THEIR DATA FROM THE DOC
-            int int_id1 = dis.readInt();
-            int int_id2 = dis.readInt();
-            boolean oneWay = dis.readBoolean();
-            int speedLimit = dis.readInt();
-            
-            // NOW MAKE AND ADD THE ROAD
-            PathX_Road newRoad = new PathX_Road();
-            newRoad.setNode1(intersections.get(int_id1));
-            newRoad.setNode2(intersections.get(int_id2));
-            newRoad.setOneWay(oneWay);
-            newRoad.setSpeedLimit(speedLimit);
-            roads.add(newRoad);
-        }
+        // AND NOW THAT THE GRAPH IS COMPLETE, INDEX ITS ROADS
+        // AND WHERE ITS INTERSECTIONS AND ROADS ARE
+        levelToLoad.getRoadGraph();
+        levelToLoad.getIntersectionGrid();
+        levelToLoad.getRoadGrid();
+        return levelToLoad;
+    }
+
+    /**
+     * Maps the file of the level named levelName into memory without
+     * reading it, from the pack if it's there, or else from its own file.
+     *
+     * @throws IOException If the level is missing.
+     */
+    public ByteBuffer mapLevel(String levelName) throws IOException
+    {
+        File levelFile = getLevelFile(levelName);
+        PathX_Pack levelPack = getPack();
+        if ((levelPack != null) && levelPack.contains(levelFile.getName()))
+            return levelPack.map(levelFile.getName());
+        return PathX_MappedLevelReader.map(levelFile);
+    }
+
+    /**
+     * Decodes the level image named imageFileName, like a background,
+     * from the pack if it's there, or else from its own file next to
+     * the levels. This may be called from any thread.
+     *
+     * @return The image, or null if imageFileName is null or empty.
+     *
+     * @throws IOException If the image is missing or can't be decoded.
+     */
+    public BufferedImage readLevelImage(String imageFileName) throws IOException
+    {
+        if ((imageFileName == null) || (imageFileName.length() == 0))
+            return null;
+        PathX_Pack levelPack = getPack();
+        if ((levelPack != null) && levelPack.contains(imageFileName))
+            return levelPack.readImage(imageFileName);
+        File imageFile = new File(PathXConstants.LEVELS_PATH + imageFileName);
+        BufferedImage image = ImageIO.read(imageFile);
+        if (image == null)
+            throw new IOException(imageFile + " is not an image");
+        return image;
     }
     
     /**
-     * This method saves the level currently being edited to the levelFile. Note
-     * that it will be saved as an .xml file, which is an XML-format that will
-     * conform to the schema.
+     * This method saves the level currently being edited to the levelFile.
+     * Note that it will be saved in the compact format described by
+     * PathX_LevelFormat, which loadLevel reads along with the original
+     * format.
      */
     
     public boolean saveLevel(File levelFile, PathX_Level levelToSave)
     {
         try
         {
-            // WE'LL WRITE EVERYTHING IN BINARY. NOTE THAT WE
-            // NEED TO MAKE SURE WE SAVE THE DATA IN THE SAME
-            // FORMAT AND ORDER WITH WHICH WE READ IT LATER
-            FileOutputStream fos = new FileOutputStream(levelFile);
-            DataOutputStream dos = new DataOutputStream(fos);
-
-            // FIRST SAVE THE LEVEL NAME
+            // THE LEVEL IS NAMED AFTER ITS FILE
             String levelName = levelFile.getName();
             levelName = levelName.substring(0, levelName.indexOf("."));
-            dos.writeUTF(levelName);
-            
-            // THEN SAVE THE BACKGROUND IMAGE NAME
-            String bgImageName = levelToSave.getBackgroundImageFileName();
-            dos.writeUTF(bgImageName);
-            
-            // THEN LET'S SAVE THE LIST OF ALL THE INTERSECTIONS,
-            // FIRST THE NUMBER OF INTERSECTIONS
-            ArrayList<PathX_Intersection> intersections = levelToSave.getIntersections();
-            int numIntersections = intersections.size();
-            dos.writeInt(numIntersections);
-            for (int i = 0; i < numIntersections; i++)
+
+            // AND THE WRITER DOES THE REST
+            PathX_LevelWriter writer = new PathX_LevelWriter(new FileOutputStream(levelFile));
+            try
             {
-                PathX_Intersection intersection = intersections.get(i);
-                dos.writeInt(intersection.x);
-                dos.writeInt(intersection.y);
-                dos.writeBoolean(intersection.open);
+                writer.writeLevel(levelName, levelToSave);
             }
-            
-            // AND NOW SAVE ALL THE ROADS
-            ArrayList<PathX_Road> roads = levelToSave.getRoads();
-            int numRoads = roads.size();
-            dos.writeInt(numRoads);
-            for (int i = 0; i < numRoads; i++)
+            finally
             {
-                PathX_Road road = roads.get(i);
-                dos.writeInt(intersections.indexOf(road.getNode1()));
-                dos.writeInt(intersections.indexOf(road.getNode2()));
-                dos.writeBoolean(road.isOneWay());
-                dos.writeInt(road.getSpeedLimit());
+                writer.close();
             }
-            
-            // SAVE THE START INTERSECTION
-            dos.writeInt(intersections.indexOf(levelToSave.getStartingLocation()));
-            dos.writeUTF(levelToSave.getStartingLocationImageFileName());
-           
-            // LOAD THE DESTINATION
-            dos.writeInt(intersections.indexOf(levelToSave.getDestination()));
-            dos.writeUTF(levelToSave.getDestinationImageFileName());
-            
-            // SAVE THE MONEY
-            dos.writeInt(levelToSave.getMoney());
-            
-            // SAVE THE NUMBER OF POLICE
-            dos.writeInt(levelToSave.getNumPolice());
-            
-            // SAVE THE NUMBER OF BANDITS
-            dos.writeInt(levelToSave.getNumBandits());
-            
-            // SAVE THE NUMBER OF ZOMBIES
-            dos.writeInt(levelToSave.getNumZombies());
 
             // SUCCESS
             return true;
@@ -259,15 +239,4 @@ public class PathX_BinLevelIO
             // SOMETHING WENT WRONG
             return false;
         }    
-    }   
-    
-    // THIS HELPER METHOD BUILDS ELEMENTS (NODES) FOR US TO HELP WITH
-    // BUILDING A Doc WHICH WE WOULD THEN SAVE TO A FILE.
-    private Element makeElement(Document doc, Element parent, String elementName, String textContent)
-    {
-        Element element = doc.createElement(elementName);
-        element.setTextContent(textContent);
-        parent.appendChild(element);
-        return element;
-    }
-}
\ No newline at end of file
+    }   }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package PathX.file;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the level images we've decoded, like backgrounds, so
+ * that going back to a level doesn't mean decoding its images again.
+ * Decoded images are far bigger than their files, so the cache has a
+ * budget of bytes, and once the images in it add up to more than that the
+ * ones used longest ago are thrown out.
+ *
+ * All methods may be called from any thread.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_ImageCache
+{
+    // HOW MUCH MEMORY DECODED IMAGES MAY TAKE BY DEFAULT
+    public static final long DEFAULT_BUDGET = 96L * 1024 * 1024;
+
+    // WHERE IMAGES ARE DECODED FROM
+    private PathX_BinLevelIO levelIO;
+
+    // THE IMAGES, KEYED BY FILE NAME, LEAST RECENTLY USED FIRST
+    private LinkedHashMap<String, BufferedImage> images;
+    private long budget;
+    private long numBytes;
+
+    // HOW WELL THE CACHE IS WORKING
+    private int numHits;
+    private int numMisses;
+    private int numEvictions;
+
+    /**
+     * Constructs an empty cache that decodes images with initLevelIO and
+     * keeps at most about initBudget bytes of them.
+     */
+    public PathX_ImageCache(PathX_BinLevelIO initLevelIO, long initBudget)
+    {
+        levelIO = initLevelIO;
+        budget = initBudget;
+        images = new LinkedHashMap(16, 0.75f, true);
+    }
+
+    // ACCESSOR METHODS
+    public synchronized long    getBudget()         {   return budget;          }
+    public synchronized long    getNumBytes()       {   return numBytes;        }
+    public synchronized int     getNumImages()      {   return images.size();   }
+    public synchronized int     getNumHits()        {   return numHits;         }
+    public synchronized int     getNumMisses()      {   return numMisses;       }
+    public synchronized int     getNumEvictions()   {   return numEvictions;    }
+
+    /**
+     * Returns true if the image from imageFileName is in the cache. This
+     * doesn't count as using it.
+     */
+    public synchronized boolean contains(String imageFileName)
+    {
+        return images.containsKey(imageFileName);
+    }
+
+    /**
+     * Returns the image decoded from imageFileName, decoding it and adding
+     * it to the cache if it's not there already.
+     *
+     * @return The image, or null if imageFileName is null or empty.
+     *
+     * @throws IOException If the image is missing or can't be decoded.
+     */
+    public BufferedImage getImage(String imageFileName) throws IOException
+    {
+        if ((imageFileName == null) || (imageFileName.length() == 0))
+            return null;
+        synchronized(this)
+        {
+            BufferedImage image = images.get(imageFileName);
+            if (image != null)
+            {
+                numHits++;
+                return image;
+            }
+            numMisses++;
+        }
+
+        // DECODING TAKES A WHILE, SO DON'T HOLD UP THE OTHER THREADS. IF
+        // ONE OF THEM DECODES IT TOO, WHOEVER FINISHES LAST WINS
+        BufferedImage image = levelIO.readLevelImage(imageFileName);
+        putImage(imageFileName, image);
+        return image;
+    }
+
+    /**
+     * Adds an already decoded image to the cache under imageFileName,
+     * throwing out the images used longest ago if it puts us over budget.
+     * An image bigger than the whole budget is not kept.
+     */
+    public synchronized void putImage(String imageFileName, BufferedImage image)
+    {
+        BufferedImage oldImage = images.remove(imageFileName);
+        numBytes -= PathX_PreloadedLevel.getNumBytes(oldImage);
+        long imageBytes = PathX_PreloadedLevel.getNumBytes(image);
+        if ((image == null) || (imageBytes > budget))
+            return;
+
+        images.put(imageFileName, image);
+        numBytes += imageBytes;
+        trim(imageFileName);
+    }
+
+    /**
+     * Changes how many bytes of images may be kept, throwing out the ones
+     * used longest ago if we're now over budget.
+     */
+    public synchronized void setBudget(long initBudget)
+    {
+        budget = initBudget;
+        trim(null);
+    }
+
+    /**
+     * Throws out every image, leaving the counters as they are.
+     */
+    public synchronized void clear()
+    {
+        images.clear();
+        numBytes = 0;
+    }
+
+    // PRIVATE HELPER METHOD FOR THROWING OUT THE IMAGES USED LONGEST AGO
+    // UNTIL WE'RE BACK UNDER BUDGET, EXCEPT FOR THE ONE NAMED keep
+    private void trim(String keep)
+    {
+        Iterator<Map.Entry<String, BufferedImage>> it = images.entrySet().iterator();
+        while ((numBytes > budget) && it.hasNext())
+        {
+            Map.Entry<String, BufferedImage> entry = it.next();
+            if (entry.getKey().equals(keep))
+                continue;
+            numBytes -= PathX_PreloadedLevel.getNumBytes(entry.getValue());
+            numEvictions++;
+            it.remove();
+        }
+    }
+}
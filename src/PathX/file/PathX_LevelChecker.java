@@ -0,0 +1,154 @@
+package PathX.file;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * This class checks that a level read from disk is one the game can
+ * actually play before it's turned into intersection and road objects,
+ * which would otherwise fail part way, or worse, give the player a
+ * level that can't be won. A level passes when:
+ *
+ *      IT HAS AT LEAST ONE INTERSECTION
+ *      EVERY ROAD JOINS INTERSECTIONS THAT EXIST
+ *      EVERY ROAD HAS A POSITIVE SPEED LIMIT
+ *      NO TWO ROADS LET CARS GO THE SAME WAY BETWEEN THE SAME TWO
+ *          INTERSECTIONS, THOUGH TWO ONE WAY ROADS MAY GO OPPOSITE WAYS
+ *      THE START AND DESTINATION EXIST AND THE DESTINATION CAN BE
+ *          DRIVEN TO FROM THE START
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_LevelChecker
+{
+    // WE STOP LOOKING AFTER THIS MANY PROBLEMS, SINCE A BADLY DAMAGED
+    // LEVEL MAY HAVE ONE FOR EVERY ROAD
+    public static final int MAX_PROBLEMS = 10;
+
+    // WHICH WAYS ROADS ALREADY GO BETWEEN A PAIR OF INTERSECTIONS,
+    // FROM THE LOWER NUMBERED ONE TO THE HIGHER AND BACK
+    private static final int UP = 1;
+    private static final int DOWN = 2;
+
+    /**
+     * Checks the level argument.
+     *
+     * @return A description of each problem found, about MAX_PROBLEMS of
+     * them at most, so an empty list if there are none.
+     */
+    public static ArrayList<String> check(PathX_LevelData level)
+    {
+        ArrayList<String> problems = new ArrayList();
+        int numIntersections = level.getNumIntersections();
+        int numRoads = level.getNumRoads();
+        if (numIntersections == 0)
+        {
+            problems.add("Level has no intersections");
+            return problems;
+        }
+
+        // EVERY ROAD, ALONG WITH WHICH WAYS EACH PAIR OF INTERSECTIONS IS
+        // JOINED SO FAR
+        HashMap<Long, Integer> joined = new HashMap(numRoads * 2);
+        boolean roadsInBounds = true;
+        for (int i = 0; (i < numRoads) && (problems.size() < MAX_PROBLEMS); i++)
+        {
+            int node1 = level.getRoadNode1(i);
+            int node2 = level.getRoadNode2(i);
+            if (!inBounds(node1, numIntersections) || !inBounds(node2, numIntersections))
+            {
+                problems.add("Road " + i + " joins intersections " + node1 + " and " + node2
+                        + " but there are only " + numIntersections);
+                roadsInBounds = false;
+                continue;
+            }
+            if (level.getRoadSpeedLimit(i) <= 0)
+                problems.add("Road " + i + " has speed limit " + level.getRoadSpeedLimit(i));
+
+            int low = Math.min(node1, node2);
+            int high = Math.max(node1, node2);
+            int ways = level.isRoadOneWay(i) ? ((node1 == low) ? UP : DOWN) : (UP | DOWN);
+            Long pair = Long.valueOf(((long)low * numIntersections) + high);
+            Integer alreadyJoined = joined.get(pair);
+            if ((alreadyJoined != null) && ((alreadyJoined.intValue() & ways) != 0))
+                problems.add("Road " + i + " duplicates another road between intersections " + node1 + " and " + node2);
+            joined.put(pair, Integer.valueOf((alreadyJoined == null) ? ways : (alreadyJoined.intValue() | ways)));
+        }
+        if (problems.size() >= MAX_PROBLEMS)
+            return problems;
+
+        // AND THEN WHERE THE PLAYER STARTS AND ENDS
+        int start = level.getStartingLocation();
+        int destination = level.getDestination();
+        if (!inBounds(start, numIntersections))
+            problems.add("Start intersection " + start + " doesn't exist");
+        if (!inBounds(destination, numIntersections))
+            problems.add("Destination intersection " + destination + " doesn't exist");
+        else if (inBounds(start, numIntersections) && roadsInBounds && !isReachable(level, start, destination))
+            problems.add("Destination intersection " + destination + " can't be reached from start intersection " + start);
+
+        return problems;
+    }
+
+    // PRIVATE HELPER METHOD FOR CHECKING AN INTERSECTION ID
+    private static boolean inBounds(int id, int numIntersections)
+    {
+        return (id >= 0) && (id < numIntersections);
+    }
+
+    // PRIVATE HELPER METHOD THAT SEARCHES OUTWARD FROM start, FOLLOWING
+    // ONE WAY ROADS ONLY FROM THEIR FIRST NODE TO THEIR SECOND, THE WAY
+    // PathX_RoadGraph DOES. THE ROADS LEAVING EACH INTERSECTION ARE PUT
+    // IN ONE ARRAY, SO THIS IS LINEAR IN THE SIZE OF THE LEVEL
+    private static boolean isReachable(PathX_LevelData level, int start, int destination)
+    {
+        int numIntersections = level.getNumIntersections();
+        int numRoads = level.getNumRoads();
+
+        // COUNT THE WAYS OUT OF EACH INTERSECTION, THEN FILL THEM IN
+        int[] firstOut = new int[numIntersections + 1];
+        for (int i = 0; i < numRoads; i++)
+        {
+            firstOut[level.getRoadNode1(i) + 1]++;
+            if (!level.isRoadOneWay(i))
+                firstOut[level.getRoadNode2(i) + 1]++;
+        }
+        for (int i = 0; i < numIntersections; i++)
+        {
+            firstOut[i + 1] += firstOut[i];
+        }
+        int[] next = new int[firstOut[numIntersections]];
+        int[] filled = new int[numIntersections];
+        for (int i = 0; i < numRoads; i++)
+        {
+            int node1 = level.getRoadNode1(i);
+            int node2 = level.getRoadNode2(i);
+            next[firstOut[node1] + filled[node1]++] = node2;
+            if (!level.isRoadOneWay(i))
+                next[firstOut[node2] + filled[node2]++] = node1;
+        }
+
+        // AND SEARCH, REUSING filled AS THE QUEUE
+        boolean[] reached = new boolean[numIntersections];
+        int[] queue = filled;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        reached[start] = true;
+        while (head < tail)
+        {
+            int node = queue[head++];
+            if (node == destination)
+                return true;
+            for (int i = firstOut[node]; i < firstOut[node + 1]; i++)
+            {
+                if (!reached[next[i]])
+                {
+                    reached[next[i]] = true;
+                    queue[tail++] = next[i];
+                }
+            }
+        }
+        return false;
+    }
+}
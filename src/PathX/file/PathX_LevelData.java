@@ -0,0 +1,189 @@
+package PathX.file;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import PathX.PathX_Intersection;
+import PathX.PathX_Level;
+import PathX.PathX_Road;
+
+/**
+ * This class holds everything in a level file as plain arrays, with the
+ * intersections and roads indexed in the order they appear in the file.
+ * It's what PathX_MappedLevelReader parses into, and is far smaller than
+ * a PathX_Level for big levels since there are no objects per
+ * intersection or road. Use fillLevel to turn it into a PathX_Level.
+ *
+ * It's also a PathX_LevelHandler, so a level data may be filled from any
+ * level format.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_LevelData implements PathX_LevelHandler
+{
+    // WHICH FORMAT THE FILE WAS IN, 1 FOR THE ORIGINAL FORMAT
+    int formatVersion;
+
+    // THE LEVEL NAME AND IMAGES
+    String levelName;
+    String backgroundImageFileName;
+    String startingLocationImageFileName;
+    String destinationImageFileName;
+
+    // THE INTERSECTIONS
+    int numIntersections;
+    int[] xs;
+    int[] ys;
+    boolean[] open;
+
+    // THE ROADS
+    int numRoads;
+    int[] roadNode1s;
+    int[] roadNode2s;
+    boolean[] roadOneWays;
+    int[] roadSpeedLimits;
+
+    // HOW MANY INTERSECTIONS AND ROADS THE HANDLER HAS BEEN GIVEN
+    private int intersectionsAdded;
+    private int roadsAdded;
+
+    // AND THE REST
+    int startingLocation;
+    int destination;
+    int money;
+    int numPolice;
+    int numBandits;
+    int numZombies;
+
+    // ACCESSOR METHODS
+    public int      getFormatVersion()                  {   return formatVersion;                   }
+    public String   getLevelName()                      {   return levelName;                       }
+    public String   getBackgroundImageFileName()        {   return backgroundImageFileName;         }
+    public String   getStartingLocationImageFileName()  {   return startingLocationImageFileName;   }
+    public String   getDestinationImageFileName()       {   return destinationImageFileName;        }
+    public int      getNumIntersections()               {   return numIntersections;                }
+    public int      getX(int intersection)              {   return xs[intersection];                }
+    public int      getY(int intersection)              {   return ys[intersection];                }
+    public boolean  isOpen(int intersection)            {   return open[intersection];              }
+    public int      getNumRoads()                       {   return numRoads;                        }
+    public int      getRoadNode1(int road)              {   return roadNode1s[road];                }
+    public int      getRoadNode2(int road)              {   return roadNode2s[road];                }
+    public boolean  isRoadOneWay(int road)              {   return roadOneWays[road];               }
+    public int      getRoadSpeedLimit(int road)         {   return roadSpeedLimits[road];           }
+    public int      getStartingLocation()               {   return startingLocation;                }
+    public int      getDestination()                    {   return destination;                     }
+    public int      getMoney()                          {   return money;                           }
+    public int      getNumPolice()                      {   return numPolice;                       }
+    public int      getNumBandits()                     {   return numBandits;                      }
+    public int      getNumZombies()                     {   return numZombies;                      }
+
+    /**
+     * Starts the level data over, making its arrays big enough for the
+     * intersections and roads to come.
+     */
+    @Override
+    public void startLevel( String initLevelName, String initBackgroundImageFileName,
+                            int initNumIntersections, int initNumRoads)
+    {
+        levelName = initLevelName;
+        backgroundImageFileName = initBackgroundImageFileName;
+        numIntersections = initNumIntersections;
+        xs = new int[numIntersections];
+        ys = new int[numIntersections];
+        open = new boolean[numIntersections];
+        numRoads = initNumRoads;
+        roadNode1s = new int[numRoads];
+        roadNode2s = new int[numRoads];
+        roadOneWays = new boolean[numRoads];
+        roadSpeedLimits = new int[numRoads];
+        intersectionsAdded = 0;
+        roadsAdded = 0;
+    }
+
+    /**
+     * Adds the next intersection.
+     */
+    @Override
+    public void intersection(int x, int y, boolean isOpen)
+    {
+        xs[intersectionsAdded] = x;
+        ys[intersectionsAdded] = y;
+        open[intersectionsAdded] = isOpen;
+        intersectionsAdded++;
+    }
+
+    /**
+     * Adds the next road.
+     */
+    @Override
+    public void road(int node1, int node2, boolean oneWay, int speedLimit)
+    {
+        roadNode1s[roadsAdded] = node1;
+        roadNode2s[roadsAdded] = node2;
+        roadOneWays[roadsAdded] = oneWay;
+        roadSpeedLimits[roadsAdded] = speedLimit;
+        roadsAdded++;
+    }
+
+    /**
+     * Finishes the level data off.
+     *
+     * @throws IOException If it wasn't given as many intersections and
+     * roads as it was told to expect.
+     */
+    @Override
+    public void endLevel(   int startId, String initStartImageFileName,
+                            int destinationId, String initDestinationImageFileName,
+                            int initMoney, int initNumPolice, int initNumBandits, int initNumZombies) throws IOException
+    {
+        if ((intersectionsAdded != numIntersections) || (roadsAdded != numRoads))
+            throw new IOException("Level ended after " + intersectionsAdded + " of " + numIntersections
+                    + " intersections and " + roadsAdded + " of " + numRoads + " roads");
+        startingLocation = startId;
+        startingLocationImageFileName = initStartImageFileName;
+        destination = destinationId;
+        destinationImageFileName = initDestinationImageFileName;
+        money = initMoney;
+        numPolice = initNumPolice;
+        numBandits = initNumBandits;
+        numZombies = initNumZombies;
+    }
+
+    /**
+     * Puts everything in this level data into the empty level argument,
+     * making an intersection and road object for each one.
+     */
+    public void fillLevel(PathX_Level levelToFill)
+    {
+        levelToFill.setLevelName(levelName);
+        levelToFill.setBackgroundImageFileName(backgroundImageFileName);
+        levelToFill.getIntersections().ensureCapacity(numIntersections);
+        levelToFill.getRoads().ensureCapacity(numRoads);
+
+        for (int i = 0; i < numIntersections; i++)
+        {
+            PathX_Intersection newIntersection = new PathX_Intersection(xs[i], ys[i]);
+            newIntersection.open = open[i];
+            levelToFill.addIntersection(newIntersection);
+        }
+
+        ArrayList<PathX_Intersection> intersections = levelToFill.getIntersections();
+        for (int i = 0; i < numRoads; i++)
+        {
+            PathX_Road newRoad = new PathX_Road();
+            newRoad.setNode1(intersections.get(roadNode1s[i]));
+            newRoad.setNode2(intersections.get(roadNode2s[i]));
+            newRoad.setOneWay(roadOneWays[i]);
+            newRoad.setSpeedLimit(roadSpeedLimits[i]);
+            levelToFill.addRoad(newRoad);
+        }
+
+        levelToFill.setStartingLocation(intersections.get(startingLocation));
+        levelToFill.setStartingLocationImageFileName(startingLocationImageFileName);
+        levelToFill.setDestination(intersections.get(destination));
+        levelToFill.setDestinationImageFileName(destinationImageFileName);
+        levelToFill.setMoney(money);
+        levelToFill.setNumPolice(numPolice);
+        levelToFill.setNumBandits(numBandits);
+        levelToFill.setNumZombies(numZombies);
+    }
+}
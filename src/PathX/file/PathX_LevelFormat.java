@@ -0,0 +1,81 @@
+package PathX.file;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class describes the compact, versioned level format and provides
+ * the little encoding helpers that reading and writing it need. Levels
+ * in this format are laid out as:
+ *
+ *      int     MAGIC, WHICH IS "PXLV"
+ *      byte    FORMAT VERSION
+ *      UTF     LEVEL NAME
+ *      UTF     BACKGROUND IMAGE FILE NAME
+ *      int     NUMBER OF INTERSECTIONS
+ *      int     NUMBER OF ROADS
+ *      FOR EACH INTERSECTION:
+ *          varint  x MINUS THE PREVIOUS INTERSECTION'S x, ZIGZAGGED
+ *          varint  y MINUS THE PREVIOUS INTERSECTION'S y, ZIGZAGGED
+ *          byte    1 IF OPEN, 0 IF CLOSED
+ *      FOR EACH ROAD:
+ *          varint  node1 MINUS THE PREVIOUS ROAD'S node1, ZIGZAGGED
+ *          varint  node2 MINUS node1, ZIGZAGGED
+ *          byte    1 IF ONE WAY, 0 IF TWO WAY
+ *          varint  SPEED LIMIT
+ *      varint  STARTING INTERSECTION, UTF ITS IMAGE FILE NAME
+ *      varint  DESTINATION INTERSECTION, UTF ITS IMAGE FILE NAME
+ *      varint  MONEY, POLICE, BANDITS, AND ZOMBIES
+ *      int     CRC32 OF EVERYTHING BEFORE IT
+ *
+ * The counts are fixed width so a reader can size its arrays before it
+ * parses anything. Note that the original format, which starts right
+ * away with the level name, can never start with the magic since that
+ * would mean a level name over 20,000 bytes long.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_LevelFormat
+{
+    // "PXLV" IN ASCII
+    public static final int MAGIC = 0x50584C56;
+
+    // THE ONLY VERSION OF THIS FORMAT SO FAR. THE ORIGINAL FORMAT
+    // COUNTS AS VERSION 1
+    public static final int VERSION = 2;
+
+    // BYTES IN THE HEADER BEFORE THE LEVEL NAME AND IN THE CRC AT THE END
+    public static final int HEADER_LENGTH = 5;
+    public static final int CRC_LENGTH = 4;
+
+    /**
+     * Maps signed values to unsigned ones so that numbers close to 0,
+     * negative or not, make short varints.
+     */
+    public static int zigzag(int value)
+    {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Undoes zigzag.
+     */
+    public static int unzigzag(int value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes value as an unsigned varint, 7 bits per byte with the high
+     * bit set on every byte but the last.
+     */
+    public static void writeVarInt(OutputStream out, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -0,0 +1,370 @@
+package PathX.file;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import PathX.PathX_Level;
+
+/**
+ * This class makes up levels of any size for testing how the game copes
+ * with big ones. Intersections are laid out in rows on a jittered grid,
+ * and every intersection is joined to the one on its right, and the
+ * first one in each row to the first one in the row below, by two way
+ * roads, so the whole level can always be driven around. Each other
+ * pair of neighbors below or diagonally below is then joined often
+ * enough to give the road density asked for, and it's only these extra
+ * roads that may be one way, each as likely to point one way as the other.
+ *
+ * Every choice comes from hashing the seed with what's being chosen, so
+ * the same seed and settings always make the same level, and the level
+ * is generated one intersection and road at a time, in order, without
+ * ever being held in memory. That's how writeLevel writes levels with
+ * millions of intersections. It can also be run as:
+ *
+ *      java PathX.file.PathX_LevelGenerator file intersections [seed [density [one way] [closed]]]
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_LevelGenerator
+{
+    // HOW FAR APART THE GRID'S INTERSECTIONS ARE, AND HOW FAR EACH MAY BE
+    // MOVED FROM ITS PLACE ON THE GRID, IN PIXELS
+    public static final int SPACING = 100;
+    public static final int JITTER = 40;
+
+    // THE MOST ROADS AN INTERSECTION CAN HAVE TO ITS NEIGHBORS BELOW AND
+    // BESIDE IT, SO THE MOST ROADS PER INTERSECTION THERE CAN BE
+    public static final int MAX_ROAD_DENSITY = 4;
+
+    // THE SPEED LIMITS ROADS GET UNLESS TOLD OTHERWISE, AND HOW LIKELY
+    // EACH ONE IS RELATIVE TO THE OTHERS
+    public static final int[] DEFAULT_SPEED_LIMITS  = { 20, 30, 40, 50, 60, 80, 100 };
+    public static final int[] DEFAULT_SPEED_WEIGHTS = {  2,  4,  4,  3,  2,  1,   1 };
+
+    // WHAT EACH HASHED CHOICE IS ABOUT, SO THEY'RE ALL DIFFERENT
+    private static final int CHOOSE_X = 0;
+    private static final int CHOOSE_Y = 1;
+    private static final int CHOOSE_CLOSED = 2;
+    private static final int CHOOSE_ROAD = 3;
+    private static final int CHOOSE_ONE_WAY = 4;
+    private static final int CHOOSE_SPEED_LIMIT = 5;
+    private static final int CHOOSE_DIRECTION = 6;
+    private static final int NUM_CHOICES = 7;
+
+    // THE NEIGHBORS BELOW AND BESIDE AN INTERSECTION IT MAY HAVE ROADS
+    // TO, WHICH ARE EVERY ROAD SINCE EACH ROAD IS ONLY MADE FROM ITS
+    // UPPER LEFT END
+    private static final int RIGHT = 0;
+    private static final int DOWN = 1;
+    private static final int DOWN_RIGHT = 2;
+    private static final int DOWN_LEFT = 3;
+    private static final int NUM_NEIGHBORS = 4;
+
+    // WHAT TO MAKE
+    private long seed;
+    private int numIntersections;
+    private int width;
+    private double roadDensity;
+    private double oneWayRatio;
+    private double closedRatio;
+    private int[] speedLimits;
+    private int[] speedWeights;
+    private int totalSpeedWeight;
+    private int numPolice;
+    private int numBandits;
+    private int numZombies;
+
+    /**
+     * Constructs a generator for levels with initNumIntersections
+     * intersections. Until told otherwise it makes two roads per
+     * intersection, a tenth of them one way, closes a twentieth of the
+     * intersections, uses DEFAULT_SPEED_LIMITS, and puts five of each
+     * kind of car on the road.
+     */
+    public PathX_LevelGenerator(long initSeed, int initNumIntersections)
+    {
+        if (initNumIntersections < 2)
+            throw new IllegalArgumentException("A level needs at least 2 intersections, not " + initNumIntersections);
+        seed = initSeed;
+        numIntersections = initNumIntersections;
+        width = (int)Math.ceil(Math.sqrt(numIntersections));
+        setRoadDensity(2.0);
+        setOneWayRatio(0.1);
+        setClosedRatio(0.05);
+        setSpeedLimits(DEFAULT_SPEED_LIMITS, DEFAULT_SPEED_WEIGHTS);
+        setNumCars(5, 5, 5);
+    }
+
+    // ACCESSOR METHODS
+    public long     getSeed()               {   return seed;                }
+    public int      getNumIntersections()   {   return numIntersections;    }
+    public double   getRoadDensity()        {   return roadDensity;         }
+    public double   getOneWayRatio()        {   return oneWayRatio;         }
+    public double   getClosedRatio()        {   return closedRatio;         }
+
+    // MUTATOR METHODS
+
+    /**
+     * Sets about how many roads there are per intersection, which can be
+     * from 1, when there are only the roads that join all the
+     * intersections, up to MAX_ROAD_DENSITY. Since the joining roads are
+     * always there, a density below 1 isn't possible.
+     */
+    public void setRoadDensity(double initRoadDensity)
+    {
+        if ((initRoadDensity < 1.0) || (initRoadDensity > MAX_ROAD_DENSITY))
+            throw new IllegalArgumentException("Road density must be from 1 to " + MAX_ROAD_DENSITY + ", not " + initRoadDensity);
+        roadDensity = initRoadDensity;
+    }
+
+    /**
+     * Sets what fraction of the roads that aren't needed to join all the
+     * intersections are one way.
+     */
+    public void setOneWayRatio(double initOneWayRatio)
+    {
+        oneWayRatio = checkRatio("One way ratio", initOneWayRatio);
+    }
+
+    /**
+     * Sets what fraction of the intersections are closed, though the
+     * start and destination are always open.
+     */
+    public void setClosedRatio(double initClosedRatio)
+    {
+        closedRatio = checkRatio("Closed ratio", initClosedRatio);
+    }
+
+    /**
+     * Sets the speed limits roads may have, with each one as likely as
+     * its weight in the initSpeedWeights argument relative to the others.
+     */
+    public void setSpeedLimits(int[] initSpeedLimits, int[] initSpeedWeights)
+    {
+        if ((initSpeedLimits.length == 0) || (initSpeedLimits.length != initSpeedWeights.length))
+            throw new IllegalArgumentException("There must be one weight for each of at least one speed limit");
+        int total = 0;
+        for (int i = 0; i < initSpeedLimits.length; i++)
+        {
+            if ((initSpeedLimits[i] <= 0) || (initSpeedWeights[i] < 0))
+                throw new IllegalArgumentException("Speed limits must be positive and weights can't be negative");
+            total += initSpeedWeights[i];
+        }
+        if (total <= 0)
+            throw new IllegalArgumentException("At least one speed limit must have a weight");
+        speedLimits = initSpeedLimits.clone();
+        speedWeights = initSpeedWeights.clone();
+        totalSpeedWeight = total;
+    }
+
+    /**
+     * Sets how many of each kind of car the level calls for.
+     */
+    public void setNumCars(int initNumPolice, int initNumBandits, int initNumZombies)
+    {
+        numPolice = initNumPolice;
+        numBandits = initNumBandits;
+        numZombies = initNumZombies;
+    }
+
+    /**
+     * Generates the level named levelName, sending it to the handler
+     * argument one piece at a time.
+     */
+    public void generate(String levelName, PathX_LevelHandler handler) throws IOException
+    {
+        handler.startLevel(levelName, null, numIntersections, countRoads());
+        for (int i = 0; i < numIntersections; i++)
+        {
+            int x = ((i % width) * SPACING) + (int)(choose(CHOOSE_X, i) * JITTER);
+            int y = ((i / width) * SPACING) + (int)(choose(CHOOSE_Y, i) * JITTER);
+            handler.intersection(x, y, !isClosed(i));
+        }
+        for (int i = 0; i < numIntersections; i++)
+        {
+            for (int neighbor = 0; neighbor < NUM_NEIGHBORS; neighbor++)
+            {
+                int other = getNeighbor(i, neighbor);
+                if ((other >= 0) && hasRoad(i, neighbor))
+                {
+                    int road = (i * NUM_NEIGHBORS) + neighbor;
+                    boolean oneWay = !isJoiningRoad(i, neighbor) && (choose(CHOOSE_ONE_WAY, road) < oneWayRatio);
+
+                    // A ONE WAY ROAD GOES FROM ITS FIRST INTERSECTION TO ITS
+                    // SECOND, SO HALF OF THEM ARE TURNED AROUND
+                    if (oneWay && (choose(CHOOSE_DIRECTION, road) < 0.5))
+                        handler.road(other, i, oneWay, chooseSpeedLimit(road));
+                    else
+                        handler.road(i, other, oneWay, chooseSpeedLimit(road));
+                }
+            }
+        }
+        handler.endLevel(0, null, numIntersections - 1, null, 0, numPolice, numBandits, numZombies);
+    }
+
+    /**
+     * Generates the level and writes it to levelFile, named after the
+     * file, a piece at a time, so no more than a little of it is ever in
+     * memory.
+     */
+    public void writeLevel(File levelFile) throws IOException
+    {
+        String levelName = levelFile.getName();
+        if (levelName.indexOf('.') > 0)
+            levelName = levelName.substring(0, levelName.indexOf('.'));
+        PathX_LevelWriter writer = new PathX_LevelWriter(new FileOutputStream(levelFile));
+        try
+        {
+            generate(levelName, writer);
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Generates the level named levelName as a PathX_Level, which for a
+     * big level takes far more memory than writing it with writeLevel.
+     */
+    public PathX_Level makeLevel(String levelName) throws IOException
+    {
+        PathX_LevelData levelData = new PathX_LevelData();
+        generate(levelName, levelData);
+        PathX_Level level = new PathX_Level();
+        levelData.fillLevel(level);
+        return level;
+    }
+
+    // PRIVATE HELPER METHOD FOR COUNTING THE ROADS, WHICH HAS TO BE DONE
+    // BEFORE ANY ARE GENERATED SINCE IT COMES FIRST IN THE FILE
+    private int countRoads()
+    {
+        long numRoads = 0;
+        for (int i = 0; i < numIntersections; i++)
+        {
+            for (int neighbor = 0; neighbor < NUM_NEIGHBORS; neighbor++)
+            {
+                if ((getNeighbor(i, neighbor) >= 0) && hasRoad(i, neighbor))
+                    numRoads++;
+            }
+        }
+        if (numRoads > Integer.MAX_VALUE)
+            throw new IllegalStateException("A level can't have " + numRoads + " roads");
+        return (int)numRoads;
+    }
+
+    // PRIVATE HELPER METHOD THAT RETURNS THE NEIGHBOR OF INTERSECTION i
+    // IN THE neighbor DIRECTION, OR -1 IF IT DOESN'T HAVE ONE
+    private int getNeighbor(int i, int neighbor)
+    {
+        int col = i % width;
+        long other;
+        switch (neighbor)
+        {
+            case RIGHT:         other = (col + 1 < width) ? (long)i + 1 : -1;           break;
+            case DOWN:          other = (long)i + width;                                break;
+            case DOWN_RIGHT:    other = (col + 1 < width) ? (long)i + width + 1 : -1;   break;
+            default:            other = (col > 0) ? (long)i + width - 1 : -1;           break;
+        }
+        return (other < numIntersections) ? (int)other : -1;
+    }
+
+    // PRIVATE HELPER METHOD THAT SAYS WHETHER THE ROAD FROM i TO ITS
+    // neighbor IS ONE THAT JOINS ALL THE INTERSECTIONS TOGETHER
+    private boolean isJoiningRoad(int i, int neighbor)
+    {
+        return (neighbor == RIGHT) || ((neighbor == DOWN) && ((i % width) == 0));
+    }
+
+    // PRIVATE HELPER METHOD THAT SAYS WHETHER THERE'S A ROAD FROM i TO
+    // ITS neighbor. THE JOINING ROADS ACCOUNT FOR ABOUT ONE ROAD PER
+    // INTERSECTION, AND THE OTHER THREE POSSIBLE ROADS MAKE UP THE REST
+    private boolean hasRoad(int i, int neighbor)
+    {
+        if (isJoiningRoad(i, neighbor))
+            return true;
+        double chance = (roadDensity - 1.0) / (NUM_NEIGHBORS - 1);
+        return choose(CHOOSE_ROAD, ((long)i * NUM_NEIGHBORS) + neighbor) < chance;
+    }
+
+    // PRIVATE HELPER METHOD THAT SAYS WHETHER INTERSECTION i IS CLOSED
+    private boolean isClosed(int i)
+    {
+        return (i != 0) && (i != numIntersections - 1) && (choose(CHOOSE_CLOSED, i) < closedRatio);
+    }
+
+    // PRIVATE HELPER METHOD FOR PICKING A ROAD'S SPEED LIMIT
+    private int chooseSpeedLimit(long road)
+    {
+        int pick = (int)(choose(CHOOSE_SPEED_LIMIT, road) * totalSpeedWeight);
+        for (int i = 0; i < speedLimits.length; i++)
+        {
+            pick -= speedWeights[i];
+            if (pick < 0)
+                return speedLimits[i];
+        }
+        return speedLimits[speedLimits.length - 1];
+    }
+
+    // PRIVATE HELPER METHOD THAT RETURNS A NUMBER FROM 0 UP TO 1 FOR
+    // THE choice ABOUT item, ALWAYS THE SAME FOR THE SAME SEED. IT'S THE
+    // SPLITMIX64 FINALIZER, WHICH MIXES EVERY BIT OF ITS INPUT WELL
+    private double choose(int choice, long item)
+    {
+        long z = seed + (((item * NUM_CHOICES) + choice + 1) * 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    // PRIVATE HELPER METHOD FOR CHECKING A FRACTION
+    private static double checkRatio(String what, double ratio)
+    {
+        if ((ratio < 0.0) || (ratio > 1.0))
+            throw new IllegalArgumentException(what + " must be from 0 to 1, not " + ratio);
+        return ratio;
+    }
+
+    /**
+     * Writes a level to the file in the first argument with the number of
+     * intersections in the second, using the seed, road density, one way
+     * ratio, and closed ratio that follow, if they're there.
+     */
+    public static void main(String[] args)
+    {
+        if ((args.length < 2) || (args.length > 6))
+        {
+            System.err.println("Usage: java PathX.file.PathX_LevelGenerator file intersections [seed [density [one way] [closed]]]");
+            System.exit(2);
+        }
+        File levelFile = new File(args[0]);
+        try
+        {
+            PathX_LevelGenerator generator = new PathX_LevelGenerator(
+                    (args.length > 2) ? Long.parseLong(args[2]) : 1, Integer.parseInt(args[1]));
+            if (args.length > 3)
+                generator.setRoadDensity(Double.parseDouble(args[3]));
+            if (args.length > 4)
+                generator.setOneWayRatio(Double.parseDouble(args[4]));
+            if (args.length > 5)
+                generator.setClosedRatio(Double.parseDouble(args[5]));
+            long startTime = System.currentTimeMillis();
+            generator.writeLevel(levelFile);
+            System.out.println("Wrote " + generator.getNumIntersections() + " intersections and "
+                    + generator.countRoads() + " roads to " + levelFile + " (" + levelFile.length() + " bytes) in "
+                    + (System.currentTimeMillis() - startTime) + " ms");
+        }
+        catch(IllegalArgumentException iae)
+        {
+            System.err.println(iae.getMessage());
+            System.exit(2);
+        }
+        catch(IOException ioe)
+        {
+            System.err.println("Could not write " + levelFile + ": " + ioe.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package PathX.file;
+
+import java.io.IOException;
+
+/**
+ * Receives a level one piece at a time, in the order the pieces appear
+ * in every level format:
+ *
+ *      startLevel, THEN intersection FOR EACH INTERSECTION, THEN road
+ *      FOR EACH ROAD, THEN endLevel
+ *
+ * Intersections are numbered from 0 in the order they're received. Since
+ * nothing has to be kept between calls, converting a level from one
+ * format to another this way takes the same memory no matter how big the
+ * level is.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public interface PathX_LevelHandler
+{
+    /**
+     * Receives everything that comes before the intersections.
+     */
+    public void startLevel( String levelName, String backgroundImageFileName,
+                            int numIntersections, int numRoads) throws IOException;
+
+    /**
+     * Receives the next intersection.
+     */
+    public void intersection(int x, int y, boolean open) throws IOException;
+
+    /**
+     * Receives the next road, which joins the intersections numbered
+     * node1 and node2.
+     */
+    public void road(int node1, int node2, boolean oneWay, int speedLimit) throws IOException;
+
+    /**
+     * Receives everything that comes after the roads.
+     */
+    public void endLevel(   int startId, String startImageFileName,
+                            int destinationId, String destinationImageFileName,
+                            int money, int numPolice, int numBandits, int numZombies) throws IOException;
+}
@@ -0,0 +1,202 @@
+package PathX.file;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TreeMap;
+import PathX.PathXConstants;
+
+/**
+ * This class lists every level file the game ships with, along with how
+ * many bytes it has and the CRC32 of its contents, so a level that was
+ * damaged or changed since can be caught before anyone plays it. The
+ * manifest is a text file with one line per level:
+ *
+ *      CRC32 IN HEX, LENGTH, FILE NAME
+ *
+ * and lines starting with # are comments. The file name comes last since
+ * it may have spaces in it. Make it again whenever the levels change by
+ * running:
+ *
+ *      java PathX.file.PathX_LevelManifest [directory] [manifest file]
+ *
+ * which defaults to listing LEVELS_PATH in LEVELS_MANIFEST.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_LevelManifest
+{
+    // THE EXTENSION OF EVERY LEVEL FILE
+    public static final String LEVEL_EXTENSION = ".bin";
+
+    // THE MANIFEST IS ALWAYS UTF-8, WHATEVER THE PLATFORM
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // EACH LEVEL FILE'S LENGTH AND CHECKSUM, BY FILE NAME
+    private TreeMap<String, long[]> entries;
+
+    /**
+     * Constructs an empty manifest.
+     */
+    public PathX_LevelManifest()
+    {
+        entries = new TreeMap();
+    }
+
+    // ACCESSOR METHODS
+    public int      getNumLevels()                  {   return entries.size();                  }
+    public boolean  contains(String fileName)       {   return entries.containsKey(fileName);   }
+
+    /**
+     * Returns the file names of all the levels, sorted.
+     */
+    public ArrayList<String> getFileNames()
+    {
+        return new ArrayList(entries.keySet());
+    }
+
+    /**
+     * Returns how many bytes the level file named fileName should have,
+     * or -1 if it's not in the manifest.
+     */
+    public long getLength(String fileName)
+    {
+        long[] entry = entries.get(fileName);
+        return (entry == null) ? -1 : entry[0];
+    }
+
+    /**
+     * Returns the CRC32 the level file named fileName should have, which
+     * is meaningless if it's not in the manifest.
+     */
+    public int getChecksum(String fileName)
+    {
+        long[] entry = entries.get(fileName);
+        return (entry == null) ? 0 : (int)entry[1];
+    }
+
+    /**
+     * Adds the level file named fileName, or replaces it if it's already
+     * in the manifest.
+     */
+    public void putLevel(String fileName, long length, int checksum)
+    {
+        entries.put(fileName, new long[] { length, checksum });
+    }
+
+    /**
+     * Makes a manifest of every level file in the directory argument,
+     * though not the ones in directories inside it.
+     */
+    public static PathX_LevelManifest build(File directory) throws IOException
+    {
+        File[] listed = directory.listFiles();
+        if (listed == null)
+            throw new IOException(directory + " is not a directory");
+        Arrays.sort(listed);
+        PathX_LevelManifest manifest = new PathX_LevelManifest();
+        for (File file : listed)
+        {
+            if (file.isFile() && file.getName().endsWith(LEVEL_EXTENSION))
+            {
+                manifest.putLevel(file.getName(), file.length(),
+                        PathX_Pack.checksum(PathX_MappedLevelReader.map(file)));
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Reads the manifest in the manifestFile argument.
+     *
+     * @throws IOException If it can't be read or a line is malformed.
+     */
+    public static PathX_LevelManifest load(File manifestFile) throws IOException
+    {
+        PathX_LevelManifest manifest = new PathX_LevelManifest();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifestFile), UTF_8));
+        try
+        {
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                lineNumber++;
+                if ((line.trim().length() == 0) || line.startsWith("#"))
+                    continue;
+
+                // CHECKSUM, THEN LENGTH, THEN THE REST IS THE NAME
+                int firstSpace = line.indexOf(' ');
+                int secondSpace = (firstSpace < 0) ? -1 : line.indexOf(' ', firstSpace + 1);
+                if ((secondSpace < 0) || (secondSpace == line.length() - 1))
+                    throw new IOException(manifestFile + " line " + lineNumber + " is malformed");
+                try
+                {
+                    int checksum = (int)Long.parseLong(line.substring(0, firstSpace), 16);
+                    long length = Long.parseLong(line.substring(firstSpace + 1, secondSpace));
+                    manifest.putLevel(line.substring(secondSpace + 1), length, checksum);
+                }
+                catch(NumberFormatException nfe)
+                {
+                    throw new IOException(manifestFile + " line " + lineNumber + " is malformed", nfe);
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return manifest;
+    }
+
+    /**
+     * Writes this manifest to the manifestFile argument, replacing it.
+     */
+    public void save(File manifestFile) throws IOException
+    {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(manifestFile), UTF_8));
+        try
+        {
+            writer.write("# PathX level manifest: CRC32, length, file name");
+            writer.write('\n');
+            for (String fileName : entries.keySet())
+            {
+                writer.write(String.format("%08x %d %s", getChecksum(fileName), getLength(fileName), fileName));
+                writer.write('\n');
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Lists every level in a directory, LEVELS_PATH unless another is
+     * given, in a manifest file, LEVELS_MANIFEST unless another is given.
+     */
+    public static void main(String[] args)
+    {
+        File directory = new File((args.length > 0) ? args[0] : PathXConstants.LEVELS_PATH);
+        File manifestFile = new File((args.length > 1) ? args[1] : PathXConstants.LEVELS_MANIFEST);
+        try
+        {
+            PathX_LevelManifest manifest = build(directory);
+            manifest.save(manifestFile);
+            System.out.println("Listed " + manifest.getNumLevels() + " levels from " + directory + " in " + manifestFile);
+        }
+        catch (IOException ioe)
+        {
+            System.err.println("Could not make " + manifestFile + ": " + ioe.getMessage());
+            System.exit(1);
+        }
+    }
+}
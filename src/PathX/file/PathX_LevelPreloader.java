@@ -0,0 +1,300 @@
+package PathX.file;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.awt.image.BufferedImage;
+import PathX.PathX_Level;
+
+/**
+ * This class loads levels and decodes their images on a background
+ * thread before the player picks them, so that picking one of them is
+ * instant. The game tells it which levels the player is likely to pick
+ * next, and when the player picks one it's taken from here if it was
+ * guessed right, or loaded the usual way if not.
+ *
+ * Preloaded levels that haven't been picked are kept until the memory
+ * they take adds up to more than the preloader's budget, at which point
+ * the ones guessed longest ago are thrown out.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_LevelPreloader
+{
+    // HOW MUCH MEMORY PRELOADED LEVELS MAY TAKE BY DEFAULT
+    public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+    // WHERE LEVELS ARE LOADED FROM, AND WHERE THEIR IMAGES ARE DECODED
+    // AND KEPT, SO THE GAME WON'T DECODE THEM AGAIN
+    private PathX_BinLevelIO levelIO;
+    private PathX_ImageCache imageCache;
+
+    // THE ONE THREAD THAT DOES ALL THE LOADING
+    private ExecutorService executor;
+
+    // EVERY LEVEL BEING OR ALREADY PRELOADED, LEAST RECENTLY GUESSED
+    // FIRST, AND HOW MUCH MEMORY THE FINISHED ONES TAKE
+    private LinkedHashMap<String, PreloadTask> preloads;
+    private long budget;
+    private long numBytes;
+
+    // HOW OFTEN OUR GUESSES HAVE BEEN RIGHT
+    private int numHits;
+    private int numMisses;
+
+    /**
+     * Constructs a preloader that loads levels with initLevelIO and keeps
+     * at most about initBudget bytes of them around. Their images come
+     * from initImageCache, unless it's null.
+     */
+    public PathX_LevelPreloader(PathX_BinLevelIO initLevelIO, PathX_ImageCache initImageCache, long initBudget)
+    {
+        levelIO = initLevelIO;
+        imageCache = initImageCache;
+        budget = initBudget;
+        preloads = new LinkedHashMap(16, 0.75f, true);
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                // IT MUSTN'T KEEP THE GAME RUNNING OR SLOW IT DOWN
+                Thread thread = new Thread(r, "PathX Level Preloader");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    // ACCESSOR METHODS
+    public synchronized long    getBudget()     {   return budget;      }
+    public synchronized long    getNumBytes()   {   return numBytes;    }
+    public synchronized int     getNumHits()    {   return numHits;     }
+    public synchronized int     getNumMisses()  {   return numMisses;   }
+
+    /**
+     * Returns true if the level named levelName is being or has been
+     * preloaded and hasn't been taken yet.
+     */
+    public synchronized boolean isPreloading(String levelName)
+    {
+        return preloads.containsKey(levelName);
+    }
+
+    /**
+     * Makes the levels named in levelNames the ones we expect the player
+     * to pick next, most likely first. Any of them not already preloaded
+     * are queued up for loading, and any earlier guesses still waiting
+     * in the queue are dropped, since the player has moved on.
+     */
+    public synchronized void preload(ArrayList<String> levelNames)
+    {
+        // FORGET WHAT WE HAVEN'T STARTED LOADING THAT'S NO LONGER LIKELY
+        Iterator<Map.Entry<String, PreloadTask>> it = preloads.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<String, PreloadTask> entry = it.next();
+            PreloadTask task = entry.getValue();
+            if (!task.started && !levelNames.contains(entry.getKey()))
+            {
+                it.remove();
+                task.cancel(false);
+            }
+        }
+
+        // GOING BACKWARDS SO THE MOST LIKELY ENDS UP MOST RECENTLY USED
+        for (int i = levelNames.size() - 1; i >= 0; i--)
+        {
+            String levelName = levelNames.get(i);
+            if (preloads.get(levelName) == null)
+            {
+                PreloadTask task = new PreloadTask(levelName);
+                preloads.put(levelName, task);
+                executor.execute(task);
+            }
+        }
+    }
+
+    /**
+     * Takes the level named levelName if it was preloaded, waiting for it
+     * if it's still being loaded, or loading it right here if it's still
+     * waiting its turn, since that's still quicker than starting over.
+     *
+     * @return The preloaded level, or null if we didn't guess it or it
+     * couldn't be loaded, in which case it should be loaded as usual.
+     */
+    public PathX_PreloadedLevel take(String levelName)
+    {
+        PreloadTask task;
+        synchronized(this)
+        {
+            task = preloads.remove(levelName);
+            if (task == null)
+            {
+                numMisses++;
+                return null;
+            }
+            numBytes -= task.numBytes;
+            task.numBytes = 0;
+            numHits++;
+        }
+
+        // THIS DOES NOTHING IF THE LOADING THREAD HAS ALREADY STARTED IT
+        task.run();
+        try
+        {
+            return task.get();
+        }
+        catch(InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch(ExecutionException ee)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Throws out every preloaded level.
+     */
+    public synchronized void clear()
+    {
+        // CANCELLING CALLS BACK INTO loaded, SO EMPTY THE MAP FIRST
+        ArrayList<PreloadTask> tasks = new ArrayList(preloads.values());
+        preloads.clear();
+        numBytes = 0;
+        for (PreloadTask task : tasks)
+        {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Stops the loading thread. The preloader may not be used after.
+     */
+    public void shutdown()
+    {
+        clear();
+        executor.shutdownNow();
+    }
+
+    // PRIVATE HELPER METHOD CALLED WHEN A LEVEL IS DONE LOADING, WHICH
+    // COUNTS THE MEMORY IT TAKES AND THROWS OUT THE LEVELS GUESSED LONGEST
+    // AGO UNTIL WE'RE BACK UNDER BUDGET
+    private synchronized void loaded(PreloadTask task, PathX_PreloadedLevel preloadedLevel)
+    {
+        // IT MAY HAVE BEEN TAKEN OR THROWN OUT WHILE IT WAS LOADING
+        if (preloads.get(task.levelName) != task)
+            return;
+        if (preloadedLevel == null)
+        {
+            preloads.remove(task.levelName);
+            return;
+        }
+        task.numBytes = preloadedLevel.getNumBytes();
+        numBytes += task.numBytes;
+
+        Iterator<PreloadTask> it = preloads.values().iterator();
+        while ((numBytes > budget) && it.hasNext())
+        {
+            PreloadTask oldTask = it.next();
+            if (oldTask.isDone())
+            {
+                numBytes -= oldTask.numBytes;
+                oldTask.numBytes = 0;
+                it.remove();
+            }
+        }
+    }
+
+    // PRIVATE HELPER METHOD THAT DOES THE ACTUAL LOADING, ON WHATEVER
+    // THREAD GETS TO IT FIRST. A LEVEL WHOSE IMAGES WON'T LOAD IS STILL
+    // PLAYABLE, SO THOSE ARE JUST LEFT OUT
+    private PathX_PreloadedLevel load(String levelName) throws IOException
+    {
+        PathX_Level level = levelIO.readLevel(levelName);
+        BufferedImage backgroundImage = readImage(level.getBackgroundImageFileName());
+        BufferedImage startingLocationImage = readImage(level.getStartingLocationImageFileName());
+        BufferedImage destinationImage = readImage(level.getDestinationImageFileName());
+        return new PathX_PreloadedLevel(levelName, level, backgroundImage, startingLocationImage, destinationImage);
+    }
+
+    // PRIVATE HELPER METHOD FOR DECODING ONE OF A LEVEL'S IMAGES
+    private BufferedImage readImage(String imageFileName)
+    {
+        try
+        {
+            if (imageCache != null)
+                return imageCache.getImage(imageFileName);
+            return levelIO.readLevelImage(imageFileName);
+        }
+        catch(IOException ioe)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Loads one level, remembering whether it has started so that guesses
+     * that are already being loaded aren't thrown out.
+     */
+    private class PreloadTask extends FutureTask<PathX_PreloadedLevel>
+    {
+        String levelName;
+        volatile boolean started;
+        long numBytes;
+
+        PreloadTask(final String initLevelName)
+        {
+            super(new Callable<PathX_PreloadedLevel>()
+            {
+                @Override
+                public PathX_PreloadedLevel call() throws IOException
+                {
+                    return load(initLevelName);
+                }
+            });
+            levelName = initLevelName;
+        }
+
+        @Override
+        public void run()
+        {
+            started = true;
+            super.run();
+        }
+
+        @Override
+        protected void done()
+        {
+            PathX_PreloadedLevel preloadedLevel = null;
+            if (!isCancelled())
+            {
+                try
+                {
+                    preloadedLevel = get();
+                }
+                catch(InterruptedException ie)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                catch(ExecutionException ee)
+                {
+                    // IT JUST WON'T BE PRELOADED
+                }
+            }
+            loaded(this, preloadedLevel);
+        }
+    }
+}
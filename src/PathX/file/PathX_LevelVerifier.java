@@ -0,0 +1,157 @@
+package PathX.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class checks every level in the manifest when the game starts, on
+ * a background thread so the player isn't kept waiting, making sure each
+ * one's file has the checksum the manifest says it should and that it
+ * passes PathX_LevelChecker. A level that fails is never loaded, so the
+ * game asks here before loading any level, and if it asks about one
+ * that hasn't been checked yet it's checked right then.
+ *
+ * All methods may be called from any thread.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_LevelVerifier
+{
+    // WHAT'S WRONG WITH A LEVEL THAT PASSES, SINCE ConcurrentHashMap
+    // CAN'T HOLD NULLS
+    private static final String NO_PROBLEM = "";
+
+    // WHERE LEVELS ARE READ FROM AND WHAT THEY SHOULD BE
+    private PathX_BinLevelIO levelIO;
+    private File manifestFile;
+    private volatile PathX_LevelManifest manifest;
+    private volatile String manifestProblem;
+
+    // WHAT WE FOUND WRONG WITH EACH LEVEL WE'VE CHECKED, BY LEVEL NAME
+    private ConcurrentHashMap<String, String> problems;
+    private volatile boolean done;
+
+    /**
+     * Constructs a verifier that reads levels with initLevelIO and checks
+     * them against the manifest in initManifestFile.
+     */
+    public PathX_LevelVerifier(PathX_BinLevelIO initLevelIO, File initManifestFile)
+    {
+        levelIO = initLevelIO;
+        manifestFile = initManifestFile;
+        problems = new ConcurrentHashMap();
+    }
+
+    // ACCESSOR METHODS
+    public boolean  isDone()                {   return done;                }
+    public String   getManifestProblem()    {   return manifestProblem;     }
+    public int      getNumChecked()         {   return problems.size();     }
+
+    /**
+     * Starts checking every level in the manifest on a background thread.
+     */
+    public void start()
+    {
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                verifyAll();
+            }
+        }, "PathX Level Verifier");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Checks every level in the manifest that hasn't been checked yet.
+     *
+     * @return The names of the levels that failed.
+     */
+    public ArrayList<String> verifyAll()
+    {
+        ArrayList<String> failed = new ArrayList();
+        PathX_LevelManifest levels = getManifest();
+        if (levels != null)
+        {
+            for (String fileName : levels.getFileNames())
+            {
+                String levelName = fileName.substring(0, fileName.length() - PathX_LevelManifest.LEVEL_EXTENSION.length());
+                if (check(levelName) != null)
+                    failed.add(levelName);
+            }
+        }
+        done = true;
+        return failed;
+    }
+
+    /**
+     * Returns what's wrong with the level named levelName, checking it now
+     * if it hasn't been already.
+     *
+     * @return What's wrong with it, or null if it's fine to play.
+     */
+    public String check(String levelName)
+    {
+        String problem = problems.get(levelName);
+        if (problem == null)
+        {
+            problem = verify(levelName);
+            problems.put(levelName, problem);
+        }
+        return (problem.length() == 0) ? null : problem;
+    }
+
+    // PRIVATE HELPER METHOD FOR READING THE MANIFEST THE FIRST TIME IT'S
+    // NEEDED. WITHOUT ONE, LEVELS ARE STILL CHECKED, JUST NOT THEIR
+    // CHECKSUMS
+    private synchronized PathX_LevelManifest getManifest()
+    {
+        if ((manifest == null) && (manifestProblem == null))
+        {
+            try
+            {
+                manifest = PathX_LevelManifest.load(manifestFile);
+            }
+            catch(IOException ioe)
+            {
+                manifestProblem = "Could not read " + manifestFile + ": " + ioe.getMessage();
+            }
+        }
+        return manifest;
+    }
+
+    // PRIVATE HELPER METHOD THAT DOES THE ACTUAL CHECKING OF ONE LEVEL,
+    // RETURNING WHAT'S WRONG WITH IT OR NO_PROBLEM
+    private String verify(String levelName)
+    {
+        try
+        {
+            ByteBuffer contents = levelIO.mapLevel(levelName);
+
+            // FIRST MAKE SURE IT'S THE FILE WE SHIPPED
+            PathX_LevelManifest levels = getManifest();
+            String fileName = PathX_BinLevelIO.getLevelFile(levelName).getName();
+            if ((levels != null) && levels.contains(fileName))
+            {
+                if (contents.remaining() != levels.getLength(fileName))
+                    return fileName + " has " + contents.remaining() + " bytes but should have " + levels.getLength(fileName);
+                if (PathX_Pack.checksum(contents.duplicate()) != levels.getChecksum(fileName))
+                    return fileName + " doesn't match its checksum in " + manifestFile.getName();
+            }
+
+            // THEN THAT IT'S PLAYABLE
+            ArrayList<String> levelProblems = PathX_LevelChecker.check(PathX_MappedLevelReader.read(contents));
+            return levelProblems.isEmpty() ? NO_PROBLEM : levelProblems.get(0);
+        }
+        catch(IOException ioe)
+        {
+            return (ioe.getMessage() == null) ? ioe.toString() : ioe.getMessage();
+        }
+    }
+}
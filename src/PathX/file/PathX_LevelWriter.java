@@ -0,0 +1,228 @@
+package PathX.file;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import PathX.PathX_Intersection;
+import PathX.PathX_Level;
+import PathX.PathX_Road;
+import static PathX.file.PathX_LevelFormat.*;
+
+/**
+ * This class writes levels in the compact format described by
+ * PathX_LevelFormat. It streams, so a level may be written one
+ * intersection and road at a time without ever being built in memory,
+ * as long as the number of each is known up front:
+ *
+ *      writeHeader, THEN writeIntersection FOR EACH INTERSECTION,
+ *      THEN writeRoad FOR EACH ROAD, THEN writeFooter, THEN close
+ *
+ * Or writeLevel does all that for a level that is already built. It's
+ * also a PathX_LevelHandler, so a level in any format can be written
+ * straight through it.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_LevelWriter implements PathX_LevelHandler
+{
+    // WHERE WE WRITE, WITH THE CRC KEPT UP TO DATE AS WE GO
+    private CRC32 crc;
+    private DataOutputStream out;
+
+    // HOW MUCH WE WERE TOLD TO EXPECT AND HOW MUCH WE'VE WRITTEN
+    private int numIntersections;
+    private int numRoads;
+    private int intersectionsWritten;
+    private int roadsWritten;
+    private boolean headerWritten;
+    private boolean footerWritten;
+
+    // WHAT THE NEXT DELTAS ARE FROM
+    private int lastX;
+    private int lastY;
+    private int lastNode1;
+
+    /**
+     * Constructs a writer that writes a level to the stream argument,
+     * which it will close when it's closed.
+     */
+    public PathX_LevelWriter(OutputStream initOut)
+    {
+        crc = new CRC32();
+        out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(initOut), crc));
+    }
+
+    /**
+     * Writes the whole level argument. Note this is linear in the size of
+     * the level since intersection ids are looked up in an identity map.
+     */
+    public void writeLevel(String levelName, PathX_Level level) throws IOException
+    {
+        ArrayList<PathX_Intersection> intersections = level.getIntersections();
+        ArrayList<PathX_Road> roads = level.getRoads();
+        writeHeader(levelName, level.getBackgroundImageFileName(), intersections.size(), roads.size());
+
+        IdentityHashMap<PathX_Intersection, Integer> ids = new IdentityHashMap(intersections.size() * 2);
+        for (int i = 0; i < intersections.size(); i++)
+        {
+            PathX_Intersection intersection = intersections.get(i);
+            ids.put(intersection, i);
+            writeIntersection(intersection.x, intersection.y, intersection.isOpen());
+        }
+        for (int i = 0; i < roads.size(); i++)
+        {
+            PathX_Road road = roads.get(i);
+            writeRoad(getId(ids, road.getNode1()), getId(ids, road.getNode2()), road.isOneWay(), road.getSpeedLimit());
+        }
+        writeFooter(getId(ids, level.getStartingLocation()), level.getStartingLocationImageFileName(),
+                    getId(ids, level.getDestination()), level.getDestinationImageFileName(),
+                    level.getMoney(), level.getNumPolice(), level.getNumBandits(), level.getNumZombies());
+    }
+
+    /**
+     * Writes everything that comes before the intersections.
+     */
+    public void writeHeader(String levelName, String backgroundImageFileName,
+                            int initNumIntersections, int initNumRoads) throws IOException
+    {
+        if (headerWritten)
+            throw new IOException("Level header already written");
+        numIntersections = initNumIntersections;
+        numRoads = initNumRoads;
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeUTF(nonNull(levelName));
+        out.writeUTF(nonNull(backgroundImageFileName));
+        out.writeInt(numIntersections);
+        out.writeInt(numRoads);
+        headerWritten = true;
+    }
+
+    /**
+     * Writes the next intersection, which will get the next id.
+     */
+    public void writeIntersection(int x, int y, boolean open) throws IOException
+    {
+        if (!headerWritten || (intersectionsWritten == numIntersections))
+            throw new IOException("Intersection " + intersectionsWritten + " was not expected");
+        writeVarInt(out, zigzag(x - lastX));
+        writeVarInt(out, zigzag(y - lastY));
+        out.writeByte(open ? 1 : 0);
+        lastX = x;
+        lastY = y;
+        intersectionsWritten++;
+    }
+
+    /**
+     * Writes the next road, which joins the intersections with the ids
+     * node1 and node2.
+     */
+    public void writeRoad(int node1, int node2, boolean oneWay, int speedLimit) throws IOException
+    {
+        if ((intersectionsWritten != numIntersections) || (roadsWritten == numRoads))
+            throw new IOException("Road " + roadsWritten + " was not expected");
+        checkId(node1);
+        checkId(node2);
+        writeVarInt(out, zigzag(node1 - lastNode1));
+        writeVarInt(out, zigzag(node2 - node1));
+        out.writeByte(oneWay ? 1 : 0);
+        writeVarInt(out, speedLimit);
+        lastNode1 = node1;
+        roadsWritten++;
+    }
+
+    /**
+     * Writes everything that comes after the roads, then the CRC.
+     */
+    public void writeFooter(int startId, String startImageFileName,
+                            int destinationId, String destinationImageFileName,
+                            int money, int numPolice, int numBandits, int numZombies) throws IOException
+    {
+        if ((roadsWritten != numRoads) || (intersectionsWritten != numIntersections) || footerWritten)
+            throw new IOException("Level footer was not expected");
+        checkId(startId);
+        checkId(destinationId);
+        writeVarInt(out, startId);
+        out.writeUTF(nonNull(startImageFileName));
+        writeVarInt(out, destinationId);
+        out.writeUTF(nonNull(destinationImageFileName));
+        writeVarInt(out, money);
+        writeVarInt(out, numPolice);
+        writeVarInt(out, numBandits);
+        writeVarInt(out, numZombies);
+
+        // THE CRC ITSELF ISN'T PART OF THE CRC
+        out.writeInt((int)crc.getValue());
+        footerWritten = true;
+    }
+
+    // PathX_LevelHandler METHODS, WHICH JUST WRITE WHAT THEY'RE GIVEN
+
+    @Override
+    public void startLevel( String levelName, String backgroundImageFileName,
+                            int initNumIntersections, int initNumRoads) throws IOException
+    {
+        writeHeader(levelName, backgroundImageFileName, initNumIntersections, initNumRoads);
+    }
+
+    @Override
+    public void intersection(int x, int y, boolean open) throws IOException
+    {
+        writeIntersection(x, y, open);
+    }
+
+    @Override
+    public void road(int node1, int node2, boolean oneWay, int speedLimit) throws IOException
+    {
+        writeRoad(node1, node2, oneWay, speedLimit);
+    }
+
+    @Override
+    public void endLevel(   int startId, String startImageFileName,
+                            int destinationId, String destinationImageFileName,
+                            int money, int numPolice, int numBandits, int numZombies) throws IOException
+    {
+        writeFooter(startId, startImageFileName, destinationId, destinationImageFileName,
+                    money, numPolice, numBandits, numZombies);
+    }
+
+    /**
+     * Flushes and closes the stream being written to.
+     *
+     * @throws IOException If the level is incomplete, though the stream
+     * is closed anyway.
+     */
+    public void close() throws IOException
+    {
+        out.close();
+        if (!footerWritten)
+            throw new IOException("Level closed before it was completely written");
+    }
+
+    // PRIVATE HELPER METHOD FOR MAKING SURE A ROAD OR LOCATION REFERS
+    // TO AN INTERSECTION THAT WILL BE IN THE FILE
+    private void checkId(int id) throws IOException
+    {
+        if ((id < 0) || (id >= numIntersections))
+            throw new IOException("Intersection " + id + " is not in the level");
+    }
+
+    // PRIVATE HELPER METHOD FOR LOOKING UP AN INTERSECTION'S ID, WHICH
+    // IS -1 IF IT'S NOT IN THE LEVEL
+    private static int getId(IdentityHashMap<PathX_Intersection, Integer> ids, PathX_Intersection intersection)
+    {
+        Integer id = ids.get(intersection);
+        return (id == null) ? -1 : id;
+    }
+
+    // PRIVATE HELPER METHOD, SINCE writeUTF CAN'T TAKE null
+    private static String nonNull(String text)
+    {
+        return (text == null) ? "" : text;
+    }
+}
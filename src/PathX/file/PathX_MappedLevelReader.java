@@ -0,0 +1,305 @@
+package PathX.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * This class loads level files, in either the original or the compact
+ * format, by memory mapping them and parsing the mapped bytes straight
+ * into the arrays of a PathX_LevelData, or into any other
+ * PathX_LevelHandler. No copy of the file is ever made
+ * on the heap and no streams sit in between, so for big levels both the
+ * load time and the heap needed are far lower than reading the file into
+ * a byte array first.
+ *
+ * Note that the mapping is let go once it's garbage collected, which is
+ * the only way to unmap a file in Java.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_MappedLevelReader
+{
+    // HOW MUCH OF THE FILE WE FEED THE CRC AT A TIME
+    private static final int CRC_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Maps the level file argument and parses all of it.
+     *
+     * @throws IOException If the file can't be read or isn't a
+     * complete, undamaged level.
+     */
+    public static PathX_LevelData read(File levelFile) throws IOException
+    {
+        PathX_LevelData data = new PathX_LevelData();
+        data.formatVersion = read(levelFile, data);
+        return data;
+    }
+
+    /**
+     * Parses the level in the buffer argument, from its position to its
+     * limit. Note that the buffer is read big endian.
+     *
+     * @throws IOException If the buffer doesn't hold a complete,
+     * undamaged level.
+     */
+    public static PathX_LevelData read(ByteBuffer buffer) throws IOException
+    {
+        PathX_LevelData data = new PathX_LevelData();
+        data.formatVersion = read(buffer, data);
+        return data;
+    }
+
+    /**
+     * Maps the level file argument and hands all of it to handler, one
+     * piece at a time.
+     *
+     * @return Which format the file was in, 1 for the original format.
+     *
+     * @throws IOException If the file can't be read or isn't a
+     * complete, undamaged level, or if handler throws one.
+     */
+    public static int read(File levelFile, PathX_LevelHandler handler) throws IOException
+    {
+        return read(map(levelFile), handler);
+    }
+
+    /**
+     * Maps all of the level file argument into memory without reading it.
+     *
+     * @throws IOException If the file can't be opened or is too big.
+     */
+    public static ByteBuffer map(File levelFile) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(levelFile, "r");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE)
+                throw new IOException("Level file " + levelFile + " is too big to map");
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        finally
+        {
+            // THE MAPPING STAYS GOOD AFTER THE FILE IS CLOSED
+            raf.close();
+        }
+    }
+
+    /**
+     * Parses the level in the buffer argument, from its position to its
+     * limit, handing it to handler one piece at a time. Nothing is kept
+     * along the way, so this takes the same memory however big the level
+     * is. Note a damaged compact level is caught before handler gets any
+     * of it, but a damaged original one may only be caught part way.
+     *
+     * @return Which format the level was in, 1 for the original format.
+     *
+     * @throws IOException If the buffer doesn't hold a complete,
+     * undamaged level, or if handler throws one.
+     */
+    public static int read(ByteBuffer buffer, PathX_LevelHandler handler) throws IOException
+    {
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try
+        {
+            if ((buffer.remaining() >= PathX_LevelFormat.HEADER_LENGTH + PathX_LevelFormat.CRC_LENGTH)
+                    && (buffer.getInt(buffer.position()) == PathX_LevelFormat.MAGIC))
+                return readCompact(buffer, handler);
+            else
+                return readLegacy(buffer, handler);
+        }
+        catch (RuntimeException re)
+        {
+            // RUNNING OFF THE END OR A BAD INTERSECTION ID BOTH MEAN
+            // THE FILE ISN'T A WHOLE LEVEL
+            throw new IOException("Level file is incomplete or damaged", re);
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR PARSING A LEVEL IN THE ORIGINAL FORMAT,
+    // WHERE EVERY NUMBER IS A FULL int
+    private static int readLegacy(ByteBuffer buffer, PathX_LevelHandler handler) throws IOException
+    {
+        String levelName = readUTF(buffer);
+        String backgroundImageFileName = readUTF(buffer);
+
+        // EACH INTERSECTION IS x, y, AND WHETHER IT'S OPEN, AND THE ROADS
+        // COUNT COMES AFTER THEM, SO WE LOOK AHEAD FOR IT
+        int numIntersections = readCount(buffer, 9);
+        int roadsCountAt = buffer.position() + (numIntersections * 9);
+        if (buffer.limit() - roadsCountAt < 4)
+            throw new IOException("Level file ends before its roads");
+        buffer.position(roadsCountAt);
+        int numRoads = readCount(buffer, 13);
+        buffer.position(roadsCountAt - (numIntersections * 9));
+        handler.startLevel(levelName, backgroundImageFileName, numIntersections, numRoads);
+        for (int i = 0; i < numIntersections; i++)
+        {
+            int x = buffer.getInt();
+            int y = buffer.getInt();
+            handler.intersection(x, y, buffer.get() != 0);
+        }
+
+        // EACH ROAD IS ITS TWO NODES, WHETHER IT'S ONE WAY, AND ITS
+        // SPEED LIMIT
+        buffer.getInt();
+        for (int i = 0; i < numRoads; i++)
+        {
+            int node1 = checkId(buffer.getInt(), numIntersections);
+            int node2 = checkId(buffer.getInt(), numIntersections);
+            boolean oneWay = (buffer.get() != 0);
+            handler.road(node1, node2, oneWay, buffer.getInt());
+        }
+
+        int startingLocation = checkId(buffer.getInt(), numIntersections);
+        String startingLocationImageFileName = readUTF(buffer);
+        int destination = checkId(buffer.getInt(), numIntersections);
+        String destinationImageFileName = readUTF(buffer);
+        int money = buffer.getInt();
+        int numPolice = buffer.getInt();
+        int numBandits = buffer.getInt();
+        int numZombies = buffer.getInt();
+        handler.endLevel(startingLocation, startingLocationImageFileName, destination, destinationImageFileName,
+                            money, numPolice, numBandits, numZombies);
+        return 1;
+    }
+
+    // PRIVATE HELPER METHOD FOR PARSING A LEVEL IN THE COMPACT FORMAT
+    // DESCRIBED BY PathX_LevelFormat
+    private static int readCompact(ByteBuffer buffer, PathX_LevelHandler handler) throws IOException
+    {
+        checkCrc(buffer);
+        buffer.getInt();
+        int formatVersion = buffer.get() & 0xFF;
+        if (formatVersion != PathX_LevelFormat.VERSION)
+            throw new IOException("Unknown level format version " + formatVersion);
+        String levelName = readUTF(buffer);
+        String backgroundImageFileName = readUTF(buffer);
+
+        // EVERY INTERSECTION IS AT LEAST 3 BYTES AND EVERY ROAD 4
+        int numIntersections = readCount(buffer, 3);
+        int numRoads = readCount(buffer, 0);
+        if (numRoads > (buffer.remaining() - (numIntersections * 3)) / 4)
+            throw new IOException("Level file has more roads than it can hold");
+        handler.startLevel(levelName, backgroundImageFileName, numIntersections, numRoads);
+
+        // THE INTERSECTIONS, EACH RELATIVE TO THE ONE BEFORE
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < numIntersections; i++)
+        {
+            x += PathX_LevelFormat.unzigzag(readVarInt(buffer));
+            y += PathX_LevelFormat.unzigzag(readVarInt(buffer));
+            handler.intersection(x, y, buffer.get() != 0);
+        }
+
+        // THE ROADS, EACH FIRST NODE RELATIVE TO THE LAST ROAD'S AND
+        // EACH SECOND NODE RELATIVE TO THE FIRST
+        int node1 = 0;
+        for (int i = 0; i < numRoads; i++)
+        {
+            node1 += PathX_LevelFormat.unzigzag(readVarInt(buffer));
+            checkId(node1, numIntersections);
+            int node2 = checkId(node1 + PathX_LevelFormat.unzigzag(readVarInt(buffer)), numIntersections);
+            boolean oneWay = (buffer.get() != 0);
+            handler.road(node1, node2, oneWay, readVarInt(buffer));
+        }
+
+        int startingLocation = checkId(readVarInt(buffer), numIntersections);
+        String startingLocationImageFileName = readUTF(buffer);
+        int destination = checkId(readVarInt(buffer), numIntersections);
+        String destinationImageFileName = readUTF(buffer);
+        int money = readVarInt(buffer);
+        int numPolice = readVarInt(buffer);
+        int numBandits = readVarInt(buffer);
+        int numZombies = readVarInt(buffer);
+        handler.endLevel(startingLocation, startingLocationImageFileName, destination, destinationImageFileName,
+                            money, numPolice, numBandits, numZombies);
+        return formatVersion;
+    }
+
+    // PRIVATE HELPER METHOD FOR MAKING SURE THE CRC AT THE END OF THE
+    // BUFFER MATCHES EVERYTHING BEFORE IT, WITHOUT MOVING THE BUFFER
+    private static void checkCrc(ByteBuffer buffer) throws IOException
+    {
+        int start = buffer.position();
+        int end = buffer.limit() - PathX_LevelFormat.CRC_LENGTH;
+        ByteBuffer view = buffer.duplicate();
+        byte[] chunk = new byte[Math.min(CRC_CHUNK_SIZE, end - start)];
+        CRC32 crc = new CRC32();
+        for (int i = start; i < end; i += chunk.length)
+        {
+            int chunkLength = Math.min(chunk.length, end - i);
+            view.position(i);
+            view.get(chunk, 0, chunkLength);
+            crc.update(chunk, 0, chunkLength);
+        }
+        if (buffer.getInt(end) != (int)crc.getValue())
+            throw new IOException("Level file is damaged, its CRC doesn't match");
+    }
+
+    // PRIVATE HELPER METHOD FOR READING A COUNT, MAKING SURE THE REST OF
+    // THE BUFFER COULD HOLD THAT MANY ITEMS OF AT LEAST itemSize BYTES
+    // BEFORE WE MAKE ARRAYS THAT BIG
+    private static int readCount(ByteBuffer buffer, int itemSize) throws IOException
+    {
+        int count = buffer.getInt();
+        if ((count < 0) || ((itemSize > 0) && (count > buffer.remaining() / itemSize)))
+            throw new IOException("Level file has a bad count of " + count);
+        return count;
+    }
+
+    // PRIVATE HELPER METHOD FOR MAKING SURE AN INTERSECTION ID IS IN RANGE
+    private static int checkId(int id, int numIntersections) throws IOException
+    {
+        if ((id < 0) || (id >= numIntersections))
+            throw new IOException("Level file refers to missing intersection " + id);
+        return id;
+    }
+
+    // PRIVATE HELPER METHOD FOR READING A VARINT RIGHT OUT OF THE BUFFER
+    private static int readVarInt(ByteBuffer buffer) throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7)
+        {
+            int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Level file has a malformed varint");
+    }
+
+    // PRIVATE HELPER METHOD FOR READING A STRING WRITTEN BY writeUTF.
+    // MOST OF OURS ARE PLAIN ASCII, WHICH WE DECODE OURSELVES
+    private static String readUTF(ByteBuffer buffer) throws IOException
+    {
+        int length = buffer.getShort() & 0xFFFF;
+        int start = buffer.position();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+        {
+            byte b = buffer.get(start + i);
+            if (b < 0)
+            {
+                // NOT ASCII, SO LET DataInputStream DEAL WITH IT
+                byte[] encoded = new byte[length + 2];
+                buffer.position(start - 2);
+                buffer.get(encoded);
+                return new DataInputStream(new ByteArrayInputStream(encoded)).readUTF();
+            }
+            chars[i] = (char)b;
+        }
+        buffer.position(start + length);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,284 @@
+package PathX.file;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+import javax.imageio.ImageIO;
+
+/**
+ * This class gives random access to the files inside a pack, which is a
+ * single file holding all the levels and images the game ships with so
+ * that deploying it means one file and loading from it means one open.
+ * Packs are made by PathX_PackBuilder and are laid out as:
+ *
+ *      int     MAGIC, WHICH IS "PXPK"
+ *      byte    FORMAT VERSION
+ *      long    WHERE THE TABLE OF CONTENTS STARTS
+ *      THE CONTENTS OF EVERY PACKED FILE, ONE AFTER ANOTHER
+ *      int     NUMBER OF PACKED FILES
+ *      FOR EACH PACKED FILE:
+ *          UTF     ITS NAME
+ *          long    WHERE ITS CONTENTS START
+ *          long    HOW MANY BYTES IT HAS
+ *          int     CRC32 OF ITS CONTENTS
+ *
+ * Each packed file's checksum is checked the first time it's used.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_Pack
+{
+    // "PXPK" IN ASCII
+    public static final int MAGIC = 0x5058504B;
+    public static final int VERSION = 1;
+
+    // BYTES BEFORE THE FIRST PACKED FILE
+    public static final int HEADER_LENGTH = 13;
+
+    // THE PACK FILE, KEPT OPEN UNTIL WE'RE CLOSED
+    private File packFile;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+
+    // THE TABLE OF CONTENTS, BY NAME
+    private HashMap<String, Entry> entries;
+
+    /**
+     * Opens the pack file argument and reads its table of contents.
+     *
+     * @throws IOException If the file can't be read or isn't a pack.
+     */
+    public PathX_Pack(File initPackFile) throws IOException
+    {
+        packFile = initPackFile;
+        raf = new RandomAccessFile(packFile, "r");
+        try
+        {
+            channel = raf.getChannel();
+            if ((raf.length() < HEADER_LENGTH) || (raf.readInt() != MAGIC))
+                throw new IOException(packFile + " is not a pack");
+            int version = raf.readUnsignedByte();
+            if (version != VERSION)
+                throw new IOException(packFile + " has unknown pack version " + version);
+
+            // THE TABLE OF CONTENTS IS AT THE END
+            long tocOffset = raf.readLong();
+            if ((tocOffset < HEADER_LENGTH) || (tocOffset > raf.length() - 4))
+                throw new IOException(packFile + " has a bad table of contents");
+            raf.seek(tocOffset);
+            int numEntries = raf.readInt();
+            entries = new HashMap(numEntries * 2);
+            for (int i = 0; i < numEntries; i++)
+            {
+                Entry entry = new Entry();
+                entry.name = raf.readUTF();
+                entry.offset = raf.readLong();
+                entry.length = raf.readLong();
+                entry.checksum = raf.readInt();
+                if ((entry.offset < HEADER_LENGTH) || (entry.length < 0)
+                        || (entry.offset + entry.length > tocOffset))
+                    throw new IOException(packFile + " has a bad entry for " + entry.name);
+                entries.put(entry.name, entry);
+            }
+        }
+        catch (IOException ioe)
+        {
+            raf.close();
+            throw ioe;
+        }
+    }
+
+    // ACCESSOR METHODS
+    public File     getPackFile()               {   return packFile;                    }
+    public int      getNumEntries()             {   return entries.size();              }
+    public boolean  contains(String name)       {   return entries.containsKey(name);   }
+
+    /**
+     * Returns the names of all the packed files, sorted.
+     */
+    public ArrayList<String> getNames()
+    {
+        ArrayList<String> names = new ArrayList(entries.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Returns how many bytes the packed file named name has, or -1 if
+     * there is no such file.
+     */
+    public long getLength(String name)
+    {
+        Entry entry = entries.get(name);
+        return (entry == null) ? -1 : entry.length;
+    }
+
+    /**
+     * Maps the packed file named name into memory without copying it,
+     * which is the fastest way to read it.
+     *
+     * @throws IOException If there is no such file or it's damaged.
+     */
+    public ByteBuffer map(String name) throws IOException
+    {
+        Entry entry = getEntry(name);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, entry.offset, entry.length);
+        verify(entry, buffer);
+        return buffer;
+    }
+
+    /**
+     * Reads the whole packed file named name into a new array.
+     *
+     * @throws IOException If there is no such file or it's damaged.
+     */
+    public byte[] read(String name) throws IOException
+    {
+        Entry entry = getEntry(name);
+        if (entry.length > Integer.MAX_VALUE)
+            throw new IOException(name + " is too big to read into an array");
+        byte[] bytes = new byte[(int)entry.length];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long position = entry.offset;
+        while (buffer.hasRemaining())
+        {
+            int numRead = channel.read(buffer, position);
+            if (numRead < 0)
+                throw new IOException(packFile + " ends in the middle of " + name);
+            position += numRead;
+        }
+        verify(entry, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * Returns a stream for reading the packed file named name.
+     *
+     * @throws IOException If there is no such file or it's damaged.
+     */
+    public InputStream open(String name) throws IOException
+    {
+        final ByteBuffer buffer = map(name);
+        return new InputStream()
+        {
+            @Override
+            public int read()
+            {
+                return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len)
+            {
+                if (len == 0)
+                    return 0;
+                if (!buffer.hasRemaining())
+                    return -1;
+                int numRead = Math.min(len, buffer.remaining());
+                buffer.get(b, off, numRead);
+                return numRead;
+            }
+
+            @Override
+            public int available()
+            {
+                return buffer.remaining();
+            }
+        };
+    }
+
+    /**
+     * Decodes the packed image named name.
+     *
+     * @throws IOException If there is no such file or it's not an image.
+     */
+    public BufferedImage readImage(String name) throws IOException
+    {
+        InputStream in = open(name);
+        try
+        {
+            BufferedImage image = ImageIO.read(in);
+            if (image == null)
+                throw new IOException(name + " is not an image");
+            return image;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Closes the pack file. Buffers already mapped stay good.
+     */
+    public void close() throws IOException
+    {
+        raf.close();
+    }
+
+    // PRIVATE HELPER METHOD FOR LOOKING UP A PACKED FILE
+    private Entry getEntry(String name) throws IOException
+    {
+        Entry entry = entries.get(name);
+        if (entry == null)
+            throw new IOException(packFile + " has no " + name);
+        return entry;
+    }
+
+    // PRIVATE HELPER METHOD FOR CHECKING A PACKED FILE'S CONTENTS AGAINST
+    // ITS CHECKSUM, ONLY THE FIRST TIME IT'S USED
+    private void verify(Entry entry, ByteBuffer contents) throws IOException
+    {
+        if (entry.verified)
+            return;
+        if (checksum(contents.duplicate()) != entry.checksum)
+            throw new IOException(entry.name + " in " + packFile + " is damaged");
+        entry.verified = true;
+    }
+
+    /**
+     * Computes the CRC32 of the bytes from the buffer argument's position
+     * to its limit, moving its position to its limit.
+     */
+    public static int checksum(ByteBuffer contents)
+    {
+        CRC32 crc = new CRC32();
+        if (contents.hasArray())
+        {
+            crc.update(contents.array(), contents.arrayOffset() + contents.position(), contents.remaining());
+            contents.position(contents.limit());
+        }
+        else
+        {
+            byte[] chunk = new byte[64 * 1024];
+            while (contents.hasRemaining())
+            {
+                int chunkLength = Math.min(chunk.length, contents.remaining());
+                contents.get(chunk, 0, chunkLength);
+                crc.update(chunk, 0, chunkLength);
+            }
+        }
+        return (int)crc.getValue();
+    }
+
+    /**
+     * One packed file's entry in the table of contents.
+     */
+    private static class Entry
+    {
+        String name;
+        long offset;
+        long length;
+        int checksum;
+        volatile boolean verified;
+    }
+}
@@ -0,0 +1,125 @@
+package PathX.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import PathX.PathXConstants;
+
+/**
+ * This class builds a pack, as described by PathX_Pack, out of every file
+ * in a directory, which for the game is the directory holding all the
+ * levels and their images. Run it with:
+ *
+ *      java PathX.file.PathX_PackBuilder [directory] [pack file]
+ *
+ * which defaults to packing LEVELS_PATH into LEVELS_PACK.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_PackBuilder
+{
+    /**
+     * Packs every file in the directory argument, though not the ones in
+     * directories inside it, into the pack file argument, replacing it.
+     *
+     * @return The number of files packed.
+     */
+    public static int build(File directory, File packFile) throws IOException
+    {
+        // PACK THE FILES IN NAME ORDER SO THE SAME DIRECTORY ALWAYS MAKES
+        // THE SAME PACK. NOTE THE PACK ITSELF MAY BE IN THE DIRECTORY
+        File[] listed = directory.listFiles();
+        if (listed == null)
+            throw new IOException(directory + " is not a directory");
+        Arrays.sort(listed);
+        ArrayList<File> files = new ArrayList();
+        for (File file : listed)
+        {
+            if (file.isFile() && !file.getCanonicalFile().equals(packFile.getCanonicalFile()))
+                files.add(file);
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(packFile, "rw");
+        try
+        {
+            raf.setLength(0);
+            FileChannel out = raf.getChannel();
+
+            // THE HEADER, WHOSE TABLE OF CONTENTS OFFSET WE FILL IN LATER
+            raf.writeInt(PathX_Pack.MAGIC);
+            raf.writeByte(PathX_Pack.VERSION);
+            raf.writeLong(0);
+
+            // THEN EVERY FILE'S CONTENTS, COPIED STRAIGHT ACROSS
+            long[] offsets = new long[files.size()];
+            long[] lengths = new long[files.size()];
+            int[] checksums = new int[files.size()];
+            for (int i = 0; i < files.size(); i++)
+            {
+                offsets[i] = raf.getFilePointer();
+                RandomAccessFile in = new RandomAccessFile(files.get(i), "r");
+                try
+                {
+                    FileChannel inChannel = in.getChannel();
+                    lengths[i] = inChannel.size();
+                    checksums[i] = PathX_Pack.checksum(inChannel.map(FileChannel.MapMode.READ_ONLY, 0, lengths[i]));
+                    long copied = 0;
+                    while (copied < lengths[i])
+                    {
+                        copied += inChannel.transferTo(copied, lengths[i] - copied, out.position(offsets[i] + copied));
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+                raf.seek(offsets[i] + lengths[i]);
+            }
+
+            // THEN THE TABLE OF CONTENTS
+            long tocOffset = raf.getFilePointer();
+            raf.writeInt(files.size());
+            for (int i = 0; i < files.size(); i++)
+            {
+                raf.writeUTF(files.get(i).getName());
+                raf.writeLong(offsets[i]);
+                raf.writeLong(lengths[i]);
+                raf.writeInt(checksums[i]);
+            }
+
+            // AND NOW WE KNOW WHERE IT IS
+            raf.seek(5);
+            raf.writeLong(tocOffset);
+        }
+        finally
+        {
+            raf.close();
+        }
+        return files.size();
+    }
+
+    /**
+     * Packs a directory, LEVELS_PATH unless another is given, into a
+     * pack file, LEVELS_PACK unless another is given.
+     */
+    public static void main(String[] args)
+    {
+        File directory = new File((args.length > 0) ? args[0] : PathXConstants.LEVELS_PATH);
+        File packFile = new File((args.length > 1) ? args[1] : PathXConstants.LEVELS_PACK);
+        try
+        {
+            long startTime = System.currentTimeMillis();
+            int numFiles = build(directory, packFile);
+            System.out.println("Packed " + numFiles + " files from " + directory + " into " + packFile
+                    + " (" + packFile.length() + " bytes) in " + (System.currentTimeMillis() - startTime) + " ms");
+        }
+        catch (IOException ioe)
+        {
+            System.err.println("Could not build " + packFile + ": " + ioe.getMessage());
+            System.exit(1);
+        }
+    }
+}
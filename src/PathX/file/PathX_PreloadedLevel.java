@@ -0,0 +1,72 @@
+package PathX.file;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import PathX.PathX_Level;
+
+/**
+ * A level loaded ahead of time by a PathX_LevelPreloader, along with its
+ * decoded images, ready to be handed to the data model the moment the
+ * player picks it.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_PreloadedLevel
+{
+    // ROUGHLY HOW MUCH MEMORY EACH INTERSECTION AND ROAD TAKES ONCE THE
+    // LEVEL AND ITS GRAPH AND GRIDS ARE BUILT, FOR THE PRELOAD BUDGET
+    public static final int BYTES_PER_INTERSECTION = 96;
+    public static final int BYTES_PER_ROAD = 128;
+
+    // THE LEVEL AND ITS IMAGES, ANY OF WHICH MAY BE NULL
+    private String levelName;
+    private PathX_Level level;
+    private BufferedImage backgroundImage;
+    private BufferedImage startingLocationImage;
+    private BufferedImage destinationImage;
+
+    // ABOUT HOW MANY BYTES ALL OF THE ABOVE TAKES
+    private long numBytes;
+
+    /**
+     * Constructs a preloaded level, working out how much memory it uses.
+     */
+    public PathX_PreloadedLevel(String initLevelName, PathX_Level initLevel,
+                                BufferedImage initBackgroundImage,
+                                BufferedImage initStartingLocationImage,
+                                BufferedImage initDestinationImage)
+    {
+        levelName = initLevelName;
+        level = initLevel;
+        backgroundImage = initBackgroundImage;
+        startingLocationImage = initStartingLocationImage;
+        destinationImage = initDestinationImage;
+
+        numBytes = ((long)level.getIntersections().size() * BYTES_PER_INTERSECTION)
+                + ((long)level.getRoads().size() * BYTES_PER_ROAD)
+                + getNumBytes(backgroundImage)
+                + getNumBytes(startingLocationImage)
+                + getNumBytes(destinationImage);
+    }
+
+    // ACCESSOR METHODS
+    public String           getLevelName()              {   return levelName;               }
+    public PathX_Level      getLevel()                  {   return level;                   }
+    public BufferedImage    getBackgroundImage()        {   return backgroundImage;         }
+    public BufferedImage    getStartingLocationImage()  {   return startingLocationImage;   }
+    public BufferedImage    getDestinationImage()       {   return destinationImage;        }
+    public long             getNumBytes()               {   return numBytes;                }
+
+    /**
+     * Returns how many bytes the pixels of the image argument take, or 0
+     * if it's null.
+     */
+    public static long getNumBytes(BufferedImage image)
+    {
+        if (image == null)
+            return 0;
+        DataBuffer pixels = image.getRaster().getDataBuffer();
+        long bitsPerElement = DataBuffer.getDataTypeSize(pixels.getDataType());
+        return ((long)pixels.getSize() * pixels.getNumBanks() * bitsPerElement) / 8;
+    }
+}
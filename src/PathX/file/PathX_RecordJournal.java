@@ -0,0 +1,421 @@
+package PathX.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+import PathX.data.PathX_LevelRecord;
+
+/**
+ * This class keeps the player's record on every level in a journal file
+ * that's only ever appended to, so saving the result of a game means
+ * writing one small entry with the level's new record, not the whole
+ * file. All the records are also kept in memory, indexed by level name,
+ * so looking one up never touches the disk. The journal is laid out as:
+ *
+ *      int     MAGIC, WHICH IS "PXRJ"
+ *      byte    FORMAT VERSION
+ *      FOR EACH ENTRY, OLDEST FIRST:
+ *          int     HOW MANY BYTES OF CONTENTS IT HAS
+ *          UTF     LEVEL NAME
+ *          int     GAMES PLAYED
+ *          int     WINS
+ *          int     PERFECT WINS
+ *          long    FASTEST PERFECT WIN TIME
+ *          int     CRC32 OF ITS CONTENTS
+ *
+ * and the latest entry for a level is its record. Every entry is forced
+ * to disk before a save returns, and if the game dies part way through
+ * one, the torn entry fails its CRC and is cut off the next time the
+ * journal is opened, leaving every save before it.
+ *
+ * Since old entries pile up, once there are many more entries than
+ * levels the journal is compacted, which writes one entry per level to
+ * a new file that then replaces the journal in a single rename, so a
+ * crash during compaction leaves the old journal as it was.
+ *
+ * All methods may be called from any thread.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_RecordJournal
+{
+    // "PXRJ" IN ASCII
+    public static final int MAGIC = 0x5058524A;
+    public static final int VERSION = 1;
+
+    // BYTES BEFORE THE FIRST ENTRY, AND AROUND EACH ENTRY'S CONTENTS
+    public static final int HEADER_LENGTH = 5;
+    public static final int ENTRY_OVERHEAD = 8;
+
+    // NO REAL ENTRY IS THIS BIG, SO A LENGTH THIS BIG MEANS DAMAGE
+    public static final int MAX_ENTRY_LENGTH = 64 * 1024;
+
+    // WE COMPACT ONCE THERE ARE MORE THAN THIS MANY ENTRIES PER LEVEL,
+    // PLUS SOME SLACK SO A NEW PLAYER'S FEW LEVELS DON'T COMPACT OFTEN
+    public static final int COMPACT_FACTOR = 4;
+    public static final int COMPACT_SLACK = 64;
+
+    // THE JOURNAL, KEPT OPEN FOR APPENDING UNTIL WE'RE CLOSED
+    private File journalFile;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+
+    // THE LATEST RECORD FOR EVERY LEVEL, BY LEVEL NAME
+    private HashMap<String, PathX_LevelRecord> records;
+
+    // HOW MANY ENTRIES THE JOURNAL HAS, INCLUDING OUT OF DATE ONES
+    private int numEntries;
+    private int numCompactions;
+
+    // HOW MANY BYTES OF TORN ENTRIES WERE CUT OFF WHEN WE OPENED IT
+    private long numTornBytes;
+
+    // PRIVATE CONSTRUCTOR, USE open
+    private PathX_RecordJournal(File initJournalFile)
+    {
+        journalFile = initJournalFile;
+        records = new HashMap();
+    }
+
+    // ACCESSOR METHODS
+    public File                 getJournalFile()    {   return journalFile;     }
+    public synchronized int     getNumLevels()      {   return records.size();  }
+    public synchronized int     getNumEntries()     {   return numEntries;      }
+    public synchronized int     getNumCompactions() {   return numCompactions;  }
+    public synchronized long    getNumTornBytes()   {   return numTornBytes;    }
+
+    /**
+     * Opens the journal in journalFile, reading every record in it. If
+     * there is no journal yet, one is made, starting with the records in
+     * legacyFile if it's there, which is the record file the game used to
+     * rewrite after every game.
+     *
+     * @throws IOException If the journal or legacyFile can't be read, or
+     * the journal can't be written.
+     */
+    public static PathX_RecordJournal open(File journalFile, File legacyFile) throws IOException
+    {
+        PathX_RecordJournal journal = new PathX_RecordJournal(journalFile);
+        synchronized(journal)
+        {
+            try
+            {
+                if (journalFile.exists())
+                {
+                    journal.replay();
+                    if (journal.needsCompaction())
+                        journal.compact();
+                }
+                else
+                {
+                    if ((legacyFile != null) && legacyFile.exists())
+                        readLegacy(legacyFile, journal.records);
+                    journal.compact();
+                }
+            }
+            catch(IOException ioe)
+            {
+                journal.closeChannel();
+                throw ioe;
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Returns the names of all the levels with records, sorted.
+     */
+    public synchronized ArrayList<String> getLevelNames()
+    {
+        ArrayList<String> names = new ArrayList(records.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Returns a copy of the player's record on the level named levelName,
+     * or null if they haven't played it.
+     */
+    public synchronized PathX_LevelRecord getLevelRecord(String levelName)
+    {
+        PathX_LevelRecord record = records.get(levelName);
+        return (record == null) ? null : record.copy();
+    }
+
+    /**
+     * Saves record as the player's record on the level named levelName,
+     * which is on disk by the time this returns.
+     *
+     * @throws IOException If it can't be written, in which case the
+     * level's record is left as it was.
+     */
+    public synchronized void putLevelRecord(String levelName, PathX_LevelRecord record) throws IOException
+    {
+        if (channel == null)
+            throw new IOException(journalFile + " is closed");
+        byte[] contents = encode(levelName, record);
+        CRC32 crc = new CRC32();
+        crc.update(contents);
+        ByteBuffer entry = ByteBuffer.allocate(contents.length + ENTRY_OVERHEAD);
+        entry.putInt(contents.length);
+        entry.put(contents);
+        entry.putInt((int)crc.getValue());
+        entry.flip();
+
+        // ONE WRITE AT THE END, THEN MAKE SURE IT'S REALLY THERE
+        long end = channel.size();
+        try
+        {
+            while (entry.hasRemaining())
+            {
+                channel.write(entry, end + entry.position());
+            }
+            channel.force(false);
+        }
+        catch(IOException ioe)
+        {
+            // DON'T LEAVE HALF AN ENTRY FOR THE NEXT ONE TO FOLLOW
+            try
+            {
+                channel.truncate(end);
+            }
+            catch(IOException ioe2)
+            {
+                // IT'LL BE CUT OFF WHEN THE JOURNAL IS NEXT OPENED
+            }
+            throw ioe;
+        }
+        records.put(levelName, record.copy());
+        numEntries++;
+
+        if (needsCompaction())
+        {
+            try
+            {
+                compact();
+            }
+            catch(IOException ioe)
+            {
+                // THE ENTRY IS SAVED EITHER WAY, SO WE'LL JUST TRY AGAIN
+                // AFTER THE NEXT ONE
+            }
+        }
+    }
+
+    /**
+     * Rewrites the journal with one entry per level, replacing it all at
+     * once. This is done automatically when old entries pile up.
+     */
+    public synchronized void compact() throws IOException
+    {
+        ArrayList<String> names = getLevelNames();
+        File tempFile = new File(journalFile.getPath() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tempFile);
+        try
+        {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            CRC32 crc = new CRC32();
+            for (String levelName : names)
+            {
+                byte[] contents = encode(levelName, records.get(levelName));
+                crc.reset();
+                crc.update(contents);
+                out.writeInt(contents.length);
+                out.write(contents);
+                out.writeInt((int)crc.getValue());
+            }
+            out.flush();
+            fos.getChannel().force(true);
+        }
+        finally
+        {
+            fos.close();
+        }
+
+        // AND SWAP IT IN. IF THAT FAILS WE KEEP APPENDING TO THE OLD ONE
+        closeChannel();
+        try
+        {
+            try
+            {
+                Files.move(tempFile.toPath(), journalFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch(AtomicMoveNotSupportedException amnse)
+            {
+                Files.move(tempFile.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            openChannel();
+        }
+        numEntries = names.size();
+        numCompactions++;
+    }
+
+    /**
+     * Closes the journal, after which nothing more can be saved.
+     */
+    public synchronized void close() throws IOException
+    {
+        closeChannel();
+    }
+
+    // PRIVATE HELPER METHOD THAT READS EVERY ENTRY IN THE JOURNAL INTO
+    // THE INDEX, CUTTING OFF ANYTHING AFTER THE LAST GOOD ONE
+    private void replay() throws IOException
+    {
+        openChannel();
+        long length = channel.size();
+        if (length > Integer.MAX_VALUE)
+            throw new IOException(journalFile + " is too big");
+        ByteBuffer buffer = ByteBuffer.allocate((int)length);
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, buffer.position()) < 0)
+                throw new IOException(journalFile + " got shorter while being read");
+        }
+        buffer.flip();
+        if ((buffer.remaining() < HEADER_LENGTH) || (buffer.getInt() != MAGIC) || (buffer.get() != VERSION))
+            throw new IOException(journalFile + " is not a version " + VERSION + " record journal");
+
+        CRC32 crc = new CRC32();
+        byte[] array = buffer.array();
+        while (buffer.remaining() >= ENTRY_OVERHEAD)
+        {
+            int start = buffer.position();
+            int contentsLength = buffer.getInt(start);
+            if ((contentsLength < 0) || (contentsLength > MAX_ENTRY_LENGTH)
+                    || (contentsLength + ENTRY_OVERHEAD > buffer.remaining()))
+                break;
+            crc.reset();
+            crc.update(array, start + 4, contentsLength);
+            if ((int)crc.getValue() != buffer.getInt(start + 4 + contentsLength))
+                break;
+            if (!decode(array, start + 4, contentsLength))
+                break;
+            numEntries++;
+            buffer.position(start + contentsLength + ENTRY_OVERHEAD);
+        }
+
+        // A TORN LAST ENTRY IS THE ONLY THING A CRASH CAN LEAVE BEHIND
+        if (buffer.hasRemaining())
+        {
+            numTornBytes = buffer.remaining();
+            channel.truncate(buffer.position());
+            channel.force(false);
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR DECODING ONE ENTRY'S CONTENTS INTO THE
+    // INDEX, RETURNING FALSE IF THEY'RE MALFORMED
+    private boolean decode(byte[] array, int offset, int length)
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(array, offset, length));
+        try
+        {
+            String levelName = in.readUTF();
+            PathX_LevelRecord record = new PathX_LevelRecord();
+            record.gamesPlayed = in.readInt();
+            record.wins = in.readInt();
+            record.perfectWins = in.readInt();
+            record.fastestPerfectWinTime = in.readLong();
+            records.put(levelName, record);
+            return true;
+        }
+        catch(IOException ioe)
+        {
+            return false;
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR ENCODING ONE ENTRY'S CONTENTS
+    private static byte[] encode(String levelName, PathX_LevelRecord record) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(levelName);
+        out.writeInt(record.gamesPlayed);
+        out.writeInt(record.wins);
+        out.writeInt(record.perfectWins);
+        out.writeLong(record.fastestPerfectWinTime);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    // PRIVATE HELPER METHOD FOR READING THE RECORD FILE THE GAME USED TO
+    // WRITE, WHICH IS THE NUMBER OF LEVELS FOLLOWED BY EACH LEVEL'S NAME,
+    // ALGORITHM, GAMES PLAYED, WINS, PERFECT WINS, AND FASTEST PERFECT WIN.
+    // SINCE IT WAS NEVER CLOSED WHEN WRITTEN IT MAY END EARLY, IN WHICH
+    // CASE WE KEEP THE LEVELS BEFORE WHERE IT ENDS
+    private static void readLegacy(File legacyFile, HashMap<String, PathX_LevelRecord> records) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(legacyFile)));
+        try
+        {
+            int numLevels = in.readInt();
+            for (int i = 0; i < numLevels; i++)
+            {
+                String levelName = in.readUTF();
+                in.readUTF();
+                PathX_LevelRecord record = new PathX_LevelRecord();
+                record.gamesPlayed = in.readInt();
+                record.wins = in.readInt();
+                record.perfectWins = in.readInt();
+                record.fastestPerfectWinTime = in.readLong();
+                records.put(levelName, record);
+            }
+        }
+        catch(EOFException eofe)
+        {
+            // KEEP WHAT WE GOT
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    // PRIVATE HELPER METHOD THAT DECIDES WHEN TO COMPACT
+    private boolean needsCompaction()
+    {
+        return numEntries > (records.size() * COMPACT_FACTOR) + COMPACT_SLACK;
+    }
+
+    // PRIVATE HELPER METHODS FOR OPENING AND CLOSING THE JOURNAL
+    private void openChannel() throws IOException
+    {
+        raf = new RandomAccessFile(journalFile, "rw");
+        channel = raf.getChannel();
+    }
+    private void closeChannel() throws IOException
+    {
+        if (raf != null)
+        {
+            raf.close();
+            raf = null;
+            channel = null;
+        }
+    }
+}
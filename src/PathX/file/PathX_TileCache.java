@@ -0,0 +1,202 @@
+package PathX.file;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class hands out the tile pyramids the panel draws big images like
+ * level backgrounds from. Each image gets a name, and its pyramid is
+ * opened from a directory of that name under the cache directory when
+ * there is one made from the same image, and otherwise built and then
+ * saved there on a background thread, so the next time the game runs it
+ * can just be opened. Only about a budget's worth of bytes of pyramids
+ * are kept, throwing out the ones used longest ago, and the images they
+ * were made from are only weakly held, so they don't outlive the image
+ * cache that decoded them.
+ *
+ * This is meant to be used from the thread that renders.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_TileCache
+{
+    // WHERE PYRAMIDS ARE SAVED
+    private File cacheDir;
+
+    // THE PYRAMIDS WE'VE HANDED OUT, BY NAME, LEAST RECENTLY USED FIRST,
+    // AND HOW MANY BYTES THEY MAY TAKE AND DO TAKE
+    private LinkedHashMap<String, CachedPyramid> pyramids;
+    private long budget;
+    private long numBytes;
+
+    // THE ONE THREAD THAT SAVES PYRAMIDS
+    private ExecutorService saver;
+
+    /**
+     * Constructs a cache that saves pyramids under initCacheDir, which is
+     * made when the first one is saved, and keeps at most about initBudget
+     * bytes of them.
+     */
+    public PathX_TileCache(File initCacheDir, long initBudget)
+    {
+        cacheDir = initCacheDir;
+        budget = initBudget;
+        pyramids = new LinkedHashMap(16, 0.75f, true);
+        saver = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "PathX Tile Saver");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    // ACCESSOR METHODS
+    public File getCacheDir()       {   return cacheDir;            }
+    public long getBudget()         {   return budget;              }
+    public long getNumBytes()       {   return numBytes;            }
+    public int  getNumPyramids()    {   return pyramids.size();     }
+
+    /**
+     * Returns the pyramid for the image named name, which must be the same
+     * image every time for the same name, though it may be a different
+     * copy of it. Asking again with the same image object is just a lookup.
+     */
+    public PathX_TilePyramid getPyramid(String name, BufferedImage source)
+    {
+        CachedPyramid cached = pyramids.get(name);
+        if ((cached != null) && (cached.source.get() == source) && !cached.pyramid.isDamaged())
+            return cached.pyramid;
+
+        // A DIFFERENT OBJECT MAY STILL BE THE SAME IMAGE
+        long stamp = PathX_TilePyramid.computeStamp(source);
+        PathX_TilePyramid pyramid = (cached == null) ? null : cached.pyramid;
+        if ((pyramid == null) || (pyramid.getStamp() != stamp) || pyramid.isDamaged())
+        {
+            File pyramidDir = getPyramidDir(name);
+            pyramid = PathX_TilePyramid.open(pyramidDir, stamp);
+            if (pyramid == null)
+            {
+                pyramid = PathX_TilePyramid.build(source, stamp);
+                save(pyramid, pyramidDir);
+            }
+        }
+        remove(name);
+        pyramids.put(name, new CachedPyramid(pyramid, source));
+        numBytes += pyramid.getNumBytes();
+        trim(name);
+        return pyramid;
+    }
+
+    /**
+     * Forgets the pyramid for the image named name, like when the level
+     * it's the background of is unloaded, leaving the saved one where it is.
+     */
+    public void remove(String name)
+    {
+        CachedPyramid cached = pyramids.remove(name);
+        if (cached != null)
+            numBytes -= cached.pyramid.getNumBytes();
+    }
+
+    /**
+     * Changes how many bytes of pyramids may be kept, throwing out the
+     * ones used longest ago if we're now over budget.
+     */
+    public void setBudget(long initBudget)
+    {
+        budget = initBudget;
+        trim(null);
+    }
+
+    /**
+     * Forgets every pyramid, leaving the saved ones where they are.
+     */
+    public void clear()
+    {
+        pyramids.clear();
+        numBytes = 0;
+    }
+
+    /**
+     * Returns the directory the pyramid for the image named name is saved
+     * in, which is named after it with anything that may not be allowed in
+     * a file name replaced.
+     */
+    public File getPyramidDir(String name)
+    {
+        StringBuilder dirName = new StringBuilder();
+        for (int i = 0; i < name.length(); i++)
+        {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c) || (c == '.') || (c == '-'))
+                dirName.append(c);
+            else
+                dirName.append('_');
+        }
+        return new File(cacheDir, dirName.toString());
+    }
+
+    // PRIVATE HELPER METHOD FOR THROWING OUT THE PYRAMIDS USED LONGEST AGO
+    // UNTIL WE'RE BACK UNDER BUDGET, EXCEPT FOR THE ONE NAMED keep, WHICH
+    // IS BEING DRAWN
+    private void trim(String keep)
+    {
+        Iterator<Map.Entry<String, CachedPyramid>> it = pyramids.entrySet().iterator();
+        while ((numBytes > budget) && it.hasNext())
+        {
+            Map.Entry<String, CachedPyramid> entry = it.next();
+            if (entry.getKey().equals(keep))
+                continue;
+            numBytes -= entry.getValue().pyramid.getNumBytes();
+            it.remove();
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR SAVING A NEW PYRAMID WITHOUT HOLDING UP
+    // RENDERING. IF IT CAN'T BE SAVED IT'LL JUST BE BUILT AGAIN NEXT TIME
+    private void save(final PathX_TilePyramid pyramid, final File pyramidDir)
+    {
+        saver.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    pyramid.save(pyramidDir);
+                }
+                catch(IOException ioe)
+                {
+                    // NOTHING LOST BUT TIME
+                }
+            }
+        });
+    }
+
+    // A PYRAMID AND THE IMAGE IT WAS MOST RECENTLY ASKED FOR WITH, WHICH
+    // IS WEAKLY HELD SO IT CAN BE THROWN OUT OF THE IMAGE CACHE
+    private static class CachedPyramid
+    {
+        private PathX_TilePyramid pyramid;
+        private WeakReference<BufferedImage> source;
+
+        private CachedPyramid(PathX_TilePyramid initPyramid, BufferedImage initSource)
+        {
+            pyramid = initPyramid;
+            source = new WeakReference(initSource);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package PathX.file;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import javax.imageio.ImageIO;
+
+/**
+ * A big image, like a level background, cut into TILE_SIZE square tiles
+ * at several zoom levels, so that drawing part of it only means drawing
+ * the few tiles that overlap that part, at the level with no more detail
+ * than will show. Level 0 is full size, and each level after it is half
+ * the size of the one before, down to the first one that fits in a
+ * single tile.
+ *
+ * A pyramid may be saved to a directory, one PNG per tile plus a small
+ * header file, and opened from there again later, in which case its
+ * tiles are only read from disk the first time they're drawn.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_TilePyramid
+{
+    // HOW BIG EVERY TILE IS, EXCEPT THOSE ON THE RIGHT AND BOTTOM EDGES
+    public static final int TILE_SIZE = 256;
+
+    // THE HEADER FILE SAVED WITH THE TILES, WHICH IS WRITTEN LAST, SO
+    // IF IT'S THERE ALL THE TILES ARE TOO
+    public static final String HEADER_FILE_NAME = "pyramid.dat";
+    public static final int MAGIC = 0x50585450;
+    public static final int VERSION = 1;
+
+    // THE IMAGE'S SIZE AT EACH LEVEL
+    private int[] levelWidths;
+    private int[] levelHeights;
+
+    // THE TILES OF EACH LEVEL, ROW BY ROW, WHICH ARE NULL UNTIL THEY'RE
+    // READ WHEN THE PYRAMID IS FROM DISK
+    private BufferedImage[][] tiles;
+
+    // WHERE THE TILES ARE SAVED, OR NULL IF THEY WERE NEVER READ FROM DISK
+    private File dir;
+    private boolean damaged;
+
+    // IDENTIFIES THE IMAGE THE PYRAMID WAS MADE FROM, SEE computeStamp
+    private long stamp;
+    private boolean transparent;
+
+    // PRIVATE CONSTRUCTOR, USE build OR open
+    private PathX_TilePyramid(long initStamp, int width, int height, boolean initTransparent)
+    {
+        stamp = initStamp;
+        transparent = initTransparent;
+
+        // HOW MANY LEVELS DO WE NEED?
+        int numLevels = 1;
+        for (int w = width, h = height; (w > TILE_SIZE) || (h > TILE_SIZE); numLevels++)
+        {
+            w = Math.max(1, (w + 1) / 2);
+            h = Math.max(1, (h + 1) / 2);
+        }
+        levelWidths = new int[numLevels];
+        levelHeights = new int[numLevels];
+        tiles = new BufferedImage[numLevels][];
+        for (int level = 0; level < numLevels; level++)
+        {
+            levelWidths[level] = (level == 0) ? width : Math.max(1, (levelWidths[level - 1] + 1) / 2);
+            levelHeights[level] = (level == 0) ? height : Math.max(1, (levelHeights[level - 1] + 1) / 2);
+            tiles[level] = new BufferedImage[getNumColumns(level) * getNumRows(level)];
+        }
+    }
+
+    // ACCESSOR METHODS
+    public long     getStamp()                  {   return stamp;                                           }
+    public int      getWidth()                  {   return levelWidths[0];                                  }
+    public int      getHeight()                 {   return levelHeights[0];                                 }
+    public int      getNumLevels()              {   return levelWidths.length;                              }
+    public int      getLevelWidth(int level)    {   return levelWidths[level];                              }
+    public int      getLevelHeight(int level)   {   return levelHeights[level];                             }
+    public int      getNumColumns(int level)    {   return (levelWidths[level] + TILE_SIZE - 1) / TILE_SIZE;  }
+    public int      getNumRows(int level)       {   return (levelHeights[level] + TILE_SIZE - 1) / TILE_SIZE; }
+    public boolean  isDamaged()                 {   return damaged;                                         }
+
+    /**
+     * Returns how many bytes the pixels of every tile at every level take
+     * once they've all been built or read, at 4 bytes per pixel.
+     */
+    public long getNumBytes()
+    {
+        long numBytes = 0;
+        for (int level = 0; level < levelWidths.length; level++)
+        {
+            numBytes += 4L * levelWidths[level] * levelHeights[level];
+        }
+        return numBytes;
+    }
+
+    /**
+     * Returns the level to draw from when each drawn pixel covers scale
+     * pixels of the full size image, which is the smallest level that
+     * still has at least one pixel for each drawn pixel.
+     */
+    public int chooseLevel(double scale)
+    {
+        int level = 0;
+        while ((level + 1 < levelWidths.length) && ((1 << (level + 1)) <= scale))
+        {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Returns the tile at column col and row row of level, reading it from
+     * disk if this is the first time it's needed, or null if it's on disk
+     * but couldn't be read, in which case the pyramid is damaged.
+     */
+    public BufferedImage getTile(int level, int col, int row)
+    {
+        int index = (row * getNumColumns(level)) + col;
+        BufferedImage tile = tiles[level][index];
+        if ((tile == null) && (dir != null) && !damaged)
+        {
+            try
+            {
+                tile = ImageIO.read(getTileFile(dir, level, col, row));
+            }
+            catch(IOException ioe)
+            {
+                tile = null;
+            }
+            if (tile == null)
+                damaged = true;
+            tiles[level][index] = tile;
+        }
+        return tile;
+    }
+
+    /**
+     * Cuts the source image into tiles at every level.
+     *
+     * @param initStamp What computeStamp returns for source.
+     */
+    public static PathX_TilePyramid build(BufferedImage source, long initStamp)
+    {
+        boolean hasAlpha = source.getColorModel().hasAlpha();
+        PathX_TilePyramid pyramid = new PathX_TilePyramid(initStamp, source.getWidth(), source.getHeight(), hasAlpha);
+        int imageType = hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        // EACH LEVEL IS SHRUNK FROM THE ONE BEFORE IT
+        BufferedImage levelImage = source;
+        for (int level = 0; level < pyramid.getNumLevels(); level++)
+        {
+            int width = pyramid.getLevelWidth(level);
+            int height = pyramid.getLevelHeight(level);
+            if (level > 0)
+            {
+                BufferedImage smaller = new BufferedImage(width, height, imageType);
+                Graphics2D g2 = smaller.createGraphics();
+                g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g2.drawImage(levelImage, 0, 0, width, height, null);
+                g2.dispose();
+                levelImage = smaller;
+            }
+
+            // AND CUT INTO TILES
+            for (int row = 0; row < pyramid.getNumRows(level); row++)
+            {
+                for (int col = 0; col < pyramid.getNumColumns(level); col++)
+                {
+                    int x = col * TILE_SIZE;
+                    int y = row * TILE_SIZE;
+                    int tileWidth = Math.min(TILE_SIZE, width - x);
+                    int tileHeight = Math.min(TILE_SIZE, height - y);
+                    BufferedImage tile = new BufferedImage(tileWidth, tileHeight, imageType);
+                    Graphics2D g2 = tile.createGraphics();
+                    g2.drawImage(levelImage, 0, 0, tileWidth, tileHeight, x, y, x + tileWidth, y + tileHeight, null);
+                    g2.dispose();
+                    pyramid.tiles[level][(row * pyramid.getNumColumns(level)) + col] = tile;
+                }
+            }
+        }
+        return pyramid;
+    }
+
+    /**
+     * Saves every tile to saveDir, followed by the header, replacing any
+     * pyramid already there.
+     */
+    public void save(File saveDir) throws IOException
+    {
+        // THE OLD HEADER GOES FIRST SO A HALF SAVED PYRAMID IS NEVER OPENED
+        File headerFile = new File(saveDir, HEADER_FILE_NAME);
+        if (headerFile.exists() && !headerFile.delete())
+            throw new IOException("Can't replace " + headerFile);
+        for (int level = 0; level < getNumLevels(); level++)
+        {
+            File levelDir = new File(saveDir, "" + level);
+            if (!levelDir.isDirectory() && !levelDir.mkdirs())
+                throw new IOException("Can't make " + levelDir);
+            for (int row = 0; row < getNumRows(level); row++)
+            {
+                for (int col = 0; col < getNumColumns(level); col++)
+                {
+                    BufferedImage tile = getTile(level, col, row);
+                    if (tile == null)
+                        throw new IOException("Tile " + col + "_" + row + " of level " + level + " is missing");
+                    if (!ImageIO.write(tile, "png", getTileFile(saveDir, level, col, row)))
+                        throw new IOException("Can't write tiles as PNG");
+                }
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(headerFile)));
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(stamp);
+            out.writeInt(getWidth());
+            out.writeInt(getHeight());
+            out.writeInt(TILE_SIZE);
+            out.writeBoolean(transparent);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Opens the pyramid saved in openDir, without reading any of its tiles
+     * yet.
+     *
+     * @return The pyramid, or null if there is none there, it's from an
+     * older version, or it wasn't made from the image stamped expectedStamp.
+     */
+    public static PathX_TilePyramid open(File openDir, long expectedStamp)
+    {
+        File headerFile = new File(openDir, HEADER_FILE_NAME);
+        if (!headerFile.exists())
+            return null;
+        try
+        {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(headerFile)));
+            try
+            {
+                if ((in.readInt() != MAGIC) || (in.readInt() != VERSION) || (in.readLong() != expectedStamp))
+                    return null;
+                int width = in.readInt();
+                int height = in.readInt();
+                if ((in.readInt() != TILE_SIZE) || (width <= 0) || (height <= 0))
+                    return null;
+                PathX_TilePyramid pyramid = new PathX_TilePyramid(expectedStamp, width, height, in.readBoolean());
+                pyramid.dir = openDir;
+                return pyramid;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch(IOException ioe)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Computes a number identifying the image argument, from its size and
+     * a grid of pixels sampled across it, which is how we tell whether a
+     * saved pyramid was made from it without comparing every pixel.
+     */
+    public static long computeStamp(BufferedImage image)
+    {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        CRC32 crc = new CRC32();
+        int samples = 64;
+        for (int i = 0; i < samples; i++)
+        {
+            int y = (int)(((long)i * (height - 1)) / (samples - 1));
+            for (int j = 0; j < samples; j++)
+            {
+                int x = (int)(((long)j * (width - 1)) / (samples - 1));
+                int rgb = image.getRGB(x, y);
+                crc.update(rgb >>> 24);
+                crc.update(rgb >>> 16);
+                crc.update(rgb >>> 8);
+                crc.update(rgb);
+            }
+        }
+        return (((long)width) << 48) ^ (((long)height) << 32) ^ crc.getValue();
+    }
+
+    // PRIVATE HELPER METHOD FOR FINDING WHERE A TILE IS SAVED
+    private static File getTileFile(File tileDir, int level, int col, int row)
+    {
+        return new File(tileDir, level + File.separator + col + "_" + row + ".png");
+    }
+}
@@ -0,0 +1,513 @@
+package PathX.file;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import javax.xml.transform.stax.StAXSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import org.xml.sax.SAXException;
+import PathX.PathXConstants;
+
+/**
+ * This class converts levels between XML, as described by
+ * PathXLevelSchema.xsd, and the compact binary format the game loads.
+ * Nothing is ever built in memory, XML is read with StAX and handed
+ * straight to a PathX_LevelHandler, so levels of any size convert in the
+ * same memory. Since the binary format needs to know how many
+ * intersections and roads there are before it gets any of them, XML is
+ * read twice, the first time to count them, which is also when it's
+ * checked against the schema. Run it with:
+ *
+ *      java PathX.file.PathX_XmlLevelConverter [-xml] [directory] [output directory]
+ *
+ * which converts every XML level in the directory, LEVELS_PATH by
+ * default, to binary, or with -xml every binary level to XML, using every
+ * processor.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_XmlLevelConverter
+{
+    // THE FILE EXTENSIONS OF EACH FORMAT
+    public static final String XML_EXTENSION = ".xml";
+    public static final String BINARY_EXTENSION = ".bin";
+
+    // THE STAX FACTORIES AREN'T PROMISED TO BE THREAD SAFE, SO EACH
+    // THREAD GETS ITS OWN
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = new ThreadLocal<XMLInputFactory>()
+    {
+        @Override
+        protected XMLInputFactory initialValue()
+        {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            return factory;
+        }
+    };
+    private static final ThreadLocal<XMLOutputFactory> OUTPUT_FACTORY = new ThreadLocal<XMLOutputFactory>()
+    {
+        @Override
+        protected XMLOutputFactory initialValue()
+        {
+            return XMLOutputFactory.newInstance();
+        }
+    };
+
+    // WHAT XML LEVELS ARE CHECKED AGAINST, OR NULL IF THEY AREN'T. A
+    // Schema IS THREAD SAFE, THOUGH THE Validators IT MAKES ARE NOT
+    private Schema schema;
+
+    /**
+     * Constructs a converter that checks XML levels against the schema in
+     * the schemaFile argument, or doesn't check them if it's null.
+     *
+     * @throws IOException If the schema can't be read.
+     */
+    public PathX_XmlLevelConverter(File schemaFile) throws IOException
+    {
+        if (schemaFile == null)
+            return;
+        try
+        {
+            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            schema = factory.newSchema(schemaFile);
+        }
+        catch(SAXException saxe)
+        {
+            throw new IOException("Bad level schema " + schemaFile + ": " + saxe.getMessage(), saxe);
+        }
+    }
+
+    // ACCESSOR METHODS
+    public Schema getSchema()   {   return schema;  }
+
+    /**
+     * Reads the XML level in xmlFile, handing it to handler one piece at
+     * a time.
+     *
+     * @throws IOException If the file can't be read, isn't a valid level,
+     * or if handler throws one.
+     */
+    public void readXml(File xmlFile, PathX_LevelHandler handler) throws IOException
+    {
+        // FIRST COUNT WHAT'S THERE, CHECKING IT ALONG THE WAY
+        int[] counts = count(xmlFile);
+
+        // THEN READ IT FOR REAL
+        InputStream in = new BufferedInputStream(new FileInputStream(xmlFile));
+        try
+        {
+            XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(in);
+            try
+            {
+                parse(reader, counts[0], counts[1], handler);
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch(XMLStreamException xse)
+        {
+            throw new IOException(xmlFile + ": " + xse.getMessage(), xse);
+        }
+        catch(RuntimeException re)
+        {
+            // LIKE A NumberFormatException FROM AN ATTRIBUTE
+            throw new IOException(xmlFile + ": " + re.getMessage(), re);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Converts the XML level in xmlFile to the compact binary format,
+     * replacing binaryFile. If it fails, binaryFile is deleted so that a
+     * half written level is never left behind.
+     */
+    public void xmlToBinary(File xmlFile, File binaryFile) throws IOException
+    {
+        PathX_LevelWriter writer = new PathX_LevelWriter(new FileOutputStream(binaryFile));
+        boolean done = false;
+        try
+        {
+            readXml(xmlFile, writer);
+            writer.close();
+            done = true;
+        }
+        finally
+        {
+            if (!done)
+            {
+                try
+                {
+                    writer.close();
+                }
+                catch(IOException ioe)
+                {
+                    // IT'S INCOMPLETE, WHICH WE ALREADY KNOW
+                }
+                binaryFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Converts the binary level in binaryFile, in either format, to XML,
+     * replacing xmlFile. If it fails, xmlFile is deleted so that a half
+     * written level is never left behind.
+     */
+    public void binaryToXml(File binaryFile, File xmlFile) throws IOException
+    {
+        PathX_XmlLevelWriter writer = new PathX_XmlLevelWriter(OUTPUT_FACTORY.get(), new FileOutputStream(xmlFile));
+        boolean done = false;
+        try
+        {
+            PathX_MappedLevelReader.read(binaryFile, writer);
+            writer.close();
+            done = true;
+        }
+        finally
+        {
+            if (!done)
+            {
+                try
+                {
+                    writer.close();
+                }
+                catch(IOException ioe)
+                {
+                    // IT'S INCOMPLETE, WHICH WE ALREADY KNOW
+                }
+                xmlFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Converts every level in the directory argument, XML ones to binary,
+     * or binary ones to XML if toXml is true, into outputDir, each named
+     * after the file it was converted from. Levels are converted
+     * numThreads at a time.
+     *
+     * @return A message for each level that couldn't be converted, so an
+     * empty list if they all were.
+     */
+    public ArrayList<String> convertAll(File directory, File outputDir, final boolean toXml, int numThreads)
+            throws IOException
+    {
+        String fromExtension = toXml ? BINARY_EXTENSION : XML_EXTENSION;
+        String toExtension = toXml ? XML_EXTENSION : BINARY_EXTENSION;
+        File[] listed = directory.listFiles();
+        if (listed == null)
+            throw new IOException(directory + " is not a directory");
+        if (!outputDir.isDirectory() && !outputDir.mkdirs())
+            throw new IOException("Can't make " + outputDir);
+        Arrays.sort(listed);
+
+        // ONE TASK PER LEVEL
+        ArrayList<Callable<String>> tasks = new ArrayList();
+        for (final File from : listed)
+        {
+            String name = from.getName();
+            if (!from.isFile() || !name.endsWith(fromExtension) || (!toXml && !isLevelXml(from)))
+                continue;
+            final File to = new File(outputDir, name.substring(0, name.length() - fromExtension.length()) + toExtension);
+            tasks.add(new Callable<String>()
+            {
+                @Override
+                public String call()
+                {
+                    try
+                    {
+                        if (toXml)
+                            binaryToXml(from, to);
+                        else
+                            xmlToBinary(from, to);
+                        return null;
+                    }
+                    catch(IOException ioe)
+                    {
+                        return from.getName() + ": " + ioe.getMessage();
+                    }
+                }
+            });
+        }
+
+        ArrayList<String> failures = new ArrayList();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, tasks.size())));
+        try
+        {
+            for (Future<String> result : executor.invokeAll(tasks))
+            {
+                String failure = result.get();
+                if (failure != null)
+                    failures.add(failure);
+            }
+        }
+        catch(InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted converting " + directory, ie);
+        }
+        catch(ExecutionException ee)
+        {
+            throw new IOException("Failed converting " + directory, ee.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return failures;
+    }
+
+    /**
+     * Converts a directory of levels, LEVELS_PATH unless another is given,
+     * into a directory, the same one unless another is given, XML to
+     * binary unless the first argument is -xml.
+     */
+    public static void main(String[] args)
+    {
+        boolean toXml = (args.length > 0) && args[0].equals("-xml");
+        int first = toXml ? 1 : 0;
+        File directory = new File((args.length > first) ? args[first] : PathXConstants.LEVELS_PATH);
+        File outputDir = (args.length > first + 1) ? new File(args[first + 1]) : directory;
+        try
+        {
+            long startTime = System.currentTimeMillis();
+            PathX_XmlLevelConverter converter = new PathX_XmlLevelConverter(
+                    new File(PathXConstants.LEVELS_PATH + PathXConstants.LEVEL_SCHEMA_FILE_NAME));
+            ArrayList<String> failures = converter.convertAll(directory, outputDir, toXml,
+                    Runtime.getRuntime().availableProcessors());
+            for (String failure : failures)
+            {
+                System.err.println("Could not convert " + failure);
+            }
+            System.out.println("Converted " + directory + " into " + outputDir + " with "
+                    + failures.size() + " failures in " + (System.currentTimeMillis() - startTime) + " ms");
+            if (!failures.isEmpty())
+                System.exit(1);
+        }
+        catch (IOException ioe)
+        {
+            System.err.println("Could not convert " + directory + ": " + ioe.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR TELLING XML LEVELS FROM THE OTHER XML
+    // FILES THAT SHARE THEIR DIRECTORY, LIKE THE GAME'S PROPERTIES, BY
+    // LOOKING AT NOTHING BUT THE FIRST ELEMENT
+    private static boolean isLevelXml(File xmlFile)
+    {
+        try
+        {
+            InputStream in = new BufferedInputStream(new FileInputStream(xmlFile));
+            try
+            {
+                XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(in);
+                try
+                {
+                    return (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+                            && reader.getLocalName().equals("level");
+                }
+                finally
+                {
+                    reader.close();
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch(XMLStreamException xse)
+        {
+            // LET THE CONVERSION REPORT WHAT'S WRONG WITH IT
+            return true;
+        }
+        catch(IOException ioe)
+        {
+            return true;
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR THE FIRST PASS, WHICH COUNTS THE
+    // INTERSECTIONS AND ROADS, CHECKING THE LEVEL AGAINST THE SCHEMA IF
+    // WE HAVE ONE. THE VALIDATOR PULLS EVENTS THROUGH THE COUNTER, SO
+    // THE FILE IS ONLY READ ONCE FOR BOTH
+    private int[] count(File xmlFile) throws IOException
+    {
+        final int[] counts = new int[2];
+        InputStream in = new BufferedInputStream(new FileInputStream(xmlFile));
+        try
+        {
+            XMLStreamReader counter = new StreamReaderDelegate(INPUT_FACTORY.get().createXMLStreamReader(in))
+            {
+                @Override
+                public int next() throws XMLStreamException
+                {
+                    int event = super.next();
+                    if (event == XMLStreamConstants.START_ELEMENT)
+                    {
+                        String name = getLocalName();
+                        if (name.equals("intersection"))
+                            counts[0]++;
+                        else if (name.equals("road"))
+                            counts[1]++;
+                    }
+                    return event;
+                }
+            };
+            try
+            {
+                if (schema != null)
+                {
+                    schema.newValidator().validate(new StAXSource(counter));
+                }
+                else
+                {
+                    while (counter.hasNext())
+                    {
+                        counter.next();
+                    }
+                }
+            }
+            finally
+            {
+                counter.close();
+            }
+        }
+        catch(XMLStreamException xse)
+        {
+            throw new IOException(xmlFile + ": " + xse.getMessage(), xse);
+        }
+        catch(SAXException saxe)
+        {
+            // THE VALIDATOR WRAPS WHAT WENT WRONG A FEW LAYERS DEEP
+            Throwable cause = saxe;
+            while (cause.getCause() != null)
+            {
+                cause = cause.getCause();
+            }
+            throw new IOException(xmlFile + " is not a valid level: " + cause.getMessage(), saxe);
+        }
+        finally
+        {
+            in.close();
+        }
+        return counts;
+    }
+
+    // PRIVATE HELPER METHOD FOR THE SECOND PASS, WHICH HANDS THE LEVEL TO
+    // handler AS IT GOES. THE ELEMENTS AFTER THE ROADS ARE KEPT UNTIL THE
+    // LEVEL ENDS, SINCE THEY ALL GO TO endLevel TOGETHER
+    private void parse(XMLStreamReader reader, int numIntersections, int numRoads, PathX_LevelHandler handler)
+            throws XMLStreamException, IOException
+    {
+        int intersectionsRead = 0;
+        int startId = 0;
+        int destinationId = 0;
+        String startImageFileName = null;
+        String destinationImageFileName = null;
+        int money = 0;
+        int numPolice = 0;
+        int numBandits = 0;
+        int numZombies = 0;
+        boolean started = false;
+        while (reader.hasNext())
+        {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("level"))
+            {
+                if (!started)
+                    throw new IOException("Level has no level element");
+                handler.endLevel(   startId, startImageFileName,
+                                    destinationId, destinationImageFileName,
+                                    money, numPolice, numBandits, numZombies);
+                return;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT)
+                continue;
+
+            String name = reader.getLocalName();
+            if (name.equals("level"))
+            {
+                handler.startLevel(getText(reader, "name"), getText(reader, "image"), numIntersections, numRoads);
+                started = true;
+            }
+            else if (name.equals("intersection"))
+            {
+                // THE BINARY FORMAT NUMBERS INTERSECTIONS BY THEIR ORDER
+                String id = reader.getAttributeValue(null, "id");
+                if ((id != null) && (Integer.parseInt(id) != intersectionsRead))
+                    throw new IOException("Intersection " + id + " is out of order, expected " + intersectionsRead);
+                handler.intersection(   getInt(reader, "x"), getInt(reader, "y"),
+                                        Boolean.parseBoolean(reader.getAttributeValue(null, "open")));
+                intersectionsRead++;
+            }
+            else if (name.equals("road"))
+            {
+                handler.road(   getInt(reader, "int_id1"), getInt(reader, "int_id2"),
+                                Boolean.parseBoolean(reader.getAttributeValue(null, "one_way")),
+                                getInt(reader, "speed_limit"));
+            }
+            else if (name.equals("start_intersection"))
+            {
+                startId = getInt(reader, "id");
+                startImageFileName = getText(reader, "image");
+            }
+            else if (name.equals("destination_intersection"))
+            {
+                destinationId = getInt(reader, "id");
+                destinationImageFileName = getText(reader, "image");
+            }
+            else if (name.equals("money"))
+                money = getInt(reader, "amount");
+            else if (name.equals("police"))
+                numPolice = getInt(reader, "num");
+            else if (name.equals("bandits"))
+                numBandits = getInt(reader, "num");
+            else if (name.equals("zombies"))
+                numZombies = getInt(reader, "num");
+        }
+        throw new IOException("Level ended early");
+    }
+
+    // PRIVATE HELPER METHOD FOR READING A NUMBER ATTRIBUTE, WHICH IS 0
+    // IF IT'S LEFT OUT, SINCE THE SCHEMA MAKES THEM ALL OPTIONAL
+    private static int getInt(XMLStreamReader reader, String attributeName)
+    {
+        String value = reader.getAttributeValue(null, attributeName);
+        return (value == null) ? 0 : Integer.parseInt(value.trim());
+    }
+
+    // PRIVATE HELPER METHOD FOR READING A TEXT ATTRIBUTE, WHICH IS EMPTY
+    // IF IT'S LEFT OUT
+    private static String getText(XMLStreamReader reader, String attributeName)
+    {
+        String value = reader.getAttributeValue(null, attributeName);
+        return (value == null) ? "" : value;
+    }
+}
@@ -0,0 +1,219 @@
+package PathX.file;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * This class writes levels as XML, in the layout described by
+ * PathXLevelSchema.xsd, one element at a time as it's handed the level,
+ * so even the biggest levels are written without ever being held in
+ * memory. Like PathX_LevelWriter, the stream must be closed once the
+ * level has been written.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_XmlLevelWriter implements PathX_LevelHandler
+{
+    // HOW EACH LEVEL OF ELEMENTS IS INDENTED
+    private static final String INDENT = "     ";
+
+    // WHERE WE WRITE
+    private OutputStream out;
+    private XMLStreamWriter writer;
+
+    // HOW MUCH WE WERE TOLD TO EXPECT AND HOW MUCH WE'VE WRITTEN
+    private int numIntersections;
+    private int numRoads;
+    private int intersectionsWritten;
+    private int roadsWritten;
+    private boolean footerWritten;
+
+    /**
+     * Constructs a writer that writes a level to the stream argument, which
+     * it will close when it's closed, using the factory provided.
+     */
+    public PathX_XmlLevelWriter(XMLOutputFactory factory, OutputStream initOut) throws IOException
+    {
+        out = new BufferedOutputStream(initOut);
+        try
+        {
+            writer = factory.createXMLStreamWriter(out, "UTF-8");
+        }
+        catch(XMLStreamException xse)
+        {
+            throw new IOException(xse.getMessage(), xse);
+        }
+    }
+
+    @Override
+    public void startLevel( String levelName, String backgroundImageFileName,
+                            int initNumIntersections, int initNumRoads) throws IOException
+    {
+        numIntersections = initNumIntersections;
+        numRoads = initNumRoads;
+        try
+        {
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeCharacters("\n");
+            writer.writeStartElement("level");
+            writer.writeAttribute("image", nonNull(backgroundImageFileName));
+            writer.writeAttribute("name", nonNull(levelName));
+            startList("intersections", numIntersections);
+        }
+        catch(XMLStreamException xse)
+        {
+            throw new IOException(xse.getMessage(), xse);
+        }
+    }
+
+    @Override
+    public void intersection(int x, int y, boolean open) throws IOException
+    {
+        if (intersectionsWritten == numIntersections)
+            throw new IOException("Intersection " + intersectionsWritten + " was not expected");
+        try
+        {
+            indent(2);
+            writer.writeEmptyElement("intersection");
+            writer.writeAttribute("id", Integer.toString(intersectionsWritten));
+            writer.writeAttribute("open", Boolean.toString(open));
+            writer.writeAttribute("x", Integer.toString(x));
+            writer.writeAttribute("y", Integer.toString(y));
+            intersectionsWritten++;
+
+            // THE ROADS START RIGHT AFTER THE LAST ONE
+            if (intersectionsWritten == numIntersections)
+            {
+                endList();
+                startList("roads", numRoads);
+            }
+        }
+        catch(XMLStreamException xse)
+        {
+            throw new IOException(xse.getMessage(), xse);
+        }
+    }
+
+    @Override
+    public void road(int node1, int node2, boolean oneWay, int speedLimit) throws IOException
+    {
+        if ((intersectionsWritten != numIntersections) || (roadsWritten == numRoads))
+            throw new IOException("Road " + roadsWritten + " was not expected");
+        try
+        {
+            indent(2);
+            writer.writeEmptyElement("road");
+            writer.writeAttribute("int_id1", Integer.toString(node1));
+            writer.writeAttribute("int_id2", Integer.toString(node2));
+            writer.writeAttribute("one_way", Boolean.toString(oneWay));
+            writer.writeAttribute("speed_limit", Integer.toString(speedLimit));
+            roadsWritten++;
+            if (roadsWritten == numRoads)
+                endList();
+        }
+        catch(XMLStreamException xse)
+        {
+            throw new IOException(xse.getMessage(), xse);
+        }
+    }
+
+    @Override
+    public void endLevel(   int startId, String startImageFileName,
+                            int destinationId, String destinationImageFileName,
+                            int money, int numPolice, int numBandits, int numZombies) throws IOException
+    {
+        if ((intersectionsWritten != numIntersections) || (roadsWritten != numRoads) || footerWritten)
+            throw new IOException("Level footer was not expected");
+        try
+        {
+            writeEmpty("start_intersection", "id", Integer.toString(startId), "image", nonNull(startImageFileName));
+            writeEmpty("destination_intersection", "id", Integer.toString(destinationId), "image", nonNull(destinationImageFileName));
+            writeEmpty("money", "amount", Integer.toString(money), null, null);
+            writeEmpty("police", "num", Integer.toString(numPolice), null, null);
+            writeEmpty("bandits", "num", Integer.toString(numBandits), null, null);
+            writeEmpty("zombies", "num", Integer.toString(numZombies), null, null);
+            writer.writeCharacters("\n");
+            writer.writeEndElement();
+            writer.writeCharacters("\n");
+            writer.writeEndDocument();
+            footerWritten = true;
+        }
+        catch(XMLStreamException xse)
+        {
+            throw new IOException(xse.getMessage(), xse);
+        }
+    }
+
+    /**
+     * Flushes and closes the stream being written to.
+     *
+     * @throws IOException If the level is incomplete, though the stream
+     * is closed anyway.
+     */
+    public void close() throws IOException
+    {
+        try
+        {
+            writer.close();
+        }
+        catch(XMLStreamException xse)
+        {
+            // WE STILL CLOSE THE STREAM BELOW
+        }
+        out.close();
+        if (!footerWritten)
+            throw new IOException("Level closed before it was completely written");
+    }
+
+    // PRIVATE HELPER METHOD FOR OPENING THE ELEMENT HOLDING A LIST OF
+    // INTERSECTIONS OR ROADS, CLOSING IT RIGHT AWAY IF IT WILL BE EMPTY
+    private void startList(String listName, int numItems) throws XMLStreamException
+    {
+        indent(1);
+        if (numItems == 0)
+        {
+            writer.writeEmptyElement(listName);
+            return;
+        }
+        writer.writeStartElement(listName);
+    }
+
+    // PRIVATE HELPER METHOD FOR CLOSING A LIST OPENED BY startList
+    private void endList() throws XMLStreamException
+    {
+        indent(1);
+        writer.writeEndElement();
+    }
+
+    // PRIVATE HELPER METHOD FOR WRITING AN ELEMENT WITH NOTHING BUT ONE
+    // OR TWO ATTRIBUTES, ONE LEVEL IN
+    private void writeEmpty(String elementName, String name1, String value1, String name2, String value2)
+            throws XMLStreamException
+    {
+        indent(1);
+        writer.writeEmptyElement(elementName);
+        writer.writeAttribute(name1, value1);
+        if (name2 != null)
+            writer.writeAttribute(name2, value2);
+    }
+
+    // PRIVATE HELPER METHOD FOR STARTING A NEW LINE depth LEVELS IN
+    private void indent(int depth) throws XMLStreamException
+    {
+        writer.writeCharacters("\n");
+        for (int i = 0; i < depth; i++)
+        {
+            writer.writeCharacters(INDENT);
+        }
+    }
+
+    // PRIVATE HELPER METHOD, SINCE ATTRIBUTES CAN'T BE null
+    private static String nonNull(String text)
+    {
+        return (text == null) ? "" : text;
+    }
+}
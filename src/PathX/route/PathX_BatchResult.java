@@ -0,0 +1,79 @@
+package PathX.route;
+
+/**
+ * This class holds the routes found by a batch of searches, all packed
+ * into flat arrays. The intersections of route i are found at positions
+ * getRouteStart(i) up to getRouteStart(i) + getRouteLength(i) of the
+ * nodes array, and the road leaving each of them, except the last, is at
+ * the same position of the roads array. A route of length 0 means there
+ * was no way through.
+ *
+ * Note that results may be handed back to PathX_BatchRouter to be
+ * refilled, so batches done every frame don't allocate once warmed up.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_BatchResult
+{
+    // WHERE EACH ROUTE STARTS IN nodes AND roads, WITH ONE EXTRA
+    // ENTRY AT THE END MARKING WHERE THE LAST ROUTE ENDS
+    int[] offsets;
+
+    // ALL THE ROUTES, ONE AFTER THE OTHER
+    int[] nodes;
+    int[] roads;
+
+    // HOW LONG EACH ROUTE TAKES TO DRIVE
+    double[] travelTimes;
+
+    // THE NUMBER OF ROUTES IN THIS RESULT
+    int numRoutes;
+
+    /**
+     * Constructs an empty result.
+     */
+    public PathX_BatchResult()
+    {
+        offsets = new int[1];
+        nodes = new int[0];
+        roads = new int[0];
+        travelTimes = new double[0];
+    }
+
+    // ACCESSOR METHODS
+    public int      getNumRoutes()              {   return numRoutes;                           }
+    public int[]    getNodes()                  {   return nodes;                               }
+    public int[]    getRoads()                  {   return roads;                               }
+    public int      getRouteStart(int route)    {   return offsets[route];                      }
+    public int      getRouteLength(int route)   {   return offsets[route + 1] - offsets[route]; }
+    public boolean  hasRoute(int route)         {   return offsets[route + 1] > offsets[route]; }
+    public double   getTravelTime(int route)    {   return travelTimes[route];                  }
+
+    /**
+     * Makes room for numRoutes routes, throwing away whatever this
+     * result held before.
+     */
+    void reset(int initNumRoutes)
+    {
+        numRoutes = initNumRoutes;
+        if (offsets.length < numRoutes + 1)
+        {
+            offsets = new int[numRoutes + 1];
+            travelTimes = new double[numRoutes];
+        }
+    }
+
+    /**
+     * Makes room for totalNodes intersections in all, throwing away
+     * whatever routes this result held before.
+     */
+    void ensureNodeCapacity(int totalNodes)
+    {
+        if (nodes.length < totalNodes)
+        {
+            int newSize = Math.max(totalNodes, nodes.length + (nodes.length >> 1));
+            nodes = new int[newSize];
+            roads = new int[newSize];
+        }
+    }
+}
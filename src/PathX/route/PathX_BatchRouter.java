@@ -0,0 +1,251 @@
+package PathX.route;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import PathX.PathX_Intersection;
+import PathX.PathX_RoadGraph;
+
+/**
+ * This class finds routes for many (source, target) pairs at once, like
+ * one for every car in a level, by splitting them into chunks that are
+ * searched in parallel on a fork/join pool. Every worker thread searches
+ * with its own PathX_SearchState, and the routes are packed into a
+ * PathX_BatchResult.
+ *
+ * When built on a PathX_HierarchyRouter the searches use its contraction
+ * hierarchy while it's current, and A* otherwise.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_BatchRouter
+{
+    // HOW MANY PAIRS ONE TASK SEARCHES BEFORE IT STOPS SPLITTING
+    private static final int CHUNK_SIZE = 16;
+
+    // WHAT WE SEARCH WITH
+    private PathX_Router router;
+    private PathX_HierarchyRouter hierarchyRouter;
+    private ForkJoinPool pool;
+
+    // EACH CHUNK'S ROUTES, KEPT BETWEEN BATCHES SO THEY CAN BE REUSED
+    private int[][] chunkNodes;
+    private int[][] chunkRoads;
+
+    // THE BATCH BEING SEARCHED
+    private PathX_RoadCosts batchCosts;
+    private PathX_ContractionHierarchy batchHierarchy;
+    private int[] batchPairs;
+    private PathX_BatchResult batchResult;
+
+    /**
+     * Constructs a batch router that searches with A* using one worker
+     * thread per processor.
+     */
+    public PathX_BatchRouter(PathX_Router initRouter)
+    {
+        this(initRouter, null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a batch router that searches with the hierarchy router
+     * argument using one worker thread per processor.
+     */
+    public PathX_BatchRouter(PathX_HierarchyRouter initHierarchyRouter)
+    {
+        this(initHierarchyRouter.getRouter(), initHierarchyRouter, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a batch router with parallelism worker threads, which
+     * uses initHierarchyRouter when it's not null.
+     */
+    public PathX_BatchRouter(PathX_Router initRouter, PathX_HierarchyRouter initHierarchyRouter, int parallelism)
+    {
+        router = initRouter;
+        hierarchyRouter = initHierarchyRouter;
+        pool = new ForkJoinPool(parallelism);
+        chunkNodes = new int[0][];
+        chunkRoads = new int[0][];
+    }
+
+    // ACCESSOR METHODS
+    public PathX_Router getRouter()         {   return router;                  }
+    public int          getParallelism()    {   return pool.getParallelism();   }
+
+    /**
+     * Stops the worker threads. The batch router may not be used after.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Finds the fastest route for each of the first numPairs pairs of
+     * intersection indices in pairs, which holds them as source0, target0,
+     * source1, target1 and so on, leaving them in result.
+     *
+     * @return The result argument, refilled, or a new result if it's null.
+     */
+    public synchronized PathX_BatchResult route(int[] pairs, int numPairs, PathX_BatchResult result)
+    {
+        if (result == null)
+            result = new PathX_BatchResult();
+        result.reset(numPairs);
+
+        // EVERY SEARCH IN THE BATCH USES THE SAME VIEW OF THE LEVEL
+        batchCosts = router.getCosts();
+        batchHierarchy = null;
+        if ((hierarchyRouter != null) && hierarchyRouter.isHierarchyCurrent())
+            batchHierarchy = hierarchyRouter.getHierarchy();
+        batchPairs = pairs;
+        batchResult = result;
+
+        int numChunks = (numPairs + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (chunkNodes.length < numChunks)
+        {
+            int[][] newNodes = new int[numChunks][];
+            int[][] newRoads = new int[numChunks][];
+            System.arraycopy(chunkNodes, 0, newNodes, 0, chunkNodes.length);
+            System.arraycopy(chunkRoads, 0, newRoads, 0, chunkRoads.length);
+            chunkNodes = newNodes;
+            chunkRoads = newRoads;
+        }
+
+        // SEARCH ALL THE CHUNKS, WHICH ISN'T WORTH HANDING TO THE
+        // POOL WHEN THERE IS ONLY ONE OF THEM
+        if (numChunks == 1)
+            searchChunk(0, numPairs);
+        else if (numChunks > 1)
+            pool.invoke(new ChunkTask(0, numChunks, numPairs));
+
+        // EACH ROUTE'S LENGTH WAS LEFT WHERE ITS OFFSET GOES, SO ADD
+        // THEM UP AND THEN COPY THE CHUNKS' ROUTES INTO PLACE
+        int[] offsets = result.offsets;
+        offsets[0] = 0;
+        for (int i = 0; i < numPairs; i++)
+        {
+            offsets[i + 1] += offsets[i];
+        }
+        result.ensureNodeCapacity(offsets[numPairs]);
+        for (int chunk = 0; chunk < numChunks; chunk++)
+        {
+            int chunkStart = offsets[chunk * CHUNK_SIZE];
+            int chunkEnd = offsets[Math.min((chunk + 1) * CHUNK_SIZE, numPairs)];
+            System.arraycopy(chunkNodes[chunk], 0, result.nodes, chunkStart, chunkEnd - chunkStart);
+            System.arraycopy(chunkRoads[chunk], 0, result.roads, chunkStart, chunkEnd - chunkStart);
+        }
+
+        batchCosts = null;
+        batchHierarchy = null;
+        batchPairs = null;
+        batchResult = null;
+        return result;
+    }
+
+    /**
+     * Finds the fastest route from each intersection in sources to the
+     * intersection at the same position in targets.
+     *
+     * @return The result argument, refilled, or a new result if it's null.
+     */
+    public PathX_BatchResult route( ArrayList<PathX_Intersection> sources,
+                                    ArrayList<PathX_Intersection> targets,
+                                    PathX_BatchResult result)
+    {
+        PathX_RoadGraph graph = router.getCosts().getGraph();
+        int numPairs = Math.min(sources.size(), targets.size());
+        int[] pairs = new int[numPairs * 2];
+        for (int i = 0; i < numPairs; i++)
+        {
+            pairs[i * 2] = graph.indexOf(sources.get(i));
+            pairs[(i * 2) + 1] = graph.indexOf(targets.get(i));
+        }
+        return route(pairs, numPairs, result);
+    }
+
+    // PRIVATE HELPER METHOD FOR SEARCHING ONE CHUNK OF THE BATCH, WHICH
+    // LEAVES ITS ROUTES IN THE CHUNK'S OWN BUFFERS
+    private void searchChunk(int chunk, int numPairs)
+    {
+        PathX_SearchState state = router.getSearchState();
+        PathX_BatchResult result = batchResult;
+        int firstPair = chunk * CHUNK_SIZE;
+        int lastPair = Math.min(firstPair + CHUNK_SIZE, numPairs);
+        int[] nodes = chunkNodes[chunk];
+        int[] roads = chunkRoads[chunk];
+        if (nodes == null)
+        {
+            nodes = new int[64];
+            roads = new int[64];
+        }
+
+        int used = 0;
+        for (int i = firstPair; i < lastPair; i++)
+        {
+            int source = batchPairs[i * 2];
+            int target = batchPairs[(i * 2) + 1];
+            boolean found;
+            if (batchHierarchy != null)
+                found = batchHierarchy.search(source, target, state);
+            else
+                found = PathX_Router.search(batchCosts, source, target, state);
+
+            int length = found ? state.getPathLength() : 0;
+            if (used + length > nodes.length)
+            {
+                int newSize = Math.max(used + length, nodes.length * 2);
+                int[] newNodes = new int[newSize];
+                int[] newRoads = new int[newSize];
+                System.arraycopy(nodes, 0, newNodes, 0, used);
+                System.arraycopy(roads, 0, newRoads, 0, used);
+                nodes = newNodes;
+                roads = newRoads;
+            }
+            for (int j = 0; j < length; j++)
+            {
+                nodes[used + j] = state.getPathNode(j);
+                roads[used + j] = (j < length - 1) ? state.getPathRoad(j) : -1;
+            }
+            used += length;
+            result.offsets[i + 1] = length;
+            result.travelTimes[i] = found ? state.getPathTime() : Double.POSITIVE_INFINITY;
+        }
+        chunkNodes[chunk] = nodes;
+        chunkRoads[chunk] = roads;
+    }
+
+    /**
+     * A task that searches a range of chunks, splitting it in half and
+     * handing one half to another worker until it's down to one chunk.
+     */
+    private class ChunkTask extends RecursiveAction
+    {
+        // RecursiveAction IS SERIALIZABLE, THOUGH THESE NEVER ARE
+        private static final long serialVersionUID = 1L;
+
+        private int firstChunk;
+        private int lastChunk;
+        private int numPairs;
+
+        ChunkTask(int initFirstChunk, int initLastChunk, int initNumPairs)
+        {
+            firstChunk = initFirstChunk;
+            lastChunk = initLastChunk;
+            numPairs = initNumPairs;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (lastChunk - firstChunk == 1)
+            {
+                searchChunk(firstChunk, numPairs);
+                return;
+            }
+            int middle = (firstChunk + lastChunk) >>> 1;
+            invokeAll(new ChunkTask(firstChunk, middle, numPairs), new ChunkTask(middle, lastChunk, numPairs));
+        }
+    }
+}
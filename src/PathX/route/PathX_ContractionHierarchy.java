@@ -0,0 +1,559 @@
+package PathX.route;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import PathX.PathX_Intersection;
+import PathX.PathX_Road;
+import PathX.PathX_RoadGraph;
+
+/**
+ * This class is a contraction hierarchy for a level's road graph, as
+ * built by PathX_HierarchyBuilder. Every intersection has a rank and only
+ * edges leading to higher ranked intersections are kept, some of which
+ * are shortcuts standing for a chain of real roads. A route search then
+ * only ever climbs, from the source in the forward direction and from
+ * the target in the backward direction, and the two meet at the top,
+ * which settles far fewer intersections than A* does on large levels.
+ *
+ * Note that a hierarchy describes the graph as it was when it was built,
+ * including which intersections were open, so PathX_HierarchyRouter only
+ * uses it while the level hasn't changed since.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_ContractionHierarchy
+{
+    // USED TO RECOGNIZE HIERARCHY FILES AND THEIR FORMAT
+    private static final int FILE_MAGIC = 0x50584348;
+    private static final int FILE_VERSION = 1;
+
+    // THE GRAPH THIS HIERARCHY WAS BUILT FOR
+    private PathX_RoadGraph graph;
+    private long fingerprint;
+
+    // THE CONTRACTION ORDER OF EACH INTERSECTION
+    private int[] ranks;
+
+    // UPWARD EDGES LEAVING EACH INTERSECTION, CSR STYLE LIKE IN
+    // PathX_RoadGraph. A SHORTCUT HAS THE INTERSECTION IT SKIPS AS ITS
+    // MID AND -1 AS ITS ROAD, A REAL ROAD HAS -1 AS ITS MID
+    private int[] fwdOffsets;
+    private int[] fwdOwners;
+    private int[] fwdTargets;
+    private double[] fwdWeights;
+    private int[] fwdMids;
+    private int[] fwdRoads;
+
+    // UPWARD EDGES ENTERING EACH INTERSECTION, FOR THE BACKWARD SEARCH
+    private int[] bwdOffsets;
+    private int[] bwdOwners;
+    private int[] bwdSources;
+    private double[] bwdWeights;
+    private int[] bwdMids;
+    private int[] bwdRoads;
+
+    // EACH THREAD QUERIES WITH ITS OWN SCRATCH MEMORY
+    private ThreadLocal<QueryContext> queryContexts;
+
+    /**
+     * Constructs a hierarchy from the per-intersection upward edge lists
+     * produced by PathX_HierarchyBuilder, packing them into flat arrays.
+     */
+    PathX_ContractionHierarchy( PathX_RoadGraph initGraph, int[] initRanks,
+                                int[] fwdCounts, int[][] fwdTargetLists, double[][] fwdWeightLists,
+                                int[][] fwdMidLists, int[][] fwdRoadLists,
+                                int[] bwdCounts, int[][] bwdSourceLists, double[][] bwdWeightLists,
+                                int[][] bwdMidLists, int[][] bwdRoadLists)
+    {
+        this(initGraph, computeFingerprint(initGraph), initRanks);
+        int numIntersections = ranks.length;
+        allocateEdges(offsetsFor(fwdCounts), offsetsFor(bwdCounts));
+        for (int i = 0; i < numIntersections; i++)
+        {
+            for (int j = 0; j < fwdCounts[i]; j++)
+            {
+                int e = fwdOffsets[i] + j;
+                fwdTargets[e] = fwdTargetLists[i][j];
+                fwdWeights[e] = fwdWeightLists[i][j];
+                fwdMids[e] = fwdMidLists[i][j];
+                fwdRoads[e] = fwdRoadLists[i][j];
+            }
+            for (int j = 0; j < bwdCounts[i]; j++)
+            {
+                int e = bwdOffsets[i] + j;
+                bwdSources[e] = bwdSourceLists[i][j];
+                bwdWeights[e] = bwdWeightLists[i][j];
+                bwdMids[e] = bwdMidLists[i][j];
+                bwdRoads[e] = bwdRoadLists[i][j];
+            }
+        }
+    }
+
+    // PRIVATE CONSTRUCTOR SHARED BY BUILDING AND LOADING
+    private PathX_ContractionHierarchy(PathX_RoadGraph initGraph, long initFingerprint, int[] initRanks)
+    {
+        graph = initGraph;
+        fingerprint = initFingerprint;
+        ranks = initRanks;
+        queryContexts = new ThreadLocal<QueryContext>()
+        {
+            @Override
+            protected QueryContext initialValue()
+            {
+                return new QueryContext(ranks.length);
+            }
+        };
+    }
+
+    // PRIVATE HELPER METHOD FOR TURNING EDGE COUNTS INTO CSR OFFSETS
+    private static int[] offsetsFor(int[] counts)
+    {
+        int[] offsets = new int[counts.length + 1];
+        for (int i = 0; i < counts.length; i++)
+        {
+            offsets[i + 1] = offsets[i] + counts[i];
+        }
+        return offsets;
+    }
+
+    // PRIVATE HELPER METHOD FOR MAKING ROOM FOR ALL THE EDGES
+    private void allocateEdges(int[] initFwdOffsets, int[] initBwdOffsets)
+    {
+        fwdOffsets = initFwdOffsets;
+        int numFwd = fwdOffsets[fwdOffsets.length - 1];
+        fwdOwners = new int[numFwd];
+        fwdTargets = new int[numFwd];
+        fwdWeights = new double[numFwd];
+        fwdMids = new int[numFwd];
+        fwdRoads = new int[numFwd];
+        bwdOffsets = initBwdOffsets;
+        int numBwd = bwdOffsets[bwdOffsets.length - 1];
+        bwdOwners = new int[numBwd];
+        bwdSources = new int[numBwd];
+        bwdWeights = new double[numBwd];
+        bwdMids = new int[numBwd];
+        bwdRoads = new int[numBwd];
+
+        // THE INTERSECTION EACH EDGE IS STORED WITH FOLLOWS FROM THE OFFSETS
+        for (int i = 0; i < ranks.length; i++)
+        {
+            for (int e = fwdOffsets[i]; e < fwdOffsets[i + 1]; e++)
+            {
+                fwdOwners[e] = i;
+            }
+            for (int e = bwdOffsets[i]; e < bwdOffsets[i + 1]; e++)
+            {
+                bwdOwners[e] = i;
+            }
+        }
+    }
+
+    // ACCESSOR METHODS
+    public PathX_RoadGraph  getGraph()          {   return graph;                                   }
+    public long             getFingerprint()    {   return fingerprint;                             }
+    public int              getRank(int id)     {   return ranks[id];                               }
+    public int              getNumEdges()       {   return fwdTargets.length + bwdSources.length;   }
+
+    /**
+     * Finds the fastest route between the intersections with indices
+     * source and target, leaving it in the state argument just like
+     * PathX_Router.search does.
+     *
+     * @return true if there is a route, false otherwise.
+     */
+    public boolean search(int source, int target, PathX_SearchState state)
+    {
+        int numIntersections = ranks.length;
+        state.ensureCapacity(numIntersections);
+        state.begin();
+        if ((source < 0) || (target < 0) || (source >= numIntersections) || (target >= numIntersections))
+            return false;
+        if (source == target)
+        {
+            state.setTime(source, 0.0, -1, -1);
+            state.buildPath(source);
+            return true;
+        }
+
+        // START BOTH SEARCHES
+        QueryContext context = queryContexts.get();
+        PathX_SearchState forward = context.forward;
+        PathX_SearchState backward = context.backward;
+        forward.begin();
+        backward.begin();
+        forward.setTime(source, 0.0, -1, -1);
+        forward.openList.put(source, 0.0, 0.0);
+        backward.setTime(target, 0.0, -1, -1);
+        backward.openList.put(target, 0.0, 0.0);
+
+        // AND TAKE TURNS CLIMBING UNTIL NEITHER CAN BEAT THE BEST MEETING
+        double bestTime = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        boolean forwardTurn = true;
+        while (true)
+        {
+            boolean forwardDone = forward.openList.isEmpty() || (forward.openList.peekKey1() >= bestTime);
+            boolean backwardDone = backward.openList.isEmpty() || (backward.openList.peekKey1() >= bestTime);
+            if (forwardDone && backwardDone)
+                break;
+            if (forwardDone)
+                forwardTurn = false;
+            else if (backwardDone)
+                forwardTurn = true;
+
+            if (forwardTurn)
+            {
+                int current = forward.openList.poll();
+                double currentTime = forward.bestTimes[current];
+                double total = currentTime + backward.getTime(current);
+                if (total < bestTime)
+                {
+                    bestTime = total;
+                    meeting = current;
+                }
+                for (int e = fwdOffsets[current]; e < fwdOffsets[current + 1]; e++)
+                {
+                    int next = fwdTargets[e];
+                    double time = currentTime + fwdWeights[e];
+                    if (time < forward.getTime(next))
+                    {
+                        forward.setTime(next, time, current, e);
+                        forward.openList.put(next, time, time);
+                    }
+                }
+            }
+            else
+            {
+                int current = backward.openList.poll();
+                double currentTime = backward.bestTimes[current];
+                double total = currentTime + forward.getTime(current);
+                if (total < bestTime)
+                {
+                    bestTime = total;
+                    meeting = current;
+                }
+                for (int e = bwdOffsets[current]; e < bwdOffsets[current + 1]; e++)
+                {
+                    int next = bwdSources[e];
+                    double time = currentTime + bwdWeights[e];
+                    if (time < backward.getTime(next))
+                    {
+                        backward.setTime(next, time, current, e);
+                        backward.openList.put(next, time, time);
+                    }
+                }
+            }
+            forwardTurn = !forwardTurn;
+        }
+
+        if (meeting < 0)
+            return false;
+        unpackRoute(context, source, meeting, bestTime, state);
+        return true;
+    }
+
+    // PRIVATE HELPER METHOD FOR TURNING THE TWO HALVES OF A ROUTE, WHICH
+    // MAY BE MADE OF SHORTCUTS, INTO THE REAL ROADS THEY STAND FOR
+    private void unpackRoute(QueryContext context, int source, int meeting, double time, PathX_SearchState state)
+    {
+        // PUSH THE EDGES SO THE FIRST ONE ENDS UP ON TOP. BACKWARD EDGES
+        // ARE STORED COMPLEMENTED SO THE TWO KINDS CAN SHARE ONE STACK.
+        // THE BACKWARD PARENT LINKS RUN TOWARDS THE TARGET, SO THAT HALF
+        // IS REVERSED, WHILE THE FORWARD ONES ALREADY RUN THE RIGHT WAY
+        context.stackSize = 0;
+        for (int id = meeting; context.backward.parents[id] >= 0; id = context.backward.parents[id])
+        {
+            context.push(~context.backward.parentRoads[id]);
+        }
+        context.reverse();
+        for (int id = meeting; context.forward.parents[id] >= 0; id = context.forward.parents[id])
+        {
+            context.push(context.forward.parentRoads[id]);
+        }
+
+        // NOW POP THEM, SPLITTING SHORTCUTS INTO THEIR TWO HALVES
+        context.pathSize = 0;
+        context.appendNode(source, -1);
+        while (context.stackSize > 0)
+        {
+            int edge = context.stack[--context.stackSize];
+            int from, to, mid, road;
+            if (edge >= 0)
+            {
+                from = fwdOwners[edge];
+                to = fwdTargets[edge];
+                mid = fwdMids[edge];
+                road = fwdRoads[edge];
+            }
+            else
+            {
+                from = bwdSources[~edge];
+                to = bwdOwners[~edge];
+                mid = bwdMids[~edge];
+                road = bwdRoads[~edge];
+            }
+
+            if (mid < 0)
+            {
+                context.appendNode(to, road);
+            }
+            else
+            {
+                // BOTH HALVES LEAD UP TO from AND to FROM mid, WHICH WAS
+                // CONTRACTED FIRST, SO THEY ARE STORED WITH mid
+                context.push(findForwardEdge(mid, to));
+                context.push(~findBackwardEdge(mid, from));
+            }
+        }
+        state.setPath(context.pathNodes, context.pathRoads, context.pathSize, time);
+    }
+
+    // PRIVATE HELPER METHOD FOR FINDING THE UPWARD EDGE from -> to
+    private int findForwardEdge(int from, int to)
+    {
+        for (int e = fwdOffsets[from]; e < fwdOffsets[from + 1]; e++)
+        {
+            if (fwdTargets[e] == to)
+                return e;
+        }
+        throw new IllegalStateException("Missing hierarchy edge " + from + " -> " + to);
+    }
+
+    // PRIVATE HELPER METHOD FOR FINDING THE UPWARD EDGE INTO to FROM from
+    private int findBackwardEdge(int to, int from)
+    {
+        for (int e = bwdOffsets[to]; e < bwdOffsets[to + 1]; e++)
+        {
+            if (bwdSources[e] == from)
+                return e;
+        }
+        throw new IllegalStateException("Missing hierarchy edge " + from + " -> " + to);
+    }
+
+    /**
+     * Writes this hierarchy to hierarchyFile so it doesn't have to be
+     * built again the next time the level is played.
+     */
+    public void save(File hierarchyFile) throws IOException
+    {
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(hierarchyFile)));
+        try
+        {
+            dos.writeInt(FILE_MAGIC);
+            dos.writeInt(FILE_VERSION);
+            dos.writeLong(fingerprint);
+            dos.writeInt(ranks.length);
+            for (int i = 0; i < ranks.length; i++)
+            {
+                dos.writeInt(ranks[i]);
+            }
+            saveOffsets(dos, fwdOffsets);
+            saveOffsets(dos, bwdOffsets);
+            saveEdges(dos, fwdTargets, fwdWeights, fwdMids, fwdRoads);
+            saveEdges(dos, bwdSources, bwdWeights, bwdMids, bwdRoads);
+        }
+        finally
+        {
+            dos.close();
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR WRITING A CSR OFFSETS ARRAY
+    private void saveOffsets(DataOutputStream dos, int[] offsets) throws IOException
+    {
+        for (int i = 0; i < offsets.length; i++)
+        {
+            dos.writeInt(offsets[i]);
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR WRITING ONE DIRECTION'S EDGES
+    private void saveEdges(DataOutputStream dos, int[] ends, double[] weights, int[] mids, int[] roads)
+            throws IOException
+    {
+        for (int e = 0; e < ends.length; e++)
+        {
+            dos.writeInt(ends[e]);
+            dos.writeDouble(weights[e]);
+            dos.writeInt(mids[e]);
+            dos.writeInt(roads[e]);
+        }
+    }
+
+    /**
+     * Reads the hierarchy stored in hierarchyFile for the graph argument.
+     *
+     * @return The hierarchy, or null if there is no such file or it was
+     * built for a different version of the graph.
+     *
+     * @throws IOException If the file exists but can't be read.
+     */
+    public static PathX_ContractionHierarchy load(File hierarchyFile, PathX_RoadGraph graph) throws IOException
+    {
+        if (!hierarchyFile.exists())
+            return null;
+
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(hierarchyFile)));
+        try
+        {
+            if (dis.readInt() != FILE_MAGIC)
+                throw new IOException(hierarchyFile + " is not a hierarchy file");
+            if (dis.readInt() != FILE_VERSION)
+                return null;
+
+            // A HIERARCHY FOR ANY OTHER GRAPH IS NO USE TO US
+            long fileFingerprint = dis.readLong();
+            int numIntersections = dis.readInt();
+            if ((fileFingerprint != computeFingerprint(graph)) || (numIntersections != graph.getNumIntersections()))
+                return null;
+
+            int[] ranks = new int[numIntersections];
+            for (int i = 0; i < numIntersections; i++)
+            {
+                ranks[i] = dis.readInt();
+            }
+            PathX_ContractionHierarchy hierarchy = new PathX_ContractionHierarchy(graph, fileFingerprint, ranks);
+            hierarchy.allocateEdges(loadOffsets(dis, numIntersections), loadOffsets(dis, numIntersections));
+            loadEdges(dis, hierarchy.fwdTargets, hierarchy.fwdWeights, hierarchy.fwdMids, hierarchy.fwdRoads);
+            loadEdges(dis, hierarchy.bwdSources, hierarchy.bwdWeights, hierarchy.bwdMids, hierarchy.bwdRoads);
+            return hierarchy;
+        }
+        finally
+        {
+            dis.close();
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR READING A CSR OFFSETS ARRAY
+    private static int[] loadOffsets(DataInputStream dis, int numIntersections) throws IOException
+    {
+        int[] offsets = new int[numIntersections + 1];
+        for (int i = 0; i <= numIntersections; i++)
+        {
+            offsets[i] = dis.readInt();
+        }
+        return offsets;
+    }
+
+    // PRIVATE HELPER METHOD FOR READING ONE DIRECTION'S EDGES
+    private static void loadEdges(DataInputStream dis, int[] ends, double[] weights, int[] mids, int[] roads)
+            throws IOException
+    {
+        for (int e = 0; e < ends.length; e++)
+        {
+            ends[e] = dis.readInt();
+            weights[e] = dis.readDouble();
+            mids[e] = dis.readInt();
+            roads[e] = dis.readInt();
+        }
+    }
+
+    /**
+     * Computes a fingerprint of everything about the graph argument that
+     * a hierarchy depends on, namely where its intersections are, which
+     * of them are open, and how its roads connect them.
+     */
+    public static long computeFingerprint(PathX_RoadGraph graph)
+    {
+        // 64 BIT FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, graph.getNumIntersections());
+        for (int i = 0; i < graph.getNumIntersections(); i++)
+        {
+            PathX_Intersection intersection = graph.getIntersection(i);
+            hash = mix(hash, intersection.x);
+            hash = mix(hash, intersection.y);
+            hash = mix(hash, intersection.isOpen() ? 1 : 0);
+        }
+        hash = mix(hash, graph.getNumRoads());
+        for (int i = 0; i < graph.getNumRoads(); i++)
+        {
+            PathX_Road road = graph.getRoad(i);
+            hash = mix(hash, graph.getRoadNode1(i));
+            hash = mix(hash, graph.getRoadNode2(i));
+            hash = mix(hash, road.isOneWay() ? 1 : 0);
+            hash = mix(hash, road.getSpeedLimit());
+        }
+        return hash;
+    }
+
+    // PRIVATE HELPER METHOD FOR ADDING THE 4 BYTES OF value TO A HASH
+    private static long mix(long hash, int value)
+    {
+        for (int i = 0; i < 4; i++)
+        {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * The scratch memory one thread needs for querying, which is a search
+     * state for each direction plus room for unpacking routes.
+     */
+    private static class QueryContext
+    {
+        PathX_SearchState forward;
+        PathX_SearchState backward;
+        int[] stack;
+        int stackSize;
+        int[] pathNodes;
+        int[] pathRoads;
+        int pathSize;
+
+        QueryContext(int capacity)
+        {
+            forward = new PathX_SearchState(capacity);
+            backward = new PathX_SearchState(capacity);
+            stack = new int[64];
+            pathNodes = new int[64];
+            pathRoads = new int[64];
+        }
+
+        void push(int edge)
+        {
+            if (stackSize == stack.length)
+            {
+                int[] newStack = new int[stackSize * 2];
+                System.arraycopy(stack, 0, newStack, 0, stackSize);
+                stack = newStack;
+            }
+            stack[stackSize++] = edge;
+        }
+
+        // REVERSES THE ORDER OF THE WHOLE STACK
+        void reverse()
+        {
+            for (int i = 0, j = stackSize - 1; i < j; i++, j--)
+            {
+                int temp = stack[i];
+                stack[i] = stack[j];
+                stack[j] = temp;
+            }
+        }
+
+        // ADDS AN INTERSECTION TO THE ROUTE, ALONG WITH THE ROAD TO IT
+        void appendNode(int id, int road)
+        {
+            if (pathSize == pathNodes.length)
+            {
+                int[] newNodes = new int[pathSize * 2];
+                int[] newRoads = new int[pathSize * 2];
+                System.arraycopy(pathNodes, 0, newNodes, 0, pathSize);
+                System.arraycopy(pathRoads, 0, newRoads, 0, pathSize);
+                pathNodes = newNodes;
+                pathRoads = newRoads;
+            }
+            if (pathSize > 0)
+                pathRoads[pathSize - 1] = road;
+            pathNodes[pathSize++] = id;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package PathX.route;
+
+import java.util.Arrays;
+import PathX.PathX_Intersection;
+import PathX.PathX_RoadGraph;
+
+/**
+ * This class keeps the fastest route between two intersections up to date
+ * as intersections are opened and closed, using Lifelong Planning A*
+ * (LPA*). Rather than searching again from scratch after a toggle, it
+ * remembers the travel times of its last search and only revisits the
+ * intersections whose times were affected, which is usually a small
+ * part of the graph.
+ *
+ * Note that routes are made and kept current by PathX_DynamicRouter,
+ * and each one keeps a few arrays as long as the level's graph, so they
+ * should be released when no longer needed.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_DynamicRoute
+{
+    // THE ROUTER THAT KEEPS THIS ROUTE UP TO DATE
+    private PathX_DynamicRouter router;
+
+    // THE COSTS OF THE GRAPH WE ARE SEARCHING
+    private PathX_RoadCosts costs;
+
+    // THE TWO ENDS OF THE ROUTE
+    private PathX_Intersection start;
+    private PathX_Intersection end;
+    private int source;
+    private int target;
+
+    // g IS THE TRAVEL TIME FOUND FOR EACH INTERSECTION, rhs IS WHAT IT
+    // SHOULD BE ACCORDING TO ITS NEIGHBORS. WHERE THEY DIFFER THE
+    // INTERSECTION IS INCONSISTENT AND WAITS IN THE QUEUE
+    private double[] g;
+    private double[] rhs;
+    private PathX_IndexedHeap queue;
+
+    // true WHEN SOMETHING CHANGED SINCE THE LAST REPAIR
+    private boolean dirty;
+
+    // THE CURRENT ROUTE, AS INTERSECTION AND ROAD INDICES
+    private int[] pathNodes;
+    private int[] pathRoads;
+    private int pathLength;
+    private double pathTime;
+
+    // HOW MANY INTERSECTIONS THE LAST REPAIR HAD TO REVISIT
+    private int lastRepairExpansions;
+
+    /**
+     * Constructs a route between start and end through the graph the
+     * costs argument belongs to. Note the route is not searched for
+     * until it is first repaired.
+     */
+    PathX_DynamicRoute( PathX_DynamicRouter initRouter,
+                        PathX_RoadCosts initCosts,
+                        PathX_Intersection initStart,
+                        PathX_Intersection initEnd)
+    {
+        router = initRouter;
+        start = initStart;
+        end = initEnd;
+        pathNodes = new int[16];
+        pathRoads = new int[16];
+        queue = new PathX_IndexedHeap(0);
+        reset(initCosts);
+    }
+
+    // ACCESSOR METHODS
+    public PathX_Intersection   getStart()                  {   return start;                   }
+    public PathX_Intersection   getEnd()                    {   return end;                     }
+    public int                  getSource()                 {   return source;                  }
+    public int                  getTarget()                 {   return target;                  }
+    public int                  getPathLength()             {   return pathLength;              }
+    public int                  getPathNode(int i)          {   return pathNodes[i];            }
+    public int                  getPathRoad(int i)          {   return pathRoads[i];            }
+    public double               getPathTime()               {   return pathTime;                }
+    public int                  getLastRepairExpansions()   {   return lastRepairExpansions;    }
+    public boolean              isDirty()                   {   return dirty;                   }
+
+    /**
+     * Brings this route up to date with all the intersection changes made
+     * since it was last repaired. This does nothing if nothing changed.
+     *
+     * @return true if there is currently a route, false otherwise.
+     */
+    public boolean repair()
+    {
+        router.checkCosts();
+        if (dirty)
+        {
+            computeShortestPath();
+            extractPath();
+            dirty = false;
+        }
+        return pathLength > 0;
+    }
+
+    /**
+     * Forgets everything and starts over on the graph the new costs belong
+     * to, which is needed when roads or intersections are added or removed.
+     */
+    void reset(PathX_RoadCosts newCosts)
+    {
+        costs = newCosts;
+        PathX_RoadGraph graph = costs.getGraph();
+        int numIntersections = graph.getNumIntersections();
+        if ((g == null) || (g.length < numIntersections))
+        {
+            g = new double[numIntersections];
+            rhs = new double[numIntersections];
+        }
+        Arrays.fill(g, Double.POSITIVE_INFINITY);
+        Arrays.fill(rhs, Double.POSITIVE_INFINITY);
+        queue.clear();
+        queue.ensureCapacity(numIntersections);
+        pathLength = 0;
+        pathTime = Double.POSITIVE_INFINITY;
+
+        // THE SEARCH GROWS OUT FROM THE SOURCE
+        source = graph.indexOf(start);
+        target = graph.indexOf(end);
+        if ((source >= 0) && (target >= 0))
+        {
+            rhs[source] = 0.0;
+            queue.put(source, costs.estimateTime(source, target), 0.0);
+        }
+        dirty = true;
+    }
+
+    /**
+     * Called when the intersection with index id has been opened or
+     * closed, which changes the cost of every road into it.
+     */
+    void intersectionChanged(int id)
+    {
+        if ((id < 0) || (source < 0) || (target < 0))
+            return;
+        updateVertex(id);
+        dirty = true;
+    }
+
+    // PRIVATE HELPER METHOD THAT RECOMPUTES rhs FOR id AND
+    // PUTS IT IN OR TAKES IT OUT OF THE QUEUE ACCORDINGLY
+    private void updateVertex(int id)
+    {
+        if (id != source)
+            rhs[id] = computeRhs(id);
+        if (g[id] != rhs[id])
+        {
+            double m = Math.min(g[id], rhs[id]);
+            queue.put(id, m + costs.estimateTime(id, target), m);
+        }
+        else
+        {
+            queue.remove(id);
+        }
+    }
+
+    // PRIVATE HELPER METHOD THAT FINDS THE BEST TIME TO id THROUGH
+    // ANY OF ITS NEIGHBORS. CLOSED INTERSECTIONS CAN'T BE ENTERED
+    private double computeRhs(int id)
+    {
+        if (!costs.isPassable(id))
+            return Double.POSITIVE_INFINITY;
+        PathX_RoadGraph graph = costs.getGraph();
+        double best = Double.POSITIVE_INFINITY;
+        for (int e = graph.getInStart(id); e < graph.getInEnd(id); e++)
+        {
+            double time = g[graph.getInSource(e)] + costs.getInEdgeTime(e);
+            if (time < best)
+                best = time;
+        }
+        return best;
+    }
+
+    // PRIVATE HELPER METHOD THAT PROCESSES INCONSISTENT INTERSECTIONS
+    // UNTIL THE TARGET'S TIME IS KNOWN TO BE CORRECT
+    private void computeShortestPath()
+    {
+        lastRepairExpansions = 0;
+        if ((source < 0) || (target < 0))
+            return;
+
+        PathX_RoadGraph graph = costs.getGraph();
+        while (!queue.isEmpty())
+        {
+            // STOP ONCE NOTHING IN THE QUEUE CAN IMPROVE THE TARGET
+            double targetMin = Math.min(g[target], rhs[target]);
+            double targetKey1 = targetMin + costs.estimateTime(target, target);
+            boolean topIsBetter = (queue.peekKey1() < targetKey1)
+                    || ((queue.peekKey1() == targetKey1) && (queue.peekKey2() < targetMin));
+            if (!topIsBetter && (g[target] == rhs[target]))
+                break;
+
+            int current = queue.poll();
+            lastRepairExpansions++;
+            if (g[current] > rhs[current])
+            {
+                // WE FOUND A FASTER WAY HERE
+                g[current] = rhs[current];
+            }
+            else
+            {
+                // THE OLD WAY HERE IS GONE, SO RECOMPUTE IT
+                g[current] = Double.POSITIVE_INFINITY;
+                updateVertex(current);
+            }
+
+            // EITHER WAY THE NEIGHBORS DOWNSTREAM ARE AFFECTED
+            for (int e = graph.getOutStart(current); e < graph.getOutEnd(current); e++)
+            {
+                updateVertex(graph.getOutTarget(e));
+            }
+        }
+    }
+
+    // PRIVATE HELPER METHOD THAT WALKS BACK FROM THE TARGET ALONG
+    // THE FASTEST NEIGHBORS TO BUILD THE ROUTE
+    private void extractPath()
+    {
+        pathLength = 0;
+        pathTime = Double.POSITIVE_INFINITY;
+        if ((source < 0) || (target < 0) || (g[target] == Double.POSITIVE_INFINITY))
+            return;
+
+        PathX_RoadGraph graph = costs.getGraph();
+        int maxLength = graph.getNumIntersections();
+        int length = 0;
+        int current = target;
+        pathNodes[length++] = current;
+        while (current != source)
+        {
+            // PICK THE NEIGHBOR WE MUST HAVE COME FROM, PREFERRING THE
+            // ONE CLOSER TO THE SOURCE WHEN ROADS HAVE NO LENGTH
+            int bestPrev = -1;
+            int bestRoad = -1;
+            double bestTime = Double.POSITIVE_INFINITY;
+            for (int e = graph.getInStart(current); e < graph.getInEnd(current); e++)
+            {
+                int prev = graph.getInSource(e);
+                double time = g[prev] + costs.getInEdgeTime(e);
+                if ((time < bestTime) || ((time == bestTime) && (bestPrev >= 0) && (g[prev] < g[bestPrev])))
+                {
+                    bestTime = time;
+                    bestPrev = prev;
+                    bestRoad = graph.getInRoad(e);
+                }
+            }
+            if ((bestPrev < 0) || (length >= maxLength))
+            {
+                // THIS SHOULD NEVER HAPPEN FOR A CONSISTENT SEARCH
+                pathLength = 0;
+                return;
+            }
+            if (length == pathNodes.length)
+            {
+                pathNodes = Arrays.copyOf(pathNodes, length * 2);
+                pathRoads = Arrays.copyOf(pathRoads, length * 2);
+            }
+            pathRoads[length - 1] = bestRoad;
+            pathNodes[length++] = bestPrev;
+            current = bestPrev;
+        }
+
+        // WE BUILT IT BACKWARDS, SO TURN IT AROUND
+        for (int i = 0, j = length - 1; i < j; i++, j--)
+        {
+            int temp = pathNodes[i];
+            pathNodes[i] = pathNodes[j];
+            pathNodes[j] = temp;
+        }
+        for (int i = 0, j = length - 2; i < j; i++, j--)
+        {
+            int temp = pathRoads[i];
+            pathRoads[i] = pathRoads[j];
+            pathRoads[j] = temp;
+        }
+        pathLength = length;
+        pathTime = g[target];
+    }
+}
@@ -0,0 +1,120 @@
+package PathX.route;
+
+import java.util.ArrayList;
+import PathX.PathX_Intersection;
+import PathX.PathX_Level;
+import PathX.PathX_LevelListener;
+
+/**
+ * This class manages routes that must stay correct while the player opens
+ * and closes intersections. It listens to the level, and when an
+ * intersection is toggled it marks the affected part of every route's
+ * search so that the next repair only redoes that part. If roads or
+ * intersections are added or removed, routes start over instead.
+ *
+ * Note that like the rest of the game data, this should only be used
+ * while holding the game's data lock.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_DynamicRouter implements PathX_LevelListener
+{
+    // PROVIDES THE COSTS FOR THE LEVEL'S CURRENT GRAPH
+    private PathX_Router router;
+
+    // THE COSTS ALL OUR ROUTES ARE CURRENTLY USING
+    private PathX_RoadCosts costs;
+
+    // ALL THE ROUTES WE ARE KEEPING UP TO DATE
+    private ArrayList<PathX_DynamicRoute> routes;
+
+    /**
+     * Constructs a dynamic router for the router argument's level and
+     * starts listening to that level.
+     */
+    public PathX_DynamicRouter(PathX_Router initRouter)
+    {
+        router = initRouter;
+        routes = new ArrayList();
+        costs = router.getCosts();
+        router.getLevel().addLevelListener(this);
+    }
+
+    // ACCESSOR METHODS
+    public PathX_Router getRouter()     {   return router;          }
+    public int          getNumRoutes()  {   return routes.size();   }
+
+    /**
+     * Makes a new route from start to end that will be kept up to date
+     * until it is released.
+     */
+    public PathX_DynamicRoute createRoute(PathX_Intersection start, PathX_Intersection end)
+    {
+        checkCosts();
+        PathX_DynamicRoute route = new PathX_DynamicRoute(this, costs, start, end);
+        routes.add(route);
+        return route;
+    }
+
+    /**
+     * Stops keeping the route argument up to date.
+     */
+    public void releaseRoute(PathX_DynamicRoute route)
+    {
+        routes.remove(route);
+    }
+
+    /**
+     * Stops listening to the level and forgets all routes.
+     */
+    public void dispose()
+    {
+        router.getLevel().removeLevelListener(this);
+        routes.clear();
+    }
+
+    /**
+     * Repairs every route that was affected by changes since it was last
+     * repaired. Calling this once per frame spreads the work evenly.
+     */
+    public void repairAll()
+    {
+        for (int i = 0; i < routes.size(); i++)
+        {
+            routes.get(i).repair();
+        }
+    }
+
+    /**
+     * Called by the level when an intersection is opened or closed, this
+     * lets every route know. Note that no searching happens here, that
+     * waits for each route's next repair.
+     */
+    @Override
+    public void intersectionToggled(PathX_Level level, PathX_Intersection intersection)
+    {
+        checkCosts();
+        int id = costs.getGraph().indexOf(intersection);
+        for (int i = 0; i < routes.size(); i++)
+        {
+            routes.get(i).intersectionChanged(id);
+        }
+    }
+
+    /**
+     * Makes sure all routes are using the costs of the level's current
+     * graph, resetting them if the graph has changed.
+     */
+    void checkCosts()
+    {
+        PathX_RoadCosts currentCosts = router.getCosts();
+        if (currentCosts != costs)
+        {
+            costs = currentCosts;
+            for (int i = 0; i < routes.size(); i++)
+            {
+                routes.get(i).reset(costs);
+            }
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package PathX.route;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import PathX.PathX_Level;
+import PathX.PathX_RoadGraph;
+import PathX.file.PathX_BinLevelIO;
+
+/**
+ * This class builds a contraction hierarchy for a level. Intersections
+ * are removed ("contracted") one at a time, least important first, and
+ * whenever removing one would lengthen the fastest route between two of
+ * its neighbors, a shortcut road is added between them. What's left is
+ * a graph where any fastest route goes up in importance and then down,
+ * which PathX_ContractionHierarchy can search very quickly.
+ *
+ * This can be run offline with level names as arguments, in which case
+ * it writes each hierarchy next to its level file.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_HierarchyBuilder
+{
+    // HOW MANY INTERSECTIONS A WITNESS SEARCH MAY SETTLE BEFORE GIVING
+    // UP. GIVING UP EARLY ONLY ADDS SHORTCUTS, IT NEVER BREAKS ROUTES
+    private static final int WITNESS_SETTLE_LIMIT = 60;
+
+    // THE GRAPH BEING CONTRACTED
+    private PathX_RoadCosts costs;
+    private int numIntersections;
+
+    // THE REMAINING GRAPH, AS GROWABLE PER-INTERSECTION EDGE LISTS.
+    // EACH EDGE HAS A WEIGHT, THE CONTRACTED INTERSECTION IT SKIPS
+    // (-1 FOR REAL ROADS), AND THE ROAD IT STANDS FOR (-1 FOR SHORTCUTS)
+    private int[][] outTargets;
+    private double[][] outWeights;
+    private int[][] outMids;
+    private int[][] outRoads;
+    private int[] outCounts;
+    private int[][] inSources;
+    private double[][] inWeights;
+    private int[][] inMids;
+    private int[][] inRoads;
+    private int[] inCounts;
+
+    // CONTRACTION PROGRESS
+    private boolean[] contracted;
+    private int[] ranks;
+    private int[] contractedNeighbors;
+    private int numShortcuts;
+
+    // SCRATCH MEMORY FOR WITNESS SEARCHES
+    private double[] witnessTimes;
+    private int[] witnessStamps;
+    private int witnessId;
+    private PathX_IndexedHeap witnessQueue;
+
+    /**
+     * Constructs a builder for the graph the costs argument belongs to.
+     * Roads into closed intersections are left out, just as PathX_Router
+     * never drives into them.
+     */
+    public PathX_HierarchyBuilder(PathX_RoadCosts initCosts)
+    {
+        costs = initCosts;
+        PathX_RoadGraph graph = costs.getGraph();
+        numIntersections = graph.getNumIntersections();
+        outTargets = new int[numIntersections][];
+        outWeights = new double[numIntersections][];
+        outMids = new int[numIntersections][];
+        outRoads = new int[numIntersections][];
+        outCounts = new int[numIntersections];
+        inSources = new int[numIntersections][];
+        inWeights = new double[numIntersections][];
+        inMids = new int[numIntersections][];
+        inRoads = new int[numIntersections][];
+        inCounts = new int[numIntersections];
+        for (int i = 0; i < numIntersections; i++)
+        {
+            int outSize = Math.max(graph.getOutDegree(i), 2);
+            outTargets[i] = new int[outSize];
+            outWeights[i] = new double[outSize];
+            outMids[i] = new int[outSize];
+            outRoads[i] = new int[outSize];
+            int inSize = Math.max(graph.getInDegree(i), 2);
+            inSources[i] = new int[inSize];
+            inWeights[i] = new double[inSize];
+            inMids[i] = new int[inSize];
+            inRoads[i] = new int[inSize];
+        }
+
+        // LOAD ALL THE DRIVABLE ROADS
+        for (int i = 0; i < numIntersections; i++)
+        {
+            for (int e = graph.getOutStart(i); e < graph.getOutEnd(i); e++)
+            {
+                int target = graph.getOutTarget(e);
+                double weight = costs.getEdgeTime(e);
+                if ((target != i) && costs.isPassable(target) && (weight < Double.POSITIVE_INFINITY))
+                    addEdge(i, target, weight, -1, graph.getOutRoad(e));
+            }
+        }
+
+        contracted = new boolean[numIntersections];
+        ranks = new int[numIntersections];
+        contractedNeighbors = new int[numIntersections];
+        witnessTimes = new double[numIntersections];
+        witnessStamps = new int[numIntersections];
+        witnessQueue = new PathX_IndexedHeap(numIntersections);
+    }
+
+    /**
+     * Contracts the whole graph and returns the resulting hierarchy.
+     */
+    public PathX_ContractionHierarchy build()
+    {
+        // THE UPWARD EDGES OF EACH INTERSECTION, RECORDED AS IT'S CONTRACTED
+        int[] fwdCounts = new int[numIntersections];
+        int[] bwdCounts = new int[numIntersections];
+        int[][] fwdTargets = new int[numIntersections][];
+        double[][] fwdWeights = new double[numIntersections][];
+        int[][] fwdMids = new int[numIntersections][];
+        int[][] fwdRoads = new int[numIntersections][];
+        int[][] bwdSources = new int[numIntersections][];
+        double[][] bwdWeights = new double[numIntersections][];
+        int[][] bwdMids = new int[numIntersections][];
+        int[][] bwdRoads = new int[numIntersections][];
+
+        // ORDER THE INTERSECTIONS BY HOW MUCH CONTRACTING THEM WOULD COST
+        PathX_IndexedHeap order = new PathX_IndexedHeap(numIntersections);
+        for (int i = 0; i < numIntersections; i++)
+        {
+            order.put(i, computePriority(i), i);
+        }
+
+        int nextRank = 0;
+        while (!order.isEmpty())
+        {
+            // PRIORITIES GO STALE AS NEIGHBORS ARE CONTRACTED, SO CHECK
+            // THE BEST ONE AGAIN BEFORE TRUSTING IT
+            int node = order.poll();
+            double priority = computePriority(node);
+            if (!order.isEmpty() && (priority > order.peekKey1()))
+            {
+                order.put(node, priority, node);
+                continue;
+            }
+
+            // KEEP THE EDGES TO MORE IMPORTANT INTERSECTIONS
+            int numFwd = 0;
+            int numBwd = 0;
+            fwdTargets[node] = new int[outCounts[node]];
+            fwdWeights[node] = new double[outCounts[node]];
+            fwdMids[node] = new int[outCounts[node]];
+            fwdRoads[node] = new int[outCounts[node]];
+            for (int i = 0; i < outCounts[node]; i++)
+            {
+                if (!contracted[outTargets[node][i]])
+                {
+                    fwdTargets[node][numFwd] = outTargets[node][i];
+                    fwdWeights[node][numFwd] = outWeights[node][i];
+                    fwdMids[node][numFwd] = outMids[node][i];
+                    fwdRoads[node][numFwd] = outRoads[node][i];
+                    numFwd++;
+                }
+            }
+            bwdSources[node] = new int[inCounts[node]];
+            bwdWeights[node] = new double[inCounts[node]];
+            bwdMids[node] = new int[inCounts[node]];
+            bwdRoads[node] = new int[inCounts[node]];
+            for (int i = 0; i < inCounts[node]; i++)
+            {
+                if (!contracted[inSources[node][i]])
+                {
+                    bwdSources[node][numBwd] = inSources[node][i];
+                    bwdWeights[node][numBwd] = inWeights[node][i];
+                    bwdMids[node][numBwd] = inMids[node][i];
+                    bwdRoads[node][numBwd] = inRoads[node][i];
+                    numBwd++;
+                }
+            }
+            fwdCounts[node] = numFwd;
+            bwdCounts[node] = numBwd;
+
+            // NOW TAKE IT OUT OF THE GRAPH
+            contract(node, false);
+            contracted[node] = true;
+            ranks[node] = nextRank++;
+
+            // AND LET ITS NEIGHBORS KNOW THEY'VE BECOME MORE IMPORTANT
+            for (int i = 0; i < numFwd; i++)
+            {
+                int neighbor = fwdTargets[node][i];
+                contractedNeighbors[neighbor]++;
+                if (order.contains(neighbor))
+                    order.put(neighbor, computePriority(neighbor), neighbor);
+            }
+            for (int i = 0; i < numBwd; i++)
+            {
+                int neighbor = bwdSources[node][i];
+                contractedNeighbors[neighbor]++;
+                if (order.contains(neighbor))
+                    order.put(neighbor, computePriority(neighbor), neighbor);
+            }
+        }
+
+        return new PathX_ContractionHierarchy(costs.getGraph(), ranks,
+                fwdCounts, fwdTargets, fwdWeights, fwdMids, fwdRoads,
+                bwdCounts, bwdSources, bwdWeights, bwdMids, bwdRoads);
+    }
+
+    // ACCESSOR METHODS
+    public int getNumShortcuts()    {   return numShortcuts;    }
+
+    // PRIVATE HELPER METHOD FOR ESTIMATING HOW MUCH CONTRACTING node
+    // WOULD COST, WHICH IS THE NUMBER OF SHORTCUTS IT WOULD ADD LESS THE
+    // EDGES IT WOULD REMOVE, PLUS A LITTLE TO SPREAD CONTRACTIONS OUT
+    private double computePriority(int node)
+    {
+        int shortcuts = contract(node, true);
+        int removed = 0;
+        for (int i = 0; i < outCounts[node]; i++)
+        {
+            if (!contracted[outTargets[node][i]])
+                removed++;
+        }
+        for (int i = 0; i < inCounts[node]; i++)
+        {
+            if (!contracted[inSources[node][i]])
+                removed++;
+        }
+        return (shortcuts - removed) + contractedNeighbors[node];
+    }
+
+    // PRIVATE HELPER METHOD THAT ADDS THE SHORTCUTS NEEDED TO REMOVE
+    // node, OR IF simulate IS true, JUST COUNTS THEM
+    private int contract(int node, boolean simulate)
+    {
+        int shortcuts = 0;
+        for (int i = 0; i < inCounts[node]; i++)
+        {
+            int from = inSources[node][i];
+            if (contracted[from])
+                continue;
+
+            // FIND THE LONGEST ROUTE THROUGH node WE'D NEED A WITNESS FOR
+            double inWeight = inWeights[node][i];
+            double maxVia = 0.0;
+            for (int j = 0; j < outCounts[node]; j++)
+            {
+                int to = outTargets[node][j];
+                if (!contracted[to] && (to != from))
+                    maxVia = Math.max(maxVia, inWeight + outWeights[node][j]);
+            }
+            if (maxVia == 0.0)
+                continue;
+
+            // LOOK FOR OTHER WAYS AROUND node
+            witnessSearch(from, node, maxVia);
+            for (int j = 0; j < outCounts[node]; j++)
+            {
+                int to = outTargets[node][j];
+                if (contracted[to] || (to == from))
+                    continue;
+                double via = inWeight + outWeights[node][j];
+                if ((witnessStamps[to] == witnessId) && (witnessTimes[to] <= via))
+                    continue;
+
+                // THERE IS NONE, SO WE NEED A SHORTCUT
+                shortcuts++;
+                if (!simulate)
+                {
+                    addEdge(from, to, via, node, -1);
+                    numShortcuts++;
+                }
+            }
+        }
+        return shortcuts;
+    }
+
+    // PRIVATE HELPER METHOD FOR A LIMITED DIJKSTRA SEARCH FROM source
+    // THAT AVOIDS skip, USED TO FIND ROUTES THAT MAKE SHORTCUTS UNNEEDED
+    private void witnessSearch(int source, int skip, double maxTime)
+    {
+        witnessId++;
+        witnessQueue.clear();
+        witnessStamps[source] = witnessId;
+        witnessTimes[source] = 0.0;
+        witnessQueue.put(source, 0.0, 0.0);
+        int settled = 0;
+        while (!witnessQueue.isEmpty() && (settled < WITNESS_SETTLE_LIMIT))
+        {
+            if (witnessQueue.peekKey1() > maxTime)
+                break;
+            int current = witnessQueue.poll();
+            settled++;
+            double currentTime = witnessTimes[current];
+            for (int i = 0; i < outCounts[current]; i++)
+            {
+                int next = outTargets[current][i];
+                if ((next == skip) || contracted[next])
+                    continue;
+                double time = currentTime + outWeights[current][i];
+                if ((witnessStamps[next] != witnessId) || (time < witnessTimes[next]))
+                {
+                    witnessStamps[next] = witnessId;
+                    witnessTimes[next] = time;
+                    witnessQueue.put(next, time, time);
+                }
+            }
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR ADDING AN EDGE, OR LOWERING THE WEIGHT
+    // OF THE EXISTING ONE IF THERE'S ALREADY AN EDGE from -> to
+    private void addEdge(int from, int to, double weight, int mid, int road)
+    {
+        for (int i = 0; i < outCounts[from]; i++)
+        {
+            if (outTargets[from][i] == to)
+            {
+                if (weight < outWeights[from][i])
+                {
+                    outWeights[from][i] = weight;
+                    outMids[from][i] = mid;
+                    outRoads[from][i] = road;
+                    for (int j = 0; j < inCounts[to]; j++)
+                    {
+                        if (inSources[to][j] == from)
+                        {
+                            inWeights[to][j] = weight;
+                            inMids[to][j] = mid;
+                            inRoads[to][j] = road;
+                        }
+                    }
+                }
+                return;
+            }
+        }
+
+        // IT'S A NEW EDGE, SO MAKE ROOM FOR IT
+        if (outCounts[from] == outTargets[from].length)
+        {
+            int newSize = outCounts[from] * 2;
+            outTargets[from] = Arrays.copyOf(outTargets[from], newSize);
+            outWeights[from] = Arrays.copyOf(outWeights[from], newSize);
+            outMids[from] = Arrays.copyOf(outMids[from], newSize);
+            outRoads[from] = Arrays.copyOf(outRoads[from], newSize);
+        }
+        int slot = outCounts[from]++;
+        outTargets[from][slot] = to;
+        outWeights[from][slot] = weight;
+        outMids[from][slot] = mid;
+        outRoads[from][slot] = road;
+
+        if (inCounts[to] == inSources[to].length)
+        {
+            int newSize = inCounts[to] * 2;
+            inSources[to] = Arrays.copyOf(inSources[to], newSize);
+            inWeights[to] = Arrays.copyOf(inWeights[to], newSize);
+            inMids[to] = Arrays.copyOf(inMids[to], newSize);
+            inRoads[to] = Arrays.copyOf(inRoads[to], newSize);
+        }
+        slot = inCounts[to]++;
+        inSources[to][slot] = from;
+        inWeights[to][slot] = weight;
+        inMids[to][slot] = mid;
+        inRoads[to][slot] = road;
+    }
+
+    /**
+     * Builds and saves the hierarchy for every level named in args, for
+     * example "0" for data/sorting_hat/0.bin, exiting with status 1 if
+     * any of them couldn't be.
+     */
+    public static void main(String[] args)
+    {
+        PathX_BinLevelIO levelIO = new PathX_BinLevelIO();
+        boolean failed = false;
+        for (String levelName : args)
+        {
+            PathX_Level level;
+            try
+            {
+                level = levelIO.readLevel(levelName);
+            }
+            catch(IOException ioe)
+            {
+                System.err.println(levelName + ": could not load " + PathX_BinLevelIO.getLevelFile(levelName)
+                        + " (" + ioe.getMessage() + ")");
+                failed = true;
+                continue;
+            }
+            PathX_RoadCosts levelCosts = new PathX_RoadCosts(level.getRoadGraph());
+            long startTime = System.currentTimeMillis();
+            PathX_HierarchyBuilder builder = new PathX_HierarchyBuilder(levelCosts);
+            PathX_ContractionHierarchy hierarchy = builder.build();
+            long buildTime = System.currentTimeMillis() - startTime;
+            File hierarchyFile = PathX_BinLevelIO.getHierarchyFile(levelName);
+            try
+            {
+                hierarchy.save(hierarchyFile);
+                System.out.println(levelName + ": " + levelCosts.getGraph().getNumIntersections()
+                        + " intersections, " + builder.getNumShortcuts() + " shortcuts, "
+                        + buildTime + " ms -> " + hierarchyFile);
+            }
+            catch(IOException ioe)
+            {
+                System.err.println(levelName + ": could not save " + hierarchyFile + " (" + ioe.getMessage() + ")");
+                failed = true;
+            }
+        }
+        if (failed)
+            System.exit(1);
+    }
+}
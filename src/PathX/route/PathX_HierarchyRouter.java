@@ -0,0 +1,204 @@
+package PathX.route;
+
+import java.io.File;
+import java.io.IOException;
+import PathX.PathX_Intersection;
+import PathX.PathX_Level;
+import PathX.PathX_RoadGraph;
+
+/**
+ * This class answers route queries with a precomputed contraction
+ * hierarchy while it still matches the level, and with PathX_Router's A*
+ * as soon as it doesn't, like after an intersection has been opened or
+ * closed. Either way the routes found are the same, the hierarchy just
+ * finds them faster.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_HierarchyRouter
+{
+    // THE A* ROUTER WE FALL BACK ON
+    private PathX_Router router;
+
+    // THE HIERARCHY AND THE LEVEL VERSIONS IT WAS MADE FOR, WHICH ARE
+    // ALWAYS REPLACED TOGETHER SO A QUERY NEVER SEES ONE WITHOUT THE OTHERS
+    private volatile BuiltHierarchy built;
+
+    // WHAT WENT WRONG READING OR SAVING THE HIERARCHY FILE IN open, IF
+    // ANYTHING DID
+    private IOException hierarchyFileError;
+
+    /**
+     * Constructs a router that uses A* until it is given a hierarchy.
+     */
+    public PathX_HierarchyRouter(PathX_Router initRouter)
+    {
+        router = initRouter;
+    }
+
+    /**
+     * Constructs a router for the router argument's level using the
+     * hierarchy stored in hierarchyFile, building and saving a new one
+     * if that file is missing or out of date. A file that can't be read
+     * or saved doesn't stop the router from working, but the problem is
+     * kept for the caller, see getHierarchyFileError.
+     */
+    public static PathX_HierarchyRouter open(PathX_Router router, File hierarchyFile)
+    {
+        PathX_HierarchyRouter hierarchyRouter = new PathX_HierarchyRouter(router);
+        PathX_RoadGraph graph = router.getCosts().getGraph();
+        PathX_ContractionHierarchy loaded = null;
+        try
+        {
+            loaded = PathX_ContractionHierarchy.load(hierarchyFile, graph);
+        }
+        catch(IOException ioe)
+        {
+            // WE'LL JUST BUILD A NEW ONE
+            hierarchyRouter.hierarchyFileError = ioe;
+        }
+
+        if (loaded != null)
+        {
+            hierarchyRouter.setHierarchy(loaded);
+        }
+        else
+        {
+            PathX_ContractionHierarchy built = hierarchyRouter.rebuild();
+            try
+            {
+                built.save(hierarchyFile);
+            }
+            catch(IOException ioe)
+            {
+                // IT WILL JUST HAVE TO BE BUILT AGAIN NEXT TIME
+                hierarchyRouter.hierarchyFileError = ioe;
+            }
+        }
+        return hierarchyRouter;
+    }
+
+    // ACCESSOR METHODS
+    public PathX_Router getRouter() {   return router;  }
+
+    /**
+     * Returns the hierarchy queries use while it's current, or null if
+     * there isn't one yet.
+     */
+    public PathX_ContractionHierarchy getHierarchy()
+    {
+        BuiltHierarchy current = built;
+        return (current == null) ? null : current.hierarchy;
+    }
+
+    /**
+     * Returns what went wrong reading or saving the hierarchy file when
+     * this router was opened, or null if nothing did or it wasn't opened
+     * from a file.
+     */
+    public IOException getHierarchyFileError()
+    {
+        return hierarchyFileError;
+    }
+
+    /**
+     * Returns true if the hierarchy describes the level as it is now,
+     * meaning queries will use it rather than A*.
+     */
+    public boolean isHierarchyCurrent()
+    {
+        return isCurrent(built);
+    }
+
+    /**
+     * Starts using the hierarchy argument, which must have been built
+     * for the level as it is right now.
+     */
+    public void setHierarchy(PathX_ContractionHierarchy initHierarchy)
+    {
+        PathX_Level level = router.getLevel();
+        built = new BuiltHierarchy(initHierarchy, level.getGeometryVersion(), level.getOpenStateVersion());
+    }
+
+    /**
+     * Builds a new hierarchy for the level as it is now and starts using
+     * it. This takes a while on large levels, so it's best done off the
+     * game thread, with queries going to A* in the meantime.
+     *
+     * @return The new hierarchy.
+     */
+    public PathX_ContractionHierarchy rebuild()
+    {
+        PathX_Level level = router.getLevel();
+        int geometryVersion = level.getGeometryVersion();
+        int openStateVersion = level.getOpenStateVersion();
+        PathX_ContractionHierarchy hierarchy = new PathX_HierarchyBuilder(router.getCosts()).build();
+        built = new BuiltHierarchy(hierarchy, geometryVersion, openStateVersion);
+        return hierarchy;
+    }
+
+    /**
+     * Finds the fastest route between the intersections with indices
+     * source and target, leaving it in the calling thread's search state.
+     *
+     * @return true if there is a route, false otherwise.
+     */
+    public boolean search(int source, int target)
+    {
+        BuiltHierarchy current = built;
+        if (isCurrent(current))
+            return current.hierarchy.search(source, target, router.getSearchState());
+        return router.search(source, target);
+    }
+
+    /**
+     * Finds the fastest route between the two intersections provided.
+     *
+     * @return The route found, or null if there is none.
+     */
+    public PathX_Route findRoute(PathX_Intersection from, PathX_Intersection to)
+    {
+        PathX_RoadGraph graph = router.getCosts().getGraph();
+        if (!search(graph.indexOf(from), graph.indexOf(to)))
+            return null;
+        return new PathX_Route(graph, router.getSearchState());
+    }
+
+    /**
+     * Finds the fastest route from the level's starting location to its
+     * destination.
+     *
+     * @return The route found, or null if there is none.
+     */
+    public PathX_Route findRouteToDestination()
+    {
+        PathX_Level level = router.getLevel();
+        return findRoute(level.getStartingLocation(), level.getDestination());
+    }
+
+    // PRIVATE HELPER METHOD FOR CHECKING WHETHER THE HIERARCHY ARGUMENT
+    // WAS MADE FOR THE LEVEL AS IT IS NOW
+    private boolean isCurrent(BuiltHierarchy current)
+    {
+        PathX_Level level = router.getLevel();
+        return (current != null)
+                && (current.geometryVersion == level.getGeometryVersion())
+                && (current.openStateVersion == level.getOpenStateVersion());
+    }
+
+    // A HIERARCHY AND THE LEVEL VERSIONS IT WAS MADE FOR, WHICH NEVER
+    // CHANGE ONCE IT'S MADE
+    private static final class BuiltHierarchy
+    {
+        private final PathX_ContractionHierarchy hierarchy;
+        private final int geometryVersion;
+        private final int openStateVersion;
+
+        private BuiltHierarchy(PathX_ContractionHierarchy initHierarchy, int initGeometryVersion, int initOpenStateVersion)
+        {
+            hierarchy = initHierarchy;
+            geometryVersion = initGeometryVersion;
+            openStateVersion = initOpenStateVersion;
+        }
+    }
+}
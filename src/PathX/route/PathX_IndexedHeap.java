@@ -0,0 +1,194 @@
+package PathX.route;
+
+import java.util.Arrays;
+
+/**
+ * This class is a binary min heap of intersection indices that knows
+ * where each index sits in the heap, so priorities can be lowered or
+ * raised and entries removed in O(log n) without ever searching the
+ * heap. Priorities are compared first by key1 and then by key2, which
+ * plain A* ignores but LPA* needs for breaking ties.
+ *
+ * Note that the heap allocates only when it has to grow, so a single
+ * heap can be reused for any number of searches.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_IndexedHeap
+{
+    // THE HEAP ITSELF, AS AN ARRAY OF INTERSECTION INDICES
+    private int[] heap;
+    private int size;
+
+    // FOR EACH INTERSECTION INDEX, ITS SLOT IN THE HEAP OR -1
+    private int[] positions;
+
+    // THE PRIORITIES, INDEXED BY INTERSECTION INDEX
+    private double[] key1;
+    private double[] key2;
+
+    /**
+     * Constructs an empty heap able to hold the indices 0 to capacity-1.
+     */
+    public PathX_IndexedHeap(int capacity)
+    {
+        heap = new int[0];
+        positions = new int[0];
+        key1 = new double[0];
+        key2 = new double[0];
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Makes sure the indices 0 to capacity-1 can be stored, growing the
+     * heap's arrays if necessary. Note this should only be done while
+     * the heap is empty.
+     */
+    public void ensureCapacity(int capacity)
+    {
+        if (positions.length >= capacity)
+            return;
+        heap = new int[capacity];
+        positions = new int[capacity];
+        key1 = new double[capacity];
+        key2 = new double[capacity];
+        Arrays.fill(positions, -1);
+        size = 0;
+    }
+
+    // ACCESSOR METHODS
+    public int      size()              {   return size;                }
+    public boolean  isEmpty()           {   return size == 0;           }
+    public boolean  contains(int id)    {   return positions[id] >= 0;  }
+    public int      peek()              {   return heap[0];             }
+    public double   peekKey1()          {   return key1[heap[0]];       }
+    public double   peekKey2()          {   return key2[heap[0]];       }
+
+    /**
+     * Empties the heap. This only touches the entries still in the
+     * heap, so it is cheap after a search that emptied most of it.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < size; i++)
+        {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Adds id to the heap with the priority (k1, k2), or changes its
+     * priority if it is already in the heap.
+     */
+    public void put(int id, double k1, double k2)
+    {
+        int pos = positions[id];
+        if (pos < 0)
+        {
+            key1[id] = k1;
+            key2[id] = k2;
+            pos = size++;
+            heap[pos] = id;
+            positions[id] = pos;
+            siftUp(pos);
+        }
+        else
+        {
+            boolean lower = less(k1, k2, key1[id], key2[id]);
+            key1[id] = k1;
+            key2[id] = k2;
+            if (lower)
+                siftUp(pos);
+            else
+                siftDown(pos);
+        }
+    }
+
+    /**
+     * Removes and returns the index with the lowest priority.
+     */
+    public int poll()
+    {
+        int top = heap[0];
+        removeAt(0);
+        return top;
+    }
+
+    /**
+     * Removes id from the heap if it is in it.
+     */
+    public void remove(int id)
+    {
+        int pos = positions[id];
+        if (pos >= 0)
+            removeAt(pos);
+    }
+
+    // HELPER METHOD FOR TAKING THE ENTRY AT SLOT pos OUT OF THE HEAP
+    private void removeAt(int pos)
+    {
+        int removed = heap[pos];
+        positions[removed] = -1;
+        size--;
+        if (pos == size)
+            return;
+
+        // MOVE THE LAST ENTRY INTO THE HOLE AND RESTORE THE HEAP
+        int last = heap[size];
+        heap[pos] = last;
+        positions[last] = pos;
+        siftUp(pos);
+        siftDown(positions[last]);
+    }
+
+    // HELPER METHOD FOR MOVING AN ENTRY TOWARDS THE TOP
+    private void siftUp(int pos)
+    {
+        int id = heap[pos];
+        while (pos > 0)
+        {
+            int parentPos = (pos - 1) >>> 1;
+            int parent = heap[parentPos];
+            if (!less(key1[id], key2[id], key1[parent], key2[parent]))
+                break;
+            heap[pos] = parent;
+            positions[parent] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = id;
+        positions[id] = pos;
+    }
+
+    // HELPER METHOD FOR MOVING AN ENTRY TOWARDS THE BOTTOM
+    private void siftDown(int pos)
+    {
+        int id = heap[pos];
+        int half = size >>> 1;
+        while (pos < half)
+        {
+            int childPos = (pos << 1) + 1;
+            int child = heap[childPos];
+            int rightPos = childPos + 1;
+            if ((rightPos < size)
+                    && less(key1[heap[rightPos]], key2[heap[rightPos]], key1[child], key2[child]))
+            {
+                childPos = rightPos;
+                child = heap[childPos];
+            }
+            if (!less(key1[child], key2[child], key1[id], key2[id]))
+                break;
+            heap[pos] = child;
+            positions[child] = pos;
+            pos = childPos;
+        }
+        heap[pos] = id;
+        positions[id] = pos;
+    }
+
+    // HELPER METHOD FOR COMPARING TWO PRIORITIES
+    private static boolean less(double a1, double a2, double b1, double b2)
+    {
+        return (a1 < b1) || ((a1 == b1) && (a2 < b2));
+    }
+}
@@ -0,0 +1,127 @@
+package PathX.route;
+
+import PathX.PathX_Intersection;
+import PathX.PathX_Road;
+import PathX.PathX_RoadGraph;
+
+/**
+ * This class holds the travel time of every edge in a road graph along
+ * with the intersection coordinates, all in flat arrays so that searches
+ * never have to go back to the road and intersection objects. The travel
+ * time of a road is its Euclidean length divided by its speed limit.
+ *
+ * Note that objects of this class are never changed once built, so they
+ * may be shared by any number of searching threads.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_RoadCosts
+{
+    // THE GRAPH THESE COSTS ARE FOR
+    private PathX_RoadGraph graph;
+
+    // THE TRAVEL TIME FOR EACH OUTGOING EDGE IN THE GRAPH, AND THE
+    // SAME TIMES INDEXED BY INCOMING EDGE FOR BACKWARDS SEARCHES
+    private double[] edgeTimes;
+    private double[] inEdgeTimes;
+
+    // INTERSECTION LOCATIONS, INDEXED BY INTERSECTION INDEX
+    private double[] nodeX;
+    private double[] nodeY;
+
+    // 1 / THE FASTEST SPEED LIMIT IN THE GRAPH, WHICH LETS US
+    // TURN A STRAIGHT LINE DISTANCE INTO AN OPTIMISTIC TIME
+    private double inverseMaxSpeed;
+
+    /**
+     * Computes the costs for all the edges in the graph argument using the
+     * current intersection locations.
+     */
+    public PathX_RoadCosts(PathX_RoadGraph initGraph)
+    {
+        graph = initGraph;
+        int numIntersections = graph.getNumIntersections();
+        nodeX = new double[numIntersections];
+        nodeY = new double[numIntersections];
+        for (int i = 0; i < numIntersections; i++)
+        {
+            PathX_Intersection intersection = graph.getIntersection(i);
+            nodeX[i] = intersection.x;
+            nodeY[i] = intersection.y;
+        }
+
+        // ROADS WITHOUT A POSITIVE SPEED LIMIT CAN'T BE DRIVEN ON
+        int maxSpeed = 0;
+        int numEdges = graph.getNumEdges();
+        edgeTimes = new double[numEdges];
+        for (int i = 0; i < numIntersections; i++)
+        {
+            for (int e = graph.getOutStart(i); e < graph.getOutEnd(i); e++)
+            {
+                PathX_Road road = graph.getRoad(graph.getOutRoad(e));
+                int speedLimit = road.getSpeedLimit();
+                if (speedLimit <= 0)
+                {
+                    edgeTimes[e] = Double.POSITIVE_INFINITY;
+                }
+                else
+                {
+                    edgeTimes[e] = distance(i, graph.getOutTarget(e)) / speedLimit;
+                    if (speedLimit > maxSpeed)
+                        maxSpeed = speedLimit;
+                }
+            }
+        }
+        inverseMaxSpeed = (maxSpeed > 0) ? (1.0 / maxSpeed) : 0.0;
+
+        // AND THE SAME COSTS FROM THE OTHER END OF EACH EDGE
+        inEdgeTimes = new double[numEdges];
+        for (int i = 0; i < numIntersections; i++)
+        {
+            for (int e = graph.getInStart(i); e < graph.getInEnd(i); e++)
+            {
+                int speedLimit = graph.getRoad(graph.getInRoad(e)).getSpeedLimit();
+                if (speedLimit <= 0)
+                    inEdgeTimes[e] = Double.POSITIVE_INFINITY;
+                else
+                    inEdgeTimes[e] = distance(graph.getInSource(e), i) / speedLimit;
+            }
+        }
+    }
+
+    // ACCESSOR METHODS
+    public PathX_RoadGraph  getGraph()              {   return graph;               }
+    public double           getEdgeTime(int edge)   {   return edgeTimes[edge];     }
+    public double           getInEdgeTime(int edge) {   return inEdgeTimes[edge];   }
+    public double           getX(int id)            {   return nodeX[id];           }
+    public double           getY(int id)            {   return nodeY[id];           }
+    public double           getInverseMaxSpeed()    {   return inverseMaxSpeed;     }
+
+    /**
+     * Returns the straight line distance between two intersections.
+     */
+    public double distance(int from, int to)
+    {
+        double diffX = nodeX[to] - nodeX[from];
+        double diffY = nodeY[to] - nodeY[from];
+        return Math.sqrt((diffX * diffX) + (diffY * diffY));
+    }
+
+    /**
+     * Returns a travel time from one intersection to another that is never
+     * more than the real fastest travel time, for use as an A* heuristic.
+     */
+    public double estimateTime(int from, int to)
+    {
+        return distance(from, to) * inverseMaxSpeed;
+    }
+
+    /**
+     * Returns true if routes may pass through the intersection with the
+     * index argument, which is the case only for open intersections.
+     */
+    public boolean isPassable(int id)
+    {
+        return graph.getIntersection(id).isOpen();
+    }
+}
@@ -0,0 +1,62 @@
+package PathX.route;
+
+import java.util.ArrayList;
+import PathX.PathX_Intersection;
+import PathX.PathX_Road;
+import PathX.PathX_RoadGraph;
+
+/**
+ * This class represents a route found through a level, which is the list
+ * of intersections to visit in order, the roads between them, and how
+ * long it takes to drive.
+ *
+ * Note that building one of these allocates, so per-frame code should
+ * read routes straight out of a PathX_SearchState instead.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_Route
+{
+    // THE INTERSECTIONS ON THE ROUTE, START FIRST
+    private ArrayList<PathX_Intersection> intersections;
+
+    // THE ROADS BETWEEN THEM, ONE LESS THAN THE INTERSECTIONS
+    private ArrayList<PathX_Road> roads;
+
+    // HOW LONG IT TAKES TO DRIVE
+    private double travelTime;
+
+    /**
+     * Builds a route from the last path found by the state argument.
+     */
+    public PathX_Route(PathX_RoadGraph graph, PathX_SearchState state)
+    {
+        int length = state.getPathLength();
+        intersections = new ArrayList(length);
+        roads = new ArrayList(Math.max(length - 1, 0));
+        for (int i = 0; i < length; i++)
+        {
+            intersections.add(graph.getIntersection(state.getPathNode(i)));
+            if (i < length - 1)
+                roads.add(graph.getRoad(state.getPathRoad(i)));
+        }
+        travelTime = state.getPathTime();
+    }
+
+    // ACCESSOR METHODS
+    public ArrayList<PathX_Intersection>    getIntersections()  {   return intersections;           }
+    public ArrayList<PathX_Road>            getRoads()          {   return roads;                   }
+    public double                           getTravelTime()     {   return travelTime;              }
+    public PathX_Intersection               getStart()          {   return intersections.get(0);    }
+    public PathX_Intersection               getEnd()
+    {   return intersections.get(intersections.size() - 1);                                        }
+
+    /**
+     * Returns a textual representation of this route.
+     */
+    @Override
+    public String toString()
+    {
+        return intersections + " (" + travelTime + ")";
+    }
+}
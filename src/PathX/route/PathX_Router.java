@@ -0,0 +1,170 @@
+package PathX.route;
+
+import PathX.PathX_Intersection;
+import PathX.PathX_Level;
+import PathX.PathX_RoadGraph;
+
+/**
+ * This class finds the fastest route between two intersections of a level
+ * using A*, where the time to drive a road is its length divided by its
+ * speed limit and closed intersections may not be driven through. Each
+ * thread gets its own PathX_SearchState, so once warmed up searching
+ * does not allocate, no matter how many searches are done per frame.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_Router
+{
+    // THE LEVEL WE ARE FINDING ROUTES THROUGH
+    private PathX_Level level;
+
+    // THE EDGE COSTS FOR THE LEVEL'S CURRENT GRAPH, AND THE
+    // LEVEL GEOMETRY VERSION THEY WERE COMPUTED FOR
+    private volatile PathX_RoadCosts costs;
+    private int costsVersion;
+
+    // EACH THREAD SEARCHES WITH ITS OWN SCRATCH MEMORY
+    private ThreadLocal<PathX_SearchState> searchStates;
+
+    /**
+     * Constructs a router for the level argument. Note that the router
+     * notices on its own when the level's roads change.
+     */
+    public PathX_Router(PathX_Level initLevel)
+    {
+        level = initLevel;
+        searchStates = new ThreadLocal<PathX_SearchState>()
+        {
+            @Override
+            protected PathX_SearchState initialValue()
+            {
+                return new PathX_SearchState(0);
+            }
+        };
+    }
+
+    // ACCESSOR METHODS
+    public PathX_Level getLevel()   {   return level;   }
+
+    /**
+     * Accessor method for getting the edge costs of the level's current
+     * road graph, which are recomputed if the level has changed.
+     *
+     * @return The up to date costs for the level.
+     */
+    public synchronized PathX_RoadCosts getCosts()
+    {
+        if ((costs == null) || (costsVersion != level.getGeometryVersion()))
+        {
+            costs = new PathX_RoadCosts(level.getRoadGraph());
+            costsVersion = level.getGeometryVersion();
+        }
+        return costs;
+    }
+
+    /**
+     * Accessor method for getting the calling thread's search state, which
+     * is where searches done by this thread leave their routes.
+     *
+     * @return This thread's search state.
+     */
+    public PathX_SearchState getSearchState()
+    {
+        return searchStates.get();
+    }
+
+    /**
+     * Finds the fastest route between the intersections with indices
+     * source and target in the level's current road graph, leaving it in
+     * the calling thread's search state.
+     *
+     * @return true if there is a route, false otherwise.
+     */
+    public boolean search(int source, int target)
+    {
+        return search(getCosts(), source, target, searchStates.get());
+    }
+
+    /**
+     * Finds the fastest route between the intersections with indices
+     * source and target using the costs and scratch memory provided. This
+     * lets batches of searches share one set of costs.
+     *
+     * @return true if there is a route, false otherwise.
+     */
+    public static boolean search(PathX_RoadCosts costs, int source, int target, PathX_SearchState state)
+    {
+        PathX_RoadGraph graph = costs.getGraph();
+        int numIntersections = graph.getNumIntersections();
+        state.ensureCapacity(numIntersections);
+        state.begin();
+        if ((source < 0) || (target < 0) || (source >= numIntersections) || (target >= numIntersections))
+            return false;
+
+        // WE MAY START AT A CLOSED INTERSECTION, BUT NEVER END AT ONE
+        if ((source != target) && !costs.isPassable(target))
+            return false;
+
+        int searchId = state.searchId;
+        int[] closed = state.closed;
+        PathX_IndexedHeap openList = state.openList;
+        state.setTime(source, 0.0, -1, -1);
+        openList.put(source, costs.estimateTime(source, target), 0.0);
+        while (!openList.isEmpty())
+        {
+            // EXPAND THE MOST PROMISING INTERSECTION
+            int current = openList.poll();
+            closed[current] = searchId;
+            if (current == target)
+            {
+                state.buildPath(target);
+                return true;
+            }
+
+            double currentTime = state.bestTimes[current];
+            int edgeEnd = graph.getOutEnd(current);
+            for (int e = graph.getOutStart(current); e < edgeEnd; e++)
+            {
+                int next = graph.getOutTarget(e);
+                if ((closed[next] == searchId) || !costs.isPassable(next))
+                    continue;
+
+                double time = currentTime + costs.getEdgeTime(e);
+                if (time < state.getTime(next))
+                {
+                    state.setTime(next, time, current, graph.getOutRoad(e));
+                    openList.put(next, time + costs.estimateTime(next, target), time);
+                }
+            }
+        }
+
+        // THERE IS NO WAY THROUGH
+        return false;
+    }
+
+    /**
+     * Finds the fastest route between the two intersections provided.
+     *
+     * @return The route found, or null if there is none.
+     */
+    public PathX_Route findRoute(PathX_Intersection from, PathX_Intersection to)
+    {
+        PathX_RoadCosts currentCosts = getCosts();
+        PathX_RoadGraph graph = currentCosts.getGraph();
+        PathX_SearchState state = searchStates.get();
+        if (!search(currentCosts, graph.indexOf(from), graph.indexOf(to), state))
+            return null;
+        return new PathX_Route(graph, state);
+    }
+
+    /**
+     * Finds the fastest route from the level's starting location to its
+     * destination.
+     *
+     * @return The route found, or null if there is none.
+     */
+    public PathX_Route findRouteToDestination()
+    {
+        return findRoute(level.getStartingLocation(), level.getDestination());
+    }
+}
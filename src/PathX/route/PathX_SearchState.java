@@ -0,0 +1,175 @@
+package PathX.route;
+
+import java.util.Arrays;
+
+/**
+ * This class holds all the scratch memory a single route search needs,
+ * along with the route it found. Rather than clearing its arrays before
+ * each search it stamps every intersection it touches with the number of
+ * the current search, so starting a new search costs nothing no matter
+ * how big the graph is.
+ *
+ * Note that a search state must only be used by one thread at a time,
+ * which is why PathX_Router hands out one per thread.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_SearchState
+{
+    // THE NUMBER OF THE CURRENT SEARCH
+    int searchId;
+
+    // THE SEARCH THAT LAST TOUCHED EACH INTERSECTION, AND
+    // THE SEARCH THAT LAST FINISHED WITH EACH INTERSECTION
+    int[] seen;
+    int[] closed;
+
+    // BEST KNOWN TIME TO EACH INTERSECTION AND HOW WE GOT THERE
+    double[] bestTimes;
+    int[] parents;
+    int[] parentRoads;
+
+    // THE INTERSECTIONS STILL TO BE EXPANDED
+    PathX_IndexedHeap openList;
+
+    // THE LAST ROUTE FOUND, AS INTERSECTION AND ROAD INDICES. NOTE
+    // THERE IS ONE LESS ROAD THAN THERE ARE INTERSECTIONS
+    int[] pathNodes;
+    int[] pathRoads;
+    int pathLength;
+    double pathTime;
+
+    /**
+     * Constructs a search state for graphs of up to capacity intersections.
+     */
+    public PathX_SearchState(int capacity)
+    {
+        seen = new int[0];
+        pathNodes = new int[16];
+        pathRoads = new int[16];
+        openList = new PathX_IndexedHeap(0);
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Grows this search state, if necessary, so it can search graphs of
+     * up to capacity intersections.
+     */
+    public void ensureCapacity(int capacity)
+    {
+        if (seen.length >= capacity)
+            return;
+        seen = new int[capacity];
+        closed = new int[capacity];
+        bestTimes = new double[capacity];
+        parents = new int[capacity];
+        parentRoads = new int[capacity];
+        openList.ensureCapacity(capacity);
+        searchId = 0;
+    }
+
+    // ACCESSOR METHODS FOR THE LAST ROUTE FOUND
+    public boolean  hasPath()               {   return pathLength > 0;  }
+    public int      getPathLength()         {   return pathLength;      }
+    public int      getPathNode(int i)      {   return pathNodes[i];    }
+    public int      getPathRoad(int i)      {   return pathRoads[i];    }
+    public double   getPathTime()           {   return pathTime;        }
+
+    /**
+     * Copies the intersection indices of the last route found into dest
+     * starting at offset, returning the number of indices copied.
+     */
+    public int copyPath(int[] dest, int offset)
+    {
+        System.arraycopy(pathNodes, 0, dest, offset, pathLength);
+        return pathLength;
+    }
+
+    /**
+     * Starts a new search, forgetting everything about the last one.
+     */
+    void begin()
+    {
+        searchId++;
+
+        // ONCE EVERY FEW BILLION SEARCHES THE STAMPS WRAP AROUND
+        if (searchId == Integer.MAX_VALUE)
+        {
+            Arrays.fill(seen, 0);
+            Arrays.fill(closed, 0);
+            searchId = 1;
+        }
+        openList.clear();
+        pathLength = 0;
+        pathTime = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the best known time to the intersection argument in the
+     * current search.
+     */
+    double getTime(int id)
+    {
+        return (seen[id] == searchId) ? bestTimes[id] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Records a better way of getting to the intersection id.
+     */
+    void setTime(int id, double time, int parent, int parentRoad)
+    {
+        seen[id] = searchId;
+        bestTimes[id] = time;
+        parents[id] = parent;
+        parentRoads[id] = parentRoad;
+    }
+
+    /**
+     * Walks the parent links back from target to fill in the route.
+     */
+    void buildPath(int target)
+    {
+        // FIRST COUNT THE INTERSECTIONS
+        int length = 1;
+        for (int id = target; parents[id] >= 0; id = parents[id])
+        {
+            length++;
+        }
+        if (pathNodes.length < length)
+        {
+            int newSize = Math.max(length, pathNodes.length * 2);
+            pathNodes = new int[newSize];
+            pathRoads = new int[newSize];
+        }
+
+        // THEN FILL THEM IN BACK TO FRONT
+        int id = target;
+        for (int i = length - 1; i >= 0; i--)
+        {
+            pathNodes[i] = id;
+            if (i > 0)
+                pathRoads[i - 1] = parentRoads[id];
+            id = parents[id];
+        }
+        pathLength = length;
+        pathTime = bestTimes[target];
+    }
+
+    /**
+     * Replaces the last route found with the one provided, which is used
+     * by searches that don't build routes from parent links.
+     */
+    void setPath(int[] nodes, int[] roads, int length, double time)
+    {
+        if (pathNodes.length < length)
+        {
+            pathNodes = new int[length];
+            pathRoads = new int[length];
+        }
+        System.arraycopy(nodes, 0, pathNodes, 0, length);
+        if (length > 1)
+            System.arraycopy(roads, 0, pathRoads, 0, length - 1);
+        pathLength = length;
+        pathTime = time;
+    }
+}
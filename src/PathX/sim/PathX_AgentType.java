@@ -0,0 +1,34 @@
+package PathX.sim;
+
+import static PathX.PathXConstants.*;
+
+/**
+ * This enum is for keeping track of what kind of car each agent in a
+ * PathX_Fleet is. Each kind drives at its own multiple of the speed
+ * limit:
+ *
+ *      POLICE:     DRIVE RIGHT AT THE SPEED LIMIT
+ *
+ *      BANDIT:     DRIVE A LITTLE FASTER THAN THE SPEED LIMIT
+ *
+ *      ZOMBIE:     SHAMBLE ALONG WELL BELOW IT
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public enum PathX_AgentType
+{
+    POLICE(POLICE_SPEED_FACTOR),
+    BANDIT(BANDIT_SPEED_FACTOR),
+    ZOMBIE(ZOMBIE_SPEED_FACTOR);
+
+    // PIXELS PER SECOND FOR EVERY UNIT OF SPEED LIMIT
+    private double speedFactor;
+
+    private PathX_AgentType(double initSpeedFactor)
+    {
+        speedFactor = initSpeedFactor;
+    }
+
+    // ACCESSOR METHODS
+    public double getSpeedFactor()  {   return speedFactor; }
+}
@@ -0,0 +1,399 @@
+package PathX.sim;
+
+import PathX.PathX_Level;
+import PathX.PathX_Road;
+import PathX.PathX_RoadGraph;
+import PathX.route.PathX_RoadCosts;
+
+/**
+ * This class simulates all the police, bandits, and zombies driving
+ * around a level. Rather than one object per car it keeps every car's
+ * state in parallel primitive arrays indexed by agent number, so that
+ * updating thousands of cars is a tight loop over a few arrays and no
+ * objects at all are allocated per frame.
+ *
+ * Cars wander the road graph, picking a random road whenever they reach
+ * an intersection. They never turn into closed intersections and only
+ * turn back the way they came when there is nowhere else to go. A car
+ * heading for an intersection that closes turns around if its road is
+ * two way, and otherwise waits until it opens again.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_Fleet
+{
+    // AT MOST THIS MANY INTERSECTIONS MAY BE PASSED IN ONE UPDATE,
+    // WHICH KEEPS ROADS OF NO LENGTH FROM SPINNING US FOREVER
+    private static final int MAX_HOPS_PER_UPDATE = 8;
+
+    // THE LEVEL WE ARE DRIVING AROUND
+    private PathX_Level level;
+
+    // THE LEVEL'S ROAD GRAPH AND THE GEOMETRY VERSION IT'S FROM
+    private PathX_RoadGraph graph;
+    private PathX_RoadCosts costs;
+    private int graphVersion;
+
+    // FOR EACH EDGE OF THE GRAPH, WHERE IT STARTS, HOW LONG IT
+    // IS IN PIXELS, AND ITS SPEED LIMIT
+    private int[] edgeSources;
+    private double[] edgeLengths;
+    private double[] edgeSpeedLimits;
+
+    // THE AGENTS, ONE ENTRY IN EACH ARRAY PER AGENT
+    private int numAgents;
+    private PathX_AgentType[] types;
+    private double[] xs;
+    private double[] ys;
+    private double[] previousXs;
+    private double[] previousYs;
+    private int[] edges;
+    private int[] roads;
+    private double[] progress;
+    private double[] speeds;
+
+    // OUR OWN RANDOM NUMBER GENERATOR, SO WE CAN BE REPLAYED
+    private long randomState;
+
+    /**
+     * Constructs an empty fleet for the level argument. Call spawn to
+     * put its cars on the road.
+     *
+     * @param seed Seeds all random choices, so a fleet with the same
+     * seed on the same level always drives the same way.
+     */
+    public PathX_Fleet(PathX_Level initLevel, long seed)
+    {
+        level = initLevel;
+        randomState = (seed == 0) ? 0x9E3779B97F4A7C15L : seed;
+        types = new PathX_AgentType[0];
+        xs = new double[0];
+        ys = new double[0];
+        previousXs = new double[0];
+        previousYs = new double[0];
+        edges = new int[0];
+        roads = new int[0];
+        progress = new double[0];
+        speeds = new double[0];
+    }
+
+    // ACCESSOR METHODS
+    public PathX_Level      getLevel()              {   return level;               }
+    public int              getNumAgents()          {   return numAgents;           }
+    public PathX_AgentType  getType(int agent)      {   return types[agent];        }
+    public double           getX(int agent)         {   return xs[agent];           }
+    public double           getY(int agent)         {   return ys[agent];           }
+    public double           getPreviousX(int agent) {   return previousXs[agent];   }
+    public double           getPreviousY(int agent) {   return previousYs[agent];   }
+    public int              getRoad(int agent)      {   return roads[agent];        }
+    public double           getProgress(int agent)  {   return progress[agent];     }
+    public double           getSpeed(int agent)     {   return speeds[agent];       }
+
+    /**
+     * Replaces any cars in the fleet with as many police, bandits, and
+     * zombies as the level calls for, each dropped somewhere random on
+     * a drivable road.
+     */
+    public void spawn()
+    {
+        spawn(level.getNumPolice(), level.getNumBandits(), level.getNumZombies());
+    }
+
+    /**
+     * Replaces any cars in the fleet with the number of each kind of car
+     * provided, each dropped somewhere random on a drivable road.
+     */
+    public void spawn(int numPolice, int numBandits, int numZombies)
+    {
+        numAgents = numPolice + numBandits + numZombies;
+        if (types.length < numAgents)
+        {
+            types = new PathX_AgentType[numAgents];
+            xs = new double[numAgents];
+            ys = new double[numAgents];
+            previousXs = new double[numAgents];
+            previousYs = new double[numAgents];
+            edges = new int[numAgents];
+            roads = new int[numAgents];
+            progress = new double[numAgents];
+            speeds = new double[numAgents];
+        }
+        for (int i = 0; i < numAgents; i++)
+        {
+            if (i < numPolice)
+                types[i] = PathX_AgentType.POLICE;
+            else if (i < numPolice + numBandits)
+                types[i] = PathX_AgentType.BANDIT;
+            else
+                types[i] = PathX_AgentType.ZOMBIE;
+            speeds[i] = types[i].getSpeedFactor();
+        }
+        loadGraph();
+        placeAgents();
+    }
+
+    /**
+     * Moves every car along for elapsedSeconds of driving, remembering
+     * where each was before so it can be drawn part way between. Note
+     * this does not allocate unless the level's roads or intersections
+     * have changed since the last update, in which case every car stays
+     * on its road, and only those whose roads are gone are put back on
+     * the road somewhere else.
+     */
+    public void update(double elapsedSeconds)
+    {
+        System.arraycopy(xs, 0, previousXs, 0, numAgents);
+        System.arraycopy(ys, 0, previousYs, 0, numAgents);
+        if (graphVersion != level.getGeometryVersion())
+        {
+            reloadGraph();
+        }
+
+        for (int i = 0; i < numAgents; i++)
+        {
+            int edge = edges[i];
+            if (edge < 0)
+                continue;
+
+            // IF THE INTERSECTION WE'RE HEADING FOR HAS CLOSED, TURN
+            // AROUND IF WE CAN, OR ELSE WAIT UNTIL IT OPENS AGAIN
+            double distance = progress[i];
+            if (!costs.isPassable(graph.getOutTarget(edge)))
+            {
+                int reverseEdge = findReverseEdge(edge);
+                if (reverseEdge < 0)
+                    continue;
+                distance = Math.max(edgeLengths[reverseEdge] - distance, 0.0);
+                edge = reverseEdge;
+            }
+
+            // DRIVE UNTIL WE'VE USED UP OUR TIME, TURNING AT EVERY
+            // INTERSECTION WE REACH ALONG THE WAY
+            double timeLeft = elapsedSeconds;
+            for (int hops = 0; (timeLeft > 0.0) && (hops < MAX_HOPS_PER_UPDATE); hops++)
+            {
+                double velocity = speeds[i] * edgeSpeedLimits[edge];
+                double toGo = edgeLengths[edge] - distance;
+                if (toGo > velocity * timeLeft)
+                {
+                    distance += velocity * timeLeft;
+                    break;
+                }
+                timeLeft -= (velocity > 0.0) ? (toGo / velocity) : timeLeft;
+
+                // WE'VE REACHED THE INTERSECTION, SO PICK A NEW ROAD OR
+                // WAIT HERE UNTIL ONE OPENS UP
+                int nextEdge = chooseNextEdge(edge);
+                if (nextEdge < 0)
+                {
+                    distance = edgeLengths[edge];
+                    break;
+                }
+                edge = nextEdge;
+                distance = 0.0;
+            }
+            edges[i] = edge;
+            roads[i] = graph.getOutRoad(edge);
+            progress[i] = distance;
+            updatePosition(i);
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR PICKING A RANDOM ROAD OUT OF THE
+    // INTERSECTION AT THE END OF edge, OR -1 IF WE CAN'T GO ANYWHERE
+    private int chooseNextEdge(int edge)
+    {
+        int cameFrom = edgeSources[edge];
+        int node = graph.getOutTarget(edge);
+        int start = graph.getOutStart(node);
+        int degree = graph.getOutDegree(node);
+        if (degree == 0)
+            return -1;
+
+        int uTurn = -1;
+        int offset = nextRandom(degree);
+        for (int i = 0; i < degree; i++)
+        {
+            int candidate = start + ((offset + i) % degree);
+            int target = graph.getOutTarget(candidate);
+            if ((edgeSpeedLimits[candidate] <= 0.0) || !costs.isPassable(target))
+                continue;
+            if (target == cameFrom)
+                uTurn = candidate;
+            else
+                return candidate;
+        }
+        return uTurn;
+    }
+
+    // PRIVATE HELPER METHOD FOR FINDING THE EDGE BACK ALONG THE SAME ROAD
+    // AS edge, OR -1 IF THE ROAD IS ONE WAY OR ITS START IS CLOSED TOO
+    private int findReverseEdge(int edge)
+    {
+        int from = edgeSources[edge];
+        int to = graph.getOutTarget(edge);
+        int road = graph.getOutRoad(edge);
+        if (!costs.isPassable(from))
+            return -1;
+        for (int e = graph.getOutStart(to); e < graph.getOutEnd(to); e++)
+        {
+            if ((graph.getOutTarget(e) == from) && (graph.getOutRoad(e) == road)
+                    && (edgeSpeedLimits[e] > 0.0))
+                return e;
+        }
+        return -1;
+    }
+
+    // PRIVATE HELPER METHOD FOR WORKING OUT WHERE AN AGENT IS ON SCREEN
+    private void updatePosition(int agent)
+    {
+        int edge = edges[agent];
+        int from = edgeSources[edge];
+        int to = graph.getOutTarget(edge);
+        double length = edgeLengths[edge];
+        double fraction = (length > 0.0) ? (progress[agent] / length) : 0.0;
+        xs[agent] = costs.getX(from) + ((costs.getX(to) - costs.getX(from)) * fraction);
+        ys[agent] = costs.getY(from) + ((costs.getY(to) - costs.getY(from)) * fraction);
+    }
+
+    // PRIVATE HELPER METHOD FOR CACHING WHAT WE NEED TO KNOW ABOUT
+    // EVERY EDGE OF THE LEVEL'S CURRENT ROAD GRAPH
+    private void loadGraph()
+    {
+        graph = level.getRoadGraph();
+        costs = new PathX_RoadCosts(graph);
+        graphVersion = level.getGeometryVersion();
+        int numEdges = graph.getNumEdges();
+        edgeSources = new int[numEdges];
+        edgeLengths = new double[numEdges];
+        edgeSpeedLimits = new double[numEdges];
+        for (int node = 0; node < graph.getNumIntersections(); node++)
+        {
+            for (int e = graph.getOutStart(node); e < graph.getOutEnd(node); e++)
+            {
+                edgeSources[e] = node;
+                edgeLengths[e] = costs.distance(node, graph.getOutTarget(e));
+                edgeSpeedLimits[e] = graph.getRoad(graph.getOutRoad(e)).getSpeedLimit();
+            }
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR CATCHING UP WITH CHANGES TO THE LEVEL. IF
+    // ONLY INTERSECTIONS HAVE MOVED THE GRAPH IS THE SAME, SO EVERY CAR
+    // KEEPS ITS EDGE, BUT IF THE GRAPH WAS REBUILT EACH CAR IS LOOKED FOR
+    // ON ITS ROAD IN THE NEW ONE, AND ONLY PUT SOMEWHERE ELSE IF IT'S GONE
+    private void reloadGraph()
+    {
+        PathX_RoadGraph oldGraph = graph;
+        int[] oldEdgeSources = edgeSources;
+        loadGraph();
+        for (int i = 0; i < numAgents; i++)
+        {
+            int edge = edges[i];
+            if ((edge >= 0) && (graph != oldGraph))
+            {
+                PathX_Road road = oldGraph.getRoad(oldGraph.getOutRoad(edge));
+                int from = graph.indexOf(oldGraph.getIntersection(oldEdgeSources[edge]));
+                int to = graph.indexOf(oldGraph.getIntersection(oldGraph.getOutTarget(edge)));
+                edge = findEdge(from, to, road);
+                if (edge >= 0)
+                {
+                    edges[i] = edge;
+                }
+                else
+                {
+                    // THE ROAD MAY JUST HAVE BEEN TURNED AROUND
+                    edge = findEdge(to, from, road);
+                    if (edge >= 0)
+                    {
+                        edges[i] = edge;
+                        progress[i] = edgeLengths[edge] - progress[i];
+                    }
+                }
+            }
+            if (edge < 0)
+            {
+                placeAgent(i);
+            }
+            else
+            {
+                roads[i] = graph.getOutRoad(edge);
+                progress[i] = Math.max(Math.min(progress[i], edgeLengths[edge]), 0.0);
+                updatePosition(i);
+            }
+        }
+    }
+
+    // PRIVATE HELPER METHOD THAT RETURNS THE DRIVABLE EDGE OF THE CURRENT
+    // GRAPH THAT TAKES road FROM from TO to, OR -1 IF THERE IS NONE
+    private int findEdge(int from, int to, PathX_Road road)
+    {
+        if ((from < 0) || (to < 0))
+            return -1;
+        for (int e = graph.getOutStart(from); e < graph.getOutEnd(from); e++)
+        {
+            if ((graph.getOutTarget(e) == to) && (graph.getRoad(graph.getOutRoad(e)) == road)
+                    && (edgeSpeedLimits[e] > 0.0))
+                return e;
+        }
+        return -1;
+    }
+
+    // PRIVATE HELPER METHOD FOR DROPPING EVERY AGENT ON THE ROAD
+    private void placeAgents()
+    {
+        for (int i = 0; i < numAgents; i++)
+        {
+            placeAgent(i);
+        }
+    }
+
+    // PRIVATE HELPER METHOD FOR DROPPING AN AGENT ON A RANDOM DRIVABLE
+    // ROAD HEADING FOR AN OPEN INTERSECTION, OR NOWHERE IF THERE ISN'T ONE
+    private void placeAgent(int agent)
+    {
+        int numEdges = graph.getNumEdges();
+        int edge = -1;
+        if (numEdges > 0)
+        {
+            int offset = nextRandom(numEdges);
+            for (int j = 0; j < numEdges; j++)
+            {
+                int candidate = (offset + j) % numEdges;
+                if ((edgeSpeedLimits[candidate] > 0.0) && costs.isPassable(graph.getOutTarget(candidate)))
+                {
+                    edge = candidate;
+                    break;
+                }
+            }
+        }
+        edges[agent] = edge;
+        if (edge < 0)
+        {
+            roads[agent] = -1;
+            progress[agent] = 0.0;
+            xs[agent] = 0.0;
+            ys[agent] = 0.0;
+        }
+        else
+        {
+            roads[agent] = graph.getOutRoad(edge);
+            progress[agent] = edgeLengths[edge] * (nextRandom(1024) / 1024.0);
+            updatePosition(agent);
+        }
+
+        // A CAR THAT WAS JUST PLACED DIDN'T COME FROM ANYWHERE
+        previousXs[agent] = xs[agent];
+        previousYs[agent] = ys[agent];
+    }
+
+    // PRIVATE HELPER METHOD THAT RETURNS A RANDOM NUMBER FROM 0 TO
+    // bound - 1, USING XORSHIFT SO THAT NOTHING IS ALLOCATED
+    private int nextRandom(int bound)
+    {
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return (int)((randomState >>> 33) % bound);
+    }
+}
@@ -0,0 +1,125 @@
+package PathX.sim;
+
+import java.io.IOException;
+import PathX.PathX_Level;
+import PathX.file.PathX_BinLevelIO;
+import static PathX.PathXConstants.*;
+
+/**
+ * This class runs the game's simulation of a level without the game, so
+ * without any window, for checking that it still drives the same way
+ * and for seeing how big a level it can keep up with. It's run as:
+ *
+ *      java PathX.sim.PathX_HeadlessRunner level [ticks] [police bandits zombies]
+ *
+ * which loads the level the way the game does, puts its cars on the road,
+ * or as many as are given instead, and simulates them for ticks steps
+ * of SIM_STEP_NANOS, DEFAULT_TICKS unless another number is given, as
+ * fast as it can. It then prints how long that took and a checksum of
+ * where every car ended up. Cars are always placed with the same seed,
+ * so the checksum only changes when the way they drive does.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_HeadlessRunner
+{
+    // HOW MANY STEPS TO SIMULATE UNLESS TOLD OTHERWISE
+    public static final int DEFAULT_TICKS = 10000;
+
+    // WHAT THE CARS ARE PLACED WITH, SO EVERY RUN IS THE SAME
+    public static final long SEED = 1;
+
+    /**
+     * Simulates the fleet argument for numTicks steps of SIM_STEP_NANOS.
+     *
+     * @return How many nanoseconds it took.
+     */
+    public static long run(PathX_Fleet fleet, int numTicks)
+    {
+        double stepSeconds = 1.0 / SIM_STEPS_PER_SECOND;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < numTicks; i++)
+        {
+            fleet.update(stepSeconds);
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    /**
+     * Returns a checksum of where every car in the fleet argument is,
+     * which is the same for two fleets only if they're in the same places.
+     */
+    public static long checksum(PathX_Fleet fleet)
+    {
+        long checksum = fleet.getNumAgents();
+        for (int i = 0; i < fleet.getNumAgents(); i++)
+        {
+            checksum = (checksum * 31) + Double.doubleToLongBits(fleet.getX(i));
+            checksum = (checksum * 31) + Double.doubleToLongBits(fleet.getY(i));
+        }
+        return checksum;
+    }
+
+    /**
+     * Loads the level named in the first argument and simulates it, as
+     * described above.
+     */
+    public static void main(String[] args)
+    {
+        // WE NEVER OPEN A WINDOW, AND THIS MAKES SURE NOTHING TRIES TO
+        System.setProperty("java.awt.headless", "true");
+        if ((args.length != 1) && (args.length != 2) && (args.length != 5))
+        {
+            System.err.println("Usage: java PathX.sim.PathX_HeadlessRunner level [ticks] [police bandits zombies]");
+            System.exit(2);
+        }
+        String levelName = args[0];
+        int numTicks = DEFAULT_TICKS;
+        int[] numCars = null;
+        try
+        {
+            if (args.length > 1)
+                numTicks = Integer.parseInt(args[1]);
+            if (args.length > 2)
+                numCars = new int[] { Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]) };
+        }
+        catch(NumberFormatException nfe)
+        {
+            System.err.println("Not a number: " + nfe.getMessage());
+            System.exit(2);
+        }
+
+        // LOAD THE LEVEL JUST AS THE GAME WOULD
+        PathX_Level level;
+        long startTime = System.nanoTime();
+        try
+        {
+            level = new PathX_BinLevelIO().readLevel(levelName);
+        }
+        catch(IOException ioe)
+        {
+            System.err.println(levelName + ": could not load " + PathX_BinLevelIO.getLevelFile(levelName) + " (" + ioe.getMessage() + ")");
+            System.exit(1);
+            return;
+        }
+        long loadTime = System.nanoTime() - startTime;
+
+        // PUT ITS CARS ON THE ROAD AND GO
+        PathX_Fleet fleet = new PathX_Fleet(level, SEED);
+        if (numCars == null)
+            fleet.spawn();
+        else
+            fleet.spawn(numCars[0], numCars[1], numCars[2]);
+        long runTime = run(fleet, numTicks);
+
+        double seconds = runTime / 1e9;
+        System.out.println(levelName + ": " + level.getIntersections().size() + " intersections, "
+                + level.getRoads().size() + " roads, " + fleet.getNumAgents() + " cars, loaded in "
+                + (loadTime / 1000000) + " ms");
+        System.out.println(numTicks + " ticks in " + (runTime / 1000000) + " ms: "
+                + String.format("%.1f", numTicks / seconds) + " ticks/s, "
+                + String.format("%.0f", ((double)numTicks * fleet.getNumAgents()) / seconds) + " car updates/s, "
+                + String.format("%.1f", (numTicks / seconds) / SIM_STEPS_PER_SECOND) + "x real time");
+        System.out.println("checksum " + Long.toHexString(checksum(fleet)));
+    }
+}
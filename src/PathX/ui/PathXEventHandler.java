@@ -12,10 +12,12 @@ import static PathX.PathXConstants.LEVEL_PLAY_SCREEN_STATE;
 import static PathX.PathXConstants.MENU_SCREEN_STATE;
 import static PathX.PathXConstants.VIEWPORT_INC;
 import PathX.PathX;
+import PathX.PathX.SortingHatPropertyType;
 import PathX.PathX_Level;
 import PathX.data.PathXDataModel;
 import PathX.file.PathXFileManager;
 import PathX.file.PathX_BinLevelIO;
+import PathX.file.PathX_PreloadedLevel;
 import java.io.File;
 import mini_game.Viewport;
 
@@ -217,7 +219,28 @@ public class PathXEventHandler {
             // UPDATE THE DATA
 //            fileManager.loadlevel(levelFile, data);
             
-            ((PathXDataModel)game.getDataModel()).currentLevel = game.getFileManager2().loadLevel(currentLevel, data);
+            // A LEVEL THAT FAILED VERIFICATION IS NEVER LOADED
+            if (game.getLevelVerifier().check(currentLevel) != null) {
+                game.getErrorHandler().processError(SortingHatPropertyType.TEXT_ERROR_LOADING_LEVEL);
+                return;
+            }
+
+            // IF WE GUESSED THIS LEVEL IT'S ALREADY LOADED, OTHERWISE
+            // WE HAVE TO LOAD IT NOW
+            PathX_PreloadedLevel preloadedLevel = game.getLevelPreloader().take(currentLevel);
+            if (preloadedLevel != null) {
+                data.setCurrentLevel(preloadedLevel.getLevel());
+                data.setLevelImages(preloadedLevel.getBackgroundImage(),
+                        preloadedLevel.getStartingLocationImage(),
+                        preloadedLevel.getDestinationImage());
+            } else {
+                // THIS MAKES IT THE CURRENT LEVEL TOO
+                PathX_Level level = game.getFileManager2().loadLevel(currentLevel, data);
+                if (level == null) {
+                    game.getErrorHandler().processError(SortingHatPropertyType.TEXT_ERROR_LOADING_LEVEL);
+                    return;
+                }
+            }
             
             
             game.switchToGameScreen();
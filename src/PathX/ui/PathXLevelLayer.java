@@ -0,0 +1,187 @@
+package PathX.ui;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import PathX.PathX_Level;
+
+/**
+ * This class caches the parts of a level that rarely change, meaning its
+ * background, roads, and intersections, in an offscreen image covering a
+ * bit more than the viewport. Each frame the panel just copies the right
+ * part of it to the screen, and only redraws it when the level changes,
+ * an intersection is opened or closed, or the viewport scrolls past the
+ * cached margin.
+ *
+ * When possible the cache is a VolatileImage so that it lives in video
+ * memory, otherwise it's a BufferedImage.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathXLevelLayer
+{
+    // HOW FAR PAST EACH SIDE OF THE VIEWPORT WE CACHE, SO SCROLLING A
+    // LITTLE DOESN'T MEAN REDRAWING EVERYTHING
+    public static final int CACHE_MARGIN = 256;
+
+    // THE CACHED IMAGE, ONLY ONE OF WHICH IS USED
+    private VolatileImage volatileImage;
+    private BufferedImage bufferedImage;
+
+    // WHAT THE CACHE WAS DRAWN FROM
+    private PathX_Level cachedLevel;
+    private int cachedGeometryVersion;
+    private int cachedOpenStateVersion;
+    private Image cachedBackground;
+    private Image cachedStartImage;
+    private Image cachedDestinationImage;
+    private boolean valid;
+
+    // THE PART OF THE LEVEL THE CACHE COVERS
+    private int cacheX;
+    private int cacheY;
+    private int cacheWidth;
+    private int cacheHeight;
+
+    // HOW MANY TIMES WE'VE HAD TO REDRAW, FOR DEBUGGING
+    private int numRedraws;
+
+    // ACCESSOR METHODS
+    public int  getCacheX()         {   return cacheX;      }
+    public int  getCacheY()         {   return cacheY;      }
+    public int  getCacheWidth()     {   return cacheWidth;  }
+    public int  getCacheHeight()    {   return cacheHeight; }
+    public int  getNumRedraws()     {   return numRedraws;  }
+
+    /**
+     * Forces the cache to be redrawn the next time it's used.
+     */
+    public void invalidate()
+    {
+        valid = false;
+    }
+
+    /**
+     * Returns true if the cache still shows the level argument as it is
+     * now and covers the view rectangle provided, meaning it can be
+     * drawn without redrawing it first.
+     */
+    public boolean isCurrent(   GraphicsConfiguration gc, PathX_Level level,
+                                Image background, Image startImage, Image destinationImage,
+                                int viewX, int viewY, int viewWidth, int viewHeight)
+    {
+        if (!valid
+                || (level != cachedLevel)
+                || (level.getGeometryVersion() != cachedGeometryVersion)
+                || (level.getOpenStateVersion() != cachedOpenStateVersion)
+                || (background != cachedBackground)
+                || (startImage != cachedStartImage)
+                || (destinationImage != cachedDestinationImage))
+            return false;
+
+        // HAVE WE SCROLLED PAST WHAT WE CACHED?
+        if ((viewX < cacheX) || (viewY < cacheY)
+                || (viewX + viewWidth > cacheX + cacheWidth)
+                || (viewY + viewHeight > cacheY + cacheHeight))
+            return false;
+
+        // VIDEO MEMORY MAY HAVE BEEN TAKEN FROM US
+        if (volatileImage != null)
+        {
+            if ((gc == null) || volatileImage.contentsLost())
+                return false;
+            int status = volatileImage.validate(gc);
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE)
+                volatileImage = null;
+            if (status != VolatileImage.IMAGE_OK)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Starts redrawing the cache so it covers the view rectangle provided
+     * plus the cache margin, returning a cleared graphics context for it
+     * whose origin is the top left corner of the cached area. Once it's
+     * drawn the caller must dispose of the context and call endRedraw.
+     */
+    public Graphics2D beginRedraw(  GraphicsConfiguration gc, PathX_Level level,
+                                    Image background, Image startImage, Image destinationImage,
+                                    int viewX, int viewY, int viewWidth, int viewHeight)
+    {
+        cacheX = viewX - CACHE_MARGIN;
+        cacheY = viewY - CACHE_MARGIN;
+        int neededWidth = viewWidth + (CACHE_MARGIN * 2);
+        int neededHeight = viewHeight + (CACHE_MARGIN * 2);
+
+        // MAKE AN IMAGE BIG ENOUGH, PREFERRING VIDEO MEMORY
+        if (gc != null)
+        {
+            bufferedImage = null;
+            if ((volatileImage == null)
+                    || (volatileImage.getWidth() != neededWidth)
+                    || (volatileImage.getHeight() != neededHeight)
+                    || (volatileImage.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE))
+            {
+                volatileImage = gc.createCompatibleVolatileImage(neededWidth, neededHeight, Transparency.TRANSLUCENT);
+            }
+        }
+        else
+        {
+            volatileImage = null;
+            if ((bufferedImage == null)
+                    || (bufferedImage.getWidth() != neededWidth)
+                    || (bufferedImage.getHeight() != neededHeight))
+            {
+                bufferedImage = new BufferedImage(neededWidth, neededHeight, BufferedImage.TYPE_INT_ARGB);
+            }
+        }
+        cacheWidth = neededWidth;
+        cacheHeight = neededHeight;
+
+        // REMEMBER WHAT WE'RE DRAWING
+        cachedLevel = level;
+        cachedGeometryVersion = level.getGeometryVersion();
+        cachedOpenStateVersion = level.getOpenStateVersion();
+        cachedBackground = background;
+        cachedStartImage = startImage;
+        cachedDestinationImage = destinationImage;
+        numRedraws++;
+
+        // AND CLEAR IT
+        Graphics2D g2 = (volatileImage != null) ? volatileImage.createGraphics() : bufferedImage.createGraphics();
+        g2.setComposite(AlphaComposite.Clear);
+        g2.fillRect(0, 0, cacheWidth, cacheHeight);
+        g2.setComposite(AlphaComposite.SrcOver);
+        return g2;
+    }
+
+    /**
+     * Finishes redrawing the cache.
+     *
+     * @return true if the cache is ready to be drawn, false if its video
+     * memory was lost while it was being drawn, meaning it must be
+     * redrawn again.
+     */
+    public boolean endRedraw()
+    {
+        valid = (volatileImage == null) || !volatileImage.contentsLost();
+        return valid;
+    }
+
+    /**
+     * Draws the cache into g, whose origin is the top left corner of the
+     * view rectangle starting at (viewX, viewY).
+     */
+    public void draw(Graphics g, int viewX, int viewY)
+    {
+        Image image = (volatileImage != null) ? volatileImage : bufferedImage;
+        if (image != null)
+            g.drawImage(image, cacheX - viewX, cacheY - viewY, null);
+    }
+}
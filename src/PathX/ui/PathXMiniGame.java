@@ -34,6 +34,11 @@ import PathX.PathX.SortingHatPropertyType;
 import PathX.PathX_Level;
 import PathX.file.PathXFileManager;
 import PathX.file.PathX_BinLevelIO;
+import PathX.file.PathX_ImageCache;
+import PathX.file.PathX_LevelPreloader;
+import PathX.file.PathX_LevelVerifier;
+import PathX.file.PathX_RecordJournal;
+import PathX.data.PathX_LevelRecord;
 import java.io.File;
 
 /**
@@ -45,7 +50,7 @@ import java.io.File;
 public class PathXMiniGame extends MiniGame {
 
     // THE PLAYER RECORD FOR EACH LEVEL, WHICH LIVES BEYOND ONE SESSION
-    // private SortingHatRecord record;
+    private PathX_RecordJournal record;
     // HANDLES GAME UI EVENTS
     private PathXEventHandler eventHandler;
 
@@ -56,6 +61,21 @@ public class PathXMiniGame extends MiniGame {
     private PathX_BinLevelIO fileManager2;
     private PathXFileManager fileManager;
 
+    // LOADS THE LEVELS THE PLAYER IS LIKELY TO PICK ON THE MAP SCREEN
+    // BEFORE THEY'RE PICKED, GUESSING FROM WHERE THE CURSOR IS AND THE
+    // LAST LEVEL PICKED
+    private PathX_LevelPreloader levelPreloader;
+
+    // KEEPS DECODED LEVEL IMAGES SO GOING BACK TO A LEVEL IS QUICK
+    private PathX_ImageCache imageCache;
+
+    // CHECKS EVERY LEVEL IN THE BACKGROUND WHEN THE GAME STARTS SO A
+    // DAMAGED ONE IS NEVER LOADED
+    private PathX_LevelVerifier levelVerifier;
+    private int lastLevelSelected = -1;
+    private int preloadMouseX = -1;
+    private int preloadMouseY = -1;
+
     // THE SCREEN CURRENTLY BEING PLAYED
     private String currentScreenState;
     private Sprite s;
@@ -74,9 +94,24 @@ public class PathXMiniGame extends MiniGame {
      *
      * @return The player's complete record.
      */
-//    public SortingHatRecord getPlayerRecord() {
-//        return record;
-//    }
+    public PathX_RecordJournal getPlayerRecord() {
+        return record;
+    }
+
+    /**
+     * Accessor method for getting the player's record on one level, which
+     * is a copy, so changes to it are only kept once it's saved with
+     * savePlayerRecord.
+     *
+     * @param levelName The level whose record we want.
+     *
+     * @return The player's record on that level, which is new if they've
+     * never played it.
+     */
+    public PathX_LevelRecord getLevelRecord(String levelName) {
+        PathX_LevelRecord levelRecord = (record == null) ? null : record.getLevelRecord(levelName);
+        return (levelRecord == null) ? new PathX_LevelRecord() : levelRecord;
+    }
     /**
      * Accessor method for getting the application's error handler.
      *
@@ -99,6 +134,35 @@ public class PathXMiniGame extends MiniGame {
         return fileManager2;
     }
 
+    /**
+     * Accessor method for getting the preloader that loads levels on the
+     * map screen before they're picked.
+     *
+     * @return The level preloader.
+     */
+    public PathX_LevelPreloader getLevelPreloader() {
+        return levelPreloader;
+    }
+
+    /**
+     * Accessor method for getting the cache of decoded level images.
+     *
+     * @return The image cache.
+     */
+    public PathX_ImageCache getImageCache() {
+        return imageCache;
+    }
+
+    /**
+     * Accessor method for getting the verifier that checks levels before
+     * they're loaded.
+     *
+     * @return The level verifier.
+     */
+    public PathX_LevelVerifier getLevelVerifier() {
+        return levelVerifier;
+    }
+
     /**
      * Used for testing to see if the current screen state matches the
      * testScreenState argument. If it mates, true is returned, else false.
@@ -132,10 +196,13 @@ public class PathXMiniGame extends MiniGame {
     }
 
     /**
-     * This method forces the file manager to save the current player record.
+     * This method forces the file manager to save the player's record on
+     * the level named levelName.
      */
-    public void savePlayerRecord() {
-        //fileManager.saveRecord(record);
+    public void savePlayerRecord(String levelName, PathX_LevelRecord levelRecord) {
+        if (record != null) {
+            fileManager.saveRecord(record, levelName, levelRecord);
+        }
     }
 
     /**
@@ -205,6 +272,10 @@ public class PathXMiniGame extends MiniGame {
         // AND CHANGE THE SCREEN STATE
         currentScreenState = GAME_SCREEN_STATE;
 
+        // AND START GUESSING WHICH LEVEL WILL BE PICKED
+        preloadMouseX = -1;
+        preloadMouseY = -1;
+
         // PLAY THE GAMEPLAY SCREEN SONG
         //   audio.stop(SortingHatPropertyType.SONG_CUE_MENU_SCREEN.toString()); 
         // audio.play(SortingHatPropertyType.SONG_CUE_GAME_SCREEN.toString(), true);    
@@ -559,9 +630,14 @@ public class PathXMiniGame extends MiniGame {
 
         // INIT OUR FILE MANAGER
         fileManager = new PathXFileManager(this);
+        fileManager2 = new PathX_BinLevelIO();
+        imageCache = new PathX_ImageCache(fileManager2, IMAGE_CACHE_BUDGET);
+        levelPreloader = new PathX_LevelPreloader(fileManager2, imageCache, LEVEL_PRELOAD_BUDGET);
+        levelVerifier = new PathX_LevelVerifier(fileManager2, new File(LEVELS_MANIFEST));
+        levelVerifier.start();
 
         // LOAD THE PLAYER'S RECORD FROM A FILE
-//        record = fileManager.loadRecord();
+        record = fileManager.loadRecord();
         // INIT OUR DATA MANAGER
         data = new PathXDataModel(this);
     }
@@ -970,6 +1046,7 @@ public class PathXMiniGame extends MiniGame {
                 }
 
                 public void actionPerformed(ActionEvent ae) {
+                    lastLevelSelected = currentLevel;
                     eventHandler.respondToSelectLevelRequest( "" + currentLevel);
                 }
 
@@ -1045,6 +1122,56 @@ public class PathXMiniGame extends MiniGame {
                 }
             }
         }
+
+        // ON THE MAP, PRELOAD THE LEVELS THE PLAYER IS HEADING FOR
+        if (isCurrentScreenState(GAME_SCREEN_STATE)
+                && ((data.getLastMouseX() != preloadMouseX) || (data.getLastMouseY() != preloadMouseY))) {
+            preloadMouseX = data.getLastMouseX();
+            preloadMouseY = data.getLastMouseY();
+            preloadLevelsNearCursor();
+        }
+    }
+
+    /**
+     * Guesses which levels the player will pick next, meaning the one after
+     * the last level picked and those whose buttons are nearest the cursor,
+     * and has the preloader load them.
+     */
+    private void preloadLevelsNearCursor() {
+        // FIND THE NEAREST BUTTONS, KEEPING THEM SORTED BY DISTANCE
+        int[] nearestLevels = new int[NUM_LEVELS_TO_PRELOAD];
+        float[] nearestDistances = new float[NUM_LEVELS_TO_PRELOAD];
+        int numNearest = 0;
+        for (int i = 0; i < TOTAL_LEVEL; i++) {
+            Sprite levelButton = guiButtons.get(LEVEL_BUTTON_TYPE + i);
+            float dX = levelButton.getX() + (levelButton.getSpriteType().getWidth() / 2) - preloadMouseX;
+            float dY = levelButton.getY() + (levelButton.getSpriteType().getHeight() / 2) - preloadMouseY;
+            float distance = (dX * dX) + (dY * dY);
+            int slot = numNearest;
+            while ((slot > 0) && (nearestDistances[slot - 1] > distance)) {
+                if (slot < NUM_LEVELS_TO_PRELOAD) {
+                    nearestLevels[slot] = nearestLevels[slot - 1];
+                    nearestDistances[slot] = nearestDistances[slot - 1];
+                }
+                slot--;
+            }
+            if (slot < NUM_LEVELS_TO_PRELOAD) {
+                nearestLevels[slot] = i;
+                nearestDistances[slot] = distance;
+                numNearest = Math.min(numNearest + 1, NUM_LEVELS_TO_PRELOAD);
+            }
+        }
+
+        // THE NEAREST ONE IS THE BEST GUESS, THEN THE NEXT IN SEQUENCE
+        ArrayList<String> levelNames = new ArrayList();
+        String nextLevel = "" + ((lastLevelSelected + 1) % TOTAL_LEVEL);
+        for (int i = 0; i < numNearest; i++) {
+            levelNames.add("" + nearestLevels[i]);
+            if ((i == 0) && !levelNames.contains(nextLevel)) {
+                levelNames.add(nextLevel);
+            }
+        }
+        levelPreloader.preload(levelNames);
     }
 
 }
@@ -16,18 +16,24 @@ import mini_game.SpriteType;
 import mini_game.Viewport;
 import properties_manager.PropertiesManager;
 import PathX.data.PathXDataModel;
+import PathX.data.PathX_RenderSnapshot;
 import static PathX.PathXConstants.*;
 import PathX.PathX.SortingHatPropertyType;
 import PathX.PathX_Intersection;
+import PathX.PathX_Level;
 import PathX.PathX_Road;
+import PathX.PathX_SpatialGrid;
 import java.awt.BasicStroke;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Stroke;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
-import java.awt.geom.GeneralPath;
 import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
 import java.util.HashMap;
+import java.io.File;
+import PathX.file.PathX_TileCache;
+import PathX.file.PathX_TilePyramid;
 
 
 /**
@@ -47,14 +53,44 @@ public class PathXPanel extends JPanel
     
     //Manages portion of level to render 
     Viewport viewport;
+
+    // WHAT WE'RE DRAWING THIS FRAME, WHICH THE MODEL PUBLISHED AT THE
+    // END OF ITS LAST UPDATE, SO WE NEVER HAVE TO LOCK THE DATA
+    PathX_RenderSnapshot snapshot;
+
+    // HOW FAR BETWEEN THE SNAPSHOT'S LAST STEP AND THE ONE BEFORE WE'RE
+    // DRAWING THINGS THAT MOVE
+    float interpolation;
     
     // WE'LL RECYCLE THESE DURING RENDERING
     Ellipse2D.Double recyclableCircle;
     Line2D.Double recyclableLine;
     HashMap<Integer, BasicStroke> recyclableStrokes;
-    int triangleXPoints[] = {-ONE_WAY_TRIANGLE_WIDTH/2,  -ONE_WAY_TRIANGLE_WIDTH/2,  ONE_WAY_TRIANGLE_WIDTH/2};
-    int triangleYPoints[] = {ONE_WAY_TRIANGLE_WIDTH/2, -ONE_WAY_TRIANGLE_WIDTH/2, 0};
-    GeneralPath recyclableTriangle;
+    Path2D.Float recyclableMarker;
+    float[] recyclableMarkerCorners;
+
+    // THE LINES AND ONE-WAY MARKERS OF THE ROADS IN THE RENDER AREA
+    PathXRoadGeometry roadGeometry;
+
+    // THE IDS OF THE INTERSECTIONS NEAR THE RENDER AREA, REFILLED
+    // EACH FRAME
+    int[] visibleIntersections;
+
+    // THE PART OF THE LEVEL BEING DRAWN RIGHT NOW, WHICH IS EITHER THE
+    // VIEWPORT OR THE AREA COVERED BY THE LEVEL LAYER CACHE
+    int renderX;
+    int renderY;
+    int renderWidth;
+    int renderHeight;
+
+    // THE CACHED BACKGROUND, ROADS, AND INTERSECTIONS
+    PathXLevelLayer levelLayer;
+
+    // THE BACKGROUNDS, CUT INTO TILES SO WE ONLY DRAW THE VISIBLE ONES,
+    // AND THE NAME OF THE LAST LEVEL BACKGROUND WE DREW, WHOSE PYRAMID IS
+    // FORGOTTEN ONCE ANOTHER LEVEL IS LOADED
+    PathX_TileCache tileCache;
+    String tiledBackgroundName;
     
     // WE'LL USE THIS TO FORMAT SOME TEXT FOR DISPLAY PURPOSES
     private NumberFormat numberFormatter;
@@ -81,9 +117,25 @@ public class PathXPanel extends JPanel
     {
         game = initGame;
         model= initData;
+        viewport = model.getViewport();
         numberFormatter = NumberFormat.getNumberInstance();
         numberFormatter.setMinimumFractionDigits(3);
         numberFormatter.setMaximumFractionDigits(3);
+
+        // MAKE THE SHAPES WE'LL REUSE FOR DRAWING THE LEVEL
+        recyclableCircle = new Ellipse2D.Double(0, 0, INTERSECTION_RADIUS * 2, INTERSECTION_RADIUS * 2);
+        recyclableLine = new Line2D.Double(0, 0, 0, 0);
+        recyclableStrokes = new HashMap();
+        for (int i = 1; i <= 10; i++)
+        {
+            recyclableStrokes.put(i, new BasicStroke(i * 2));
+        }
+        recyclableMarker = new Path2D.Float();
+        recyclableMarkerCorners = new float[6];
+        roadGeometry = new PathXRoadGeometry();
+        visibleIntersections = new int[64];
+        levelLayer = new PathXLevelLayer();
+        tileCache = new PathX_TileCache(new File(TILE_CACHE_PATH), TILE_CACHE_BUDGET);
     }
     
     // MUTATOR METHODS
@@ -126,55 +178,49 @@ public class PathXPanel extends JPanel
     @Override
     public void paintComponent(Graphics g)
     {
-        try
-        {
-            // MAKE SURE WE HAVE EXCLUSIVE ACCESS TO THE GAME DATA
-            game.beginUsingData();
-        
-            // CLEAR THE PANEL
-            super.paintComponent(g);
-        
-            // RENDER THE BACKGROUND, WHICHEVER SCREEN WE'RE ON
-            renderBackground(g);
+        // GET THE NEWEST SNAPSHOT OF THE GAME, WHICH WON'T CHANGE WHILE
+        // WE DRAW IT, SO THE DATA DOESN'T NEED TO BE LOCKED
+        snapshot = model.getRenderSnapshot();
+        interpolation = snapshot.getInterpolation(System.nanoTime());
 
-            // ONLY RENDER THIS STUFF IF WE'RE ACTUALLY IN-GAME
-            if (!model.notStarted())
-            {
-                // RENDER THE SNAKE
-                if (!model.won())
-                    //renderSnake(g);
-                
-                // AND THE TILES
-                renderTiles(g);
-                
-                // AND THE DIALOGS, IF THERE ARE ANY
-                renderDialogs(g);
-                                
-                // RENDERING THE GRID WHERE ALL THE TILES GO CAN BE HELPFUL
-                // DURING DEBUGGIN TO BETTER UNDERSTAND HOW THEY RE LAID OUT
-//                renderGrid(g);
-                
-                // RENDER THE ALGORITHM NAME
-                renderHeader(g);
-            }
+        // CLEAR THE PANEL
+        super.paintComponent(g);
+    
+        // RENDER THE BACKGROUND, WHICHEVER SCREEN WE'RE ON
+        renderBackground(g);
 
-            // AND THE BUTTONS AND DECOR
-            renderGUIControls(g);
+        // ONLY RENDER THIS STUFF IF WE'RE ACTUALLY IN-GAME
+        if (!snapshot.notStarted)
+        {
+            // RENDER THE SNAKE
+            if (!snapshot.won)
+                //renderSnake(g);
             
-            if (!model.notStarted())
-            {
-                // AND THE TIME AND TILES STATS
-                renderStats(g);
-            }
-        
-            // AND FINALLY, TEXT FOR DEBUGGING
-            renderDebuggingText(g);
+            // AND THE TILES
+            renderTiles(g);
+            
+            // AND THE DIALOGS, IF THERE ARE ANY
+            renderDialogs(g);
+                            
+            // RENDERING THE GRID WHERE ALL THE TILES GO CAN BE HELPFUL
+            // DURING DEBUGGIN TO BETTER UNDERSTAND HOW THEY RE LAID OUT
+//            renderGrid(g);
+            
+            // RENDER THE ALGORITHM NAME
+            renderHeader(g);
         }
-        finally
+
+        // AND THE BUTTONS AND DECOR
+        renderGUIControls(g);
+        
+        if (!snapshot.notStarted)
         {
-            // RELEASE THE LOCK
-            game.endUsingData();    
+            // AND THE TIME AND TILES STATS
+            renderStats(g);
         }
+    
+        // AND FINALLY, TEXT FOR DEBUGGING
+        renderDebuggingText(g);
     }
     
     // RENDERING HELPER METHODS
@@ -198,26 +244,175 @@ public class PathXPanel extends JPanel
         renderSprite(g, bg);
     }
 
+    // HELPER METHOD FOR RENDERING THE LEVEL BEING PLAYED INTO THE LEVEL
+    // VIEW. THE PARTS THAT RARELY CHANGE COME FROM THE LEVEL LAYER CACHE,
+    // SO ONLY THE SELECTION AND THE CARS ARE DRAWN FRESH EACH FRAME
+    private void renderLevel(Graphics g)
+    {
+        Graphics2D g2 = (Graphics2D)g.create(LEVEL_VIEW_X, LEVEL_VIEW_Y, LEVEL_VIEW_WIDTH, LEVEL_VIEW_HEIGHT);
+        try
+        {
+            PathX_Level level = snapshot.level;
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            Image background = snapshot.backgroundImage;
+            Image startImage = snapshot.startingLocationImage;
+            Image destImage = snapshot.destinationImage;
+            int viewX = snapshot.viewportX;
+            int viewY = snapshot.viewportY;
+
+            // REDRAW THE CACHE IF WE HAVE TO, WHICH MAY TAKE MORE THAN
+            // ONE TRY IF VIDEO MEMORY IS LOST WHILE WE'RE AT IT
+            for (int tries = 0; (tries < 3) && !levelLayer.isCurrent(gc, level, background, startImage, destImage,
+                                    viewX, viewY, LEVEL_VIEW_WIDTH, LEVEL_VIEW_HEIGHT); tries++)
+            {
+                Graphics2D layerG2 = levelLayer.beginRedraw(gc, level, background, startImage, destImage,
+                                    viewX, viewY, LEVEL_VIEW_WIDTH, LEVEL_VIEW_HEIGHT);
+                renderLevelLayer(layerG2, snapshot, levelLayer.getCacheX(), levelLayer.getCacheY(),
+                                levelLayer.getCacheWidth(), levelLayer.getCacheHeight());
+                layerG2.dispose();
+                levelLayer.endRedraw();
+            }
+            levelLayer.draw(g2, viewX, viewY);
+
+            // NOW THE THINGS THAT CHANGE EVERY FRAME
+            setRenderArea(viewX, viewY, LEVEL_VIEW_WIDTH, LEVEL_VIEW_HEIGHT);
+            renderSelection(g2);
+            renderCars(g2);
+        }
+        finally
+        {
+            g2.dispose();
+        }
+    }
+
+    /**
+     * Renders the part of the level in levelSnapshot that rarely changes,
+     * its background, roads, and intersections, from (x, y) in the level
+     * to the origin of g2, which is what the level layer caches. This can
+     * also render a level offscreen, like into a BufferedImage.
+     */
+    public void renderLevelLayer(Graphics2D g2, PathX_RenderSnapshot levelSnapshot, int x, int y, int width, int height)
+    {
+        snapshot = levelSnapshot;
+        setRenderArea(x, y, width, height);
+        renderLevelBackground(g2);
+        renderRoads(g2);
+        renderIntersections(g2);
+    }
+
+    // HELPER METHOD FOR SETTING THE PART OF THE LEVEL THE RENDERING
+    // HELPERS BELOW DRAW, WITH (x, y) ENDING UP AT THE ORIGIN
+    private void setRenderArea(int x, int y, int width, int height)
+    {
+        renderX = x;
+        renderY = y;
+        renderWidth = width;
+        renderHeight = height;
+    }
+
     // HELPER METHOD FOR RENDERING THE LEVEL BACKGROUND
     private void renderLevelBackground(Graphics2D g2)
     {
-        Image backgroundImage = model.getBackgroundImage();
-        g2.drawImage(backgroundImage, 0, 0, viewport.width, viewport.height, viewport.x, viewport.y, viewport.x + viewport.width, viewport.y + viewport.height, null);
+        Image backgroundImage = snapshot.backgroundImage;
+        String backgroundName = snapshot.level.getBackgroundImageFileName();
+        if ((tiledBackgroundName != null) && !tiledBackgroundName.equals(backgroundName))
+            tileCache.remove(tiledBackgroundName);
+        tiledBackgroundName = backgroundName;
+        if (backgroundImage != null)
+            renderTiled(g2, backgroundName, backgroundImage,
+                        0, 0, renderWidth, renderHeight, renderX, renderY, renderX + renderWidth, renderY + renderHeight);
+    }
+
+    // HELPER METHOD FOR DRAWING THE PART (sx1, sy1) TO (sx2, sy2) OF A BIG
+    // IMAGE INTO (dx1, dy1) TO (dx2, dy2), JUST LIKE drawImage, BUT ONLY
+    // DRAWING THE TILES OF ITS PYRAMID THAT OVERLAP THAT PART, FROM THE
+    // SMALLEST LEVEL WITH ENOUGH DETAIL FOR HOW MUCH IT'S SHRUNK
+    private void renderTiled(Graphics g, String name, Image img,
+                                int dx1, int dy1, int dx2, int dy2,
+                                int sx1, int sy1, int sx2, int sy2)
+    {
+        if ((name == null) || !(img instanceof BufferedImage) || (dx2 <= dx1) || (dy2 <= dy1)
+                || (sx2 <= sx1) || (sy2 <= sy1))
+        {
+            g.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null);
+            return;
+        }
+        PathX_TilePyramid pyramid = tileCache.getPyramid(name, (BufferedImage)img);
+        double scaleX = (double)(sx2 - sx1) / (dx2 - dx1);
+        double scaleY = (double)(sy2 - sy1) / (dy2 - dy1);
+        int level = pyramid.chooseLevel(Math.min(scaleX, scaleY));
+
+        // THE SOURCE RECTANGLE IN THE CHOSEN LEVEL, ROUNDED OUT
+        double levelScaleX = (double)pyramid.getLevelWidth(level) / pyramid.getWidth();
+        double levelScaleY = (double)pyramid.getLevelHeight(level) / pyramid.getHeight();
+        int lx1 = (int)Math.floor(sx1 * levelScaleX);
+        int ly1 = (int)Math.floor(sy1 * levelScaleY);
+        int lx2 = (int)Math.ceil(sx2 * levelScaleX);
+        int ly2 = (int)Math.ceil(sy2 * levelScaleY);
+        double toDestX = (double)(dx2 - dx1) / (lx2 - lx1);
+        double toDestY = (double)(dy2 - dy1) / (ly2 - ly1);
+
+        // AND THE TILES OVERLAPPING IT
+        int tileSize = PathX_TilePyramid.TILE_SIZE;
+        int firstCol = Math.max(0, lx1 / tileSize);
+        int firstRow = Math.max(0, ly1 / tileSize);
+        int lastCol = Math.min(pyramid.getNumColumns(level) - 1, (lx2 - 1) / tileSize);
+        int lastRow = Math.min(pyramid.getNumRows(level) - 1, (ly2 - 1) / tileSize);
+        for (int row = firstRow; row <= lastRow; row++)
+        {
+            for (int col = firstCol; col <= lastCol; col++)
+            {
+                BufferedImage tile = pyramid.getTile(level, col, row);
+                if (tile == null)
+                    continue;
+
+                // THE PART OF THE TILE WE NEED, IN LEVEL COORDINATES.
+                // NEIGHBORING TILES ROUND THEIR SHARED EDGE THE SAME WAY,
+                // SO THERE ARE NO GAPS BETWEEN THEM
+                int tx = col * tileSize;
+                int ty = row * tileSize;
+                int x1 = Math.max(lx1, tx);
+                int y1 = Math.max(ly1, ty);
+                int x2 = Math.min(lx2, tx + tile.getWidth());
+                int y2 = Math.min(ly2, ty + tile.getHeight());
+                if ((x2 <= x1) || (y2 <= y1))
+                    continue;
+                g.drawImage(tile,
+                            dx1 + (int)Math.round((x1 - lx1) * toDestX), dy1 + (int)Math.round((y1 - ly1) * toDestY),
+                            dx1 + (int)Math.round((x2 - lx1) * toDestX), dy1 + (int)Math.round((y2 - ly1) * toDestY),
+                            x1 - tx, y1 - ty, x2 - tx, y2 - ty, null);
+            }
+        }
     }
 
-    // HELPER METHOD FOR RENDERING THE LEVEL ROADS
+    // HELPER METHOD FOR RENDERING THE LEVEL ROADS THAT CROSS THE RENDER
+    // AREA, WHICH DRAWS ALL THE ROADS OF THE SAME WIDTH TOGETHER SO THE
+    // STROKE IS ONLY SET ONCE FOR EACH WIDTH
     private void renderRoads(Graphics2D g2)
     {
-        // GO THROUGH THE ROADS AND RENDER ALL OF THEM
-        Viewport viewport = model.getViewport();
-        Iterator<PathX_Road> it = model.roadsIterator();
-        g2.setStroke(recyclableStrokes.get(INT_STROKE));
-        while (it.hasNext())
+        roadGeometry.gather(snapshot.level, renderX, renderY, renderWidth, renderHeight);
+        g2.setColor(INT_OUTLINE_COLOR);
+        for (int strokeId = PathXRoadGeometry.MIN_ROAD_STROKE; strokeId <= PathXRoadGeometry.MAX_ROAD_STROKE; strokeId++)
         {
-            PathX_Road road = it.next();
-            if (!model.isSelectedRoad(road))
-                renderRoad(g2, road, INT_OUTLINE_COLOR);
+            int numRoads = roadGeometry.getNumRoads(strokeId);
+            if (numRoads == 0)
+                continue;
+            float[] lines = roadGeometry.getRoadLines(strokeId);
+            g2.setStroke(recyclableStrokes.get(strokeId));
+            for (int i = 0; i < numRoads * 4; i += 4)
+            {
+                recyclableLine.x1 = lines[i] - renderX;
+                recyclableLine.y1 = lines[i + 1] - renderY;
+                recyclableLine.x2 = lines[i + 2] - renderX;
+                recyclableLine.y2 = lines[i + 3] - renderY;
+                g2.draw(recyclableLine);
+            }
         }
+
+        // AND THEN ALL THE ONE-WAY MARKERS AT ONCE
+        g2.translate(-renderX, -renderY);
+        g2.fill(roadGeometry.getOneWayMarkers());
+        g2.translate(renderX, renderY);
         
         // NOW DRAW THE LINE BEING ADDED, IF THERE IS ONE
 //        if (model.isAddingRoadEnd())
@@ -229,55 +424,50 @@ public class PathXPanel extends JPanel
 //            recyclableLine.y2 = model.getLastMouseY()-viewport.y;
 //            g2.draw(recyclableLine);
 //        }
-
-        // AND RENDER THE SELECTED ONE, IF THERE IS ONE
-        PathX_Road selectedRoad = model.getSelectedRoad();
-        if (selectedRoad != null)
-        {
-            renderRoad(g2, selectedRoad, HIGHLIGHTED_COLOR);
-        }
     }
-    
-    // HELPER METHOD FOR RENDERING A SINGLE ROAD
+
+    // HELPER METHOD FOR RENDERING A SINGLE ROAD AND ITS ONE-WAY MARKER,
+    // WHICH IS HOW THE SELECTED ROAD IS HIGHLIGHTED
     private void renderRoad(Graphics2D g2, PathX_Road road, Color c)
     {
         g2.setColor(c);
-        int strokeId = road.getSpeedLimit()/10;
-
-        // CLAMP THE SPEED LIMIT STROKE
-        if (strokeId < 1) strokeId = 1;
-        if (strokeId > 10) strokeId = 10;
-        g2.setStroke(recyclableStrokes.get(strokeId));
+        g2.setStroke(recyclableStrokes.get(PathXRoadGeometry.getStrokeId(road)));
 
         // LOAD ALL THE DATA INTO THE RECYCLABLE LINE
-        recyclableLine.x1 = road.getNode1().x-viewport.x;
-        recyclableLine.y1 = road.getNode1().y-viewport.y;
-        recyclableLine.x2 = road.getNode2().x-viewport.x;
-        recyclableLine.y2 = road.getNode2().y-viewport.y;
+        recyclableLine.x1 = road.getNode1().x-renderX;
+        recyclableLine.y1 = road.getNode1().y-renderY;
+        recyclableLine.x2 = road.getNode2().x-renderX;
+        recyclableLine.y2 = road.getNode2().y-renderY;
 
         // AND DRAW IT
         g2.draw(recyclableLine);
         
         // AND IF IT'S A ONE WAY ROAD DRAW THE MARKER
-        if (road.isOneWay())
+        if (road.isOneWay()
+                && PathXRoadGeometry.computeOneWayMarker(   (int)recyclableLine.x1, (int)recyclableLine.y1,
+                                                            (int)recyclableLine.x2, (int)recyclableLine.y2,
+                                                            recyclableMarkerCorners, recyclableMarker))
         {
-            this.renderOneWaySignalsOnRecyclableLine(g2);
+            g2.fill(recyclableMarker);
         }
     }
 
     // HELPER METHOD FOR RENDERING AN INTERSECTION
     private void renderIntersections(Graphics2D g2)
     {
-        Iterator<PathX_Intersection> it = model.intersectionsIterator();
-        while (it.hasNext())
+        // ONLY LOOK AT THE INTERSECTIONS CLOSE ENOUGH TO BE SEEN
+        PathX_Level level = snapshot.level;
+        ArrayList<PathX_Intersection> intersections = level.getIntersections();
+        PathX_SpatialGrid grid = level.getIntersectionGrid();
+        int numVisible = queryVisible(grid);
+        Stroke s = recyclableStrokes.get(INT_STROKE);
+        for (int i = 0; i < numVisible; i++)
         {
-            PathX_Intersection intersection = it.next();
+            PathX_Intersection intersection = intersections.get(visibleIntersections[i]);
 
             // ONLY RENDER IT THIS WAY IF IT'S NOT THE START OR DESTINATION
-            // AND IT IS IN THE VIEWPORT
-            if ((!model.isStartingLocation(intersection))
-                    && (!model.isDestination(intersection))
-                    && viewport.isCircleBoundingBoxInsideViewport(intersection.x, intersection.y, INTERSECTION_RADIUS))
+            if ((intersection != level.startingLocation)
+                    && (intersection != level.destination))
             {
                 // FIRST FILL
                 if (intersection.isOpen())
@@ -287,39 +477,101 @@ public class PathXPanel extends JPanel
                 {
                     g2.setColor(CLOSED_INT_COLOR);
                 }
-                recyclableCircle.x = intersection.x - viewport.x - INTERSECTION_RADIUS;
-                recyclableCircle.y = intersection.y - viewport.y - INTERSECTION_RADIUS;
+                recyclableCircle.x = intersection.x - renderX - INTERSECTION_RADIUS;
+                recyclableCircle.y = intersection.y - renderY - INTERSECTION_RADIUS;
                 g2.fill(recyclableCircle);
 
                 // AND NOW THE OUTLINE
-                if (model.isSelectedIntersection(intersection))
-                {
-                    g2.setColor(HIGHLIGHTED_COLOR);
-                } else
-                {
-                    g2.setColor(INT_OUTLINE_COLOR);
-                }
-                Stroke s = recyclableStrokes.get(INT_STROKE);
+                g2.setColor(INT_OUTLINE_COLOR);
                 g2.setStroke(s);
                 g2.draw(recyclableCircle);
             }
         }
 
         // AND NOW RENDER THE START AND DESTINATION LOCATIONS
-        Image startImage = model.getStartingLocationImage();
-        PathX_Intersection startInt = model.getStartingLocation();
+        Image startImage = snapshot.startingLocationImage;
+        PathX_Intersection startInt = level.startingLocation;
         renderIntersectionImage(g2, startImage, startInt);
 
-        Image destImage = model.getDesinationImage();
-        PathX_Intersection destInt = model.getDestination();
+        Image destImage = snapshot.destinationImage;
+        PathX_Intersection destInt = level.destination;
         renderIntersectionImage(g2, destImage, destInt);
     }
 
+    // HELPER METHOD FOR RENDERING THE SELECTED ROAD AND INTERSECTION ON
+    // TOP OF THE CACHED LEVEL, SINCE THE SELECTION CHANGES ALL THE TIME
+    private void renderSelection(Graphics2D g2)
+    {
+        PathX_Road selectedRoad = snapshot.selectedRoad;
+        if (selectedRoad != null)
+        {
+            renderRoad(g2, selectedRoad, HIGHLIGHTED_COLOR);
+        }
+
+        PathX_Intersection selectedIntersection = snapshot.selectedIntersection;
+        if ((selectedIntersection != null)
+                && (selectedIntersection != snapshot.level.startingLocation)
+                && (selectedIntersection != snapshot.level.destination))
+        {
+            recyclableCircle.x = selectedIntersection.x - renderX - INTERSECTION_RADIUS;
+            recyclableCircle.y = selectedIntersection.y - renderY - INTERSECTION_RADIUS;
+            g2.setColor(HIGHLIGHTED_COLOR);
+            g2.setStroke(recyclableStrokes.get(INT_STROKE));
+            g2.draw(recyclableCircle);
+        }
+    }
+
+    // HELPER METHOD FOR RENDERING ALL THE POLICE, BANDITS, AND ZOMBIES
+    private void renderCars(Graphics2D g2)
+    {
+        for (int i = 0; i < snapshot.numCars; i++)
+        {
+            int x = (int)interpolate(snapshot.carPreviousXs[i], snapshot.carXs[i]) - renderX;
+            int y = (int)interpolate(snapshot.carPreviousYs[i], snapshot.carYs[i]) - renderY;
+            if ((x < -CAR_RADIUS) || (y < -CAR_RADIUS)
+                    || (x > renderWidth + CAR_RADIUS) || (y > renderHeight + CAR_RADIUS))
+                continue;
+            switch (snapshot.carTypes[i])
+            {
+                case POLICE:    g2.setColor(POLICE_COLOR);  break;
+                case BANDIT:    g2.setColor(BANDIT_COLOR);  break;
+                default:        g2.setColor(ZOMBIE_COLOR);  break;
+            }
+            g2.fillOval(x - CAR_RADIUS, y - CAR_RADIUS, CAR_RADIUS * 2, CAR_RADIUS * 2);
+        }
+    }
+
+    // HELPER METHOD FOR WORKING OUT WHERE TO DRAW SOMETHING THAT MOVED
+    // FROM previous TO current IN THE SNAPSHOT'S LAST STEP
+    private float interpolate(float previous, float current)
+    {
+        return previous + ((current - previous) * interpolation);
+    }
+
+    // HELPER METHOD FOR FINDING THE INTERSECTIONS WHOSE CIRCLES MAY
+    // OVERLAP THE RENDER AREA, LEAVING THEIR IDS IN visibleIntersections
+    private int queryVisible(PathX_SpatialGrid grid)
+    {
+        int minX = renderX - INTERSECTION_RADIUS;
+        int minY = renderY - INTERSECTION_RADIUS;
+        int maxX = renderX + renderWidth + INTERSECTION_RADIUS;
+        int maxY = renderY + renderHeight + INTERSECTION_RADIUS;
+        int numVisible = grid.queryRange(minX, minY, maxX, maxY, visibleIntersections);
+        if (numVisible > visibleIntersections.length)
+        {
+            visibleIntersections = new int[numVisible * 2];
+            numVisible = grid.queryRange(minX, minY, maxX, maxY, visibleIntersections);
+        }
+        return numVisible;
+    }
+
     // HELPER METHOD FOR RENDERING AN IMAGE AT AN INTERSECTION, WHICH IS
     // NEEDED BY THE STARTING LOCATION AND THE DESTINATION
     private void renderIntersectionImage(Graphics2D g2, Image img, PathX_Intersection i)
     {
-        Viewport viewport=model.getViewport();
+        if ((img == null) || (i == null))
+            return;
+
         // CALCULATE WHERE TO RENDER IT
         int w = img.getWidth(null);
         int h = img.getHeight(null);
@@ -328,49 +580,13 @@ public class PathXPanel extends JPanel
         int x2 = x1 + img.getWidth(null);
         int y2 = y1 + img.getHeight(null);
         
-        // ONLY RENDER IF INSIDE THE VIEWPORT
-        if (viewport.isRectInsideViewport(x1, y1, x2, y2))
+        // ONLY RENDER IF INSIDE THE RENDER AREA
+        if ((x2 >= renderX) && (y2 >= renderY) && (x1 <= renderX + renderWidth) && (y1 <= renderY + renderHeight))
         {
-            g2.drawImage(img, x1 - viewport.x, y1 - viewport.y, null);
+            g2.drawImage(img, x1 - renderX, y1 - renderY, null);
         }        
     }
     
-    private void renderOneWaySignalsOnRecyclableLine(Graphics2D g2)
-    {
-        // CALCULATE THE ROAD LINE SLOPE
-        double diffX = recyclableLine.x2 - recyclableLine.x1;
-        double diffY = recyclableLine.y2 - recyclableLine.y1;
-        double slope = diffY/diffX;
-        
-        // AND THEN FIND THE LINE MIDPOINT
-        double midX = (recyclableLine.x1 + recyclableLine.x2)/2.0;
-        double midY = (recyclableLine.y1 + recyclableLine.y2)/2.0;
-        
-        // GET THE RENDERING TRANSFORM, WE'LL RETORE IT BACK
-        // AT THE END
-        AffineTransform oldAt = g2.getTransform();
-        
-        // CALCULATE THE ROTATION ANGLE
-        double theta = Math.atan(slope);
-        if (recyclableLine.x2 < recyclableLine.x1)
-            theta = (theta + Math.PI);
-        
-        // MAKE A NEW TRANSFORM FOR THIS TRIANGLE AND SET IT
-        // UP WITH WHERE WE WANT TO PLACE IT AND HOW MUCH WE
-        // WANT TO ROTATE IT
-        AffineTransform at = new AffineTransform();        
-        at.setToIdentity();
-        at.translate(midX, midY);
-        at.rotate(theta);
-        g2.setTransform(at);
-        
-        // AND RENDER AS A SOLID TRIANGLE
-        g2.fill(recyclableTriangle);
-        
-        // RESTORE THE OLD TRANSFORM SO EVERYTHING DOESN'T END UP ROTATED 0
-        g2.setTransform(oldAt);
-    }
-    
     /**
      * Renders all the GUI decor and buttons.
      * 
@@ -391,6 +607,12 @@ public class PathXPanel extends JPanel
         renderMapComponment(g, game.getGUIDecor().get(MAP));
         
         renderLevelPlayComponent(g, game.getGUIDecor().get(LEVEL_PLAY_MAP));
+
+        // AND THE LEVEL BEING PLAYED ON TOP OF ITS MAP
+        if (((PathXMiniGame)game).isCurrentScreenState(LEVEL_PLAY_SCREEN_STATE) && (snapshot.level != null))
+        {
+            renderLevel(g);
+        }
         
         
         // AND NOW RENDER THE BUTTONS
@@ -409,22 +631,27 @@ public class PathXPanel extends JPanel
     
     // For the ViewPort of the map
     public void renderMapComponment(Graphics g , Sprite s){
-        Viewport view = model.getViewport();
+        int viewX = snapshot.viewportX;
+        int viewY = snapshot.viewportY;
         if(s.getState().equals(PathXButtonState.VISIBLE_STATE.toString())){
             SpriteType bgST = s.getSpriteType();
             Image img = bgST.getStateImage(s.getState());
-            g.drawImage(img,0,158,1272,697,view.getViewportX(),view.getViewportY(),view.getViewportX()+1275,view.getViewportY()+543,null);
+            renderTiled(g, bgST.getSpriteTypeID() + "_" + s.getState(), img,
+                    0,158,1272,697,viewX,viewY,viewX+1275,viewY+543);
         }
     }
     
     //For the ViewPort of the level loaded
     public void renderLevelPlayComponent(Graphics g , Sprite s){
         
-        Viewport view = model.getViewport();
+        int viewX = snapshot.viewportX;
+        int viewY = snapshot.viewportY;
         if(s.getState().equals(PathXButtonState.VISIBLE_STATE.toString())){
              SpriteType bgST = s.getSpriteType();
             Image img = bgST.getStateImage(s.getState());
-            g.drawImage(img, 500,58,1260,700,view.getViewportX(),view.getViewportY(),view.getViewportX()+1275,view.getViewportY()+543,null);
+            renderTiled(g, bgST.getSpriteTypeID() + "_" + s.getState(), img,
+                    LEVEL_VIEW_X, LEVEL_VIEW_Y, LEVEL_VIEW_X + LEVEL_VIEW_WIDTH, LEVEL_VIEW_Y + LEVEL_VIEW_HEIGHT,
+                    viewX,viewY,viewX+1275,viewY+543);
         }
     }
     
@@ -456,12 +683,12 @@ public class PathXPanel extends JPanel
     {
         // RENDER THE GAME TIME AND THE TILES LEFT FOR IN-GAME
         if (((PathXMiniGame)game).isCurrentScreenState(GAME_SCREEN_STATE) 
-                && model.inProgress() || model.isPaused())
+                && snapshot.inProgress || snapshot.paused)
         {
             // RENDER THE TILES LEFT
             g.setFont(FONT_TEXT_DISPLAY);
             g.setColor(Color.BLACK);
-            String tilesRemaining = "" + model.getBadSpellsCounter();
+            String tilesRemaining = "" + snapshot.badSpellsCounter;
             int x = TILE_COUNT_X + TILE_COUNT_OFFSET;
             int y = TILE_COUNT_Y + TILE_TEXT_OFFSET;
             g.drawString(tilesRemaining , x, y);
@@ -520,27 +747,16 @@ public class PathXPanel extends JPanel
      */
     public void renderTiles(Graphics g)
     {
-        // DRAW THE GRID
-        ArrayList<PathXTile> tilesToSort = model.getTilesToSort();
-        for (int i = 0; i < tilesToSort.size(); i++)
+        // THE GRID, THEN THE MOVING TILES, THEN THE SELECTED TILE, IF
+        // THERE IS ONE, WHICH IS THE ORDER THE SNAPSHOT HAS THEM IN,
+        // EACH PART WAY ALONG ITS LAST STEP
+        for (int i = 0; i < snapshot.numTiles; i++)
         {
-            PathXTile tile = tilesToSort.get(i);
-            if (tile != null)
-                renderTile(g, tile);
+            renderTile(g, snapshot.tiles[i],
+                        interpolate(snapshot.tilePreviousXs[i], snapshot.tileXs[i]),
+                        interpolate(snapshot.tilePreviousYs[i], snapshot.tileYs[i]),
+                        snapshot.tileStates[i]);
         }
-        
-        // THEN DRAW ALL THE MOVING TILES
-        Iterator<PathXTile> movingTiles = model.getMovingTiles();
-        while (movingTiles.hasNext())
-        {
-            PathXTile tile = movingTiles.next();
-            renderTile(g, tile);
-        }
-        
-        // AND THE SELECTED TILE, IF THERE IS ONE
-        PathXTile selectedTile = model.getSelectedTile();
-        if (selectedTile != null)
-            renderTile(g, selectedTile);
     }
 
     /**
@@ -551,17 +767,23 @@ public class PathXPanel extends JPanel
      * @param tileToRender Tile to render to this panel.
      */
     public void renderTile(Graphics g, PathXTile tileToRender)
+    {
+        renderTile(g, tileToRender, tileToRender.getX(), tileToRender.getY(), tileToRender.getState());
+    }
+
+    // HELPER METHOD FOR RENDERING A TILE WHERE AND HOW IT WAS WHEN ITS
+    // SNAPSHOT WAS TAKEN
+    private void renderTile(Graphics g, PathXTile tileToRender, float x, float y, String state)
     {
         // ONLY RENDER VISIBLE TILES
-        if (!tileToRender.getState().equals(PathXButtonState.INVISIBLE_STATE.toString()))
+        if (!state.equals(PathXButtonState.INVISIBLE_STATE.toString()))
         {
-            Viewport viewport = model.getViewport();
-            int correctedTileX = (int)(tileToRender.getX());
-            int correctedTileY = (int)(tileToRender.getY());
+            int correctedTileX = (int)x;
+            int correctedTileY = (int)y;
 
             // THEN THE TILE IMAGE
             SpriteType bgST = tileToRender.getSpriteType();
-            Image img = bgST.getStateImage(tileToRender.getState());
+            Image img = bgST.getStateImage(state);
             g.drawImage(img,    correctedTileX, 
                                 correctedTileY, 
                                 bgST.getWidth(), bgST.getHeight(), null); 
@@ -630,22 +852,24 @@ public class PathXPanel extends JPanel
      * Renders the debugging text to the panel. Note
      * that the rendering will only actually be done
      * if data has activated debug text rendering.
+     * The text comes from the snapshot, since the
+     * data may be changing it while we draw.
      * 
      * @param g the Graphics context for this panel
      */
     public void renderDebuggingText(Graphics g)
     {
         // IF IT'S ACTIVATED
-        if (model.isDebugTextRenderingActive())
+        if (snapshot.debugTextActive)
         {
             // ENABLE PROPER RENDER SETTINGS
             g.setFont(FONT_DEBUG_TEXT);
             g.setColor(COLOR_DEBUG_TEXT);
             
             // GO THROUGH ALL THE DEBUG TEXT
-            Iterator<String> it = model.getDebugText().iterator();
-            int x = model.getDebugTextX();
-            int y = model.getDebugTextY();
+            Iterator<String> it = snapshot.debugText.iterator();
+            int x = snapshot.debugTextX;
+            int y = snapshot.debugTextY;
             while (it.hasNext())
             {
                 // RENDER THE TEXT
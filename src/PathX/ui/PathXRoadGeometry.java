@@ -0,0 +1,246 @@
+package PathX.ui;
+
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import PathX.PathX_Intersection;
+import PathX.PathX_Level;
+import PathX.PathX_Road;
+import PathX.PathX_SpatialGrid;
+import static PathX.PathXConstants.*;
+
+/**
+ * This class keeps the shapes needed to draw the roads in part of a
+ * level so they don't have to be worked out every frame. Only the roads
+ * the level's road grid says overlap that part are gathered, grouped by
+ * the stroke their speed limit calls for, so all the roads of one width
+ * can be drawn one after another without changing the stroke in between.
+ * The triangles marking one-way roads are computed per road the first
+ * time it's gathered and only recomputed once its endpoints or direction
+ * have changed, and the gathered ones are kept in one path so they can
+ * be drawn with a single fill.
+ *
+ * Note that all shapes are in level coordinates, so they must be drawn
+ * translated by the viewport.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathXRoadGeometry
+{
+    // THE RANGE OF ROAD STROKES, EACH OF WHICH IS A SPEED LIMIT / 10
+    public static final int MIN_ROAD_STROKE = 1;
+    public static final int MAX_ROAD_STROKE = 10;
+
+    // HOW FAR OUTSIDE A ROAD'S BOUNDING BOX IT MAY BE DRAWN, WHICH IS
+    // HALF THE WIDEST STROKE OR HALF A ONE-WAY TRIANGLE
+    public static final int ROAD_MARGIN = Math.max(MAX_ROAD_STROKE, ONE_WAY_TRIANGLE_WIDTH/2);
+
+    // THE ONE-WAY TRIANGLE, POINTING ALONG THE X AXIS AND CENTERED
+    // ON THE ORIGIN, WHICH IS ROTATED ONTO EACH ROAD'S MIDPOINT
+    private static final float[] TRIANGLE_X = { -ONE_WAY_TRIANGLE_WIDTH/2,  -ONE_WAY_TRIANGLE_WIDTH/2,  ONE_WAY_TRIANGLE_WIDTH/2 };
+    private static final float[] TRIANGLE_Y = { ONE_WAY_TRIANGLE_WIDTH/2,   -ONE_WAY_TRIANGLE_WIDTH/2,  0 };
+
+    // THE LEVEL OUR TRIANGLES ARE FROM
+    private PathX_Level level;
+
+    // FOR EACH ROAD, THE ENDPOINTS ITS TRIANGLE WAS COMPUTED FROM, FOUR
+    // INTS PER ROAD, WHETHER THAT'S BEEN DONE, AND WHETHER IT HAS ONE
+    private int[] endpoints;
+    private boolean[] computed;
+    private boolean[] hasMarker;
+
+    // FOR EACH ROAD, ITS TRIANGLE'S CORNERS AS x0, y0, x1, y1, x2, y2
+    private float[] markers;
+
+    // THE IDS OF THE ROADS GATHERED LAST
+    private int[] gatheredRoads;
+
+    // THE GATHERED TRIANGLES, READY TO BE FILLED
+    private Path2D.Float oneWayMarkers;
+
+    // THE GATHERED ROAD LINES GROUPED BY STROKE, FOUR FLOATS PER ROAD,
+    // AND HOW MANY ROADS EACH STROKE HAS. NOTE THAT ONE PATH PER STROKE
+    // WAS TRIED, BUT FILLING ONE BIG STROKED PATH IS SLOWER IN SOFTWARE
+    // THAN DRAWING ITS LINES ONE AT A TIME
+    private float[][] roadLines;
+    private int[] roadCounts;
+
+    /**
+     * Constructs geometry for no level at all. Call gather to load one.
+     */
+    public PathXRoadGeometry()
+    {
+        endpoints = new int[0];
+        computed = new boolean[0];
+        hasMarker = new boolean[0];
+        markers = new float[0];
+        gatheredRoads = new int[64];
+        oneWayMarkers = new Path2D.Float(Path2D.WIND_NON_ZERO);
+        roadLines = new float[MAX_ROAD_STROKE + 1][0];
+        roadCounts = new int[MAX_ROAD_STROKE + 1];
+    }
+
+    // ACCESSOR METHODS
+    public Path2D   getOneWayMarkers()              {   return oneWayMarkers;           }
+    public float[]  getRoadLines(int strokeId)      {   return roadLines[strokeId];     }
+    public int      getNumRoads(int strokeId)       {   return roadCounts[strokeId];    }
+
+    /**
+     * Returns the stroke the road argument is drawn with, which is its
+     * speed limit / 10 clamped to MIN_ROAD_STROKE..MAX_ROAD_STROKE.
+     */
+    public static int getStrokeId(PathX_Road road)
+    {
+        int strokeId = road.getSpeedLimit()/10;
+        if (strokeId < MIN_ROAD_STROKE) strokeId = MIN_ROAD_STROKE;
+        if (strokeId > MAX_ROAD_STROKE) strokeId = MAX_ROAD_STROKE;
+        return strokeId;
+    }
+
+    /**
+     * Gathers the lines and one-way triangles of the roads in newLevel
+     * that may be seen in the rectangle from (x, y) that's width by
+     * height, replacing the ones gathered before. This takes time for
+     * the roads found, not for all the roads in the level.
+     *
+     * @return The number of roads gathered.
+     */
+    public int gather(PathX_Level newLevel, int x, int y, int width, int height)
+    {
+        // A NEW LEVEL, OR ONE WHOSE ROADS HAVE BEEN RENUMBERED, MEANS
+        // NONE OF THE TRIANGLES WE HAVE ARE ANY GOOD
+        ArrayList<PathX_Road> roads = newLevel.getRoads();
+        int numRoads = roads.size();
+        if ((newLevel != level) || (computed.length != numRoads))
+        {
+            endpoints = new int[numRoads * 4];
+            computed = new boolean[numRoads];
+            hasMarker = new boolean[numRoads];
+            markers = new float[numRoads * 6];
+            level = newLevel;
+        }
+
+        // ASK THE GRID WHICH ROADS ARE CLOSE ENOUGH TO BE SEEN
+        PathX_SpatialGrid grid = newLevel.getRoadGrid();
+        int minX = x - ROAD_MARGIN;
+        int minY = y - ROAD_MARGIN;
+        int maxX = x + width + ROAD_MARGIN;
+        int maxY = y + height + ROAD_MARGIN;
+        int numGathered = grid.queryRange(minX, minY, maxX, maxY, gatheredRoads);
+        if (numGathered > gatheredRoads.length)
+        {
+            gatheredRoads = new int[numGathered * 2];
+            numGathered = grid.queryRange(minX, minY, maxX, maxY, gatheredRoads);
+        }
+
+        // BRING THEIR TRIANGLES UP TO DATE AND PUT THEM TOGETHER
+        oneWayMarkers.reset();
+        for (int i = 0; i < numGathered; i++)
+        {
+            int roadId = gatheredRoads[i];
+            updateMarker(roadId, roads.get(roadId));
+            if (hasMarker[roadId])
+                appendMarker(oneWayMarkers, markers, roadId * 6);
+        }
+
+        // AND GROUP THEIR LINES BY STROKE, SINCE A SPEED LIMIT CHANGE
+        // CAN MOVE A ROAD TO ANOTHER ONE
+        for (int i = MIN_ROAD_STROKE; i <= MAX_ROAD_STROKE; i++)
+        {
+            roadCounts[i] = 0;
+        }
+        for (int i = 0; i < numGathered; i++)
+        {
+            roadCounts[getStrokeId(roads.get(gatheredRoads[i]))]++;
+        }
+        for (int i = MIN_ROAD_STROKE; i <= MAX_ROAD_STROKE; i++)
+        {
+            if (roadLines[i].length < roadCounts[i] * 4)
+                roadLines[i] = new float[roadCounts[i] * 4];
+            roadCounts[i] = 0;
+        }
+        for (int i = 0; i < numGathered; i++)
+        {
+            int roadId = gatheredRoads[i];
+            int strokeId = getStrokeId(roads.get(roadId));
+            int line = roadCounts[strokeId] * 4;
+            roadLines[strokeId][line] = endpoints[roadId * 4];
+            roadLines[strokeId][line + 1] = endpoints[(roadId * 4) + 1];
+            roadLines[strokeId][line + 2] = endpoints[(roadId * 4) + 2];
+            roadLines[strokeId][line + 3] = endpoints[(roadId * 4) + 3];
+            roadCounts[strokeId]++;
+        }
+        return numGathered;
+    }
+
+    // PRIVATE HELPER METHOD FOR RECOMPUTING THE TRIANGLE OF THE ROAD
+    // WITH THE ID PROVIDED IF IT HAS CHANGED SINCE IT WAS LAST COMPUTED
+    private void updateMarker(int roadId, PathX_Road road)
+    {
+        PathX_Intersection node1 = road.getNode1();
+        PathX_Intersection node2 = road.getNode2();
+        int e = roadId * 4;
+        if (computed[roadId]
+                && (hasMarker[roadId] == road.isOneWay())
+                && (endpoints[e] == node1.x) && (endpoints[e + 1] == node1.y)
+                && (endpoints[e + 2] == node2.x) && (endpoints[e + 3] == node2.y))
+            return;
+
+        endpoints[e] = node1.x;
+        endpoints[e + 1] = node1.y;
+        endpoints[e + 2] = node2.x;
+        endpoints[e + 3] = node2.y;
+        hasMarker[roadId] = road.isOneWay()
+                && computeOneWayMarker(node1.x, node1.y, node2.x, node2.y, markers, roadId * 6);
+        computed[roadId] = true;
+    }
+
+    /**
+     * Puts the one-way triangle for the road from (x1, y1) to (x2, y2)
+     * into path, replacing whatever it held. Its corners are worked out
+     * in corners, which must hold at least 6 floats.
+     *
+     * @return true if the triangle was made, false if the road has no
+     * length and so no direction to point the triangle in.
+     */
+    public static boolean computeOneWayMarker(int x1, int y1, int x2, int y2, float[] corners, Path2D.Float path)
+    {
+        path.reset();
+        if (!computeOneWayMarker(x1, y1, x2, y2, corners, 0))
+            return false;
+        appendMarker(path, corners, 0);
+        return true;
+    }
+
+    // PRIVATE HELPER METHOD FOR ROTATING THE TRIANGLE ONTO THE MIDPOINT OF
+    // THE ROAD FROM (x1, y1) TO (x2, y2), LEAVING ITS CORNERS IN corners
+    // STARTING AT offset. NOTE THE DIRECTION COMES STRAIGHT FROM THE ROAD,
+    // SO VERTICAL ROADS NEED NO SPECIAL CASE
+    private static boolean computeOneWayMarker(int x1, int y1, int x2, int y2, float[] corners, int offset)
+    {
+        double diffX = x2 - x1;
+        double diffY = y2 - y1;
+        double length = Math.sqrt((diffX * diffX) + (diffY * diffY));
+        if (length == 0.0)
+            return false;
+
+        double cos = diffX / length;
+        double sin = diffY / length;
+        double midX = (x1 + x2) / 2.0;
+        double midY = (y1 + y2) / 2.0;
+        for (int i = 0; i < TRIANGLE_X.length; i++)
+        {
+            corners[offset + (i * 2)] = (float)(midX + (TRIANGLE_X[i] * cos) - (TRIANGLE_Y[i] * sin));
+            corners[offset + (i * 2) + 1] = (float)(midY + (TRIANGLE_X[i] * sin) + (TRIANGLE_Y[i] * cos));
+        }
+        return true;
+    }
+
+    // PRIVATE HELPER METHOD FOR ADDING ONE TRIANGLE TO A PATH
+    private static void appendMarker(Path2D.Float path, float[] corners, int offset)
+    {
+        path.moveTo(corners[offset], corners[offset + 1]);
+        path.lineTo(corners[offset + 2], corners[offset + 3]);
+        path.lineTo(corners[offset + 4], corners[offset + 5]);
+        path.closePath();
+    }
+}
@@ -28,6 +28,11 @@ public class PathXTile extends Sprite
     // THE TARGET COORDINATES IN WHICH IT IS CURRENTLY HEADING
     private float targetX;
     private float targetY;
+
+    // WHERE IT WAS BEFORE ITS LAST UPDATE, SO IT CAN BE DRAWN PART WAY
+    // BETWEEN THERE AND WHERE IT IS NOW
+    private float previousX;
+    private float previousY;
     
     // WIN ANIMATIONS CAN BE GENERATED SIMPLY BY PUTTING TILES ON A PATH    
     private ArrayList<Integer> winPath;
@@ -50,6 +55,8 @@ public class PathXTile extends Sprite
         super(initSpriteType, initX, initY, initVx, initVy, initState);
         
         tileId = initTileId;
+        previousX = initX;
+        previousY = initY;
     }
     
     // ACCESSOR METHODS
@@ -113,6 +120,28 @@ public class PathXTile extends Sprite
         return targetY; 
     }
     
+    /**
+     * Accessor method for getting the x-axis coordinate this tile had
+     * before its last update.
+     * 
+     * @return The x-axis coordinate it moved from.
+     */
+    public float getPreviousX()
+    {
+        return previousX;
+    }
+    
+    /**
+     * Accessor method for getting the y-axis coordinate this tile had
+     * before its last update.
+     * 
+     * @return The y-axis coordinate it moved from.
+     */
+    public float getPreviousY()
+    {
+        return previousY;
+    }
+    
     /**
      * Accessor method for getting whether this tile is currently moving toward
      * target coordinates or not.
@@ -291,6 +320,10 @@ public class PathXTile extends Sprite
     @Override
     public void update(MiniGame game)
     {
+        // REMEMBER WHERE WE WERE
+        previousX = x;
+        previousY = y;
+
         // IF WE ARE IN A POST-WIN STATE WE ARE PLAYING THE WIN
         // ANIMATION, SO MAKE SURE THIS TILE FOLLOWS THE PATH
         if (game.getDataModel().won())
@@ -0,0 +1,251 @@
+package PathX.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import PathX.PathX_Intersection;
+import PathX.PathX_Level;
+import PathX.PathX_Road;
+import PathX.PathXConstants;
+
+/**
+ * Tests the compact level format by writing every shipped level with
+ * PathX_LevelWriter, reading it back with PathX_MappedLevelReader, and
+ * making sure it's the same level the original file holds, and that
+ * damaged and cut short files are turned away.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_LevelFormatTest
+{
+    // NUMBERS THAT ARE EASY TO GET WRONG WHEN ZIGZAGGING AND VARINTING
+    private static final int[] EDGE_VALUES = {
+        0, 1, -1, 63, -64, 64, -65, 127, 128, 16383, 16384,
+        Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE - 1, Integer.MIN_VALUE + 1 };
+
+    @Test
+    public void testZigzag()
+    {
+        for (int value : EDGE_VALUES)
+        {
+            assertEquals(value, PathX_LevelFormat.unzigzag(PathX_LevelFormat.zigzag(value)));
+        }
+
+        // SMALL NUMBERS STAY SMALL WHETHER OR NOT THEY'RE NEGATIVE
+        assertEquals(0, PathX_LevelFormat.zigzag(0));
+        assertEquals(1, PathX_LevelFormat.zigzag(-1));
+        assertEquals(2, PathX_LevelFormat.zigzag(1));
+        assertEquals(-1, PathX_LevelFormat.zigzag(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void testVarIntLengths() throws IOException
+    {
+        assertEquals(1, varIntLength(0));
+        assertEquals(1, varIntLength(127));
+        assertEquals(2, varIntLength(128));
+        assertEquals(2, varIntLength(16383));
+        assertEquals(3, varIntLength(16384));
+        assertEquals(5, varIntLength(Integer.MAX_VALUE));
+        assertEquals(5, varIntLength(-1));
+    }
+
+    @Test
+    public void testShippedLevelsRoundTrip() throws IOException
+    {
+        File[] levelFiles = getShippedLevelFiles();
+        assertTrue("No levels in " + PathXConstants.LEVELS_PATH, levelFiles.length > 0);
+        for (File levelFile : levelFiles)
+        {
+            PathX_LevelData original = PathX_MappedLevelReader.read(levelFile);
+            assertEquals(levelFile.getName(), 1, original.getFormatVersion());
+
+            byte[] compact = writeCompact(original);
+            PathX_LevelData copy = PathX_MappedLevelReader.read(ByteBuffer.wrap(compact));
+            assertEquals(levelFile.getName(), PathX_LevelFormat.VERSION, copy.getFormatVersion());
+            assertSameLevel(levelFile.getName(), original, copy);
+            assertTrue(levelFile.getName() + " isn't smaller", compact.length < levelFile.length());
+        }
+    }
+
+    @Test
+    public void testExtremeCoordinatesRoundTrip() throws IOException
+    {
+        // EVERY DIFFERENCE BETWEEN THESE OVERFLOWS AN int, WHICH THE
+        // DELTAS MUST WRAP AROUND AND BACK AGAIN
+        PathX_Level level = new PathX_Level();
+        for (int i = 0; i < EDGE_VALUES.length; i++)
+        {
+            PathX_Intersection intersection = new PathX_Intersection(EDGE_VALUES[i], EDGE_VALUES[EDGE_VALUES.length - 1 - i]);
+            intersection.setOpen((i % 3) != 0);
+            level.addIntersection(intersection);
+        }
+        for (int i = 0; i < EDGE_VALUES.length; i++)
+        {
+            PathX_Road road = new PathX_Road();
+            road.setNode1(level.getIntersections().get(EDGE_VALUES.length - 1 - i));
+            road.setNode2(level.getIntersections().get(i));
+            road.setOneWay((i % 2) == 0);
+            road.setSpeedLimit(Math.abs(EDGE_VALUES[i] % 1000) + 1);
+            level.addRoad(road);
+        }
+        level.setStartingLocation(level.getIntersections().get(1));
+        level.setDestination(level.getIntersections().get(EDGE_VALUES.length - 1));
+
+        PathX_LevelData copy = PathX_MappedLevelReader.read(ByteBuffer.wrap(writeCompact("Extremes", level)));
+        assertEquals(EDGE_VALUES.length, copy.getNumIntersections());
+        for (int i = 0; i < EDGE_VALUES.length; i++)
+        {
+            PathX_Intersection intersection = level.getIntersections().get(i);
+            assertEquals(intersection.x, copy.getX(i));
+            assertEquals(intersection.y, copy.getY(i));
+            assertEquals(intersection.isOpen(), copy.isOpen(i));
+
+            PathX_Road road = level.getRoads().get(i);
+            assertEquals(EDGE_VALUES.length - 1 - i, copy.getRoadNode1(i));
+            assertEquals(i, copy.getRoadNode2(i));
+            assertEquals(road.isOneWay(), copy.isRoadOneWay(i));
+            assertEquals(road.getSpeedLimit(), copy.getRoadSpeedLimit(i));
+        }
+        assertEquals(1, copy.getStartingLocation());
+        assertEquals(EDGE_VALUES.length - 1, copy.getDestination());
+    }
+
+    @Test
+    public void testFlippedBytesAreCaught() throws IOException
+    {
+        byte[] compact = writeCompact(PathX_MappedLevelReader.read(getShippedLevelFiles()[0]));
+
+        // FLIPPING ANY BYTE AFTER THE MAGIC MUST FAIL THE CRC, OR FOR THE
+        // VERSION BYTE, THE VERSION CHECK
+        for (int i = 4; i < compact.length; i++)
+        {
+            byte[] damaged = compact.clone();
+            damaged[i] ^= 0x20;
+            try
+            {
+                PathX_MappedLevelReader.read(ByteBuffer.wrap(damaged));
+                fail("Flipping byte " + i + " of " + compact.length + " wasn't caught");
+            }
+            catch(IOException ioe)
+            {
+                // WHAT WE WANT
+            }
+        }
+    }
+
+    @Test
+    public void testTruncatedFilesAreCaught() throws IOException
+    {
+        File levelFile = getShippedLevelFiles()[0];
+        byte[] compact = writeCompact(PathX_MappedLevelReader.read(levelFile));
+        assertTruncationsCaught("compact " + levelFile.getName(), compact);
+        assertTruncationsCaught(levelFile.getName(), readFile(levelFile));
+    }
+
+    // HELPER METHOD FOR MAKING SURE EVERY PREFIX OF A LEVEL IS TURNED AWAY
+    private void assertTruncationsCaught(String description, byte[] level)
+    {
+        for (int length = 0; length < level.length; length++)
+        {
+            try
+            {
+                PathX_MappedLevelReader.read(ByteBuffer.wrap(Arrays.copyOf(level, length)));
+                fail(description + " cut to " + length + " of " + level.length + " bytes wasn't caught");
+            }
+            catch(IOException ioe)
+            {
+                // WHAT WE WANT
+            }
+        }
+    }
+
+    // HELPER METHOD FOR COMPARING EVERYTHING IN TWO LEVELS
+    private void assertSameLevel(String name, PathX_LevelData expected, PathX_LevelData actual)
+    {
+        assertEquals(name, expected.getLevelName(), actual.getLevelName());
+        assertEquals(name, expected.getBackgroundImageFileName(), actual.getBackgroundImageFileName());
+        assertEquals(name, expected.getNumIntersections(), actual.getNumIntersections());
+        for (int i = 0; i < expected.getNumIntersections(); i++)
+        {
+            assertEquals(name, expected.getX(i), actual.getX(i));
+            assertEquals(name, expected.getY(i), actual.getY(i));
+            assertEquals(name, expected.isOpen(i), actual.isOpen(i));
+        }
+        assertEquals(name, expected.getNumRoads(), actual.getNumRoads());
+        for (int i = 0; i < expected.getNumRoads(); i++)
+        {
+            assertEquals(name, expected.getRoadNode1(i), actual.getRoadNode1(i));
+            assertEquals(name, expected.getRoadNode2(i), actual.getRoadNode2(i));
+            assertEquals(name, expected.isRoadOneWay(i), actual.isRoadOneWay(i));
+            assertEquals(name, expected.getRoadSpeedLimit(i), actual.getRoadSpeedLimit(i));
+        }
+        assertEquals(name, expected.getStartingLocation(), actual.getStartingLocation());
+        assertEquals(name, expected.getStartingLocationImageFileName(), actual.getStartingLocationImageFileName());
+        assertEquals(name, expected.getDestination(), actual.getDestination());
+        assertEquals(name, expected.getDestinationImageFileName(), actual.getDestinationImageFileName());
+        assertEquals(name, expected.getMoney(), actual.getMoney());
+        assertEquals(name, expected.getNumPolice(), actual.getNumPolice());
+        assertEquals(name, expected.getNumBandits(), actual.getNumBandits());
+        assertEquals(name, expected.getNumZombies(), actual.getNumZombies());
+    }
+
+    // HELPER METHOD FOR WRITING A LEVEL READ FROM A FILE IN THE COMPACT
+    // FORMAT, GOING THROUGH A PathX_Level JUST LIKE SAVING ONE DOES
+    private byte[] writeCompact(PathX_LevelData levelData) throws IOException
+    {
+        PathX_Level level = new PathX_Level();
+        levelData.fillLevel(level);
+        return writeCompact(levelData.getLevelName(), level);
+    }
+
+    // HELPER METHOD FOR WRITING A LEVEL IN THE COMPACT FORMAT
+    private byte[] writeCompact(String levelName, PathX_Level level) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PathX_LevelWriter writer = new PathX_LevelWriter(out);
+        writer.writeLevel(levelName, level);
+        writer.close();
+        return out.toByteArray();
+    }
+
+    // HELPER METHOD FOR HOW MANY BYTES A VARINT TAKES
+    private int varIntLength(int value) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PathX_LevelFormat.writeVarInt(out, value);
+        return out.size();
+    }
+
+    // HELPER METHOD FOR READING A WHOLE FILE
+    private byte[] readFile(File file) throws IOException
+    {
+        ByteBuffer mapped = PathX_MappedLevelReader.map(file);
+        byte[] contents = new byte[mapped.remaining()];
+        mapped.get(contents);
+        return contents;
+    }
+
+    // HELPER METHOD FOR FINDING ALL THE LEVELS THE GAME SHIPS WITH, IN
+    // NAME ORDER SO THE TESTS ALWAYS USE THE SAME ONE FIRST
+    private File[] getShippedLevelFiles()
+    {
+        File[] levelFiles = new File(PathXConstants.LEVELS_PATH).listFiles(new FilenameFilter()
+        {
+            @Override
+            public boolean accept(File dir, String name)
+            {
+                return name.endsWith(".bin");
+            }
+        });
+        if (levelFiles == null)
+            return new File[0];
+        Arrays.sort(levelFiles);
+        return levelFiles;
+    }
+}
@@ -0,0 +1,265 @@
+package PathX.file;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+import PathX.data.PathX_LevelRecord;
+
+/**
+ * Tests that the record journal keeps every save it finished through a
+ * crash part way through the next one, through compaction, and through
+ * moving over from the record file the game used to write.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_RecordJournalTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSavesSurviveReopening() throws IOException
+    {
+        File journalFile = new File(folder.getRoot(), "records.journal");
+        PathX_RecordJournal journal = PathX_RecordJournal.open(journalFile, null);
+        assertEquals(0, journal.getNumLevels());
+        journal.putLevelRecord("Cali", makeRecord(3, 2, 1, 5000));
+        journal.putLevelRecord("Death Valley", makeRecord(1, 0, 0, PathX_LevelRecord.NO_TIME));
+        journal.putLevelRecord("Cali", makeRecord(4, 3, 2, 4000));
+        journal.close();
+
+        journal = PathX_RecordJournal.open(journalFile, null);
+        assertEquals(2, journal.getNumLevels());
+        assertRecord(makeRecord(4, 3, 2, 4000), journal.getLevelRecord("Cali"));
+        assertRecord(makeRecord(1, 0, 0, PathX_LevelRecord.NO_TIME), journal.getLevelRecord("Death Valley"));
+        assertNull(journal.getLevelRecord("Miami"));
+        assertEquals(0, journal.getNumTornBytes());
+        journal.close();
+    }
+
+    @Test
+    public void testTornLastEntryIsCutOff() throws IOException
+    {
+        File journalFile = new File(folder.getRoot(), "records.journal");
+        PathX_RecordJournal journal = PathX_RecordJournal.open(journalFile, null);
+        journal.putLevelRecord("Cali", makeRecord(1, 1, 0, PathX_LevelRecord.NO_TIME));
+        journal.putLevelRecord("Miami", makeRecord(2, 1, 1, 9000));
+        long goodLength = journalFile.length();
+        journal.putLevelRecord("Cali", makeRecord(2, 2, 1, 7000));
+        journal.close();
+        long fullLength = journalFile.length();
+
+        // CUT THE LAST ENTRY OFF AT EVERY POINT A CRASH COULD LEAVE IT
+        byte[] contents = readFile(journalFile);
+        for (long length = goodLength + 1; length < fullLength; length++)
+        {
+            writeFile(journalFile, contents, (int)length);
+            journal = PathX_RecordJournal.open(journalFile, null);
+            assertEquals(length - goodLength, journal.getNumTornBytes());
+            assertRecord(makeRecord(1, 1, 0, PathX_LevelRecord.NO_TIME), journal.getLevelRecord("Cali"));
+            assertRecord(makeRecord(2, 1, 1, 9000), journal.getLevelRecord("Miami"));
+            journal.close();
+            assertEquals(goodLength, journalFile.length());
+        }
+
+        // AND THE NEXT SAVE GOES RIGHT AFTER THE LAST GOOD ENTRY
+        journal = PathX_RecordJournal.open(journalFile, null);
+        assertEquals(0, journal.getNumTornBytes());
+        journal.putLevelRecord("Cali", makeRecord(5, 5, 5, 1000));
+        journal.close();
+        journal = PathX_RecordJournal.open(journalFile, null);
+        assertEquals(0, journal.getNumTornBytes());
+        assertRecord(makeRecord(5, 5, 5, 1000), journal.getLevelRecord("Cali"));
+        assertRecord(makeRecord(2, 1, 1, 9000), journal.getLevelRecord("Miami"));
+        journal.close();
+    }
+
+    @Test
+    public void testDamagedEntryCutsOffTheRest() throws IOException
+    {
+        File journalFile = new File(folder.getRoot(), "records.journal");
+        PathX_RecordJournal journal = PathX_RecordJournal.open(journalFile, null);
+        journal.putLevelRecord("Cali", makeRecord(1, 0, 0, PathX_LevelRecord.NO_TIME));
+        long firstEnd = journalFile.length();
+        journal.putLevelRecord("Miami", makeRecord(1, 1, 0, PathX_LevelRecord.NO_TIME));
+        journal.putLevelRecord("Jacksonville", makeRecord(1, 1, 1, 3000));
+        journal.close();
+
+        // FLIP A BYTE IN THE LEVEL NAME OF THE SECOND ENTRY
+        byte[] contents = readFile(journalFile);
+        contents[(int)firstEnd + 6] ^= 0x01;
+        writeFile(journalFile, contents, contents.length);
+
+        journal = PathX_RecordJournal.open(journalFile, null);
+        assertEquals(1, journal.getNumLevels());
+        assertNotNull(journal.getLevelRecord("Cali"));
+        assertEquals(contents.length - firstEnd, journal.getNumTornBytes());
+        journal.close();
+        assertEquals(firstEnd, journalFile.length());
+    }
+
+    @Test
+    public void testCompaction() throws IOException
+    {
+        File journalFile = new File(folder.getRoot(), "records.journal");
+        PathX_RecordJournal journal = PathX_RecordJournal.open(journalFile, null);
+        int numCompactions = journal.getNumCompactions();
+        String[] levelNames = { "Cali", "Miami", "Jacksonville" };
+        int numSaves = (PathX_RecordJournal.COMPACT_FACTOR * levelNames.length) + PathX_RecordJournal.COMPACT_SLACK + 1;
+        for (int i = 0; i < numSaves; i++)
+        {
+            journal.putLevelRecord(levelNames[i % levelNames.length], makeRecord(i, i / 2, i / 3, 100000 - i));
+        }
+        assertEquals(numCompactions + 1, journal.getNumCompactions());
+        assertEquals(levelNames.length, journal.getNumEntries());
+
+        // AND IT CAN BE FORCED, LEAVING ONE ENTRY PER LEVEL
+        journal.putLevelRecord("Cali", makeRecord(1000, 1000, 1000, 1));
+        journal.compact();
+        assertEquals(levelNames.length, journal.getNumEntries());
+        journal.close();
+        assertFalse(new File(journalFile.getPath() + ".tmp").exists());
+
+        journal = PathX_RecordJournal.open(journalFile, null);
+        assertEquals(levelNames.length, journal.getNumEntries());
+        assertRecord(makeRecord(1000, 1000, 1000, 1), journal.getLevelRecord("Cali"));
+        for (int i = numSaves - 1; i >= numSaves - 3; i--)
+        {
+            if (!levelNames[i % levelNames.length].equals("Cali"))
+                assertRecord(makeRecord(i, i / 2, i / 3, 100000 - i), journal.getLevelRecord(levelNames[i % levelNames.length]));
+        }
+        journal.close();
+    }
+
+    @Test
+    public void testLegacyRecordsAreMigrated() throws IOException
+    {
+        File legacyFile = new File(folder.getRoot(), "PlayerRecord.dat");
+        writeLegacy(legacyFile, new String[] { "Cali", "Miami" },
+                    new PathX_LevelRecord[] { makeRecord(3, 2, 1, 6000), makeRecord(7, 0, 0, PathX_LevelRecord.NO_TIME) },
+                    0);
+        File journalFile = new File(folder.getRoot(), "records.journal");
+        PathX_RecordJournal journal = PathX_RecordJournal.open(journalFile, legacyFile);
+        assertRecord(makeRecord(3, 2, 1, 6000), journal.getLevelRecord("Cali"));
+        assertRecord(makeRecord(7, 0, 0, PathX_LevelRecord.NO_TIME), journal.getLevelRecord("Miami"));
+        journal.close();
+        assertTrue(journalFile.exists());
+        assertTrue(legacyFile.exists());
+
+        // ONCE THERE'S A JOURNAL THE OLD FILE IS NEVER READ AGAIN
+        writeLegacy(legacyFile, new String[] { "Cali" }, new PathX_LevelRecord[] { makeRecord(99, 99, 99, 99) }, 0);
+        journal = PathX_RecordJournal.open(journalFile, legacyFile);
+        assertEquals(2, journal.getNumLevels());
+        assertRecord(makeRecord(3, 2, 1, 6000), journal.getLevelRecord("Cali"));
+        journal.close();
+    }
+
+    @Test
+    public void testCutShortLegacyRecordsKeepTheLevelsBefore() throws IOException
+    {
+        File legacyFile = new File(folder.getRoot(), "PlayerRecord.dat");
+        writeLegacy(legacyFile, new String[] { "Cali", "Miami" },
+                    new PathX_LevelRecord[] { makeRecord(3, 2, 1, 6000), makeRecord(7, 0, 0, PathX_LevelRecord.NO_TIME) },
+                    5);
+        PathX_RecordJournal journal = PathX_RecordJournal.open(new File(folder.getRoot(), "records.journal"), legacyFile);
+        assertEquals(1, journal.getNumLevels());
+        assertRecord(makeRecord(3, 2, 1, 6000), journal.getLevelRecord("Cali"));
+        journal.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void testOtherFilesAreRefused() throws IOException
+    {
+        File journalFile = new File(folder.getRoot(), "records.journal");
+        writeFile(journalFile, "not a journal".getBytes("UTF-8"), 13);
+        PathX_RecordJournal.open(journalFile, null);
+    }
+
+    // HELPER METHOD FOR MAKING A RECORD
+    private PathX_LevelRecord makeRecord(int gamesPlayed, int wins, int perfectWins, long fastestPerfectWinTime)
+    {
+        PathX_LevelRecord record = new PathX_LevelRecord();
+        record.gamesPlayed = gamesPlayed;
+        record.wins = wins;
+        record.perfectWins = perfectWins;
+        record.fastestPerfectWinTime = fastestPerfectWinTime;
+        return record;
+    }
+
+    // HELPER METHOD FOR COMPARING TWO RECORDS
+    private void assertRecord(PathX_LevelRecord expected, PathX_LevelRecord actual)
+    {
+        assertNotNull(actual);
+        assertEquals(expected.gamesPlayed, actual.gamesPlayed);
+        assertEquals(expected.wins, actual.wins);
+        assertEquals(expected.perfectWins, actual.perfectWins);
+        assertEquals(expected.fastestPerfectWinTime, actual.fastestPerfectWinTime);
+    }
+
+    // HELPER METHOD FOR WRITING A RECORD FILE THE WAY THE GAME USED TO,
+    // LEAVING OFF THE LAST cutShort BYTES
+    private void writeLegacy(File legacyFile, String[] levelNames, PathX_LevelRecord[] levelRecords, int cutShort) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(legacyFile));
+        try
+        {
+            out.writeInt(levelNames.length);
+            for (int i = 0; i < levelNames.length; i++)
+            {
+                out.writeUTF(levelNames[i]);
+                out.writeUTF("");
+                out.writeInt(levelRecords[i].gamesPlayed);
+                out.writeInt(levelRecords[i].wins);
+                out.writeInt(levelRecords[i].perfectWins);
+                out.writeLong(levelRecords[i].fastestPerfectWinTime);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        RandomAccessFile raf = new RandomAccessFile(legacyFile, "rw");
+        try
+        {
+            raf.setLength(raf.length() - cutShort);
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    // HELPER METHODS FOR READING AND WRITING WHOLE FILES
+    private byte[] readFile(File file) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            byte[] contents = new byte[(int)raf.length()];
+            raf.readFully(contents);
+            return contents;
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+    private void writeFile(File file, byte[] contents, int length) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(contents, 0, length);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package PathX.route;
+
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import PathX.PathX_Intersection;
+import PathX.PathX_Level;
+import PathX.file.PathX_LevelGenerator;
+
+/**
+ * Tests that routing with a contraction hierarchy finds routes just as
+ * fast as A* does on a generated level, and that once an intersection is
+ * opened or closed it goes back to A* until the hierarchy is rebuilt.
+ *
+ * @author Richard McKenna & Dawa Lama
+ */
+public class PathX_HierarchyRouterTest
+{
+    // HOW BIG A LEVEL AND HOW MANY SEARCHES TO COMPARE ON IT
+    private static final int NUM_INTERSECTIONS = 2500;
+    private static final int NUM_QUERIES = 500;
+
+    // HOW CLOSE TWO ROUTE TIMES HAVE TO BE, SINCE THEY'RE ADDED UP IN
+    // DIFFERENT ORDERS
+    private static final double EPSILON = 1e-9;
+
+    // THE LEVEL AND THE ROUTERS BEING COMPARED
+    private PathX_Level level;
+    private PathX_Router router;
+    private PathX_HierarchyRouter hierarchyRouter;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        PathX_LevelGenerator generator = new PathX_LevelGenerator(4, NUM_INTERSECTIONS);
+        generator.setRoadDensity(2.5);
+        generator.setOneWayRatio(0.3);
+        generator.setClosedRatio(0.1);
+        level = generator.makeLevel("Hierarchy Test");
+        router = new PathX_Router(level);
+        hierarchyRouter = new PathX_HierarchyRouter(router);
+        hierarchyRouter.rebuild();
+    }
+
+    @Test
+    public void testSameRoutesAsAStar()
+    {
+        assertTrue(hierarchyRouter.isHierarchyCurrent());
+        assertSameRoutes(new Random(1));
+    }
+
+    @Test
+    public void testFallsBackToAStarAfterToggling()
+    {
+        // FIND A ROUTE THAT GOES THROUGH SOME OTHER INTERSECTIONS
+        Random random = new Random(2);
+        int source;
+        int target;
+        do
+        {
+            source = random.nextInt(NUM_INTERSECTIONS);
+            target = random.nextInt(NUM_INTERSECTIONS);
+        } while (!router.search(source, target) || (router.getSearchState().getPathLength() < 4));
+        double timeBefore = router.getSearchState().getPathTime();
+
+        // AND CLOSE ONE OF THEM, WHICH THE HIERARCHY DOESN'T KNOW ABOUT
+        PathX_SearchState state = router.getSearchState();
+        PathX_Intersection middle = router.getCosts().getGraph().getIntersection(state.getPathNode(state.getPathLength() / 2));
+        middle.toggleOpen();
+        assertFalse(hierarchyRouter.isHierarchyCurrent());
+
+        boolean found = hierarchyRouter.search(source, target);
+        assertEquals(router.search(source, target), found);
+        if (found)
+        {
+            double timeAfter = hierarchyRouter.getRouter().getSearchState().getPathTime();
+            assertTrue("The closed intersection was driven through", timeAfter > timeBefore);
+            assertRouteAvoids(middle);
+        }
+        assertSameRoutes(random);
+
+        // ONCE IT'S REBUILT IT'S USED AGAIN, AND STILL AGREES WITH A*
+        hierarchyRouter.rebuild();
+        assertTrue(hierarchyRouter.isHierarchyCurrent());
+        assertSameRoutes(random);
+
+        // AND OPENING IT AGAIN WORKS THE SAME WAY
+        middle.toggleOpen();
+        assertFalse(hierarchyRouter.isHierarchyCurrent());
+        assertTrue(hierarchyRouter.search(source, target));
+        assertEquals(timeBefore, router.getSearchState().getPathTime(), EPSILON);
+        assertSameRoutes(random);
+    }
+
+    // HELPER METHOD FOR COMPARING THE HIERARCHY ROUTER WITH A* ON
+    // NUM_QUERIES RANDOM PAIRS OF INTERSECTIONS
+    private void assertSameRoutes(Random random)
+    {
+        PathX_SearchState state = router.getSearchState();
+        int numFound = 0;
+        for (int i = 0; i < NUM_QUERIES; i++)
+        {
+            int source = random.nextInt(NUM_INTERSECTIONS);
+            int target = random.nextInt(NUM_INTERSECTIONS);
+            boolean expectedFound = router.search(source, target);
+            double expectedTime = state.getPathTime();
+            boolean found = hierarchyRouter.search(source, target);
+            String pair = source + " to " + target;
+            assertEquals(pair, expectedFound, found);
+            if (found)
+            {
+                assertEquals(pair, expectedTime, state.getPathTime(), EPSILON * Math.max(1.0, expectedTime));
+                assertEquals(pair, source, state.getPathNode(0));
+                assertEquals(pair, target, state.getPathNode(state.getPathLength() - 1));
+                numFound++;
+            }
+        }
+
+        // MOST PAIRS SHOULD BE CONNECTED, OR WE'RE NOT TESTING MUCH
+        assertTrue("Only " + numFound + " routes found", numFound > NUM_QUERIES / 2);
+    }
+
+    // HELPER METHOD FOR MAKING SURE THE LAST ROUTE FOUND DOESN'T GO
+    // THROUGH THE INTERSECTION ARGUMENT
+    private void assertRouteAvoids(PathX_Intersection intersection)
+    {
+        PathX_SearchState state = router.getSearchState();
+        int id = router.getCosts().getGraph().indexOf(intersection);
+        for (int i = 0; i < state.getPathLength(); i++)
+        {
+            assertTrue("The route goes through " + id, state.getPathNode(i) != id);
+        }
+    }
+}